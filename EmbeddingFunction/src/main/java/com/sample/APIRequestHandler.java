@@ -5,20 +5,42 @@ import java.util.Map;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.sample.model.EmbeddingMetadata;
 import com.sample.model.EmbeddingRequest;
 import com.sample.model.EmbeddingResponse;
+import com.sample.model.EmbeddingVector;
 import com.sample.model.UserAttributesRequest;
 import com.sample.service.DynamoDBService;
 import com.sample.service.EmbeddingService;
+import com.sample.service.EnhancedDynamoDBService;
 import com.sample.util.JsonUtils;
+import com.sample.util.UserAttributeFormatter;
 
 /**
  * Handles API request routing and business logic for embedding operations.
  */
 public class APIRequestHandler {
 
-    private final DynamoDBService dynamoDBService = new DynamoDBService();
-    private final EmbeddingService embeddingService = new EmbeddingService();
+    private final DynamoDBService dynamoDBService;
+    private final EnhancedDynamoDBService enhancedDynamoDBService;
+    private final EmbeddingService embeddingService;
+
+    public APIRequestHandler() {
+        this(new DynamoDBService(), new EnhancedDynamoDBService(), new EmbeddingService());
+    }
+
+    /**
+     * Creates a handler with the given services.
+     *
+     * @param enhancedDynamoDBService Stores attribute embeddings, keyed by user and embedding type,
+     *                                with the profile attributes searches filter on
+     */
+    APIRequestHandler(DynamoDBService dynamoDBService, EnhancedDynamoDBService enhancedDynamoDBService,
+                      EmbeddingService embeddingService) {
+        this.dynamoDBService = dynamoDBService;
+        this.enhancedDynamoDBService = enhancedDynamoDBService;
+        this.embeddingService = embeddingService;
+    }
 
     /**
      * Routes API requests to the correct handler.
@@ -56,9 +78,9 @@ public class APIRequestHandler {
             context.getLogger().log("Generating embedding for user: " + request.getUserId());
 
             // ✅ AWS Bedrock Call
-            double[] embedding;
+            EmbeddingVector embedding;
             try {
-                embedding = embeddingService.generateEmbedding(request.getText());
+                embedding = embeddingService.generateEmbeddingVector(request.getText());
             } catch (Exception e) {
                 context.getLogger().log("Error calling AWS Bedrock: " + e.getMessage());
                 return JsonUtils.createResponse(500, "Failed to generate embedding from AWS Bedrock.");
@@ -89,7 +111,7 @@ public class APIRequestHandler {
             context.getLogger().log("Fetching embedding for user: " + request.getUserId());
 
             // ✅ Retrieve from DynamoDB
-            double[] embedding = dynamoDBService.getEmbedding(request.getUserId());
+            EmbeddingVector embedding = dynamoDBService.getEmbeddingVector(request.getUserId());
 
             if (embedding == null) {
                 return JsonUtils.createResponse(404, "Embedding not found");
@@ -122,16 +144,19 @@ public class APIRequestHandler {
             context.getLogger().log("Generating embedding from attributes for user: " + request.getUserId());
 
             // ✅ AWS Bedrock Call
-            double[] embedding;
+            EmbeddingVector embedding;
             try {
-                embedding = embeddingService.generateEmbeddingFromAttributes(request.getAttributes());
+                embedding = embeddingService.generateEmbeddingVectorFromAttributes(request.getAttributes());
             } catch (Exception e) {
                 context.getLogger().log("Error calling AWS Bedrock: " + e.getMessage());
                 return JsonUtils.createResponse(500, "Failed to generate embedding from AWS Bedrock.");
             }
 
-            // ✅ Store in DynamoDB
-            dynamoDBService.storeEmbedding(request.getUserId(), embedding);
+            // ✅ Store in DynamoDB, with the attributes similarity searches filter on
+            enhancedDynamoDBService.storeEmbeddingWithMetadata(request.getUserId(),
+                    EnhancedDynamoDBService.EMBEDDING_TYPE_USER_ATTRIBUTES, embedding,
+                    new EmbeddingMetadata(EnhancedDynamoDBService.EMBEDDING_TYPE_USER_ATTRIBUTES, EmbeddingService.MODEL_ID),
+                    UserAttributeFormatter.profileAttributes(request.getAttributes()));
             return JsonUtils.createResponse(200, new EmbeddingResponse("Embedding from attributes stored successfully."));
 
         } catch (Exception e) {
@@ -4,6 +4,7 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
 import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.sample.util.Deadline;
 
 /**
  * AWS Lambda handler that delegates API processing to APIRequestHandler.
@@ -15,6 +16,9 @@ public class App implements RequestHandler<APIGatewayProxyRequestEvent, APIGatew
     @Override
     public APIGatewayProxyResponseEvent handleRequest(final APIGatewayProxyRequestEvent input, final Context context) {
         context.getLogger().log("Received request for path: " + input.getPath());
-        return apiRequestHandler.handleRequest(input, context);
+        // DAX, DynamoDB and Bedrock calls made for this request share the invocation's remaining time
+        try (Deadline deadline = Deadline.start(context.getRemainingTimeInMillis())) {
+            return apiRequestHandler.handleRequest(input, context);
+        }
     }
 }
\ No newline at end of file
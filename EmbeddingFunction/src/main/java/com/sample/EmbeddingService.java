@@ -6,6 +6,8 @@ import java.util.UUID;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sample.model.EmbeddingResult;
+import com.sample.model.EmbeddingVector;
+import com.sample.util.BedrockRateController;
 import com.sample.util.JsonUtils;
 
 import software.amazon.awssdk.core.SdkBytes;
@@ -23,7 +25,11 @@ public class EmbeddingService {
 
     public EmbeddingService() {
         // In demo mode, we don't need to create a real Bedrock client
-        this.bedrockClient = useRealModel ? BedrockRuntimeClient.create() : null;
+        this.bedrockClient = useRealModel
+                ? BedrockRuntimeClient.builder()
+                        .overrideConfiguration(BedrockRateController.clientOverrideConfiguration())
+                        .build()
+                : null;
     }
 
     /**
@@ -44,9 +50,14 @@ public class EmbeddingService {
                         .body(SdkBytes.fromUtf8String(requestBody))
                         .build();
 
-                InvokeModelResponse response = bedrockClient.invokeModel(request);
+                InvokeModelResponse response = BedrockRateController.getInstance()
+                        .execute(() -> bedrockClient.invokeModel(request));
                 return objectMapper.readValue(response.body().asUtf8String(), double[].class);
             } catch (Exception e) {
+                // A random vector would silently replace the real one, so throttling is surfaced
+                if (BedrockRateController.isThrottle(e)) {
+                    throw new RuntimeException("Bedrock throttled after retries: " + e.getMessage(), e);
+                }
                 System.err.println("Error generating embedding: " + e.getMessage());
                 return generateMockEmbedding();
             }
@@ -67,7 +78,7 @@ public class EmbeddingService {
         String inputText = JsonUtils.toJson(input);
         
         // Generate the embedding vector
-        double[] embeddingVector = generateEmbedding(inputText);
+        EmbeddingVector embeddingVector = EmbeddingVector.of(generateEmbedding(inputText));
         
         // Determine the source type based on the input
         String sourceType = determineSourceType(input);
@@ -11,6 +11,8 @@ import org.eclipse.jetty.server.handler.ResourceHandler;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 
+import com.sample.util.NearCache;
+
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
@@ -68,6 +70,7 @@ public class WebServer {
             stats.put("apiRequests", 845632);
             stats.put("averageResponseTime", 42);
             stats.put("successRate", 99.8);
+            stats.put("nearCache", NearCache.getAllStats());
             
             resp.setContentType("application/json");
             resp.getWriter().write(toJson(stats));
@@ -6,6 +6,8 @@ import java.util.List;
 import java.util.Map;
 
 import com.sample.model.EmbeddingMetadata;
+import com.sample.model.EmbeddingVector;
+import com.sample.model.StoredEmbedding;
 import com.sample.service.BehavioralEmbeddingService;
 import com.sample.service.CloudWatchLogEmbeddingService;
 import com.sample.service.EmbeddingService;
@@ -15,6 +17,7 @@ import com.sample.service.FinancialInterestEmbeddingService;
 import com.sample.service.InterestEmbeddingService;
 import com.sample.util.JsonUtils;
 import com.sample.util.UserAttributeFormatter;
+import com.sample.util.VectorMath;
 
 /**
  * Comprehensive demo that showcases all embedding types and approaches.
@@ -95,8 +98,9 @@ public class AllEmbeddingTypesDemo {
             dynamoDBService.storeEmbeddingWithMetadata(
                 userId, 
                 EnhancedDynamoDBService.EMBEDDING_TYPE_USER_ATTRIBUTES, 
-                attributesEmbedding, 
-                attributesMetadata
+                EmbeddingVector.of(attributesEmbedding), 
+                attributesMetadata,
+                UserAttributeFormatter.profileAttributes(userAttributes)
             );
             
             System.out.println("User attributes embedding generated and stored.");
@@ -198,10 +202,19 @@ public class AllEmbeddingTypesDemo {
                 new double[][]{rawTextEmbedding, attributesEmbedding, behavioralEmbedding, interestEmbedding, financialEmbedding, logsEmbedding, effortEmbedding}
             );
             
+            // Write anything still buffered by write-behind before reading back
+            dynamoDBService.flush();
+            behavioralService.flush();
+            interestService.flush();
+            financialService.flush();
+            
             // 7. Retrieve all embedding types for the user
             System.out.println("\n=== 7. All Embedding Types for User ===");
-            List<String> embeddingTypes = dynamoDBService.getUserEmbeddingTypes(userId);
-            System.out.println("Embedding types stored for user " + userId + ": " + embeddingTypes);
+            Map<String, StoredEmbedding> allEmbeddings = dynamoDBService.getAllEmbeddings(userId);
+            System.out.println("Embedding types stored for user " + userId + ": " + allEmbeddings.keySet());
+            for (StoredEmbedding stored : allEmbeddings.values()) {
+                System.out.println("  " + stored.getEmbeddingType() + ": " + stored.getVector().dimension() + " dimensions");
+            }
             
             // 8. Financial product recommendations
             System.out.println("\n=== 8. Financial Product Recommendations ===");
@@ -281,30 +294,13 @@ public class AllEmbeddingTypesDemo {
         for (int i = 0; i < embeddings.length; i++) {
             System.out.printf("%-20s", types[i]);
             for (int j = 0; j < embeddings.length; j++) {
-                double similarity = calculateCosineSimilarity(embeddings[i], embeddings[j]);
+                double similarity = VectorMath.cosine(embeddings[i], embeddings[j]);
                 System.out.printf("%-20s", String.format("%.4f", similarity));
             }
             System.out.println();
         }
     }
     
-    /**
-     * Calculates cosine similarity between two embeddings.
-     */
-    private static double calculateCosineSimilarity(double[] embedding1, double[] embedding2) {
-        double dotProduct = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
-        
-        for (int i = 0; i < embedding1.length; i++) {
-            dotProduct += embedding1[i] * embedding2[i];
-            norm1 += Math.pow(embedding1[i], 2);
-            norm2 += Math.pow(embedding2[i], 2);
-        }
-        
-        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
-    }
-    
     /**
      * Simulates generating a CloudWatch logs embedding.
      */
@@ -326,13 +322,14 @@ public class AllEmbeddingTypesDemo {
             metadata.addEncodingDetail("error_count", 5);
             
             // Store in DynamoDB
-            EnhancedDynamoDBService dynamoDBService = new EnhancedDynamoDBService();
-            dynamoDBService.storeEmbeddingWithMetadata(
-                userId, 
-                EnhancedDynamoDBService.EMBEDDING_TYPE_CLOUDWATCH_LOGS, 
-                mockEmbedding, 
-                metadata
-            );
+            try (EnhancedDynamoDBService dynamoDBService = new EnhancedDynamoDBService()) {
+                dynamoDBService.storeEmbeddingWithMetadata(
+                    userId, 
+                    EnhancedDynamoDBService.EMBEDDING_TYPE_CLOUDWATCH_LOGS, 
+                    mockEmbedding, 
+                    metadata
+                );
+            }
             
             return mockEmbedding;
         } catch (Exception e) {
@@ -370,13 +367,14 @@ public class AllEmbeddingTypesDemo {
             metadata.addEncodingDetail("effort_high_effort", "true");
             
             // Store in DynamoDB
-            EnhancedDynamoDBService dynamoDBService = new EnhancedDynamoDBService();
-            dynamoDBService.storeEmbeddingWithMetadata(
-                userId, 
-                EnhancedDynamoDBService.EMBEDDING_TYPE_CLIENT_EFFORT, 
-                mockEmbedding, 
-                metadata
-            );
+            try (EnhancedDynamoDBService dynamoDBService = new EnhancedDynamoDBService()) {
+                dynamoDBService.storeEmbeddingWithMetadata(
+                    userId, 
+                    EnhancedDynamoDBService.EMBEDDING_TYPE_CLIENT_EFFORT, 
+                    mockEmbedding, 
+                    metadata
+                );
+            }
             
             // Display client effort analysis
             System.out.println("Client Effort Analysis:");
@@ -9,6 +9,7 @@ import java.util.Map;
 import com.sample.service.BehavioralEmbeddingService;
 import com.sample.service.EnhancedDynamoDBService;
 import com.sample.util.JsonUtils;
+import com.sample.util.VectorMath;
 
 /**
  * Demonstrates how to use the BehavioralEmbeddingService to generate embeddings from user behavioral data.
@@ -33,6 +34,7 @@ public class BehavioralEmbeddingDemo {
                 // Generate embedding from behavioral data
                 System.out.println("\nGenerating embedding...");
                 double[] embedding = embeddingService.generateBehavioralEmbedding(userId, behavioralData);
+                embeddingService.flush();
                 
                 System.out.println("Embedding generated successfully!");
                 System.out.println("Embedding dimensions: " + embedding.length);
@@ -182,7 +184,7 @@ public class BehavioralEmbeddingDemo {
             );
             
             if (userEmbedding != null) {
-                double similarity = calculateCosineSimilarity(targetEmbedding, userEmbedding);
+                double similarity = VectorMath.cosine(targetEmbedding, userEmbedding);
                 similarities.put(userId, similarity);
             }
         }
@@ -193,21 +195,4 @@ public class BehavioralEmbeddingDemo {
             System.out.println(entry.getKey() + ": " + String.format("%.4f", entry.getValue()));
         }
     }
-    
-    /**
-     * Calculates cosine similarity between two embeddings.
-     */
-    private static double calculateCosineSimilarity(double[] embedding1, double[] embedding2) {
-        double dotProduct = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
-        
-        for (int i = 0; i < embedding1.length; i++) {
-            dotProduct += embedding1[i] * embedding2[i];
-            norm1 += Math.pow(embedding1[i], 2);
-            norm2 += Math.pow(embedding2[i], 2);
-        }
-        
-        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
-    }
 } 
\ No newline at end of file
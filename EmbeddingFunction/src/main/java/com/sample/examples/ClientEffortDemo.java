@@ -7,6 +7,7 @@ import com.sample.model.EmbeddingMetadata;
 import com.sample.service.CloudWatchLogEmbeddingService;
 import com.sample.service.EnhancedDynamoDBService;
 import com.sample.util.JsonUtils;
+import com.sample.util.VectorMath;
 
 /**
  * Demonstrates how to use the CloudWatchLogEmbeddingService to detect client effort
@@ -261,13 +262,14 @@ public class ClientEffortDemo {
         }
         
         // Store in DynamoDB
-        EnhancedDynamoDBService dynamoDBService = new EnhancedDynamoDBService();
-        dynamoDBService.storeEmbeddingWithMetadata(
-            clientId, 
-            EnhancedDynamoDBService.EMBEDDING_TYPE_CLIENT_EFFORT, 
-            mockEmbedding, 
-            metadata
-        );
+        try (EnhancedDynamoDBService dynamoDBService = new EnhancedDynamoDBService()) {
+            dynamoDBService.storeEmbeddingWithMetadata(
+                clientId, 
+                EnhancedDynamoDBService.EMBEDDING_TYPE_CLIENT_EFFORT, 
+                mockEmbedding, 
+                metadata
+            );
+        }
         
         return mockEmbedding;
     }
@@ -288,7 +290,7 @@ public class ClientEffortDemo {
         }
         
         // Calculate similarity
-        double similarity = calculateCosineSimilarity(embedding1, embedding2);
+        double similarity = VectorMath.cosine(embedding1, embedding2);
         
         System.out.println("Effort similarity between " + clientId1 + " and " + clientId2 + ": " 
                           + String.format("%.2f%%", similarity * 100));
@@ -430,21 +432,4 @@ public class ClientEffortDemo {
             System.out.println("   - Implement scenario modeling with simple controls");
         }
     }
-    
-    /**
-     * Calculates cosine similarity between two embeddings.
-     */
-    private static double calculateCosineSimilarity(double[] embedding1, double[] embedding2) {
-        double dotProduct = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
-        
-        for (int i = 0; i < embedding1.length; i++) {
-            dotProduct += embedding1[i] * embedding2[i];
-            norm1 += Math.pow(embedding1[i], 2);
-            norm2 += Math.pow(embedding2[i], 2);
-        }
-        
-        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
-    }
 } 
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.sample.examples;
+
+import com.sample.service.EnhancedDynamoDBService;
+
+/**
+ * Re-encodes UserEmbeddings items stored in the legacy JSON string format into the binary
+ * float32 format. Usage: EmbeddingFormatMigration [totalSegments]
+ */
+public class EmbeddingFormatMigration {
+
+    public static void main(String[] args) {
+        int totalSegments = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        try {
+            EnhancedDynamoDBService dynamoDBService = new EnhancedDynamoDBService();
+            long migrated = dynamoDBService.migrateEmbeddingsToBinary(totalSegments);
+            System.out.println("Migrated " + migrated + " embeddings using " + totalSegments + " scan segments");
+        } catch (Exception e) {
+            System.err.println("Error migrating embeddings: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
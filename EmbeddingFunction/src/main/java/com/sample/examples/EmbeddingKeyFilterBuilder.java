@@ -0,0 +1,38 @@
+package com.sample.examples;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import com.sample.service.EnhancedDynamoDBService;
+import com.sample.util.BloomFilter;
+
+/**
+ * Builds the negative-lookup Bloom filter snapshot for UserEmbeddings from a parallel scan.
+ * Deploy the file and point EMBEDDING_BLOOM_FILTER_PATH at it.
+ * Usage: EmbeddingKeyFilterBuilder outputFile [expectedKeys] [totalSegments]
+ */
+public class EmbeddingKeyFilterBuilder {
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: EmbeddingKeyFilterBuilder outputFile [expectedKeys] [totalSegments]");
+            return;
+        }
+        long expectedKeys = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000L;
+        int totalSegments = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        try {
+            EnhancedDynamoDBService dynamoDBService = new EnhancedDynamoDBService();
+            BloomFilter filter = dynamoDBService.rebuildKeyFilter(totalSegments, expectedKeys, 0.01);
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(args[0]))) {
+                filter.writeTo(out);
+            }
+            System.out.println("Wrote key filter to " + args[0] + ": " + filter.getInsertionCount() + " keys, "
+                    + filter.getBitCount() + " bits, " + filter.getHashCount() + " hashes (expected false-positive rate "
+                    + String.format("%.4f", filter.expectedFalsePositiveRate()) + ")");
+        } catch (Exception e) {
+            System.err.println("Error building key filter: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.util.Map;
 import com.sample.service.EnhancedDynamoDBService;
 import com.sample.service.FinancialInterestEmbeddingService;
 import com.sample.util.JsonUtils;
+import com.sample.util.VectorMath;
 
 /**
  * Demonstrates how to use the FinancialInterestEmbeddingService to generate embeddings
@@ -78,6 +79,7 @@ public class FinancialProfileDemo {
                     riskTolerance, 
                     timeHorizon
                 );
+                embeddingService.flush();
                 
                 System.out.println("Embedding generated successfully!");
                 System.out.println("Embedding dimensions: " + embedding.length);
@@ -144,7 +146,7 @@ public class FinancialProfileDemo {
         }
         
         // Calculate similarity
-        double similarity = calculateCosineSimilarity(embedding1, embedding2);
+        double similarity = VectorMath.cosine(embedding1, embedding2);
         
         System.out.println("Similarity between " + clientId1 + " and " + clientId2 + ": " 
                           + String.format("%.2f%%", similarity * 100));
@@ -179,21 +181,4 @@ public class FinancialProfileDemo {
                 return productId.replace("_", " ");
         }
     }
-    
-    /**
-     * Calculates cosine similarity between two embeddings.
-     */
-    private static double calculateCosineSimilarity(double[] embedding1, double[] embedding2) {
-        double dotProduct = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
-        
-        for (int i = 0; i < embedding1.length; i++) {
-            dotProduct += embedding1[i] * embedding2[i];
-            norm1 += Math.pow(embedding1[i], 2);
-            norm2 += Math.pow(embedding2[i], 2);
-        }
-        
-        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
-    }
 } 
\ No newline at end of file
@@ -7,6 +7,7 @@ import java.util.Map;
 import com.sample.service.EnhancedDynamoDBService;
 import com.sample.service.InterestEmbeddingService;
 import com.sample.util.JsonUtils;
+import com.sample.util.VectorMath;
 
 /**
  * Demonstrates how to use the InterestEmbeddingService to generate embeddings from user interests.
@@ -42,6 +43,7 @@ public class InterestEmbeddingDemo {
                 // Generate embedding from interests and preferences
                 System.out.println("\nGenerating embedding...");
                 double[] embedding = embeddingService.generateInterestEmbedding(userId, interests, preferences);
+                embeddingService.flush();
                 
                 System.out.println("Embedding generated successfully!");
                 System.out.println("Embedding dimensions: " + embedding.length);
@@ -105,7 +107,7 @@ public class InterestEmbeddingDemo {
         }
         
         // Calculate similarity
-        double similarity = calculateCosineSimilarity(embedding1, embedding2);
+        double similarity = VectorMath.cosine(embedding1, embedding2);
         
         System.out.println("Similarity between " + userId1 + " and " + userId2 + ": " 
                           + String.format("%.4f", similarity));
@@ -119,21 +121,4 @@ public class InterestEmbeddingDemo {
             System.out.println("These users have different interests.");
         }
     }
-    
-    /**
-     * Calculates cosine similarity between two embeddings.
-     */
-    private static double calculateCosineSimilarity(double[] embedding1, double[] embedding2) {
-        double dotProduct = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
-        
-        for (int i = 0; i < embedding1.length; i++) {
-            dotProduct += embedding1[i] * embedding2[i];
-            norm1 += Math.pow(embedding1[i], 2);
-            norm2 += Math.pow(embedding2[i], 2);
-        }
-        
-        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
-    }
 } 
\ No newline at end of file
@@ -29,6 +29,8 @@ import com.sample.examples.UserInterestMatchingExample.EmbeddingService;
 import com.sample.examples.UserInterestMatchingExample.UserEmbedding;
 import com.sample.examples.UserInterestMatchingExample.UserProfile;
 import com.sample.examples.UserInterestMatchingExample.UserProfileMatch;
+import com.sample.model.EmbeddingVector;
+import com.sample.util.EmbeddingCodec;
 
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
@@ -303,29 +305,20 @@ public class OpenSearchUserMatchingService {
         }
         
         Map<String, AttributeValue> item = response.item();
-        String embeddingJson = item.get("embedding").s();
-        List<Double> embedding = parseEmbeddingFromJson(embeddingJson);
+        List<Double> embedding = parseEmbedding(item.get("embedding"));
         
         return new UserEmbedding(userId, "profile", embedding);
     }
     
     /**
-     * Parse embedding from JSON string
+     * Decode a stored embedding, in either the binary or the legacy JSON string format
      */
-    private List<Double> parseEmbeddingFromJson(String embeddingJson) throws Exception {
-        // Remove brackets and split by comma
-        String cleaned = embeddingJson.replace("[", "").replace("]", "").trim();
-        if (cleaned.isEmpty()) {
-            return new ArrayList<>();
+    private List<Double> parseEmbedding(AttributeValue value) throws Exception {
+        EmbeddingVector vector = EmbeddingCodec.fromAttributeValue(value);
+        List<Double> embedding = new ArrayList<>(vector.dimension());
+        for (int j = 0; j < vector.dimension(); j++) {
+            embedding.add((double) vector.get(j));
         }
-        
-        String[] values = cleaned.split(",");
-        List<Double> embedding = new ArrayList<>();
-        
-        for (String value : values) {
-            embedding.add(Double.parseDouble(value.trim()));
-        }
-        
         return embedding;
     }
     
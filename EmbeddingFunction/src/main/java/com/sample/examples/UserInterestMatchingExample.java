@@ -1,18 +1,25 @@
 package com.sample.examples;
 
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sample.index.AttributeFilter;
+import com.sample.index.CompressedBitmap;
+import com.sample.index.ProfileAttributeIndex;
+import com.sample.index.SearchResult;
+import com.sample.index.VectorIndex;
+import com.sample.index.VectorIndexRegistry;
+import com.sample.model.EmbeddingVector;
+import com.sample.util.BedrockRateController;
+import com.sample.util.EmbeddingCodec;
 
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
 import software.amazon.awssdk.core.SdkBytes;
@@ -190,6 +197,7 @@ public class UserInterestMatchingExample {
             this.bedrockClient = BedrockRuntimeClient.builder()
                     .region(Region.US_EAST_1) // Use your preferred region
                     .credentialsProvider(DefaultCredentialsProvider.create())
+                    .overrideConfiguration(BedrockRateController.clientOverrideConfiguration())
                     .build();
             this.objectMapper = new ObjectMapper();
         }
@@ -205,6 +213,9 @@ public class UserInterestMatchingExample {
                 return generateTitanEmbedding(text);
                 // Alternative: return generateCohereEmbedding(text);
             } catch (Exception e) {
+                if (BedrockRateController.isThrottle(e)) {
+                    throw e;
+                }
                 System.err.println("Error generating Bedrock embedding: " + e.getMessage());
                 // Fall back to random embedding if Bedrock fails
                 return generateRandomEmbedding();
@@ -281,8 +292,8 @@ public class UserInterestMatchingExample {
                     .body(SdkBytes.fromUtf8String(requestBodyJson))
                     .build();
             
-            // Invoke model
-            return bedrockClient.invokeModel(request);
+            // Invoke model, retrying if Bedrock throttles
+            return BedrockRateController.getInstance().execute(() -> bedrockClient.invokeModel(request));
         }
         
         /**
@@ -305,6 +316,10 @@ public class UserInterestMatchingExample {
         private final DynamoDbClient dynamoDb;
         private final EmbeddingService embeddingService;
         
+        // Built from a table scan on the first search, with the attributes searches can be filtered by
+        private VectorIndex profileIndex;
+        private final ProfileAttributeIndex profileAttributes = new ProfileAttributeIndex();
+        
         public UserMatchingService(DynamoDbClient dynamoDb, EmbeddingService embeddingService) {
             this.dynamoDb = dynamoDb;
             this.embeddingService = embeddingService;
@@ -342,6 +357,7 @@ public class UserInterestMatchingExample {
                     .build();
             
             dynamoDb.putItem(request);
+            indexEmbedding(userId, embedding, age, location);
             
             return profile;
         }
@@ -350,33 +366,28 @@ public class UserInterestMatchingExample {
          * Find users with similar interests
          */
         public List<UserProfileMatch> findSimilarUsers(String userId, int limit) throws Exception {
+            return findSimilarUsers(userId, limit, null);
+        }
+        
+        /**
+         * Find users with similar interests among those matching an attribute filter (e.g. an age range or location)
+         */
+        public List<UserProfileMatch> findSimilarUsers(String userId, int limit, AttributeFilter filter) throws Exception {
             // Get the user's embedding
             UserEmbedding userEmbedding = getUserEmbedding(userId);
             if (userEmbedding == null) {
                 throw new IllegalArgumentException("No embedding found for user: " + userId);
             }
             
-            // Get all user embeddings
-            List<UserEmbedding> allEmbeddings = getAllUserEmbeddings();
-            
-            // Calculate similarity scores
-            List<SimilarityResult> results = new ArrayList<>();
-            for (UserEmbedding other : allEmbeddings) {
-                // Skip the user we're comparing against
-                if (other.getUserId().equals(userId)) {
-                    continue;
-                }
-                
-                double similarity = calculateCosineSimilarity(userEmbedding.getEmbedding(), other.getEmbedding());
-                results.add(new SimilarityResult(other.getUserId(), similarity));
+            // Nearest neighbours from the vector index (highest similarity first), skipping the user we're comparing against
+            // and any user the filter rejects
+            VectorIndex index = getProfileIndex();
+            CompressedBitmap allowed = profileAttributes.match(filter);
+            List<SimilarityResult> topResults = new ArrayList<>();
+            for (SearchResult result : index.search(toFloatArray(userEmbedding.getEmbedding()), limit, userId, allowed)) {
+                topResults.add(new SimilarityResult(result.getId(), result.getScore()));
             }
             
-            // Sort by similarity (highest first) and limit results
-            List<SimilarityResult> topResults = results.stream()
-                    .sorted(Comparator.comparing(SimilarityResult::getSimilarity).reversed())
-                    .limit(limit)
-                    .collect(Collectors.toList());
-            
             // Convert to UserProfileMatch objects
             List<UserProfileMatch> matches = new ArrayList<>();
             for (SimilarityResult result : topResults) {
@@ -432,84 +443,100 @@ public class UserInterestMatchingExample {
             }
             
             Map<String, AttributeValue> item = response.item();
-            String embeddingJson = item.get("embedding").s();
-            List<Double> embedding = parseEmbeddingFromJson(embeddingJson);
+            List<Double> embedding = parseEmbedding(item.get("embedding"));
             
             return new UserEmbedding(userId, "profile", embedding);
         }
         
+        /**
+         * Get the profile embedding index, building it from all stored profiles on first use
+         */
+        private synchronized VectorIndex getProfileIndex() throws Exception {
+            if (profileIndex == null) {
+                VectorIndex index = VectorIndexRegistry.newIndex("profile");
+                for (UserEmbedding embedding : getAllUserEmbeddings()) {
+                    index.add(embedding.getUserId(), toFloatArray(embedding.getEmbedding()));
+                    profileAttributes.recordEmbedding(embedding.getUserId(), "profile");
+                }
+                profileIndex = index;
+            }
+            return profileIndex;
+        }
+        
+        /**
+         * Add a new profile embedding to the index, if it has been built, and record its attributes
+         */
+        private synchronized void indexEmbedding(String userId, List<Double> embedding, int age, String location) {
+            if (profileIndex != null) {
+                profileIndex.add(userId, toFloatArray(embedding));
+            }
+            profileAttributes.recordEmbedding(userId, "profile");
+            profileAttributes.recordProfile(userId, age, location, null);
+        }
+        
         /**
          * Get all user embeddings from DynamoDB
          */
         private List<UserEmbedding> getAllUserEmbeddings() throws Exception {
             List<UserEmbedding> results = new ArrayList<>();
-            
-            ScanResponse response = dynamoDb.scan(ScanRequest.builder()
-                    .tableName(TABLE_NAME)
-                    .filterExpression("embedding_type = :type")
-                    .expressionAttributeValues(Map.of(
-                            ":type", AttributeValue.builder().s("profile").build()))
-                    .build());
-            
-            for (Map<String, AttributeValue> item : response.items()) {
-                String userId = item.get("user_id").s();
-                String embeddingJson = item.get("embedding").s();
+            Map<String, AttributeValue> lastKey = null;
+            
+            do {
+                ScanRequest.Builder scan = ScanRequest.builder()
+                        .tableName(TABLE_NAME)
+                        .filterExpression("embedding_type = :type")
+                        .expressionAttributeValues(Map.of(
+                                ":type", AttributeValue.builder().s("profile").build()))
+                        .expressionAttributeNames(Map.of("#location", "location"))
+                        .projectionExpression("user_id, embedding, age, #location");
+                if (lastKey != null) {
+                    scan.exclusiveStartKey(lastKey);
+                }
+                ScanResponse response = dynamoDb.scan(scan.build());
                 
-                try {
-                    List<Double> embedding = parseEmbeddingFromJson(embeddingJson);
-                    results.add(new UserEmbedding(userId, "profile", embedding));
-                } catch (Exception e) {
-                    System.err.println("Error parsing embedding for user " + userId + ": " + e.getMessage());
+                for (Map<String, AttributeValue> item : response.items()) {
+                    String userId = item.get("user_id").s();
+                    
+                    try {
+                        List<Double> embedding = parseEmbedding(item.get("embedding"));
+                        results.add(new UserEmbedding(userId, "profile", embedding));
+                        profileAttributes.recordProfile(userId,
+                                item.containsKey("age") ? Integer.parseInt(item.get("age").n()) : null,
+                                item.containsKey("location") ? item.get("location").s() : null,
+                                null);
+                    } catch (Exception e) {
+                        System.err.println("Error parsing embedding for user " + userId + ": " + e.getMessage());
+                    }
                 }
-            }
+                
+                lastKey = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                        ? response.lastEvaluatedKey() : null;
+            } while (lastKey != null);
             
             return results;
         }
         
         /**
-         * Parse embedding from JSON string
+         * Decode a stored embedding, in either the binary or the legacy JSON string format
          */
-        private List<Double> parseEmbeddingFromJson(String embeddingJson) throws Exception {
-            // Remove brackets and split by comma
-            String cleaned = embeddingJson.replace("[", "").replace("]", "").trim();
-            if (cleaned.isEmpty()) {
-                return new ArrayList<>();
-            }
-            
-            String[] values = cleaned.split(",");
-            List<Double> embedding = new ArrayList<>();
-            
-            for (String value : values) {
-                embedding.add(Double.parseDouble(value.trim()));
+        private List<Double> parseEmbedding(AttributeValue value) throws Exception {
+            EmbeddingVector vector = EmbeddingCodec.fromAttributeValue(value);
+            List<Double> embedding = new ArrayList<>(vector.dimension());
+            for (int j = 0; j < vector.dimension(); j++) {
+                embedding.add((double) vector.get(j));
             }
-            
             return embedding;
         }
         
         /**
-         * Calculate cosine similarity between two embeddings
+         * Convert an embedding to the float array the index stores
          */
-        private double calculateCosineSimilarity(List<Double> embedding1, List<Double> embedding2) {
-            if (embedding1.size() != embedding2.size()) {
-                throw new IllegalArgumentException("Embeddings must have the same dimension");
-            }
-            
-            double dotProduct = 0.0;
-            double norm1 = 0.0;
-            double norm2 = 0.0;
-            
-            for (int i = 0; i < embedding1.size(); i++) {
-                dotProduct += embedding1.get(i) * embedding2.get(i);
-                norm1 += Math.pow(embedding1.get(i), 2);
-                norm2 += Math.pow(embedding2.get(i), 2);
+        private static float[] toFloatArray(List<Double> embedding) {
+            float[] values = new float[embedding.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = embedding.get(i).floatValue();
             }
-            
-            // Avoid division by zero
-            if (norm1 == 0 || norm2 == 0) {
-                return 0.0;
-            }
-            
-            return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+            return values;
         }
     }
     
@@ -0,0 +1,65 @@
+package com.sample.index;
+
+/**
+ * Restriction on the users a similarity search may return. Each criterion left null places no
+ * restriction; the criteria that are set must all hold. Users with no recorded value for a
+ * restricted attribute never match.
+ */
+public final class AttributeFilter {
+
+    private final String embeddingType;
+    private final Integer minAge;
+    private final Integer maxAge;
+    private final String location;
+    private final String subscriptionPlan;
+
+    /**
+     * @param embeddingType Only users with an embedding of this type
+     * @param minAge Minimum age, inclusive
+     * @param maxAge Maximum age, inclusive
+     * @param location Location, compared ignoring case and surrounding whitespace
+     * @param subscriptionPlan Subscription plan, as encoded by UserAttributeFormatter
+     */
+    public AttributeFilter(String embeddingType, Integer minAge, Integer maxAge, String location,
+                           String subscriptionPlan) {
+        this.embeddingType = embeddingType;
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+        this.location = location;
+        this.subscriptionPlan = subscriptionPlan;
+    }
+
+    public String getEmbeddingType() {
+        return embeddingType;
+    }
+
+    public Integer getMinAge() {
+        return minAge;
+    }
+
+    public Integer getMaxAge() {
+        return maxAge;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public String getSubscriptionPlan() {
+        return subscriptionPlan;
+    }
+
+    /**
+     * @return true if no criterion is set
+     */
+    public boolean isEmpty() {
+        return embeddingType == null && minAge == null && maxAge == null && location == null
+                && subscriptionPlan == null;
+    }
+
+    @Override
+    public String toString() {
+        return "AttributeFilter{embeddingType=" + embeddingType + ", minAge=" + minAge + ", maxAge=" + maxAge
+                + ", location=" + location + ", subscriptionPlan=" + subscriptionPlan + "}";
+    }
+}
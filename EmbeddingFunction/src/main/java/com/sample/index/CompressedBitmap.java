@@ -0,0 +1,387 @@
+package com.sample.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative ints, such as user ordinals, in the style of a Roaring bitmap.
+ * This class handles:
+ * 1. Splitting values by their high 16 bits into containers, each holding the low 16 bits
+ *    either as a sorted array (up to 4096 values) or as a 65536-bit bitmap
+ * 2. Switching a container between the two forms as it grows and shrinks, so sparse sets cost
+ *    about 2 bytes per value and dense sets at most 1 bit per value
+ * 3. Intersecting and merging container by container, without expanding to individual values
+ *
+ * Not thread-safe; callers that share a bitmap between threads must guard it.
+ */
+public final class CompressedBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys = new char[4];
+    private Container[] containers = new Container[4];
+    private int size = 0;
+
+    /**
+     * A bitmap holding the given values.
+     */
+    public static CompressedBitmap of(int... values) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        for (int value : values) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    /**
+     * @return true if the value was not already present
+     * @throws IllegalArgumentException If the value is negative
+     */
+    public boolean add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        char high = (char) (value >>> 16);
+        int index = find(high);
+        if (index < 0) {
+            index = -index - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                containers = Arrays.copyOf(containers, size * 2);
+            }
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(containers, index, containers, index + 1, size - index);
+            keys[index] = high;
+            containers[index] = new Container();
+            size++;
+        }
+        return containers[index].add((char) value);
+    }
+
+    /**
+     * @return true if the value was present
+     */
+    public boolean remove(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = find((char) (value >>> 16));
+        if (index < 0 || !containers[index].remove((char) value)) {
+            return false;
+        }
+        if (containers[index].cardinality == 0) {
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+            containers[--size] = null;
+        }
+        return true;
+    }
+
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = find((char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality;
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Values present in both bitmaps, as a new bitmap.
+     */
+    public CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality > 0) {
+                    result.append(keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Values present in either bitmap, as a new bitmap.
+     */
+    public CompressedBitmap or(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.append(keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.append(other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.append(keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public CompressedBitmap copy() {
+        CompressedBitmap result = new CompressedBitmap();
+        for (int i = 0; i < size; i++) {
+            result.append(keys[i], containers[i].copy());
+        }
+        return result;
+    }
+
+    /**
+     * Calls the consumer with each value, in ascending order.
+     */
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    private int find(char high) {
+        return Arrays.binarySearch(keys, 0, size, high);
+    }
+
+    /**
+     * Adds a container after every existing one; keys must be appended in ascending order.
+     */
+    private void append(char high, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        keys[size] = high;
+        containers[size++] = container;
+    }
+
+    /**
+     * The low 16 bits of the values sharing one high 16 bits, as a sorted array while there are
+     * at most ARRAY_MAX of them and as a bitmap otherwise.
+     */
+    private static final class Container {
+        private char[] values;
+        private long[] words;
+        private int cardinality;
+
+        Container() {
+            this.values = new char[4];
+        }
+
+        private Container(char[] values, long[] words, int cardinality) {
+            this.values = values;
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        boolean contains(char low) {
+            if (words != null) {
+                return (words[low >>> 6] & (1L << low)) != 0;
+            }
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        boolean add(char low) {
+            if (words != null) {
+                long before = words[low >>> 6];
+                words[low >>> 6] = before | (1L << low);
+                if (before == words[low >>> 6]) {
+                    return false;
+                }
+                cardinality++;
+                return true;
+            }
+            int index = Arrays.binarySearch(values, 0, cardinality, low);
+            if (index >= 0) {
+                return false;
+            }
+            if (cardinality == ARRAY_MAX) {
+                toBitmap();
+                return add(low);
+            }
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, cardinality * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = low;
+            cardinality++;
+            return true;
+        }
+
+        boolean remove(char low) {
+            if (words != null) {
+                long before = words[low >>> 6];
+                words[low >>> 6] = before & ~(1L << low);
+                if (before == words[low >>> 6]) {
+                    return false;
+                }
+                if (--cardinality <= ARRAY_MAX) {
+                    toArray();
+                }
+                return true;
+            }
+            int index = Arrays.binarySearch(values, 0, cardinality, low);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+            cardinality--;
+            return true;
+        }
+
+        Container and(Container other) {
+            if (words != null && other.words != null) {
+                long[] result = new long[BITMAP_WORDS];
+                int count = 0;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    result[i] = words[i] & other.words[i];
+                    count += Long.bitCount(result[i]);
+                }
+                Container container = new Container(null, result, count);
+                if (count <= ARRAY_MAX) {
+                    container.toArray();
+                }
+                return container;
+            }
+            if (words != null) {
+                return other.and(this);
+            }
+            char[] result = new char[cardinality];
+            int count = 0;
+            if (other.words != null) {
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        result[count++] = values[i];
+                    }
+                }
+            } else {
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < other.cardinality) {
+                    if (values[i] < other.values[j]) {
+                        i++;
+                    } else if (values[i] > other.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            }
+            return new Container(result, null, count);
+        }
+
+        Container or(Container other) {
+            if (words == null && other.words == null && cardinality + other.cardinality <= ARRAY_MAX) {
+                char[] result = new char[cardinality + other.cardinality];
+                int count = 0;
+                int i = 0;
+                int j = 0;
+                while (i < cardinality || j < other.cardinality) {
+                    if (j == other.cardinality || (i < cardinality && values[i] < other.values[j])) {
+                        result[count++] = values[i++];
+                    } else if (i == cardinality || values[i] > other.values[j]) {
+                        result[count++] = other.values[j++];
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+                return new Container(result, null, count);
+            }
+            long[] result = new long[BITMAP_WORDS];
+            setBits(result);
+            other.setBits(result);
+            int count = 0;
+            for (long word : result) {
+                count += Long.bitCount(word);
+            }
+            Container container = new Container(null, result, count);
+            if (count <= ARRAY_MAX) {
+                container.toArray();
+            }
+            return container;
+        }
+
+        Container copy() {
+            return words != null
+                    ? new Container(null, words.clone(), cardinality)
+                    : new Container(Arrays.copyOf(values, Math.max(1, cardinality)), null, cardinality);
+        }
+
+        void forEach(int base, IntConsumer consumer) {
+            if (words != null) {
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    long word = words[i];
+                    while (word != 0) {
+                        consumer.accept(base | (i << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    consumer.accept(base | values[i]);
+                }
+            }
+        }
+
+        private void setBits(long[] target) {
+            if (words != null) {
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    target[i] |= words[i];
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) {
+                    target[values[i] >>> 6] |= 1L << values[i];
+                }
+            }
+        }
+
+        private void toBitmap() {
+            long[] bits = new long[BITMAP_WORDS];
+            setBits(bits);
+            words = bits;
+            values = null;
+        }
+
+        private void toArray() {
+            char[] result = new char[Math.max(1, cardinality)];
+            int count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    result[count++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            values = result;
+            words = null;
+        }
+    }
+}
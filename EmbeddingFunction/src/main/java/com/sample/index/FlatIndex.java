@@ -0,0 +1,259 @@
+package com.sample.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.sample.util.VectorMath;
+
+/**
+ * Exact (brute-force) cosine nearest-neighbour search, for callers that cannot accept the
+ * occasional missed neighbour of an approximate index.
+ * This class handles:
+ * 1. Storing every vector L2-normalized, back to back in one float array, so a search is a
+ *    sequential sweep of SIMD dot products over contiguous memory
+ * 2. Splitting the sweep into row ranges run on ForkJoinPool workers, each keeping a bounded
+ *    min-heap of its k best rows, and merging the heaps as the ranges join
+ * 3. Leaving the query user out of the results without an extra result slot
+ * 4. Restricting results to an allowed set of ordinals: rows outside it are skipped in the
+ *    parallel sweep, and when the set is a small fraction of the index only its members are scored
+ *
+ * Removal moves the last row into the removed row's slot, so the array stays dense.
+ * Searches run concurrently; inserts and removals take an exclusive lock.
+ */
+public class FlatIndex implements VectorIndex {
+
+    // Rows per leaf task; large enough that task overhead is small next to the dot products
+    private static final int ROWS_PER_TASK = 4096;
+    private static final int INITIAL_CAPACITY = 1024;
+    // Below this fraction of the index, a restricted search scores the allowed IDs directly
+    private static final double DIRECT_SCORING_FRACTION = 0.05;
+
+    private final ForkJoinPool pool;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> rows = new HashMap<>();
+    private String[] ids = new String[0];
+    private int[] ordinals = new int[0];
+    private float[] vectors = new float[0];
+    private int count = 0;
+    private int dimension = 0;
+
+    public FlatIndex() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param pool Pool to run searches on; its parallelism bounds how many cores one search uses
+     */
+    public FlatIndex(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void add(String id, float[] vector) {
+        float[] normalized = normalize(vector);
+        int ordinal = IdOrdinals.of(id);
+        lock.writeLock().lock();
+        try {
+            if (dimension == 0) {
+                dimension = normalized.length;
+                ids = new String[INITIAL_CAPACITY];
+                ordinals = new int[INITIAL_CAPACITY];
+                vectors = new float[INITIAL_CAPACITY * dimension];
+            } else if (normalized.length != dimension) {
+                throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + normalized.length);
+            }
+            Integer row = rows.get(id);
+            if (row == null) {
+                if (count == ids.length) {
+                    // One float array holds every vector, so its maximum length caps the row count
+                    int maxRows = (Integer.MAX_VALUE - 8) / dimension;
+                    if (count >= maxRows) {
+                        throw new IllegalStateException("FlatIndex holds at most " + maxRows + " vectors of dimension " + dimension);
+                    }
+                    int capacity = (int) Math.min(2L * ids.length, maxRows);
+                    ids = Arrays.copyOf(ids, capacity);
+                    ordinals = Arrays.copyOf(ordinals, capacity);
+                    vectors = Arrays.copyOf(vectors, capacity * dimension);
+                }
+                row = count++;
+                rows.put(id, row);
+                ids[row] = id;
+                ordinals[row] = ordinal;
+            }
+            System.arraycopy(normalized, 0, vectors, row * dimension, dimension);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer row = rows.remove(id);
+            if (row == null) {
+                return false;
+            }
+            int last = --count;
+            if (row != last) {
+                ids[row] = ids[last];
+                ordinals[row] = ordinals[last];
+                System.arraycopy(vectors, last * dimension, vectors, row * dimension, dimension);
+                rows.put(ids[row], row);
+            }
+            ids[last] = null;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(String id) {
+        lock.readLock().lock();
+        try {
+            return rows.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<SearchResult> search(float[] query, int k, String excludeId, CompressedBitmap allowed) {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        float[] normalized = normalize(query);
+        lock.readLock().lock();
+        try {
+            if (count == 0) {
+                return Collections.emptyList();
+            }
+            if (normalized.length != dimension) {
+                throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + normalized.length);
+            }
+            Integer excluded = excludeId != null ? rows.get(excludeId) : null;
+            int excludedRow = excluded != null ? excluded : -1;
+            TopK top;
+            if (allowed != null && allowed.cardinality() < count * DIRECT_SCORING_FRACTION) {
+                top = scoreAllowed(normalized, Math.min(k, count), excludedRow, allowed);
+            } else {
+                ScanTask task = new ScanTask(normalized, vectors, ordinals, allowed, Math.min(k, count), excludedRow, 0, count);
+                // Small indexes are scanned on the calling thread
+                top = count <= ROWS_PER_TASK ? task.compute() : pool.invoke(task);
+            }
+
+            int[] topRows = new int[top.size()];
+            float[] topScores = new float[top.size()];
+            int found = top.drainDescending(topRows, topScores);
+            List<SearchResult> results = new ArrayList<>(found);
+            for (int i = 0; i < found; i++) {
+                results.add(new SearchResult(ids[topRows[i]], topScores[i]));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scores only the rows of the allowed IDs, for restrictions much smaller than the index.
+     */
+    private TopK scoreAllowed(float[] query, int k, int excludedRow, CompressedBitmap allowed) {
+        TopK top = new TopK(k);
+        float[] score = new float[1];
+        allowed.forEach(ordinal -> {
+            String id = IdOrdinals.id(ordinal);
+            Integer index = id != null ? rows.get(id) : null;
+            if (index != null && index != excludedRow) {
+                VectorMath.dotRows(query, vectors, index, index + 1, score);
+                top.offer(index, score[0]);
+            }
+        });
+        return top;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scores a range of rows, splitting it in half until it is at most ROWS_PER_TASK rows.
+     */
+    private static final class ScanTask extends RecursiveTask<TopK> {
+        private static final long serialVersionUID = 1L;
+
+        private final float[] query;
+        private final float[] vectors;
+        private final int[] ordinals;
+        private final CompressedBitmap allowed;
+        private final int k;
+        private final int excludedRow;
+        private final int from;
+        private final int to;
+
+        ScanTask(float[] query, float[] vectors, int[] ordinals, CompressedBitmap allowed, int k, int excludedRow,
+                 int from, int to) {
+            this.query = query;
+            this.vectors = vectors;
+            this.ordinals = ordinals;
+            this.allowed = allowed;
+            this.k = k;
+            this.excludedRow = excludedRow;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TopK compute() {
+            if (to - from > ROWS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                ScanTask left = new ScanTask(query, vectors, ordinals, allowed, k, excludedRow, from, middle);
+                ScanTask right = new ScanTask(query, vectors, ordinals, allowed, k, excludedRow, middle, to);
+                left.fork();
+                TopK top = right.compute();
+                top.addAll(left.join());
+                return top;
+            }
+
+            float[] scores = new float[to - from];
+            VectorMath.dotRows(query, vectors, from, to, scores);
+            TopK top = new TopK(k);
+            for (int i = 0; i < scores.length; i++) {
+                if (from + i != excludedRow && (allowed == null || allowed.contains(ordinals[from + i]))) {
+                    top.offer(from + i, scores[i]);
+                }
+            }
+            return top;
+        }
+    }
+
+    /**
+     * Returns an L2-normalized copy. A zero vector stays zero and has similarity 0 to everything.
+     */
+    private static float[] normalize(float[] vector) {
+        double sumOfSquares = VectorMath.squaredNorm(vector);
+        float[] normalized = new float[vector.length];
+        if (sumOfSquares == 0.0) {
+            return normalized;
+        }
+        float scale = (float) (1.0 / Math.sqrt(sumOfSquares));
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+}
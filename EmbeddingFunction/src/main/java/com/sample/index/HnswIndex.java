@@ -0,0 +1,548 @@
+package com.sample.index;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+import com.sample.util.VectorMath;
+
+/**
+ * Hierarchical Navigable Small World (HNSW) graph for approximate cosine nearest-neighbour search.
+ * This class handles:
+ * 1. Storing each vector L2-normalized, so cosine similarity is a dot product
+ * 2. Inserting each vector on a random number of layers and linking it to up to M neighbours
+ *    per layer (2 * M on the bottom layer), chosen with the neighbour-diversity heuristic from
+ *    a beam of efConstruction candidates
+ * 3. Searching by greedy descent through the upper layers and a beam of efSearch candidates
+ *    on the bottom layer
+ * 4. Restricting results to an allowed set of ordinals: the beam still walks through every
+ *    node but only keeps allowed ones, and restrictions covering less than 5% of the index
+ *    score their members directly instead, since a walk would have to visit most of the graph
+ *
+ * Larger M and efConstruction give a better graph at the cost of memory and insert time;
+ * larger efSearch gives better recall at the cost of query time. Removed or replaced vectors
+ * stay in the graph as tombstones, so the graph stays navigable, and are never returned.
+ * Once tombstones outnumber both the live vectors and COMPACTION_MIN_TOMBSTONES, the graph is
+ * rebuilt from the live vectors on the index maintenance thread and swapped in, replaying any
+ * changes made while it was rebuilt.
+ *
+ * Searches run concurrently; inserts and removals take an exclusive lock.
+ */
+public class HnswIndex implements VectorIndex {
+
+    public static final int DEFAULT_M = 16;
+    public static final int DEFAULT_EF_CONSTRUCTION = 200;
+    public static final int DEFAULT_EF_SEARCH = 64;
+
+    // Below this fraction of the index, a restricted search scores the allowed IDs directly
+    private static final double DIRECT_SCORING_FRACTION = 0.05;
+    // Fewer tombstones than this are never worth a rebuild
+    static final int COMPACTION_MIN_TOMBSTONES = 1024;
+
+    private static final Comparator<Candidate> NEAREST_FIRST = Comparator.comparingDouble(c -> c.distance);
+    private static final Comparator<Candidate> FURTHEST_FIRST = NEAREST_FIRST.reversed();
+
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+    private volatile int efSearch;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private List<Node> nodes = new ArrayList<>();
+    private Map<String, Integer> nodeIds = new HashMap<>();
+    private int dimension = 0;
+    private int entryPoint = -1;
+    private int topLevel = -1;
+    private int tombstones = 0;
+    // Set while a compaction is queued or running; guarded by lock
+    private boolean compactionScheduled = false;
+    // Serializes compactions
+    private final Object compactionLock = new Object();
+
+    private static final class Node {
+        final String id;
+        final int ordinal;
+        final float[] vector;
+        final int[][] links;
+        final int[] linkCounts;
+        boolean deleted;
+
+        Node(String id, int ordinal, float[] vector, int level, int m, int maxM0) {
+            this.id = id;
+            this.ordinal = ordinal;
+            this.vector = vector;
+            this.links = new int[level + 1][];
+            this.linkCounts = new int[level + 1];
+            for (int layer = 0; layer <= level; layer++) {
+                links[layer] = new int[layer == 0 ? maxM0 : m];
+            }
+        }
+
+        int level() {
+            return links.length - 1;
+        }
+    }
+
+    private static final class Candidate {
+        final int node;
+        final float distance;
+
+        Candidate(int node, float distance) {
+            this.node = node;
+            this.distance = distance;
+        }
+    }
+
+    public HnswIndex() {
+        this(DEFAULT_M, DEFAULT_EF_CONSTRUCTION, DEFAULT_EF_SEARCH);
+    }
+
+    /**
+     * @param m Links per node on the upper layers (twice as many on the bottom layer)
+     * @param efConstruction Beam width while inserting
+     * @param efSearch Beam width while searching; raised to k for larger queries
+     */
+    public HnswIndex(int m, int efConstruction, int efSearch) {
+        this(m, efConstruction, efSearch, new Random());
+    }
+
+    HnswIndex(int m, int efConstruction, int efSearch, Random random) {
+        if (m < 2) {
+            throw new IllegalArgumentException("M must be at least 2: " + m);
+        }
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = Math.max(m, efConstruction);
+        this.efSearch = Math.max(1, efSearch);
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.random = random;
+    }
+
+    public int getM() {
+        return m;
+    }
+
+    public int getEfConstruction() {
+        return efConstruction;
+    }
+
+    public int getEfSearch() {
+        return efSearch;
+    }
+
+    /**
+     * Changes the search beam width; takes effect for the next search.
+     */
+    public void setEfSearch(int efSearch) {
+        this.efSearch = Math.max(1, efSearch);
+    }
+
+    @Override
+    public void add(String id, float[] vector) {
+        float[] normalized = normalize(vector);
+        int ordinal = IdOrdinals.of(id);
+        lock.writeLock().lock();
+        try {
+            if (dimension == 0) {
+                dimension = normalized.length;
+            } else if (normalized.length != dimension) {
+                throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + normalized.length);
+            }
+            Integer previous = nodeIds.get(id);
+            if (previous != null) {
+                nodes.get(previous).deleted = true;
+                tombstones++;
+                scheduleCompactionIfNeeded();
+            }
+
+            int level = randomLevel();
+            int index = nodes.size();
+            Node node = new Node(id, ordinal, normalized, level, m, maxM0);
+            nodes.add(node);
+            nodeIds.put(id, index);
+            if (entryPoint < 0) {
+                entryPoint = index;
+                topLevel = level;
+                return;
+            }
+
+            int current = entryPoint;
+            for (int layer = topLevel; layer > level; layer--) {
+                current = greedyClosest(normalized, current, layer);
+            }
+            for (int layer = Math.min(level, topLevel); layer >= 0; layer--) {
+                List<Candidate> candidates = searchLayer(normalized, current, efConstruction, layer, null);
+                for (Candidate neighbour : selectNeighbours(candidates, m)) {
+                    node.links[layer][node.linkCounts[layer]++] = neighbour.node;
+                    connect(neighbour.node, index, neighbour.distance, layer);
+                }
+                current = candidates.get(0).node;
+            }
+            if (level > topLevel) {
+                topLevel = level;
+                entryPoint = index;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer index = nodeIds.remove(id);
+            if (index == null) {
+                return false;
+            }
+            nodes.get(index).deleted = true;
+            tombstones++;
+            scheduleCompactionIfNeeded();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(String id) {
+        lock.readLock().lock();
+        try {
+            return nodeIds.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<SearchResult> search(float[] query, int k, String excludeId, CompressedBitmap allowed) {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        float[] normalized = normalize(query);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return Collections.emptyList();
+            }
+            if (normalized.length != dimension) {
+                throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + normalized.length);
+            }
+            Integer excluded = excludeId != null ? nodeIds.get(excludeId) : null;
+            int excludedNode = excluded != null ? excluded : -1;
+            if (allowed != null && allowed.cardinality() < nodeIds.size() * DIRECT_SCORING_FRACTION) {
+                return scoreAllowed(normalized, k, excludedNode, allowed);
+            }
+            IntPredicate accept = index -> {
+                Node node = nodes.get(index);
+                return index != excludedNode && !node.deleted && (allowed == null || allowed.contains(node.ordinal));
+            };
+
+            int current = entryPoint;
+            for (int layer = topLevel; layer > 0; layer--) {
+                current = greedyClosest(normalized, current, layer);
+            }
+            List<Candidate> candidates = searchLayer(normalized, current, Math.max(efSearch, k), 0, accept);
+
+            List<SearchResult> results = new ArrayList<>(Math.min(k, candidates.size()));
+            for (Candidate candidate : candidates.subList(0, Math.min(k, candidates.size()))) {
+                results.add(new SearchResult(nodes.get(candidate.node).id, 1.0 - candidate.distance));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Scores only the nodes of the allowed IDs, for restrictions too selective to search the graph.
+     */
+    private List<SearchResult> scoreAllowed(float[] query, int k, int excludedNode, CompressedBitmap allowed) {
+        TopK top = new TopK(k);
+        allowed.forEach(ordinal -> {
+            String id = IdOrdinals.id(ordinal);
+            Integer index = id != null ? nodeIds.get(id) : null;
+            if (index != null && index != excludedNode) {
+                top.offer(index, VectorMath.dot(query, nodes.get(index).vector));
+            }
+        });
+        int[] found = new int[top.size()];
+        float[] scores = new float[top.size()];
+        int count = top.drainDescending(found, scores);
+        List<SearchResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(new SearchResult(nodes.get(found[i]).id, scores[i]));
+        }
+        return results;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodeIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of removed or replaced vectors still held as graph nodes.
+     */
+    public int getTombstoneCount() {
+        lock.readLock().lock();
+        try {
+            return tombstones;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the graph from the live vectors, dropping every tombstone. The rebuild runs
+     * without the index lock, so searches and inserts continue meanwhile; only replaying the
+     * changes made during the rebuild and swapping the graph in take the write lock.
+     */
+    public void compact() {
+        synchronized (compactionLock) {
+            List<String> ids = new ArrayList<>();
+            List<float[]> vectors = new ArrayList<>();
+            int snapshotSize;
+            lock.readLock().lock();
+            try {
+                snapshotSize = nodes.size();
+                for (Node node : nodes) {
+                    if (!node.deleted) {
+                        ids.add(node.id);
+                        vectors.add(node.vector);
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            HnswIndex rebuilt = new HnswIndex(m, efConstruction, efSearch, new Random(random.nextLong()));
+            // Its graph becomes ours, so it must never compact itself
+            rebuilt.compactionScheduled = true;
+            for (int i = 0; i < ids.size(); i++) {
+                rebuilt.add(ids.get(i), vectors.get(i));
+            }
+
+            lock.writeLock().lock();
+            try {
+                // Vectors added or replaced since the snapshot, then IDs removed since it
+                for (int i = snapshotSize; i < nodes.size(); i++) {
+                    Node node = nodes.get(i);
+                    if (!node.deleted) {
+                        rebuilt.add(node.id, node.vector);
+                    }
+                }
+                for (String id : ids) {
+                    if (!nodeIds.containsKey(id)) {
+                        rebuilt.remove(id);
+                    }
+                }
+                nodes = rebuilt.nodes;
+                nodeIds = rebuilt.nodeIds;
+                dimension = rebuilt.dimension;
+                entryPoint = rebuilt.entryPoint;
+                topLevel = rebuilt.topLevel;
+                tombstones = rebuilt.tombstones;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Queues a compaction once tombstones outnumber the live vectors. Call with the write lock held.
+     */
+    private void scheduleCompactionIfNeeded() {
+        if (!compactionScheduled && tombstones >= COMPACTION_MIN_TOMBSTONES && tombstones > nodeIds.size()) {
+            compactionScheduled = true;
+            IndexMaintenance.submit("compacting HNSW index", () -> {
+                try {
+                    compact();
+                } finally {
+                    lock.writeLock().lock();
+                    compactionScheduled = false;
+                    lock.writeLock().unlock();
+                }
+            });
+        }
+    }
+
+    public int getDimension() {
+        lock.readLock().lock();
+        try {
+            return dimension;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Follows links on one layer to the node closest to the query, starting from the given node.
+     */
+    private int greedyClosest(float[] query, int start, int layer) {
+        int current = start;
+        float currentDistance = distance(query, nodes.get(current).vector);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            Node node = nodes.get(current);
+            for (int i = 0; i < node.linkCounts[layer]; i++) {
+                int neighbour = node.links[layer][i];
+                float d = distance(query, nodes.get(neighbour).vector);
+                if (d < currentDistance) {
+                    current = neighbour;
+                    currentDistance = d;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Beam search on one layer. Every node can be walked through, but only accepted nodes
+     * are kept in the beam.
+     *
+     * @param accept Nodes that may be returned, or null to return any node, including tombstones
+     * @return Up to ef accepted nodes closest to the query, nearest first
+     */
+    private List<Candidate> searchLayer(float[] query, int start, int ef, int layer, IntPredicate accept) {
+        BitSet visited = new BitSet(nodes.size());
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(NEAREST_FIRST);
+        PriorityQueue<Candidate> nearest = new PriorityQueue<>(FURTHEST_FIRST);
+
+        Candidate first = new Candidate(start, distance(query, nodes.get(start).vector));
+        visited.set(start);
+        candidates.add(first);
+        if (accept == null || accept.test(start)) {
+            nearest.add(first);
+        }
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (nearest.size() >= ef && closest.distance > nearest.peek().distance) {
+                break;
+            }
+            Node node = nodes.get(closest.node);
+            for (int i = 0; i < node.linkCounts[layer]; i++) {
+                int neighbour = node.links[layer][i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                float d = distance(query, nodes.get(neighbour).vector);
+                if (nearest.size() < ef || d < nearest.peek().distance) {
+                    Candidate candidate = new Candidate(neighbour, d);
+                    candidates.add(candidate);
+                    if (accept == null || accept.test(neighbour)) {
+                        nearest.add(candidate);
+                        if (nearest.size() > ef) {
+                            nearest.poll();
+                        }
+                    }
+                }
+            }
+        }
+
+        List<Candidate> result = new ArrayList<>(nearest);
+        result.sort(NEAREST_FIRST);
+        return result;
+    }
+
+    /**
+     * Neighbour-diversity heuristic: keeps a candidate only if it is closer to the base node
+     * than to every neighbour already kept, so links spread out in different directions
+     * instead of clustering.
+     *
+     * @param candidates Candidates sorted nearest first
+     */
+    private List<Candidate> selectNeighbours(List<Candidate> candidates, int max) {
+        List<Candidate> selected = new ArrayList<>(max);
+        for (Candidate candidate : candidates) {
+            if (selected.size() >= max) {
+                break;
+            }
+            float[] vector = nodes.get(candidate.node).vector;
+            boolean diverse = true;
+            for (Candidate kept : selected) {
+                if (distance(vector, nodes.get(kept.node).vector) < candidate.distance) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Adds the back link from a neighbour to the new node, re-selecting the neighbour's links
+     * when it is already at capacity.
+     */
+    private void connect(int from, int to, float distance, int layer) {
+        Node node = nodes.get(from);
+        int[] links = node.links[layer];
+        int count = node.linkCounts[layer];
+        if (count < links.length) {
+            links[count] = to;
+            node.linkCounts[layer] = count + 1;
+            return;
+        }
+
+        List<Candidate> candidates = new ArrayList<>(count + 1);
+        candidates.add(new Candidate(to, distance));
+        for (int i = 0; i < count; i++) {
+            candidates.add(new Candidate(links[i], distance(node.vector, nodes.get(links[i]).vector)));
+        }
+        candidates.sort(NEAREST_FIRST);
+        List<Candidate> selected = selectNeighbours(candidates, links.length);
+        for (int i = 0; i < selected.size(); i++) {
+            links[i] = selected.get(i).node;
+        }
+        node.linkCounts[layer] = selected.size();
+    }
+
+    private int randomLevel() {
+        return (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+    }
+
+    /**
+     * Cosine distance between two normalized vectors.
+     */
+    private static float distance(float[] a, float[] b) {
+        return 1f - VectorMath.dot(a, b);
+    }
+
+    /**
+     * Returns an L2-normalized copy. A zero vector stays zero and has similarity 0 to everything.
+     */
+    private static float[] normalize(float[] vector) {
+        double sumOfSquares = VectorMath.squaredNorm(vector);
+        float[] normalized = new float[vector.length];
+        if (sumOfSquares == 0.0) {
+            return normalized;
+        }
+        float scale = (float) (1.0 / Math.sqrt(sumOfSquares));
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+}
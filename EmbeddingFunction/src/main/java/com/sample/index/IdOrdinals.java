@@ -0,0 +1,57 @@
+package com.sample.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide dictionary from user ID to a dense int ordinal.
+ * Attribute bitmaps and vector indexes refer to users by ordinal, so a compiled filter can be
+ * checked against any index with one bitmap lookup per row instead of a string comparison.
+ * Ordinals are assigned on first use and never reused.
+ */
+public final class IdOrdinals {
+
+    private static final Map<String, Integer> ORDINALS = new ConcurrentHashMap<>();
+    private static final List<String> IDS = new ArrayList<>();
+
+    private IdOrdinals() {
+    }
+
+    /**
+     * The ordinal for an ID, assigning the next one if the ID has none yet.
+     */
+    public static int of(String id) {
+        Integer ordinal = ORDINALS.get(id);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        synchronized (IDS) {
+            ordinal = ORDINALS.get(id);
+            if (ordinal == null) {
+                ordinal = IDS.size();
+                IDS.add(id);
+                ORDINALS.put(id, ordinal);
+            }
+            return ordinal;
+        }
+    }
+
+    /**
+     * The ordinal for an ID, or -1 if none has been assigned.
+     */
+    public static int get(String id) {
+        Integer ordinal = ORDINALS.get(id);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    /**
+     * The ID an ordinal was assigned to, or null if it has not been assigned.
+     */
+    public static String id(int ordinal) {
+        synchronized (IDS) {
+            return ordinal >= 0 && ordinal < IDS.size() ? IDS.get(ordinal) : null;
+        }
+    }
+}
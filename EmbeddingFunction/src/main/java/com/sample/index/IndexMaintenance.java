@@ -0,0 +1,36 @@
+package com.sample.index;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Background thread for index upkeep that is too slow to run on a caller's thread under an
+ * index's write lock, such as compacting an HNSW graph. Tasks run one at a time, so upkeep
+ * never competes with searches for more than one core.
+ */
+final class IndexMaintenance {
+
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "vector-index-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private IndexMaintenance() {
+    }
+
+    /**
+     * Queues a task. Failures are logged, not propagated, since no caller is waiting for them.
+     *
+     * @param description What the task does, for the error message
+     */
+    static void submit(String description, Runnable task) {
+        EXECUTOR.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Error " + description + ": " + e.getMessage());
+            }
+        });
+    }
+}
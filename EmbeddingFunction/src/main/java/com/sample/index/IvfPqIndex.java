@@ -0,0 +1,905 @@
+package com.sample.index;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+import com.sample.util.Deadline;
+import com.sample.util.VectorMath;
+
+/**
+ * Inverted-file index with product quantization (IVF-PQ) for populations too large to keep
+ * full-precision vectors in memory.
+ * This class handles:
+ * 1. Training, from the first trainingSampleSize vectors added: k-means coarse centroids that
+ *    split the vectors into nlist inverted lists, and per-subspace k-means codebooks of 256
+ *    entries over the residuals (vector minus its coarse centroid). Training runs on the index
+ *    maintenance thread without the index lock, and the trained quantizer is swapped in
+ * 2. Encoding each vector as its list plus one byte per subspace, so a 1024-d vector with
+ *    64 subspaces takes 64 bytes instead of 4 KB
+ * 3. Searching the nprobe closest lists with asymmetric distance tables (exact query residual
+ *    against each codebook entry), so scoring a code is one table lookup per subspace
+ * 4. Restricting results to an allowed set of ordinals while scanning, and probing lists
+ *    beyond the nprobe closest until enough allowed candidates are found
+ * 5. Reranking the best rerankCount candidates with full-precision vectors fetched through a
+ *    {@link VectorLoader}, so returned scores are exact cosine similarities
+ * 6. Saving the trained centroids and codebooks with {@link #writeQuantizer(OutputStream)} and
+ *    installing saved ones with {@link #loadQuantizer(InputStream)}, so a new process encodes
+ *    from its first vector instead of collecting and training on a sample again
+ *
+ * Until it is trained, the index keeps the vectors it has been given and searches them exactly.
+ * Vectors are L2-normalized, so squared L2 distance d and cosine similarity relate as
+ * cos = 1 - d / 2. Removed or replaced vectors keep their codes and are skipped; once they
+ * number at least COMPACTION_MIN_TOMBSTONES and outnumber the live rows, the lists are
+ * rewritten without them on the index maintenance thread.
+ * Searches run concurrently; inserts, removals, installing a quantizer and compaction take an
+ * exclusive lock.
+ */
+public class IvfPqIndex implements VectorIndex {
+
+    /**
+     * Source of full-precision vectors for reranking, e.g. a DynamoDB batch read.
+     */
+    public interface VectorLoader {
+        /**
+         * @return Vectors for the IDs that were found; missing IDs are ranked by their estimate
+         */
+        Map<String, float[]> load(Collection<String> ids) throws Exception;
+    }
+
+    public static final int DEFAULT_NLIST = 1024;
+    public static final int DEFAULT_SUBQUANTIZERS = 64;
+    public static final int DEFAULT_NPROBE = 16;
+    public static final int DEFAULT_RERANK = 100;
+    public static final int DEFAULT_TRAINING_SAMPLE = 20000;
+
+    // Fewer removed rows than this are never worth a compaction
+    static final int COMPACTION_MIN_TOMBSTONES = 1024;
+
+    private static final int MAGIC = 0x49565051; // "IVPQ"
+    private static final byte VERSION = 1;
+    private static final int CODEBOOK_SIZE = 256;
+    private static final int KMEANS_ITERATIONS = 10;
+    private static final int KMEANS_CHUNK = 256;
+    private static final int INITIAL_LIST_CAPACITY = 16;
+
+    private final int nlist;
+    private final int subquantizers;
+    private final int nprobe;
+    private final int rerankCount;
+    private final int trainingSampleSize;
+    private final VectorLoader loader;
+    private final Random random;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int dimension = 0;
+    private int[] subspaceStart;
+    // Serializes training runs and quantizer loads
+    private final Object trainingLock = new Object();
+    private volatile Runnable onTrained;
+
+    // Before training
+    private final Map<String, float[]> pending = new LinkedHashMap<>();
+    // Set while a training run is queued or running; guarded by lock
+    private boolean trainingScheduled = false;
+
+    // After training
+    private Quantizer quantizer;
+    private int[][] listRows;
+    private byte[][] listCodes;
+    private int[] listSizes;
+    private List<String> rowIds = new ArrayList<>();
+    private int[] rowOrdinals = new int[INITIAL_LIST_CAPACITY];
+    private final Map<String, Integer> rowsById = new HashMap<>();
+    private BitSet deleted = new BitSet();
+    private int deletedCount = 0;
+    // Set while a compaction is queued or running; guarded by lock
+    private boolean compactionScheduled = false;
+
+    /**
+     * Trained coarse centroids and per-subspace codebooks. Never changed once built.
+     */
+    private static final class Quantizer {
+        final int dimension;
+        final int lists;
+        final int[] subspaceStart;
+        final float[] coarse;
+        final float[] coarseNorms;
+        final float[][] codebooks;
+        final float[][] codebookNorms;
+
+        Quantizer(int dimension, int[] subspaceStart, float[] coarse, int lists, float[][] codebooks) {
+            this.dimension = dimension;
+            this.lists = lists;
+            this.subspaceStart = subspaceStart;
+            this.coarse = coarse;
+            this.coarseNorms = squaredNorms(coarse, lists, dimension);
+            this.codebooks = codebooks;
+            this.codebookNorms = new float[codebooks.length][];
+            for (int j = 0; j < codebooks.length; j++) {
+                codebookNorms[j] = squaredNorms(codebooks[j], CODEBOOK_SIZE, subspaceStart[j + 1] - subspaceStart[j]);
+            }
+        }
+
+        int parts() {
+            return subspaceStart.length - 1;
+        }
+
+        /**
+         * Finds the closest list of a normalized vector and writes its code.
+         *
+         * @param code Receives one codebook entry per subspace
+         * @return The list
+         */
+        int encode(float[] vector, byte[] code) {
+            int list = nearest(vector, coarse, coarseNorms, lists, new float[lists]);
+            float[] entryDots = new float[CODEBOOK_SIZE];
+            for (int j = 0; j < parts(); j++) {
+                float[] sub = new float[subspaceStart[j + 1] - subspaceStart[j]];
+                for (int d = 0; d < sub.length; d++) {
+                    sub[d] = vector[subspaceStart[j] + d] - coarse[list * dimension + subspaceStart[j] + d];
+                }
+                code[j] = (byte) nearest(sub, codebooks[j], codebookNorms[j], CODEBOOK_SIZE, entryDots);
+            }
+            return list;
+        }
+    }
+
+    /**
+     * A vector encoded outside the lock, installed only if the vector is still the pending one.
+     */
+    private static final class Encoded {
+        final float[] vector;
+        final int list;
+        final byte[] code;
+
+        Encoded(float[] vector, int list, byte[] code) {
+            this.vector = vector;
+            this.list = list;
+            this.code = code;
+        }
+    }
+
+    /**
+     * @param nlist Number of inverted lists (coarse centroids)
+     * @param subquantizers Number of subspaces, i.e. code bytes per vector
+     * @param nprobe Lists scanned per search
+     * @param rerankCount Candidates reranked with full vectors; ignored without a loader
+     * @param trainingSampleSize Vectors to collect before training
+     * @param loader Source of full vectors for reranking, or null to rank by the PQ estimate
+     */
+    public IvfPqIndex(int nlist, int subquantizers, int nprobe, int rerankCount, int trainingSampleSize,
+                      VectorLoader loader) {
+        this(nlist, subquantizers, nprobe, rerankCount, trainingSampleSize, loader, new Random());
+    }
+
+    IvfPqIndex(int nlist, int subquantizers, int nprobe, int rerankCount, int trainingSampleSize,
+               VectorLoader loader, Random random) {
+        this.nlist = Math.max(1, nlist);
+        this.subquantizers = Math.max(1, subquantizers);
+        this.nprobe = Math.max(1, nprobe);
+        this.rerankCount = Math.max(0, rerankCount);
+        this.trainingSampleSize = Math.max(1, trainingSampleSize);
+        this.loader = loader;
+        this.random = random;
+    }
+
+    public boolean isTrained() {
+        lock.readLock().lock();
+        try {
+            return quantizer != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sets a callback to run once training has installed a quantizer, e.g. to save it.
+     * It runs on the training thread, without the index lock.
+     */
+    public void setOnTrained(Runnable onTrained) {
+        this.onTrained = onTrained;
+    }
+
+    @Override
+    public void add(String id, float[] vector) {
+        float[] normalized = normalize(vector);
+        lock.writeLock().lock();
+        try {
+            checkDimension(normalized.length, true);
+            if (quantizer == null) {
+                pending.put(id, normalized);
+                if (pending.size() >= trainingSampleSize && !trainingScheduled) {
+                    trainingScheduled = true;
+                    IndexMaintenance.submit("training IVF-PQ index", this::trainScheduled);
+                }
+                return;
+            }
+            Integer previous = rowsById.get(id);
+            if (previous != null) {
+                markDeleted(previous);
+            }
+            byte[] code = new byte[quantizer.parts()];
+            append(id, quantizer.encode(normalized, code), code);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Trains on the vectors added so far, up to trainingSampleSize of them, without waiting for
+     * that many to arrive. Waits for a training run that is already in progress. The k-means
+     * runs without the index lock, so searches and inserts continue meanwhile.
+     * A no-op if the index is already trained or empty.
+     */
+    public void train() {
+        synchronized (trainingLock) {
+            Map<String, float[]> snapshot;
+            int dim;
+            int[] starts;
+            lock.readLock().lock();
+            try {
+                if (quantizer != null || pending.isEmpty()) {
+                    return;
+                }
+                snapshot = new LinkedHashMap<>(pending);
+                dim = dimension;
+                starts = subspaceStart;
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            Quantizer trained = trainQuantizer(snapshot.values(), dim, starts);
+            String[] ids = snapshot.keySet().toArray(new String[0]);
+            Encoded[] codes = new Encoded[ids.length];
+            IntStream.range(0, ids.length).parallel().forEach(i -> {
+                float[] vector = snapshot.get(ids[i]);
+                byte[] code = new byte[trained.parts()];
+                codes[i] = new Encoded(vector, trained.encode(vector, code), code);
+            });
+            Map<String, Encoded> encoded = new HashMap<>();
+            for (int i = 0; i < ids.length; i++) {
+                encoded.put(ids[i], codes[i]);
+            }
+
+            lock.writeLock().lock();
+            try {
+                install(trained, encoded);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        Runnable callback = onTrained;
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    private void trainScheduled() {
+        try {
+            train();
+        } finally {
+            lock.writeLock().lock();
+            trainingScheduled = false;
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the trained quantizer as a header (magic, version, dimension, list count, subspace
+     * boundaries) followed by the coarse centroids and the codebooks.
+     *
+     * @throws IllegalStateException If the index is not trained
+     */
+    public void writeQuantizer(OutputStream out) throws IOException {
+        Quantizer q;
+        lock.readLock().lock();
+        try {
+            q = quantizer;
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (q == null) {
+            throw new IllegalStateException("IVF-PQ index is not trained");
+        }
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(q.dimension);
+        data.writeInt(q.lists);
+        data.writeInt(q.parts());
+        for (int start : q.subspaceStart) {
+            data.writeInt(start);
+        }
+        for (float value : q.coarse) {
+            data.writeFloat(value);
+        }
+        for (float[] book : q.codebooks) {
+            for (float value : book) {
+                data.writeFloat(value);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Installs a quantizer written by {@link #writeQuantizer(OutputStream)} instead of training,
+     * and encodes the vectors collected so far. The saved list and subspace counts take
+     * precedence over the ones this index was created with.
+     *
+     * @throws IOException If the stream is not a serialized quantizer, is truncated, or has a
+     *         different dimension from the vectors already added
+     * @throws IllegalStateException If the index is already trained
+     */
+    public void loadQuantizer(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a serialized IVF-PQ quantizer");
+        }
+        byte version = data.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported IVF-PQ quantizer version: " + version);
+        }
+        int dim = data.readInt();
+        int lists = data.readInt();
+        int parts = data.readInt();
+        if (dim < 1 || lists < 1 || parts < 1 || parts > dim) {
+            throw new IOException("Corrupt IVF-PQ quantizer header");
+        }
+        int[] starts = new int[parts + 1];
+        for (int j = 0; j <= parts; j++) {
+            starts[j] = data.readInt();
+            if (j == 0 ? starts[j] != 0 : starts[j] <= starts[j - 1]) {
+                throw new IOException("Corrupt IVF-PQ quantizer header");
+            }
+        }
+        if (starts[parts] != dim) {
+            throw new IOException("Corrupt IVF-PQ quantizer header");
+        }
+        float[] centroids = new float[lists * dim];
+        for (int i = 0; i < centroids.length; i++) {
+            centroids[i] = data.readFloat();
+        }
+        float[][] books = new float[parts][];
+        for (int j = 0; j < parts; j++) {
+            books[j] = new float[CODEBOOK_SIZE * (starts[j + 1] - starts[j])];
+            for (int i = 0; i < books[j].length; i++) {
+                books[j][i] = data.readFloat();
+            }
+        }
+        Quantizer loaded = new Quantizer(dim, starts, centroids, lists, books);
+
+        synchronized (trainingLock) {
+            lock.writeLock().lock();
+            try {
+                if (quantizer != null) {
+                    throw new IllegalStateException("IVF-PQ index is already trained");
+                }
+                if (dimension != 0 && dimension != dim) {
+                    throw new IOException("Quantizer dimension " + dim + " does not match the index dimension " + dimension);
+                }
+                dimension = dim;
+                subspaceStart = starts;
+                install(loaded, Collections.emptyMap());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(String id) {
+        lock.writeLock().lock();
+        try {
+            if (pending.remove(id) != null) {
+                return true;
+            }
+            Integer row = rowsById.remove(id);
+            if (row == null) {
+                return false;
+            }
+            markDeleted(row);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean contains(String id) {
+        lock.readLock().lock();
+        try {
+            return pending.containsKey(id) || rowsById.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return pending.size() + rowsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of removed or replaced rows whose codes are still held.
+     */
+    public int getTombstoneCount() {
+        lock.readLock().lock();
+        try {
+            return deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the inverted lists without removed and replaced rows. Only codes are copied, so
+     * this holds the write lock for one pass over the lists.
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            if (quantizer == null || deletedCount == 0) {
+                return;
+            }
+            int parts = quantizer.parts();
+            int[] renumbered = new int[rowIds.size()];
+            List<String> liveIds = new ArrayList<>(rowsById.size());
+            int[] liveOrdinals = new int[Math.max(INITIAL_LIST_CAPACITY, rowsById.size())];
+            for (int row = 0; row < rowIds.size(); row++) {
+                if (deleted.get(row)) {
+                    renumbered[row] = -1;
+                    continue;
+                }
+                renumbered[row] = liveIds.size();
+                liveOrdinals[liveIds.size()] = rowOrdinals[row];
+                liveIds.add(rowIds.get(row));
+            }
+            for (int list = 0; list < quantizer.lists; list++) {
+                int[] rows = listRows[list];
+                byte[] codes = listCodes[list];
+                int kept = 0;
+                for (int i = 0; i < listSizes[list]; i++) {
+                    int row = renumbered[rows[i]];
+                    if (row >= 0) {
+                        rows[kept] = row;
+                        System.arraycopy(codes, i * parts, codes, kept * parts, parts);
+                        kept++;
+                    }
+                }
+                listSizes[list] = kept;
+                int capacity = Math.max(INITIAL_LIST_CAPACITY, kept);
+                if (rows.length > 2 * capacity) {
+                    listRows[list] = Arrays.copyOf(rows, capacity);
+                    listCodes[list] = Arrays.copyOf(codes, capacity * parts);
+                }
+            }
+            rowIds = liveIds;
+            rowOrdinals = liveOrdinals;
+            rowsById.clear();
+            for (int row = 0; row < liveIds.size(); row++) {
+                rowsById.put(liveIds.get(row), row);
+            }
+            deleted = new BitSet();
+            deletedCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Marks a row removed and queues a compaction once removed rows outnumber live ones.
+     * Call with the write lock held.
+     */
+    private void markDeleted(int row) {
+        deleted.set(row);
+        deletedCount++;
+        if (!compactionScheduled && deletedCount >= COMPACTION_MIN_TOMBSTONES && deletedCount > rowsById.size()) {
+            compactionScheduled = true;
+            IndexMaintenance.submit("compacting IVF-PQ index", () -> {
+                try {
+                    compact();
+                } finally {
+                    lock.writeLock().lock();
+                    compactionScheduled = false;
+                    lock.writeLock().unlock();
+                }
+            });
+        }
+    }
+
+    @Override
+    public List<SearchResult> search(float[] query, int k, String excludeId, CompressedBitmap allowed) {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        float[] normalized = normalize(query);
+        List<SearchResult> candidates;
+        lock.readLock().lock();
+        try {
+            if (dimension == 0) {
+                return Collections.emptyList();
+            }
+            checkDimension(normalized.length, false);
+            if (quantizer == null) {
+                return searchPending(normalized, k, excludeId, allowed);
+            }
+            candidates = searchCodes(normalized, loader != null ? Math.max(k, rerankCount) : k, excludeId, allowed);
+        } finally {
+            lock.readLock().unlock();
+        }
+        // Reranking may read from the network, so it runs outside the lock
+        return loader != null ? rerank(normalized, candidates, k) : candidates;
+    }
+
+    private void checkDimension(int length, boolean adding) {
+        if (dimension == 0 && adding) {
+            dimension = length;
+            int parts = Math.min(subquantizers, length);
+            subspaceStart = new int[parts + 1];
+            for (int j = 0; j <= parts; j++) {
+                subspaceStart[j] = j * length / parts;
+            }
+        } else if (length != dimension) {
+            throw new IllegalArgumentException("Expected dimension " + dimension + " but got " + length);
+        }
+    }
+
+    /**
+     * Exact search over the vectors collected before training.
+     */
+    private List<SearchResult> searchPending(float[] query, int k, String excludeId, CompressedBitmap allowed) {
+        String[] ids = pending.keySet().toArray(new String[0]);
+        TopK top = new TopK(Math.min(k, ids.length));
+        for (int row = 0; row < ids.length; row++) {
+            if (!ids[row].equals(excludeId) && (allowed == null || allowed.contains(IdOrdinals.get(ids[row])))) {
+                top.offer(row, VectorMath.dot(query, pending.get(ids[row])));
+            }
+        }
+        return drain(top, Arrays.asList(ids), false);
+    }
+
+    /**
+     * Scores the codes in the nprobe closest lists with asymmetric distance tables, probing
+     * further lists while fewer than the wanted number of allowed rows have been found.
+     */
+    private List<SearchResult> searchCodes(float[] query, int wanted, String excludeId, CompressedBitmap allowed) {
+        Quantizer q = quantizer;
+        int parts = q.parts();
+        int lists = q.lists;
+        int probes = Math.min(nprobe, lists);
+        Integer excluded = excludeId != null ? rowsById.get(excludeId) : null;
+        int excludedRow = excluded != null ? excluded : -1;
+
+        // Closest lists: ||q - c||^2 = ||q||^2 + ||c||^2 - 2 q.c, and ||q||^2 is the same for every list
+        float[] coarseDots = new float[lists];
+        VectorMath.dotRows(query, q.coarse, 0, lists, coarseDots);
+        TopK closestLists = new TopK(lists);
+        for (int list = 0; list < lists; list++) {
+            closestLists.offer(list, 2f * coarseDots[list] - q.coarseNorms[list]);
+        }
+        int[] listOrder = new int[lists];
+        closestLists.drainDescending(listOrder, new float[lists]);
+
+        TopK top = new TopK(wanted);
+        float[] residual = new float[dimension];
+        float[] table = new float[parts * CODEBOOK_SIZE];
+        float[] entryDots = new float[CODEBOOK_SIZE];
+        for (int probe = 0; probe < lists && (probe < probes || top.size() < wanted); probe++) {
+            int list = listOrder[probe];
+            if (listSizes[list] == 0) {
+                continue;
+            }
+            for (int i = 0; i < dimension; i++) {
+                residual[i] = query[i] - q.coarse[list * dimension + i];
+            }
+            // table[j][c] = ||r_j - codebook_j[c]||^2
+            for (int j = 0; j < parts; j++) {
+                float[] sub = Arrays.copyOfRange(residual, q.subspaceStart[j], q.subspaceStart[j + 1]);
+                float subNorm = VectorMath.squaredNorm(sub);
+                VectorMath.dotRows(sub, q.codebooks[j], 0, CODEBOOK_SIZE, entryDots);
+                for (int c = 0; c < CODEBOOK_SIZE; c++) {
+                    table[j * CODEBOOK_SIZE + c] = subNorm + q.codebookNorms[j][c] - 2f * entryDots[c];
+                }
+            }
+
+            int[] rows = listRows[list];
+            byte[] codes = listCodes[list];
+            for (int i = 0; i < listSizes[list]; i++) {
+                int row = rows[i];
+                if (row == excludedRow || deleted.get(row) || (allowed != null && !allowed.contains(rowOrdinals[row]))) {
+                    continue;
+                }
+                float distance = 0f;
+                int base = i * parts;
+                for (int j = 0; j < parts; j++) {
+                    distance += table[j * CODEBOOK_SIZE + (codes[base + j] & 0xFF)];
+                }
+                top.offer(row, -distance);
+            }
+        }
+
+        return drain(top, rowIds, true);
+    }
+
+    /**
+     * Converts a heap of rows to results, highest first. Scores in the heap are dot products,
+     * or negated squared distances when fromDistances is set (giving cos = 1 - d / 2).
+     */
+    private static List<SearchResult> drain(TopK top, List<String> ids, boolean fromDistances) {
+        int[] rows = new int[top.size()];
+        float[] scores = new float[top.size()];
+        int found = top.drainDescending(rows, scores);
+        List<SearchResult> results = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            double score = fromDistances ? 1.0 + scores[i] / 2.0 : scores[i];
+            results.add(new SearchResult(ids.get(rows[i]), score));
+        }
+        return results;
+    }
+
+    /**
+     * Replaces the PQ estimates of the candidates with exact cosine similarities and keeps the best k.
+     */
+    private List<SearchResult> rerank(float[] query, List<SearchResult> candidates, int k) {
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+        List<String> ids = new ArrayList<>(candidates.size());
+        for (SearchResult candidate : candidates) {
+            ids.add(candidate.getId());
+        }
+        Map<String, float[]> full;
+        try {
+            full = loader.load(ids);
+        } catch (Deadline.ExceededException e) {
+            throw e;
+        } catch (Exception e) {
+            System.err.println("Error loading vectors for reranking, using estimates: " + e.getMessage());
+            full = Collections.emptyMap();
+        }
+
+        List<SearchResult> reranked = new ArrayList<>(candidates.size());
+        for (SearchResult candidate : candidates) {
+            float[] vector = full.get(candidate.getId());
+            reranked.add(vector != null && vector.length == query.length
+                    ? new SearchResult(candidate.getId(), VectorMath.cosine(query, vector))
+                    : candidate);
+        }
+        reranked.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+        return reranked.size() > k ? new ArrayList<>(reranked.subList(0, k)) : reranked;
+    }
+
+    /**
+     * Trains the coarse quantizer and codebooks on up to trainingSampleSize of the given
+     * normalized vectors. Touches no index state, so it runs without the lock.
+     */
+    private Quantizer trainQuantizer(Collection<float[]> vectors, int dim, int[] starts) {
+        int n = Math.min(vectors.size(), trainingSampleSize);
+        float[] sample = new float[n * dim];
+        int row = 0;
+        for (float[] vector : vectors) {
+            if (row == n) {
+                break;
+            }
+            System.arraycopy(vector, 0, sample, row++ * dim, dim);
+        }
+
+        int lists = Math.min(nlist, n);
+        float[] centroids = kmeans(sample, n, dim, lists, random.nextLong());
+        float[] norms = squaredNorms(centroids, lists, dim);
+        int[] assignment = new int[n];
+        assign(sample, n, dim, centroids, norms, lists, assignment);
+
+        float[] residuals = new float[n * dim];
+        for (int i = 0; i < n; i++) {
+            int list = assignment[i];
+            for (int d = 0; d < dim; d++) {
+                residuals[i * dim + d] = sample[i * dim + d] - centroids[list * dim + d];
+            }
+        }
+
+        int parts = starts.length - 1;
+        long[] seeds = new long[parts];
+        for (int j = 0; j < parts; j++) {
+            seeds[j] = random.nextLong();
+        }
+        float[][] books = new float[parts][];
+        IntStream.range(0, parts).parallel().forEach(j -> {
+            int width = starts[j + 1] - starts[j];
+            float[] sub = new float[n * width];
+            for (int i = 0; i < n; i++) {
+                System.arraycopy(residuals, i * dim + starts[j], sub, i * width, width);
+            }
+            books[j] = kmeans(sub, n, width, CODEBOOK_SIZE, seeds[j]);
+        });
+        return new Quantizer(dim, starts, centroids, lists, books);
+    }
+
+    /**
+     * Switches to a trained quantizer and moves the pending vectors into the lists, using the
+     * codes computed outside the lock for vectors that have not been replaced since.
+     * Call with the write lock held.
+     */
+    private void install(Quantizer trained, Map<String, Encoded> encoded) {
+        int parts = trained.parts();
+        listRows = new int[trained.lists][INITIAL_LIST_CAPACITY];
+        listCodes = new byte[trained.lists][INITIAL_LIST_CAPACITY * parts];
+        listSizes = new int[trained.lists];
+        quantizer = trained;
+        for (Map.Entry<String, float[]> entry : pending.entrySet()) {
+            Encoded code = encoded.get(entry.getKey());
+            if (code != null && code.vector == entry.getValue()) {
+                append(entry.getKey(), code.list, code.code);
+            } else {
+                byte[] fresh = new byte[parts];
+                append(entry.getKey(), trained.encode(entry.getValue(), fresh), fresh);
+            }
+        }
+        pending.clear();
+    }
+
+    /**
+     * Appends a vector's code to a list as a new row. Call with the write lock held.
+     */
+    private void append(String id, int list, byte[] code) {
+        int parts = code.length;
+        int row = rowIds.size();
+        rowIds.add(id);
+        rowsById.put(id, row);
+        if (row == rowOrdinals.length) {
+            rowOrdinals = Arrays.copyOf(rowOrdinals, row * 2);
+        }
+        rowOrdinals[row] = IdOrdinals.of(id);
+        int size = listSizes[list];
+        if (size == listRows[list].length) {
+            listRows[list] = Arrays.copyOf(listRows[list], size * 2);
+            listCodes[list] = Arrays.copyOf(listCodes[list], size * 2 * parts);
+        }
+        listRows[list][size] = row;
+        System.arraycopy(code, 0, listCodes[list], size * parts, parts);
+        listSizes[list] = size + 1;
+    }
+
+    /**
+     * Lloyd's k-means over n row-major points, seeded with k random points.
+     * Empty clusters are re-seeded with a random point. With fewer points than clusters,
+     * points are repeated.
+     */
+    private static float[] kmeans(float[] data, int n, int dim, int k, long seed) {
+        Random random = new Random(seed);
+        int[] order = IntStream.range(0, n).toArray();
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        float[] centroids = new float[k * dim];
+        for (int c = 0; c < k; c++) {
+            System.arraycopy(data, order[c % n] * dim, centroids, c * dim, dim);
+        }
+        if (n <= k) {
+            return centroids;
+        }
+
+        int[] assignment = new int[n];
+        Arrays.fill(assignment, -1);
+        for (int iteration = 0; iteration < KMEANS_ITERATIONS; iteration++) {
+            int changed = assign(data, n, dim, centroids, squaredNorms(centroids, k, dim), k, assignment);
+            if (changed == 0) {
+                break;
+            }
+            float[] sums = new float[k * dim];
+            int[] counts = new int[k];
+            for (int i = 0; i < n; i++) {
+                int c = assignment[i];
+                counts[c]++;
+                for (int d = 0; d < dim; d++) {
+                    sums[c * dim + d] += data[i * dim + d];
+                }
+            }
+            for (int c = 0; c < k; c++) {
+                if (counts[c] == 0) {
+                    System.arraycopy(data, random.nextInt(n) * dim, sums, c * dim, dim);
+                } else {
+                    for (int d = 0; d < dim; d++) {
+                        sums[c * dim + d] /= counts[c];
+                    }
+                }
+            }
+            centroids = sums;
+        }
+        return centroids;
+    }
+
+    /**
+     * Assigns each point to its closest centroid, in parallel chunks.
+     *
+     * @return Number of points whose assignment changed
+     */
+    private static int assign(float[] data, int n, int dim, float[] centroids, float[] norms, int k, int[] assignment) {
+        AtomicInteger changed = new AtomicInteger();
+        int chunks = (n + KMEANS_CHUNK - 1) / KMEANS_CHUNK;
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            float[] point = new float[dim];
+            float[] dots = new float[k];
+            int changes = 0;
+            for (int i = chunk * KMEANS_CHUNK; i < Math.min(n, (chunk + 1) * KMEANS_CHUNK); i++) {
+                System.arraycopy(data, i * dim, point, 0, dim);
+                int closest = nearest(point, centroids, norms, k, dots);
+                if (assignment[i] != closest) {
+                    assignment[i] = closest;
+                    changes++;
+                }
+            }
+            changed.addAndGet(changes);
+        });
+        return changed.get();
+    }
+
+    /**
+     * Index of the centroid closest to the point in L2 distance.
+     *
+     * @param dots Scratch array of at least k floats
+     */
+    private static int nearest(float[] point, float[] centroids, float[] norms, int k, float[] dots) {
+        VectorMath.dotRows(point, centroids, 0, k, dots);
+        int closest = 0;
+        float best = Float.POSITIVE_INFINITY;
+        for (int c = 0; c < k; c++) {
+            float distance = norms[c] - 2f * dots[c];
+            if (distance < best) {
+                best = distance;
+                closest = c;
+            }
+        }
+        return closest;
+    }
+
+    private static float[] squaredNorms(float[] rows, int count, int dim) {
+        float[] norms = new float[count];
+        float[] row = new float[dim];
+        for (int r = 0; r < count; r++) {
+            System.arraycopy(rows, r * dim, row, 0, dim);
+            norms[r] = VectorMath.squaredNorm(row);
+        }
+        return norms;
+    }
+
+    /**
+     * Returns an L2-normalized copy. A zero vector stays zero and has similarity 0 to everything.
+     */
+    private static float[] normalize(float[] vector) {
+        double sumOfSquares = VectorMath.squaredNorm(vector);
+        float[] normalized = new float[vector.length];
+        if (sumOfSquares == 0.0) {
+            return normalized;
+        }
+        float scale = (float) (1.0 / Math.sqrt(sumOfSquares));
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+}
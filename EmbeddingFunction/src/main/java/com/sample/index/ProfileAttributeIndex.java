@@ -0,0 +1,205 @@
+package com.sample.index;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.sample.util.UserAttributeFormatter;
+
+/**
+ * Compressed bitmaps of user ordinals (see {@link IdOrdinals}) by profile attribute, used to
+ * restrict similarity searches before scoring.
+ * This class handles:
+ * 1. Recording which embedding types each user has, and each user's age, location and
+ *    subscription plan, merging the attributes of each recorded profile into what is known
+ * 2. Compiling an {@link AttributeFilter} into one bitmap: an age range is the union of the
+ *    per-age bitmaps, and the criteria are intersected smallest first
+ *
+ * Locations are compared ignoring case and surrounding whitespace; subscription plans are
+ * compared by their UserAttributeFormatter label, and users with a plan that has no label match
+ * no plan filter. Ages above MAX_AGE are recorded as MAX_AGE.
+ */
+public class ProfileAttributeIndex {
+
+    public static final int MAX_AGE = 150;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, CompressedBitmap> byEmbeddingType = new HashMap<>();
+    private final Map<String, CompressedBitmap> byLocation = new HashMap<>();
+    private final Map<Integer, CompressedBitmap> byPlan = new HashMap<>();
+    private final CompressedBitmap[] byAge = new CompressedBitmap[MAX_AGE + 1];
+    private final Map<Integer, Profile> profiles = new HashMap<>();
+
+    private static final class Profile {
+        final int age;
+        final String location;
+        final int plan;
+
+        Profile(int age, String location, int plan) {
+            this.age = age;
+            this.location = location;
+            this.plan = plan;
+        }
+    }
+
+    /**
+     * Records that a user has an embedding of a type.
+     */
+    public void recordEmbedding(String userId, String embeddingType) {
+        int ordinal = IdOrdinals.of(userId);
+        lock.writeLock().lock();
+        try {
+            byEmbeddingType.computeIfAbsent(embeddingType, type -> new CompressedBitmap()).add(ordinal);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records a user's profile attributes. Attributes that are given replace those recorded
+     * before; attributes that are null keep their recorded value, since a user's profile is
+     * often spread over several items.
+     *
+     * @param age Age, or null if unknown
+     * @param location Location, or null if unknown
+     * @param subscriptionPlan Subscription plan name, or null if unknown
+     */
+    public void recordProfile(String userId, Integer age, String location, String subscriptionPlan) {
+        int ordinal = IdOrdinals.of(userId);
+        lock.writeLock().lock();
+        try {
+            Profile previous = profiles.get(ordinal);
+            Profile profile = new Profile(
+                    age != null ? (age >= 0 ? Math.min(age, MAX_AGE) : -1) : previous != null ? previous.age : -1,
+                    location != null ? normalizeLocation(location) : previous != null ? previous.location : null,
+                    subscriptionPlan != null ? UserAttributeFormatter.subscriptionPlanLabel(subscriptionPlan)
+                            : previous != null ? previous.plan : -1);
+            profiles.put(ordinal, profile);
+            if (previous != null) {
+                if (previous.age >= 0) {
+                    byAge[previous.age].remove(ordinal);
+                }
+                if (previous.location != null) {
+                    byLocation.get(previous.location).remove(ordinal);
+                }
+                if (previous.plan >= 0) {
+                    byPlan.get(previous.plan).remove(ordinal);
+                }
+            }
+            if (profile.age >= 0) {
+                if (byAge[profile.age] == null) {
+                    byAge[profile.age] = new CompressedBitmap();
+                }
+                byAge[profile.age].add(ordinal);
+            }
+            if (profile.location != null) {
+                byLocation.computeIfAbsent(profile.location, key -> new CompressedBitmap()).add(ordinal);
+            }
+            if (profile.plan >= 0) {
+                byPlan.computeIfAbsent(profile.plan, key -> new CompressedBitmap()).add(ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records profile attributes from a raw attribute map, using the keys UserAttributeFormatter
+     * reads ("subscription_plan") and the profile item attributes ("age", "location").
+     */
+    public void recordProfile(String userId, Map<String, Object> attributes) {
+        Object age = attributes.get("age");
+        Integer parsedAge = null;
+        if (age instanceof Number) {
+            parsedAge = ((Number) age).intValue();
+        } else if (age != null) {
+            try {
+                parsedAge = Integer.parseInt(age.toString().trim());
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid age for user " + userId + ": " + age);
+            }
+        }
+        Object location = attributes.get("location");
+        Object plan = attributes.get("subscription_plan");
+        recordProfile(userId, parsedAge, location != null ? location.toString() : null,
+                plan != null ? plan.toString() : null);
+    }
+
+    /**
+     * Compiles a filter into the bitmap of ordinals it accepts.
+     *
+     * @return The accepted ordinals, or null if the filter places no restriction
+     */
+    public CompressedBitmap match(AttributeFilter filter) {
+        if (filter == null || filter.isEmpty()) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            List<CompressedBitmap> criteria = new ArrayList<>();
+            if (filter.getEmbeddingType() != null) {
+                criteria.add(byEmbeddingType.get(filter.getEmbeddingType()));
+            }
+            if (filter.getMinAge() != null || filter.getMaxAge() != null) {
+                criteria.add(ageRange(filter.getMinAge() != null ? filter.getMinAge() : 0,
+                        filter.getMaxAge() != null ? filter.getMaxAge() : MAX_AGE));
+            }
+            if (filter.getLocation() != null) {
+                criteria.add(byLocation.get(normalizeLocation(filter.getLocation())));
+            }
+            if (filter.getSubscriptionPlan() != null) {
+                int plan = UserAttributeFormatter.subscriptionPlanLabel(filter.getSubscriptionPlan());
+                // No user is recorded under an unknown plan
+                criteria.add(plan >= 0 ? byPlan.get(plan) : null);
+            }
+            if (criteria.contains(null)) {
+                return new CompressedBitmap();
+            }
+
+            criteria.sort(Comparator.comparingInt(CompressedBitmap::cardinality));
+            CompressedBitmap result = criteria.get(0).copy();
+            for (int i = 1; i < criteria.size() && !result.isEmpty(); i++) {
+                result = result.and(criteria.get(i));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops every recorded attribute.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            byEmbeddingType.clear();
+            byLocation.clear();
+            byPlan.clear();
+            profiles.clear();
+            for (int age = 0; age <= MAX_AGE; age++) {
+                byAge[age] = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private CompressedBitmap ageRange(int minAge, int maxAge) {
+        CompressedBitmap result = new CompressedBitmap();
+        for (int age = Math.max(0, minAge); age <= Math.min(MAX_AGE, maxAge); age++) {
+            if (byAge[age] != null) {
+                result = result.or(byAge[age]);
+            }
+        }
+        return result;
+    }
+
+    private static String normalizeLocation(String location) {
+        return location.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,31 @@
+package com.sample.index;
+
+/**
+ * A user ID returned by a {@link VectorIndex} search with its cosine similarity to the query.
+ */
+public final class SearchResult {
+
+    private final String id;
+    private final double score;
+
+    public SearchResult(String id, double score) {
+        this.id = id;
+        this.score = score;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Cosine similarity to the query, from -1 to 1.
+     */
+    public double getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return id + "=" + score;
+    }
+}
@@ -0,0 +1,99 @@
+package com.sample.index;
+
+/**
+ * Bounded min-heap of the k highest-scoring rows, on primitive arrays so scoring millions of
+ * rows allocates nothing per row. The root is the lowest score kept, so a new row only needs
+ * one comparison to be rejected once the heap is full.
+ */
+final class TopK {
+
+    private final int k;
+    private final int[] rows;
+    private final float[] scores;
+    private int size;
+
+    TopK(int k) {
+        this.k = k;
+        this.rows = new int[k];
+        this.scores = new float[k];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void offer(int row, float score) {
+        if (size < k) {
+            rows[size] = row;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (k > 0 && score > scores[0]) {
+            rows[0] = row;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Offers every row kept by another heap.
+     */
+    void addAll(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.rows[i], other.scores[i]);
+        }
+    }
+
+    /**
+     * Empties the heap into the given arrays, highest score first.
+     *
+     * @return Number of rows written
+     */
+    int drainDescending(int[] rowsOut, float[] scoresOut) {
+        int count = size;
+        for (int i = count - 1; i >= 0; i--) {
+            rowsOut[i] = rows[0];
+            scoresOut[i] = scores[0];
+            size--;
+            rows[0] = rows[size];
+            scores[0] = scores[size];
+            siftDown(0);
+        }
+        return count;
+    }
+
+    private void siftUp(int index) {
+        int row = rows[index];
+        float score = scores[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (scores[parent] <= score) {
+                break;
+            }
+            rows[index] = rows[parent];
+            scores[index] = scores[parent];
+            index = parent;
+        }
+        rows[index] = row;
+        scores[index] = score;
+    }
+
+    private void siftDown(int index) {
+        int row = rows[index];
+        float score = scores[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && scores[child + 1] < scores[child]) {
+                child++;
+            }
+            if (score <= scores[child]) {
+                break;
+            }
+            rows[index] = rows[child];
+            scores[index] = scores[child];
+            index = child;
+        }
+        rows[index] = row;
+        scores[index] = score;
+    }
+}
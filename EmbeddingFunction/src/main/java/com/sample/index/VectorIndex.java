@@ -0,0 +1,71 @@
+package com.sample.index;
+
+import java.util.List;
+
+/**
+ * In-memory nearest-neighbour index over embedding vectors, keyed by user ID.
+ * Similarity is cosine similarity, so vectors need not be normalized by the caller.
+ */
+public interface VectorIndex {
+
+    /**
+     * Adds a vector, replacing any vector previously added for the same ID.
+     *
+     * @param id User ID
+     * @param vector The embedding vector; the index keeps its own copy
+     * @throws IllegalArgumentException If the dimension differs from the vectors already indexed
+     */
+    void add(String id, float[] vector);
+
+    /**
+     * Removes the vector for an ID.
+     *
+     * @return true if the ID was indexed
+     */
+    boolean remove(String id);
+
+    boolean contains(String id);
+
+    /**
+     * Finds the vectors most similar to the query.
+     *
+     * @param query The query vector
+     * @param k Maximum number of results
+     * @return Up to k results, most similar first
+     */
+    default List<SearchResult> search(float[] query, int k) {
+        return search(query, k, null, null);
+    }
+
+    /**
+     * Finds the vectors most similar to the query, leaving out one ID, usually the user the
+     * query vector belongs to.
+     *
+     * @param query The query vector
+     * @param k Maximum number of results
+     * @param excludeId ID to leave out of the results, or null
+     * @return Up to k results, most similar first
+     */
+    default List<SearchResult> search(float[] query, int k, String excludeId) {
+        return search(query, k, excludeId, null);
+    }
+
+    /**
+     * Finds the vectors most similar to the query among the IDs whose {@link IdOrdinals} ordinal
+     * is in the allowed set. The restriction is applied while searching, so up to k results are
+     * returned however selective it is.
+     *
+     * @param query The query vector
+     * @param k Maximum number of results
+     * @param excludeId ID to leave out of the results, or null
+     * @param allowed Ordinals of the IDs that may be returned, e.g. from
+     *                {@link ProfileAttributeIndex#match}, or null for no restriction
+     * @return Up to k results, most similar first
+     */
+    List<SearchResult> search(float[] query, int k, String excludeId, CompressedBitmap allowed);
+
+    /**
+     * Number of indexed IDs.
+     */
+    int size();
+}
@@ -0,0 +1,232 @@
+package com.sample.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import com.sample.util.EnvConfig;
+
+/**
+ * Process-wide vector indexes, one per embedding type.
+ * This class handles:
+ * 1. Creating HNSW indexes with the graph parameters from HNSW_M (default 16),
+ *    HNSW_EF_CONSTRUCTION (default 200) and HNSW_EF_SEARCH (default 64), exact FlatIndex
+ *    indexes for the embedding types listed in VECTOR_INDEX_EXACT_TYPES (comma-separated), or
+ *    compressed IvfPqIndex indexes for the types listed in VECTOR_INDEX_IVFPQ_TYPES, configured
+ *    by IVFPQ_NLIST (default 1024), IVFPQ_SUBQUANTIZERS (default 64), IVFPQ_NPROBE (default 16),
+ *    IVFPQ_RERANK (default 100) and IVFPQ_TRAINING_SAMPLE (default 20000)
+ * 2. Loading the trained IVF-PQ quantizer for a type from IVFPQ_QUANTIZER_DIR/<type>.ivfpq,
+ *    or saving it there once a new index has been trained, so only the first process trains
+ * 3. Holding the index for each embedding type once it has been built
+ * 4. Keeping built indexes current with the embeddings this process stores, including
+ *    indexes still being rebuilt, which are not searched until they are registered
+ * 5. Holding the profile attribute bitmaps that similarity searches can be filtered by
+ *
+ * Indexes are built by EnhancedDynamoDBService.buildVectorIndex, and a first build may be
+ * registered while it is still being filled. Embeddings written by other processes after that
+ * are only seen once the index is rebuilt.
+ */
+public final class VectorIndexRegistry {
+
+    private static final int M = (int) EnvConfig.getLong("HNSW_M", HnswIndex.DEFAULT_M);
+    private static final int EF_CONSTRUCTION = (int) EnvConfig.getLong("HNSW_EF_CONSTRUCTION", HnswIndex.DEFAULT_EF_CONSTRUCTION);
+    private static final int EF_SEARCH = (int) EnvConfig.getLong("HNSW_EF_SEARCH", HnswIndex.DEFAULT_EF_SEARCH);
+    private static final Set<String> EXACT_TYPES = envSet("VECTOR_INDEX_EXACT_TYPES");
+    private static final Set<String> IVFPQ_TYPES = envSet("VECTOR_INDEX_IVFPQ_TYPES");
+    private static final int IVFPQ_NLIST = (int) EnvConfig.getLong("IVFPQ_NLIST", IvfPqIndex.DEFAULT_NLIST);
+    private static final int IVFPQ_SUBQUANTIZERS = (int) EnvConfig.getLong("IVFPQ_SUBQUANTIZERS", IvfPqIndex.DEFAULT_SUBQUANTIZERS);
+    private static final int IVFPQ_NPROBE = (int) EnvConfig.getLong("IVFPQ_NPROBE", IvfPqIndex.DEFAULT_NPROBE);
+    private static final int IVFPQ_RERANK = (int) EnvConfig.getLong("IVFPQ_RERANK", IvfPqIndex.DEFAULT_RERANK);
+    private static final int IVFPQ_TRAINING_SAMPLE = (int) EnvConfig.getLong("IVFPQ_TRAINING_SAMPLE", IvfPqIndex.DEFAULT_TRAINING_SAMPLE);
+    private static final String IVFPQ_QUANTIZER_DIR = System.getenv("IVFPQ_QUANTIZER_DIR");
+
+    private static final Map<String, VectorIndex> INDEXES = new ConcurrentHashMap<>();
+    // Indexes being rebuilt, by type; they receive stored embeddings until they are registered
+    private static final Map<String, Set<VectorIndex>> REBUILDING = new ConcurrentHashMap<>();
+    private static final ProfileAttributeIndex ATTRIBUTES = new ProfileAttributeIndex();
+
+    private VectorIndexRegistry() {
+    }
+
+    /**
+     * Creates an empty, unregistered index for an embedding type, without a source of full
+     * vectors for reranking IVF-PQ results.
+     */
+    public static VectorIndex newIndex(String embeddingType) {
+        return newIndex(embeddingType, null);
+    }
+
+    /**
+     * Creates an empty, unregistered index for an embedding type: exact if the type is listed
+     * in VECTOR_INDEX_EXACT_TYPES, IVF-PQ if it is listed in VECTOR_INDEX_IVFPQ_TYPES, HNSW
+     * with the configured parameters otherwise.
+     *
+     * @param loader Source of full vectors that IVF-PQ indexes rerank with, or null
+     */
+    public static VectorIndex newIndex(String embeddingType, IvfPqIndex.VectorLoader loader) {
+        if (EXACT_TYPES.contains(embeddingType)) {
+            return new FlatIndex();
+        }
+        if (IVFPQ_TYPES.contains(embeddingType)) {
+            IvfPqIndex index = new IvfPqIndex(IVFPQ_NLIST, IVFPQ_SUBQUANTIZERS, IVFPQ_NPROBE, IVFPQ_RERANK,
+                    IVFPQ_TRAINING_SAMPLE, loader);
+            if (IVFPQ_QUANTIZER_DIR != null && !IVFPQ_QUANTIZER_DIR.isEmpty()) {
+                File file = new File(IVFPQ_QUANTIZER_DIR, embeddingType + ".ivfpq");
+                if (!file.exists() || !loadQuantizer(index, file)) {
+                    index.setOnTrained(() -> saveQuantizer(index, file));
+                }
+            }
+            return index;
+        }
+        return new HnswIndex(M, EF_CONSTRUCTION, EF_SEARCH);
+    }
+
+    private static boolean loadQuantizer(IvfPqIndex index, File file) {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            index.loadQuantizer(in);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error loading IVF-PQ quantizer from " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Writes to a temporary file first, so a process loading the quantizer never sees a partial one.
+     */
+    private static void saveQuantizer(IvfPqIndex index, File file) {
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp))) {
+                index.writeQuantizer(out);
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("could not rename " + temp);
+            }
+        } catch (Exception e) {
+            System.err.println("Error saving IVF-PQ quantizer to " + file + ": " + e.getMessage());
+            temp.delete();
+        }
+    }
+
+    /**
+     * The index for an embedding type, or null if none has been built.
+     */
+    public static VectorIndex get(String embeddingType) {
+        return INDEXES.get(embeddingType);
+    }
+
+    /**
+     * Installs the index for an embedding type, replacing any previous one.
+     */
+    public static void register(String embeddingType, VectorIndex index) {
+        INDEXES.put(embeddingType, index);
+    }
+
+    /**
+     * Installs the index for an embedding type unless one is already installed.
+     *
+     * @return true if the index was installed
+     */
+    public static boolean registerIfAbsent(String embeddingType, VectorIndex index) {
+        return INDEXES.putIfAbsent(embeddingType, index) == null;
+    }
+
+    /**
+     * Removes the index for an embedding type if it is the given one.
+     */
+    public static void unregister(String embeddingType, VectorIndex index) {
+        INDEXES.remove(embeddingType, index);
+    }
+
+    /**
+     * Makes an unregistered index a write target for stored embeddings of its type while it is
+     * built, so it does not miss embeddings stored behind the build's scan. Follow with
+     * finishRebuild once it is registered or abandoned.
+     */
+    public static void startRebuild(String embeddingType, VectorIndex index) {
+        REBUILDING.computeIfAbsent(embeddingType, type -> ConcurrentHashMap.newKeySet()).add(index);
+    }
+
+    /**
+     * Stops sending stored embeddings to an index started with startRebuild.
+     */
+    public static void finishRebuild(String embeddingType, VectorIndex index) {
+        REBUILDING.computeIfPresent(embeddingType, (type, targets) -> {
+            targets.remove(index);
+            return targets.isEmpty() ? null : targets;
+        });
+    }
+
+    /**
+     * Process-wide profile attributes, for compiling filters on similarity searches.
+     */
+    public static ProfileAttributeIndex getAttributes() {
+        return ATTRIBUTES;
+    }
+
+    /**
+     * Adds a stored embedding to its type's index, if that index has been built, and records
+     * that the user has an embedding of the type.
+     * Failures are logged, not propagated, since the embedding itself was stored.
+     */
+    public static void recordStored(String embeddingType, String userId, float[] vector) {
+        ATTRIBUTES.recordEmbedding(userId, embeddingType);
+        // Rebuilt indexes first, so the embedding is in whichever index ends up registered
+        for (VectorIndex target : REBUILDING.getOrDefault(embeddingType, Set.of())) {
+            add(target, embeddingType, userId, vector);
+        }
+        VectorIndex index = INDEXES.get(embeddingType);
+        if (index != null) {
+            add(index, embeddingType, userId, vector);
+        }
+    }
+
+    private static void add(VectorIndex index, String embeddingType, String userId, float[] vector) {
+        try {
+            index.add(userId, vector);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error indexing " + embeddingType + " embedding for user " + userId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Drops every index and recorded attribute.
+     */
+    public static void clear() {
+        INDEXES.clear();
+        REBUILDING.clear();
+        ATTRIBUTES.clear();
+    }
+
+    /**
+     * Number of indexed vectors per embedding type.
+     */
+    public static Map<String, Integer> getSizes() {
+        Map<String, Integer> sizes = new HashMap<>();
+        INDEXES.forEach((type, index) -> sizes.put(type, index.size()));
+        return sizes;
+    }
+
+    private static Set<String> envSet(String name) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return Set.of();
+        }
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(type -> !type.isEmpty())
+                .collect(Collectors.toSet());
+    }
+}
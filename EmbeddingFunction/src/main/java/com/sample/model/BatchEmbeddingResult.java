@@ -0,0 +1,66 @@
+package com.sample.model;
+
+/**
+ * Result for a single input of a batch embedding request.
+ * Results are returned in input order; a failed item carries an error message instead of a vector.
+ */
+public class BatchEmbeddingResult {
+    private int index;
+    private EmbeddingVector embedding;
+    private String errorMessage;
+
+    // Default constructor (required for JSON deserialization)
+    public BatchEmbeddingResult() {}
+
+    private BatchEmbeddingResult(int index, EmbeddingVector embedding, String errorMessage) {
+        this.index = index;
+        this.embedding = embedding;
+        this.errorMessage = errorMessage;
+    }
+
+    public static BatchEmbeddingResult success(int index, EmbeddingVector embedding) {
+        return new BatchEmbeddingResult(index, embedding, null);
+    }
+
+    public static BatchEmbeddingResult failure(int index, String errorMessage) {
+        return new BatchEmbeddingResult(index, null, errorMessage);
+    }
+
+    public boolean isSuccess() {
+        return errorMessage == null;
+    }
+
+    // Getters and Setters
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public EmbeddingVector getEmbedding() {
+        return embedding;
+    }
+
+    public void setEmbedding(EmbeddingVector embedding) {
+        this.embedding = embedding;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchEmbeddingResult{" +
+                "index=" + index +
+                (isSuccess() ? ", dimensions=" + (embedding != null ? embedding.dimension() : 0)
+                             : ", errorMessage='" + errorMessage + '\'') +
+                '}';
+    }
+}
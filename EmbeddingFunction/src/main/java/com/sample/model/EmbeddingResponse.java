@@ -21,6 +21,11 @@ public class EmbeddingResponse {
         this.embedding = embedding;
     }
 
+    // Constructor for a float32 embedding response (serialized as a JSON number array)
+    public EmbeddingResponse(EmbeddingVector embedding) {
+        this.embedding = embedding;
+    }
+
     // Getter
     public Object getEmbedding() {
         return embedding;
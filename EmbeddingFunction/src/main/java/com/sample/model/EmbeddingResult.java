@@ -1,11 +1,14 @@
 package com.sample.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 /**
  * Represents the result of generating an embedding
  */
 public class EmbeddingResult {
     private String embeddingId;
-    private double[] embeddingVector;
+    private EmbeddingVector embeddingVector;
     private String sourceType;
     private long timestamp;
     private int dimensions;
@@ -13,12 +16,16 @@ public class EmbeddingResult {
     public EmbeddingResult() {
     }
     
-    public EmbeddingResult(String embeddingId, double[] embeddingVector, String sourceType) {
+    public EmbeddingResult(String embeddingId, EmbeddingVector embeddingVector, String sourceType) {
         this.embeddingId = embeddingId;
         this.embeddingVector = embeddingVector;
         this.sourceType = sourceType;
         this.timestamp = System.currentTimeMillis();
-        this.dimensions = embeddingVector != null ? embeddingVector.length : 0;
+        this.dimensions = embeddingVector != null ? embeddingVector.dimension() : 0;
+    }
+    
+    public EmbeddingResult(String embeddingId, double[] embeddingVector, String sourceType) {
+        this(embeddingId, embeddingVector != null ? EmbeddingVector.of(embeddingVector) : null, sourceType);
     }
     
     public String getEmbeddingId() {
@@ -29,13 +36,27 @@ public class EmbeddingResult {
         this.embeddingId = embeddingId;
     }
     
-    public double[] getEmbeddingVector() {
+    // Serialized under the original field name, as a plain number array
+    @JsonProperty("embeddingVector")
+    public EmbeddingVector getVector() {
         return embeddingVector;
     }
     
-    public void setEmbeddingVector(double[] embeddingVector) {
+    @JsonProperty("embeddingVector")
+    public void setVector(EmbeddingVector embeddingVector) {
         this.embeddingVector = embeddingVector;
-        this.dimensions = embeddingVector != null ? embeddingVector.length : 0;
+        this.dimensions = embeddingVector != null ? embeddingVector.dimension() : 0;
+    }
+    
+    // double[] adapters for existing callers
+    @JsonIgnore
+    public double[] getEmbeddingVector() {
+        return embeddingVector != null ? embeddingVector.toDoubleArray() : null;
+    }
+    
+    @JsonIgnore
+    public void setEmbeddingVector(double[] embeddingVector) {
+        setVector(embeddingVector != null ? EmbeddingVector.of(embeddingVector) : null);
     }
     
     public String getSourceType() {
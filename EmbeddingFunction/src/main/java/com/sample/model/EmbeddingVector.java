@@ -0,0 +1,118 @@
+package com.sample.model;
+
+import java.util.Arrays;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.sample.util.VectorMath;
+
+/**
+ * Immutable float32 embedding vector.
+ * Titan returns float32 values, so storing them as float[] halves heap, JSON and
+ * DynamoDB item size compared to double[] with no loss of precision. The L2 norm is
+ * computed once on construction, so cosine similarity costs a single dot product.
+ *
+ * Serializes to and from a plain JSON number array, which keeps the stored and API
+ * formats compatible with the previous double[] representation.
+ */
+public final class EmbeddingVector {
+    private final float[] values;
+    private final double norm;
+
+    private EmbeddingVector(float[] values) {
+        this.values = values;
+        this.norm = VectorMath.norm(values);
+    }
+
+    /**
+     * Creates a vector from float values. The array is copied.
+     */
+    @JsonCreator
+    public static EmbeddingVector of(float[] values) {
+        return new EmbeddingVector(values.clone());
+    }
+
+    /**
+     * Creates a vector from double values, narrowing each to float32.
+     */
+    public static EmbeddingVector of(double[] values) {
+        float[] floats = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            floats[i] = (float) values[i];
+        }
+        return new EmbeddingVector(floats);
+    }
+
+    /**
+     * Creates a vector that takes ownership of the given array. The caller must not
+     * modify the array afterwards.
+     */
+    public static EmbeddingVector wrap(float[] values) {
+        return new EmbeddingVector(values);
+    }
+
+    public int dimension() {
+        return values.length;
+    }
+
+    public float get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Returns the precomputed L2 norm.
+     */
+    public double norm() {
+        return norm;
+    }
+
+    /**
+     * Returns a copy of the values as float[].
+     */
+    @JsonValue
+    public float[] toFloatArray() {
+        return values.clone();
+    }
+
+    /**
+     * Returns the values widened to double[], for callers that still work with double[].
+     */
+    public double[] toDoubleArray() {
+        double[] doubles = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            doubles[i] = values[i];
+        }
+        return doubles;
+    }
+
+    public double dot(EmbeddingVector other) {
+        return VectorMath.dot(values, other.values);
+    }
+
+    /**
+     * Cosine similarity using the precomputed norms. Returns 0 if either vector is all zeros.
+     */
+    public double cosineSimilarity(EmbeddingVector other) {
+        if (norm == 0.0 || other.norm == 0.0) {
+            return 0.0;
+        }
+        return dot(other) / (norm * other.norm);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof EmbeddingVector)) return false;
+        return Arrays.equals(values, ((EmbeddingVector) o).values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return "EmbeddingVector{dimension=" + values.length + ", norm=" + norm + '}';
+    }
+}
@@ -0,0 +1,153 @@
+package com.sample.model;
+
+import com.sample.util.VectorMath;
+
+/**
+ * Int8 scalar-quantized embedding vector with a per-vector scale and offset.
+ * Each value is stored as a signed byte code c, and dequantizes as
+ * offset + scale * (c + 128), so the vector's [min, max] range maps onto 256 levels.
+ *
+ * The code sum and the norm are precomputed, so dot products and cosine similarity
+ * between two quantized vectors need only an integer dot product over the codes.
+ */
+public final class QuantizedVector {
+    private static final int CODE_BIAS = 128;
+
+    private final byte[] codes;
+    private final float scale;
+    private final float offset;
+    private final long codeSum;
+    private final long signedCodeSum;
+    private final double norm;
+
+    private QuantizedVector(byte[] codes, float scale, float offset) {
+        this.codes = codes;
+        this.scale = scale;
+        this.offset = offset;
+        long sum = 0;
+        long squareSum = 0;
+        for (byte code : codes) {
+            int level = code + CODE_BIAS;
+            sum += level;
+            squareSum += level * level;
+        }
+        this.codeSum = sum;
+        this.signedCodeSum = sum - (long) CODE_BIAS * codes.length;
+        // |v|^2 = n*o^2 + 2*o*s*sum(u) + s^2*sum(u^2)
+        double squared = (double) codes.length * offset * offset
+                + 2.0 * offset * scale * sum
+                + (double) scale * scale * squareSum;
+        this.norm = Math.sqrt(Math.max(0.0, squared));
+    }
+
+    /**
+     * Quantizes a float32 vector to int8 codes using its own min/max range.
+     */
+    public static QuantizedVector quantize(EmbeddingVector vector) {
+        int dimension = vector.dimension();
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < dimension; i++) {
+            float value = vector.get(i);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        if (dimension == 0) {
+            return new QuantizedVector(new byte[0], 0f, 0f);
+        }
+
+        float scale = (max - min) / 255f;
+        byte[] codes = new byte[dimension];
+        if (scale > 0f) {
+            for (int i = 0; i < dimension; i++) {
+                int level = Math.round((vector.get(i) - min) / scale);
+                codes[i] = (byte) (Math.max(0, Math.min(255, level)) - CODE_BIAS);
+            }
+        } else {
+            // Constant vector: every value equals the offset
+            for (int i = 0; i < dimension; i++) {
+                codes[i] = (byte) -CODE_BIAS;
+            }
+        }
+        return new QuantizedVector(codes, scale, min);
+    }
+
+    /**
+     * Creates a quantized vector from stored codes. The array is not copied.
+     */
+    public static QuantizedVector wrap(byte[] codes, float scale, float offset) {
+        return new QuantizedVector(codes, scale, offset);
+    }
+
+    public int dimension() {
+        return codes.length;
+    }
+
+    public float scale() {
+        return scale;
+    }
+
+    public float offset() {
+        return offset;
+    }
+
+    /**
+     * Returns a copy of the raw int8 codes.
+     */
+    public byte[] codes() {
+        return codes.clone();
+    }
+
+    public EmbeddingVector dequantize() {
+        float[] values = new float[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            values[i] = offset + scale * (codes[i] + CODE_BIAS);
+        }
+        return EmbeddingVector.wrap(values);
+    }
+
+    /**
+     * Integer dot product of the biased codes (levels 0..255).
+     */
+    public long codeDot(QuantizedVector other) {
+        if (codes.length != other.codes.length) {
+            throw new IllegalArgumentException("Embeddings must have the same dimension");
+        }
+        // sum((a + 128)(b + 128)) = sum(a*b) + 128*(sum(a) + sum(b)) + n*128^2, over the signed codes
+        return VectorMath.dot(codes, other.codes)
+                + CODE_BIAS * (signedCodeSum + other.signedCodeSum)
+                + (long) codes.length * CODE_BIAS * CODE_BIAS;
+    }
+
+    /**
+     * Approximate dot product of the dequantized vectors, computed from the integer code dot product:
+     * sum((o1 + s1*u1)(o2 + s2*u2)) = n*o1*o2 + o1*s2*sum(u2) + o2*s1*sum(u1) + s1*s2*sum(u1*u2).
+     */
+    public double dot(QuantizedVector other) {
+        long levelDot = codeDot(other);
+        return (double) codes.length * offset * other.offset
+                + (double) offset * other.scale * other.codeSum
+                + (double) other.offset * scale * codeSum
+                + (double) scale * other.scale * levelDot;
+    }
+
+    /**
+     * L2 norm of the dequantized vector, precomputed from the codes.
+     */
+    public double norm() {
+        return norm;
+    }
+
+    /**
+     * Approximate cosine similarity. Returns 0 if either vector is all zeros.
+     */
+    public double cosineSimilarity(QuantizedVector other) {
+        double normProduct = norm * other.norm;
+        return normProduct == 0.0 ? 0.0 : dot(other) / normProduct;
+    }
+
+    @Override
+    public String toString() {
+        return "QuantizedVector{dimension=" + codes.length + ", scale=" + scale + ", offset=" + offset + '}';
+    }
+}
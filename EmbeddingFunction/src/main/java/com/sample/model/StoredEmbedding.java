@@ -0,0 +1,107 @@
+package com.sample.model;
+
+import com.sample.util.JsonUtils;
+
+/**
+ * One embedding item as stored in the UserEmbeddings table: the vector, its metadata and creation time.
+ * Metadata read from the table is kept as JSON and only parsed on the first call to {@link #getMetadata()}.
+ */
+public class StoredEmbedding {
+    private String userId;
+    private String embeddingType;
+    private EmbeddingVector vector;
+    private EmbeddingMetadata metadata;
+    private String metadataJson;
+    private long createdAt;
+
+    // Default constructor (required for JSON deserialization)
+    public StoredEmbedding() {}
+
+    public StoredEmbedding(String userId, String embeddingType, EmbeddingVector vector,
+                           EmbeddingMetadata metadata, long createdAt) {
+        this.userId = userId;
+        this.embeddingType = embeddingType;
+        this.vector = vector;
+        this.metadata = metadata;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Creates a stored embedding whose metadata is decoded from JSON when first accessed.
+     */
+    public StoredEmbedding(String userId, String embeddingType, EmbeddingVector vector,
+                           String metadataJson, long createdAt) {
+        this.userId = userId;
+        this.embeddingType = embeddingType;
+        this.vector = vector;
+        this.metadataJson = metadataJson;
+        this.createdAt = createdAt;
+    }
+
+    // Getters and Setters
+    public String getUserId() {
+        return userId;
+    }
+
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    public String getEmbeddingType() {
+        return embeddingType;
+    }
+
+    public void setEmbeddingType(String embeddingType) {
+        this.embeddingType = embeddingType;
+    }
+
+    public EmbeddingVector getVector() {
+        return vector;
+    }
+
+    public void setVector(EmbeddingVector vector) {
+        this.vector = vector;
+    }
+
+    public synchronized EmbeddingMetadata getMetadata() {
+        if (metadata == null && metadataJson != null) {
+            try {
+                metadata = JsonUtils.fromJson(metadataJson, EmbeddingMetadata.class);
+            } catch (Exception e) {
+                throw new RuntimeException("Error decoding embedding metadata: " + e.getMessage(), e);
+            }
+            metadataJson = null;
+        }
+        return metadata;
+    }
+
+    public synchronized void setMetadata(EmbeddingMetadata metadata) {
+        this.metadata = metadata;
+        this.metadataJson = null;
+    }
+
+    /**
+     * Whether the item has metadata, without decoding it.
+     */
+    public synchronized boolean hasMetadata() {
+        return metadata != null || metadataJson != null;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "StoredEmbedding{" +
+                "userId='" + userId + '\'' +
+                ", embeddingType='" + embeddingType + '\'' +
+                ", dimensions=" + (vector != null ? vector.dimension() : 0) +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+}
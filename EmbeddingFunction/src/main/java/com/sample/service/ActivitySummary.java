@@ -0,0 +1,155 @@
+package com.sample.service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Running totals behind the activity summary text of a user's logs.
+ * This class handles:
+ * 1. Folding in classified events one at a time, as the streaming analyses do
+ * 2. Folding in pre-aggregated counts, as returned by a CloudWatch Logs Insights stats query,
+ *    through the same counting rules
+ * 3. Keeping the {@value #RECENT_EVENT_LIMIT} most recent events for the activity sequence
+ * 4. Merging summaries of adjacent time ranges, as kept by {@link UserLogAggregates}
+ */
+public final class ActivitySummary implements Consumer<LogFeatures> {
+
+    static final int RECENT_EVENT_LIMIT = 10;
+
+    final Map<String, Integer> apiPathCounts = new HashMap<>();
+    final Map<String, Integer> statusCodeCounts = new HashMap<>();
+    final Map<String, Integer> errorCounts = new HashMap<>();
+    final Map<String, Integer> tradingActivityCounts = new HashMap<>();
+    final Map<String, Integer> securityEventCounts = new HashMap<>();
+    final Map<String, Integer> complianceCheckCounts = new HashMap<>();
+    final Map<String, Integer> accountActivityCounts = new HashMap<>();
+    final RecentEvents recentEvents = new RecentEvents(RECENT_EVENT_LIMIT);
+
+    int logCount;
+    int successfulRequests;
+    int failedRequests;
+    int tradingErrors;
+    int securityAlerts;
+    int complianceViolations;
+
+    @Override
+    public void accept(LogFeatures log) {
+        recentEvents.add(log);
+        count(log);
+    }
+
+    /**
+     * Counts an event without keeping it as a recent event.
+     */
+    void count(LogFeatures log) {
+        addEvents(1, log.getApiPath(), log.getStatusCode(),
+                log.keyword(LogClassifier.Category.ERROR),
+                log.keyword(LogClassifier.Category.TRADE), log.hasTradingErrorTerm(),
+                log.keyword(LogClassifier.Category.SECURITY), log.hasSecurityAlertTerm(),
+                log.keyword(LogClassifier.Category.COMPLIANCE), log.hasComplianceViolationTerm(),
+                log.getAccountActivity());
+    }
+
+    /**
+     * Adds a recent event without counting it; its counts arrive through {@link #addEvents}.
+     */
+    void addRecent(LogFeatures log) {
+        recentEvents.add(log);
+    }
+
+    /**
+     * Counts a number of events that share the same features. Null means the feature is absent.
+     */
+    void addEvents(int events, String path, String statusCode, String error,
+                   String tradeAction, boolean tradingErrorTerm,
+                   String securityEvent, boolean securityAlertTerm,
+                   String complianceCheck, boolean complianceViolationTerm,
+                   String accountActivity) {
+        logCount += events;
+
+        // Extract API path if present
+        if (path != null) {
+            apiPathCounts.merge(path, events, Integer::sum);
+        }
+
+        // Extract status code if present
+        if (statusCode != null) {
+            statusCodeCounts.merge(statusCode, events, Integer::sum);
+
+            // Count successful vs failed requests
+            if (statusCode.startsWith("2")) {
+                successfulRequests += events;
+            } else if (statusCode.startsWith("4") || statusCode.startsWith("5")) {
+                failedRequests += events;
+            }
+        }
+
+        // Extract errors if present
+        if (error != null) {
+            errorCounts.merge(error, events, Integer::sum);
+        }
+
+        // Extract trading activities
+        if (tradeAction != null) {
+            tradingActivityCounts.merge(tradeAction, events, Integer::sum);
+
+            // Count trading errors
+            if (tradingErrorTerm) {
+                tradingErrors += events;
+            }
+        }
+
+        // Extract security events
+        if (securityEvent != null) {
+            securityEventCounts.merge(securityEvent, events, Integer::sum);
+
+            // Count security alerts
+            if (securityAlertTerm) {
+                securityAlerts += events;
+            }
+        }
+
+        // Extract compliance checks
+        if (complianceCheck != null) {
+            complianceCheckCounts.merge(complianceCheck, events, Integer::sum);
+
+            // Count compliance violations
+            if (complianceViolationTerm) {
+                complianceViolations += events;
+            }
+        }
+
+        // Extract account activities
+        if (accountActivity != null) {
+            accountActivityCounts.merge(accountActivity, events, Integer::sum);
+        }
+    }
+
+    /**
+     * Adds the counts and recent events of another summary.
+     */
+    void merge(ActivitySummary other) {
+        logCount += other.logCount;
+        other.apiPathCounts.forEach((key, count) -> apiPathCounts.merge(key, count, Integer::sum));
+        other.statusCodeCounts.forEach((key, count) -> statusCodeCounts.merge(key, count, Integer::sum));
+        other.errorCounts.forEach((key, count) -> errorCounts.merge(key, count, Integer::sum));
+        other.tradingActivityCounts.forEach((key, count) -> tradingActivityCounts.merge(key, count, Integer::sum));
+        other.securityEventCounts.forEach((key, count) -> securityEventCounts.merge(key, count, Integer::sum));
+        other.complianceCheckCounts.forEach((key, count) -> complianceCheckCounts.merge(key, count, Integer::sum));
+        other.accountActivityCounts.forEach((key, count) -> accountActivityCounts.merge(key, count, Integer::sum));
+        successfulRequests += other.successfulRequests;
+        failedRequests += other.failedRequests;
+        tradingErrors += other.tradingErrors;
+        securityAlerts += other.securityAlerts;
+        complianceViolations += other.complianceViolations;
+        other.recentEvents.mostRecentFirst().forEach(recentEvents::add);
+    }
+
+    /**
+     * @return Number of events summarized
+     */
+    public int getLogCount() {
+        return logCount;
+    }
+}
@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Map;
 
 import com.sample.model.EmbeddingMetadata;
+import com.sample.model.EmbeddingVector;
 
 /**
  * Service for generating embeddings from user behavioral data.
@@ -39,6 +40,14 @@ public class BehavioralEmbeddingService {
         this.embeddingService = new EmbeddingService();
         this.dynamoDBService = new EnhancedDynamoDBService();
     }
+
+    /**
+     * Writes embeddings still buffered by write-behind (EMBEDDING_WRITE_BEHIND=true).
+     * Call before the invocation returns; a no-op otherwise.
+     */
+    public void flush() {
+        dynamoDBService.flush();
+    }
     
     /**
      * Generates an embedding from user behavioral data.
@@ -53,7 +62,7 @@ public class BehavioralEmbeddingService {
         
         // 2. Generate embedding using the processed text
         long startTime = System.currentTimeMillis();
-        double[] embedding = embeddingService.generateEmbedding(processedText);
+        EmbeddingVector embedding = embeddingService.generateEmbeddingVector(processedText);
         long endTime = System.currentTimeMillis();
         
         // 3. Create metadata
@@ -70,7 +79,7 @@ public class BehavioralEmbeddingService {
             metadata
         );
         
-        return embedding;
+        return embedding.toDoubleArray();
     }
     
     /**
@@ -1,26 +1,22 @@
 package com.sample.service;
 
+import java.nio.file.Paths;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import com.sample.model.EmbeddingMetadata;
-
-// Remove CloudWatch imports and use mock implementations
-// import software.amazon.awssdk.services.cloudwatch.CloudWatchClient;
-// import software.amazon.awssdk.services.cloudwatchlogs.CloudWatchLogsClient;
-// import software.amazon.awssdk.services.cloudwatchlogs.model.FilterLogEventsRequest;
-// import software.amazon.awssdk.services.cloudwatchlogs.model.FilterLogEventsResponse;
-// import software.amazon.awssdk.services.cloudwatchlogs.model.FilteredLogEvent;
-// import software.amazon.awssdk.services.cloudwatchlogs.model.GetLogEventsRequest;
-// import software.amazon.awssdk.services.cloudwatchlogs.model.GetLogEventsResponse;
-// import software.amazon.awssdk.services.cloudwatchlogs.model.OutputLogEvent;
+import com.sample.model.EmbeddingVector;
+import com.sample.util.Deadline;
+import com.sample.util.EnvConfig;
 
 /**
  * Service for generating embeddings from CloudWatch logs.
@@ -28,13 +24,33 @@ import com.sample.model.EmbeddingMetadata;
  * that can be used for anomaly detection, user journey analysis, and system monitoring.
  * It also identifies high client effort patterns such as repeated errors, excessive navigation,
  * channel switching, and repeated button clicks.
+ *
+ * Log events are read from a {@link LogEventSource} chosen by LOG_EVENT_SOURCE: "cloudwatch"
+ * (FilterLogEvents), "replay" (captured exports under LOG_REPLAY_PATH) or "sample" (generated
+ * demo logs, the default). Every analysis consumes the events as a stream, folding each one
+ * into running totals, so memory does not grow with the length of the window.
+ *
+ * With LOG_SUMMARIZER set to "insights" the activity summary behind the log embedding is
+ * aggregated by CloudWatch Logs Insights instead, and only counts are transferred. If the
+ * Insights queries fail, the summary is built locally from the streamed events ("local", the
+ * default).
+ *
+ * With LOG_AGGREGATES_TABLE set, both embeddings read per-user rolling aggregates instead, kept in
+ * a {@link LogAggregateStore} for the last LOG_AGGREGATE_RETENTION_HOURS (default 168) hours. Each
+ * call folds in only the events since the stored checkpoint, so an hourly refresh reads an hour of
+ * logs whatever the window. Windows are then resolved to the hour.
+ *
+ * Callers that need several views of the same window, such as a dashboard refresh, take a
+ * {@link LogSnapshot} and pass it to each analysis, or call {@link #analyzeAll(LogSnapshot)}: the
+ * logs are then read and classified once and folded into every analysis in the same pass.
  */
 public class CloudWatchLogEmbeddingService {
     
     private final EmbeddingService embeddingService;
     private final EnhancedDynamoDBService dynamoDBService;
-    // Use a mock implementation instead of the actual CloudWatchLogsClient
-    // private final CloudWatchLogsClient cloudWatchLogsClient;
+    private final LogEventSource logEventSource;
+    private final LogSummarizer logSummarizer;
+    private final LogAggregateStore logAggregateStore;
     
     // Constants for log event types
     public static final String LOG_TYPE_API_GATEWAY = "api_gateway";
@@ -53,18 +69,9 @@ public class CloudWatchLogEmbeddingService {
     // Patterns for extracting information from logs
     private static final Pattern USER_ID_PATTERN = Pattern.compile("userId[\"']?\\s*[:=]\\s*[\"']?([\\w-]+)[\"']?", Pattern.CASE_INSENSITIVE);
     private static final Pattern ACCOUNT_ID_PATTERN = Pattern.compile("accountId[\"']?\\s*[:=]\\s*[\"']?([\\w-]+)[\"']?", Pattern.CASE_INSENSITIVE);
-    private static final Pattern API_PATH_PATTERN = Pattern.compile("\"?path\"?\\s*[:=]\\s*\"?(/[\\w/]+)\"?", Pattern.CASE_INSENSITIVE);
-    private static final Pattern HTTP_METHOD_PATTERN = Pattern.compile("\"?httpMethod\"?\\s*[:=]\\s*\"?(GET|POST|PUT|DELETE|PATCH)\"?", Pattern.CASE_INSENSITIVE);
-    private static final Pattern STATUS_CODE_PATTERN = Pattern.compile("\"?statusCode\"?\\s*[:=]\\s*\"?(\\d{3})\"?", Pattern.CASE_INSENSITIVE);
-    private static final Pattern ERROR_PATTERN = Pattern.compile("\\b(error|exception|failed|timeout|denied|rejected)\\b", Pattern.CASE_INSENSITIVE);
-    private static final Pattern TRADE_PATTERN = Pattern.compile("\\b(trade|order|buy|sell|execute|cancel|modify)\\b", Pattern.CASE_INSENSITIVE);
-    private static final Pattern SECURITY_PATTERN = Pattern.compile("\\b(login|logout|auth|password|mfa|2fa|verification|suspicious)\\b", Pattern.CASE_INSENSITIVE);
-    private static final Pattern COMPLIANCE_PATTERN = Pattern.compile("\\b(compliance|regulatory|restriction|limit|threshold|kyc|aml|fraud)\\b", Pattern.CASE_INSENSITIVE);
-    
-    // Patterns for detecting high client effort
-    private static final Pattern BUTTON_CLICK_PATTERN = Pattern.compile("\\b(click|button|submit|tap)\\b", Pattern.CASE_INSENSITIVE);
-    private static final Pattern NAVIGATION_PATTERN = Pattern.compile("\\b(navigate|page|view|screen|back|forward)\\b", Pattern.CASE_INSENSITIVE);
-    private static final Pattern CHANNEL_SWITCH_PATTERN = Pattern.compile("\\b(channel|switch|mobile|web|app|desktop|device)\\b", Pattern.CASE_INSENSITIVE);
+    
+    // Single-pass classifier for the keyword categories and fields the analyses read
+    private static final LogClassifier CLASSIFIER = new LogClassifier();
     
     // Thresholds for high client effort detection
     private static final int ERROR_THRESHOLD = 3; // Number of errors in a session
@@ -73,25 +80,122 @@ public class CloudWatchLogEmbeddingService {
     private static final int CHANNEL_SWITCH_THRESHOLD = 2; // Number of channel switches
     private static final long TIME_WINDOW_MS = 300000; // 5 minutes in milliseconds
     
+    private static final long LOG_AGGREGATE_RETENTION_HOURS = EnvConfig.getLong("LOG_AGGREGATE_RETENTION_HOURS", 168);
+    
     /**
-     * Constructor that initializes the service with default clients.
+     * Constructor that initializes the service with default clients and the configured log source.
      */
     public CloudWatchLogEmbeddingService() {
         this.embeddingService = new EmbeddingService();
         this.dynamoDBService = new EnhancedDynamoDBService();
-        // Use a mock implementation instead of the actual CloudWatchLogsClient
-        // this.cloudWatchLogsClient = CloudWatchLogsClient.create();
+        this.logEventSource = configuredLogEventSource();
+        this.logSummarizer = configuredLogSummarizer();
+        this.logAggregateStore = configuredLogAggregateStore();
     }
     
     /**
      * Constructor that allows for dependency injection (useful for testing).
+     * Logs come from the generated sample source.
      */
     public CloudWatchLogEmbeddingService(EmbeddingService embeddingService, 
                                         EnhancedDynamoDBService dynamoDBService) {
+        this(embeddingService, dynamoDBService, null);
+    }
+    
+    /**
+     * Constructor that allows for dependency injection (useful for testing).
+     * 
+     * @param logEventSource Where to read log events from, or null for the generated sample source
+     */
+    public CloudWatchLogEmbeddingService(EmbeddingService embeddingService, 
+                                        EnhancedDynamoDBService dynamoDBService,
+                                        LogEventSource logEventSource) {
+        this(embeddingService, dynamoDBService, logEventSource, null);
+    }
+    
+    /**
+     * Constructor that allows for dependency injection (useful for testing).
+     * 
+     * @param logEventSource Where to read log events from, or null for the generated sample source
+     * @param logSummarizer Where to get activity summaries from, or null to summarize the streamed events
+     */
+    public CloudWatchLogEmbeddingService(EmbeddingService embeddingService, 
+                                        EnhancedDynamoDBService dynamoDBService,
+                                        LogEventSource logEventSource,
+                                        LogSummarizer logSummarizer) {
+        this(embeddingService, dynamoDBService, logEventSource, logSummarizer, null);
+    }
+    
+    /**
+     * Constructor that allows for dependency injection (useful for testing).
+     * 
+     * @param logEventSource Where to read log events from, or null for the generated sample source
+     * @param logSummarizer Where to get activity summaries from, or null to summarize the streamed events
+     * @param logAggregateStore Where to keep rolling log aggregates, or null to read every window in full
+     */
+    public CloudWatchLogEmbeddingService(EmbeddingService embeddingService, 
+                                        EnhancedDynamoDBService dynamoDBService,
+                                        LogEventSource logEventSource,
+                                        LogSummarizer logSummarizer,
+                                        LogAggregateStore logAggregateStore) {
         this.embeddingService = embeddingService;
         this.dynamoDBService = dynamoDBService;
-        // Use a mock implementation instead of the actual CloudWatchLogsClient
-        // this.cloudWatchLogsClient = cloudWatchLogsClient;
+        this.logEventSource = logEventSource != null ? logEventSource : this::sampleEvents;
+        this.logSummarizer = logSummarizer;
+        this.logAggregateStore = logAggregateStore;
+    }
+
+    /**
+     * Writes embeddings still buffered by write-behind (EMBEDDING_WRITE_BEHIND=true).
+     * Call before the invocation returns; a no-op otherwise.
+     */
+    public void flush() {
+        dynamoDBService.flush();
+    }
+    
+    /**
+     * The log source selected by LOG_EVENT_SOURCE.
+     */
+    private LogEventSource configuredLogEventSource() {
+        String source = System.getenv("LOG_EVENT_SOURCE");
+        if (source == null || source.isEmpty() || source.equalsIgnoreCase("sample")) {
+            return this::sampleEvents;
+        }
+        if (source.equalsIgnoreCase("cloudwatch")) {
+            return new CloudWatchLogsEventSource();
+        }
+        String replayPath = System.getenv("LOG_REPLAY_PATH");
+        if (source.equalsIgnoreCase("replay") && replayPath != null && !replayPath.isEmpty()) {
+            return new LogExportReplaySource(Paths.get(replayPath));
+        }
+        System.err.println("Invalid value for LOG_EVENT_SOURCE: " + source + ", using sample");
+        return this::sampleEvents;
+    }
+    
+    /**
+     * The summarizer selected by LOG_SUMMARIZER, or null to summarize locally.
+     */
+    private static LogSummarizer configuredLogSummarizer() {
+        String summarizer = System.getenv("LOG_SUMMARIZER");
+        if (summarizer == null || summarizer.isEmpty() || summarizer.equalsIgnoreCase("local")) {
+            return null;
+        }
+        if (summarizer.equalsIgnoreCase("insights")) {
+            return new InsightsLogSummarizer();
+        }
+        System.err.println("Invalid value for LOG_SUMMARIZER: " + summarizer + ", using local");
+        return null;
+    }
+    
+    /**
+     * The aggregate store in LOG_AGGREGATES_TABLE, or null if none is configured.
+     */
+    private static LogAggregateStore configuredLogAggregateStore() {
+        String tableName = System.getenv("LOG_AGGREGATES_TABLE");
+        if (tableName == null || tableName.isEmpty()) {
+            return null;
+        }
+        return new DynamoDBLogAggregateStore(tableName);
     }
     
     /**
@@ -103,26 +207,42 @@ public class CloudWatchLogEmbeddingService {
      * @return The generated embedding
      */
     public double[] generateUserLogEmbedding(String userId, String logGroupName, int hoursBack) throws Exception {
-        // 1. Fetch logs for the user
-        List<LogEvent> userLogs = fetchUserLogs(userId, logGroupName, hoursBack);
-        
-        if (userLogs.isEmpty()) {
-            throw new IllegalArgumentException("No logs found for user: " + userId);
-        }
+        // 1. Summarize the user's logs
+        ActivitySummary summary = summarizeUserLogs(userId, logGroupName, hoursBack);
+        return storeUserLogEmbedding(userId, logGroupName, hoursBack, summary);
+    }
+    
+    /**
+     * Generates an embedding from the logs of a snapshot.
+     * 
+     * @param snapshot The user's logs for the window
+     * @return The generated embedding
+     */
+    public double[] generateUserLogEmbedding(LogSnapshot snapshot) throws Exception {
+        return storeUserLogEmbedding(snapshot.getUserId(), snapshot.getLogGroupName(), snapshot.getHoursBack(),
+                snapshot.summary);
+    }
+    
+    /**
+     * Embeds an activity summary and stores the embedding with its metadata.
+     */
+    private double[] storeUserLogEmbedding(String userId, String logGroupName, int hoursBack,
+                                           ActivitySummary summary) throws Exception {
+        int logCount = summary.getLogCount();
         
         // 2. Process logs into a format suitable for embedding
-        String processedText = processUserLogs(userLogs);
+        String processedText = processUserLogs(summary);
         
         // 3. Generate embedding
         long startTime = System.currentTimeMillis();
-        double[] embedding = embeddingService.generateEmbedding(processedText);
+        EmbeddingVector embedding = embeddingService.generateEmbeddingVector(processedText);
         long endTime = System.currentTimeMillis();
         
         // 4. Create metadata
         EmbeddingMetadata metadata = new EmbeddingMetadata(EMBEDDING_TYPE_CLOUDWATCH, "amazon.titan-embed-text-v1");
         metadata.addEncodingDetail("log_group", logGroupName);
         metadata.addEncodingDetail("hours_back", hoursBack);
-        metadata.addEncodingDetail("log_count", userLogs.size());
+        metadata.addEncodingDetail("log_count", logCount);
         metadata.addEncodingDetail("timestamp", System.currentTimeMillis());
         metadata.addPerformanceMetric("generation_time_ms", endTime - startTime);
         
@@ -134,16 +254,219 @@ public class CloudWatchLogEmbeddingService {
             metadata
         );
         
-        return embedding;
+        return embedding.toDoubleArray();
+    }
+    
+    /**
+     * Summarizes a user's logs for the window: from the rolling aggregates if they are kept, else
+     * with the configured summarizer if there is one, and otherwise, or if it fails, by streaming
+     * the events through the classifier.
+     * 
+     * @throws IllegalArgumentException If the window holds no logs for the user
+     */
+    ActivitySummary summarizeUserLogs(String userId, String logGroupName, int hoursBack) {
+        long endTime = System.currentTimeMillis();
+        long startTime = endTime - hoursBack * 3600000L;
+        UserLogAggregates aggregates = refreshLogAggregates(userId, logGroupName, startTime, endTime);
+        if (aggregates != null) {
+            ActivitySummary summary = aggregates.summary(startTime);
+            if (summary.getLogCount() == 0) {
+                throw new IllegalArgumentException("No logs found for user: " + userId);
+            }
+            return summary;
+        }
+        
+        if (logSummarizer != null) {
+            ActivitySummary summary = null;
+            try {
+                summary = logSummarizer.summarize(userId, logGroupName, startTime, endTime);
+            } catch (Deadline.ExceededException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                System.err.println("Error summarizing logs for user " + userId + ", summarizing locally: " + e.getMessage());
+            }
+            if (summary != null) {
+                if (summary.getLogCount() == 0) {
+                    throw new IllegalArgumentException("No logs found for user: " + userId);
+                }
+                return summary;
+            }
+        }
+        
+        ActivitySummary summary = new ActivitySummary();
+        streamUserLogs(userId, logGroupName, hoursBack, summary);
+        return summary;
+    }
+    
+    /**
+     * Brings the user's rolling log aggregates up to date and stores them. Only the events since
+     * the stored checkpoint are read; aggregates that do not cover the window, or whose checkpoint
+     * fell out of the retention, are rebuilt from the start of the window.
+     * 
+     * @return The refreshed aggregates, or null if none are kept, the window is longer than the
+     *         retention, or the stored aggregates cannot be loaded
+     */
+    UserLogAggregates refreshLogAggregates(String userId, String logGroupName, long startTime, long endTime) {
+        if (logAggregateStore == null || endTime - startTime > LOG_AGGREGATE_RETENTION_HOURS * 3600000L) {
+            return null;
+        }
+        UserLogAggregates aggregates;
+        try {
+            aggregates = logAggregateStore.load(userId, logGroupName);
+        } catch (Deadline.ExceededException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            System.err.println("Error loading log aggregates for user " + userId + ", reading the full window: " + e.getMessage());
+            return null;
+        }
+        
+        if (aggregates == null || aggregates.getRetentionHours() != LOG_AGGREGATE_RETENTION_HOURS) {
+            long version = aggregates != null ? aggregates.getVersion() : 0;
+            aggregates = new UserLogAggregates((int) LOG_AGGREGATE_RETENTION_HOURS, startTime);
+            aggregates.setVersion(version);
+        } else if (aggregates.getCoveredSince() > startTime
+                || aggregates.nextReadFrom() < endTime - LOG_AGGREGATE_RETENTION_HOURS * 3600000L) {
+            aggregates.reset(startTime);
+        }
+        
+        // Fold in the new events, collecting their effort signals to feed the detectors in order
+        ClientEffortAnalysis effort = new ClientEffortAnalysis();
+        aggregates.beginRefresh();
+        try (Stream<LogEvent> events = logEventSource.events(userId, logGroupName, aggregates.nextReadFrom(), endTime)) {
+            Iterator<LogEvent> iterator = events.iterator();
+            while (iterator.hasNext()) {
+                LogEvent event = iterator.next();
+                if (aggregates.advanceCheckpoint(event)) {
+                    LogFeatures log = CLASSIFIER.classify(event.getMessage(), event.getTimestamp());
+                    aggregates.count(log);
+                    effort.accept(log);
+                }
+            }
+        }
+        
+        List<NavigationEvent> navigationEvents = new ArrayList<>(effort.navigationEvents);
+        navigationEvents.sort(Comparator.comparingLong(NavigationEvent::getTimestamp));
+        for (NavigationEvent event : navigationEvents) {
+            aggregates.navigate(event.getPath(), event.getTimestamp());
+        }
+        List<ChannelEvent> channelEvents = new ArrayList<>(effort.channelEvents);
+        channelEvents.sort(Comparator.comparingLong(ChannelEvent::getTimestamp));
+        for (ChannelEvent event : channelEvents) {
+            aggregates.useChannel(event.getChannel(), event.getTimestamp());
+        }
+        for (Map.Entry<String, List<Long>> clicks : effort.buttonClicks.entrySet()) {
+            List<Long> timestamps = new ArrayList<>(clicks.getValue());
+            Collections.sort(timestamps);
+            for (long timestamp : timestamps) {
+                aggregates.click(clicks.getKey(), timestamp, BUTTON_CLICK_THRESHOLD, TIME_WINDOW_MS);
+            }
+        }
+        effort.highEffortEvents.mostRecentFirst().forEach(aggregates::addHighEffortEvent);
+        aggregates.pruneClicks(TIME_WINDOW_MS);
+        
+        try {
+            if (!logAggregateStore.save(userId, logGroupName, aggregates)) {
+                System.err.println("Log aggregates for user " + userId + " were refreshed concurrently, keeping the stored copy");
+            }
+        } catch (Deadline.ExceededException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            System.err.println("Error saving log aggregates for user " + userId + ": " + e.getMessage());
+        }
+        return aggregates;
+    }
+    
+    /**
+     * Streams a user's logs for the window through the classifier into an analysis pass.
+     * 
+     * @param pass Receives each classified event
+     * @return Number of events read
+     * @throws IllegalArgumentException If the window holds no logs for the user
+     */
+    private int streamUserLogs(String userId, String logGroupName, int hoursBack, Consumer<LogFeatures> pass) {
+        long endTime = System.currentTimeMillis();
+        return streamUserLogs(userId, logGroupName, endTime - hoursBack * 3600000L, endTime, pass);
+    }
+    
+    /**
+     * Streams a user's logs between two times, in epoch milliseconds, through the classifier into
+     * an analysis pass.
+     * 
+     * @throws IllegalArgumentException If the window holds no logs for the user
+     */
+    private int streamUserLogs(String userId, String logGroupName, long startTime, long endTime,
+                               Consumer<LogFeatures> pass) {
+        int logCount = 0;
+        try (Stream<LogEvent> events = logEventSource.events(userId, logGroupName, startTime, endTime)) {
+            Iterator<LogEvent> iterator = events.iterator();
+            while (iterator.hasNext()) {
+                LogEvent event = iterator.next();
+                pass.accept(CLASSIFIER.classify(event.getMessage(), event.getTimestamp()));
+                logCount++;
+            }
+        }
+        
+        if (logCount == 0) {
+            throw new IllegalArgumentException("No logs found for user: " + userId);
+        }
+        return logCount;
+    }
+    
+    /**
+     * Reads and classifies a user's logs for the window once, folding them into every analysis.
+     * Pass the snapshot to the analysis methods instead of the user and window to share the read.
+     * 
+     * @param userId User ID to filter logs for
+     * @param logGroupName CloudWatch log group name
+     * @param hoursBack Number of hours to look back for logs
+     * @return The snapshot of the window
+     * @throws IllegalArgumentException If the window holds no logs for the user
+     */
+    public LogSnapshot snapshotUserLogs(String userId, String logGroupName, int hoursBack) {
+        long endTime = System.currentTimeMillis();
+        long startTime = endTime - hoursBack * 3600000L;
+        LogSnapshot snapshot = new LogSnapshot(userId, logGroupName, hoursBack, startTime, endTime);
+        snapshot.logCount = streamUserLogs(userId, logGroupName, startTime, endTime, snapshot::accept);
+        return snapshot;
+    }
+    
+    /**
+     * Computes every log analysis of a user's window from a single read of the logs.
+     * 
+     * @param userId User ID to analyze
+     * @param logGroupName CloudWatch log group name
+     * @param hoursBack Number of hours to look back for logs
+     * @return Map of the behavior, client effort, trading and compliance analyses
+     */
+    public Map<String, Object> analyzeAll(String userId, String logGroupName, int hoursBack) throws Exception {
+        return analyzeAll(snapshotUserLogs(userId, logGroupName, hoursBack));
+    }
+    
+    /**
+     * Computes every log analysis of a snapshot.
+     * 
+     * @param snapshot The user's logs for the window
+     * @return Map of the behavior, client effort, trading and compliance analyses
+     */
+    public Map<String, Object> analyzeAll(LogSnapshot snapshot) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("user_id", snapshot.getUserId());
+        result.put("log_group", snapshot.getLogGroupName());
+        result.put("time_period_hours", snapshot.getHoursBack());
+        result.put("total_logs", snapshot.getLogCount());
+        result.put("behavior_analysis", analyzeUserBehavior(snapshot));
+        result.put("client_effort_analysis", clientEffortResults(snapshot.effort));
+        result.put("trading_analysis", analyzeTradingPatterns(snapshot));
+        result.put("compliance_analysis", analyzeCompliancePatterns(snapshot));
+        return result;
     }
     
     /**
-     * Fetches logs for a specific user from CloudWatch.
-     * This is a mock implementation that doesn't actually call CloudWatch.
+     * Generated sample logs for a user, spread over the window, for demos and tests.
+     * This is the log source used when no real one is configured.
      */
-    private List<LogEvent> fetchUserLogs(String userId, String logGroupName, int hoursBack) {
-        // In a real implementation, this would call CloudWatch Logs API
-        // For now, we'll generate sample logs
+    private Stream<LogEvent> sampleEvents(String userId, String logGroupName, long startTimeMillis, long endTimeMillis) {
+        long hoursBack = Math.max(1, (endTimeMillis - startTimeMillis) / 3600000L);
         List<String> apiLogs = generateSampleApiGatewayLogs(userId, 50);
         List<String> lambdaLogs = generateSampleLambdaLogs(userId, 30);
         List<String> appLogs = generateSampleApplicationLogs(userId, 40);
@@ -156,7 +479,7 @@ public class CloudWatchLogEmbeddingService {
         // Convert to LogEvent objects
         List<LogEvent> allEvents = new ArrayList<>();
         
-        long currentTime = System.currentTimeMillis();
+        long currentTime = endTimeMillis;
         long timeIncrement = hoursBack * 3600000L / 200; // Spread events over the time period
         
         int i = 0;
@@ -192,121 +515,32 @@ public class CloudWatchLogEmbeddingService {
             allEvents.add(new LogEvent(log, currentTime - (i++ * timeIncrement)));
         }
         
-        return allEvents;
+        return allEvents.stream();
     }
     
     /**
      * Process user logs into a format suitable for embedding generation.
      */
-    private String processUserLogs(List<LogEvent> logs) {
+    private String processUserLogs(ActivitySummary summary) {
         StringBuilder processedText = new StringBuilder("User activity log summary: ");
         
-        // Extract key information from logs
-        Map<String, Integer> apiPathCounts = new HashMap<>();
-        Map<String, Integer> statusCodeCounts = new HashMap<>();
-        Map<String, Integer> errorCounts = new HashMap<>();
-        Map<String, Integer> tradingActivityCounts = new HashMap<>();
-        Map<String, Integer> securityEventCounts = new HashMap<>();
-        Map<String, Integer> complianceCheckCounts = new HashMap<>();
-        Map<String, Integer> accountActivityCounts = new HashMap<>();
-        
-        int successfulRequests = 0;
-        int failedRequests = 0;
-        int tradingErrors = 0;
-        int securityAlerts = 0;
-        int complianceViolations = 0;
-        
-        for (LogEvent log : logs) {
-            String message = log.getMessage();
-            
-            // Extract API path if present
-            Matcher pathMatcher = API_PATH_PATTERN.matcher(message);
-            if (pathMatcher.find()) {
-                String path = pathMatcher.group(1);
-                apiPathCounts.put(path, apiPathCounts.getOrDefault(path, 0) + 1);
-            }
-            
-            // Extract status code if present
-            Matcher statusMatcher = STATUS_CODE_PATTERN.matcher(message);
-            if (statusMatcher.find()) {
-                String statusCode = statusMatcher.group(1);
-                statusCodeCounts.put(statusCode, statusCodeCounts.getOrDefault(statusCode, 0) + 1);
-                
-                // Count successful vs failed requests
-                if (statusCode.startsWith("2")) {
-                    successfulRequests++;
-                } else if (statusCode.startsWith("4") || statusCode.startsWith("5")) {
-                    failedRequests++;
-                }
-            }
-            
-            // Extract errors if present
-            Matcher errorMatcher = ERROR_PATTERN.matcher(message);
-            if (errorMatcher.find()) {
-                String error = errorMatcher.group(1).toLowerCase();
-                errorCounts.put(error, errorCounts.getOrDefault(error, 0) + 1);
-            }
-            
-            // Extract trading activities
-            Matcher tradeMatcher = TRADE_PATTERN.matcher(message);
-            if (tradeMatcher.find()) {
-                String tradeAction = tradeMatcher.group(1).toLowerCase();
-                tradingActivityCounts.put(tradeAction, tradingActivityCounts.getOrDefault(tradeAction, 0) + 1);
-                
-                // Count trading errors
-                if (message.toLowerCase().contains("rejected") || 
-                    message.toLowerCase().contains("failed") || 
-                    message.toLowerCase().contains("error")) {
-                    tradingErrors++;
-                }
-            }
-            
-            // Extract security events
-            Matcher securityMatcher = SECURITY_PATTERN.matcher(message);
-            if (securityMatcher.find()) {
-                String securityEvent = securityMatcher.group(1).toLowerCase();
-                securityEventCounts.put(securityEvent, securityEventCounts.getOrDefault(securityEvent, 0) + 1);
-                
-                // Count security alerts
-                if (message.toLowerCase().contains("warning") || 
-                    message.toLowerCase().contains("suspicious") || 
-                    message.toLowerCase().contains("failure") ||
-                    message.toLowerCase().contains("locked")) {
-                    securityAlerts++;
-                }
-            }
-            
-            // Extract compliance checks
-            Matcher complianceMatcher = COMPLIANCE_PATTERN.matcher(message);
-            if (complianceMatcher.find()) {
-                String complianceCheck = complianceMatcher.group(1).toLowerCase();
-                complianceCheckCounts.put(complianceCheck, complianceCheckCounts.getOrDefault(complianceCheck, 0) + 1);
-                
-                // Count compliance violations
-                if (message.toLowerCase().contains("violation") || 
-                    message.toLowerCase().contains("blocked") || 
-                    message.toLowerCase().contains("flagged")) {
-                    complianceViolations++;
-                }
-            }
-            
-            // Extract account activities
-            if (message.contains("Account:")) {
-                String accountActivity = "general";
-                if (message.contains("DEPOSIT")) accountActivity = "deposit";
-                else if (message.contains("WITHDRAWAL")) accountActivity = "withdrawal";
-                else if (message.contains("TRANSFER")) accountActivity = "transfer";
-                else if (message.contains("MARGIN_CALL")) accountActivity = "margin_call";
-                else if (message.contains("DIVIDEND")) accountActivity = "dividend";
-                else if (message.contains("INTEREST")) accountActivity = "interest";
-                else if (message.contains("RESTRICTION")) accountActivity = "restriction";
-                
-                accountActivityCounts.put(accountActivity, accountActivityCounts.getOrDefault(accountActivity, 0) + 1);
-            }
-        }
+        // Key information extracted from the logs
+        Map<String, Integer> apiPathCounts = summary.apiPathCounts;
+        Map<String, Integer> statusCodeCounts = summary.statusCodeCounts;
+        Map<String, Integer> errorCounts = summary.errorCounts;
+        Map<String, Integer> tradingActivityCounts = summary.tradingActivityCounts;
+        Map<String, Integer> securityEventCounts = summary.securityEventCounts;
+        Map<String, Integer> complianceCheckCounts = summary.complianceCheckCounts;
+        Map<String, Integer> accountActivityCounts = summary.accountActivityCounts;
+        
+        int successfulRequests = summary.successfulRequests;
+        int failedRequests = summary.failedRequests;
+        int tradingErrors = summary.tradingErrors;
+        int securityAlerts = summary.securityAlerts;
+        int complianceViolations = summary.complianceViolations;
         
         // Build the processed text
-        processedText.append("Total log entries: ").append(logs.size()).append(". ");
+        processedText.append("Total log entries: ").append(summary.logCount).append(". ");
         
         // Add API path information
         if (!apiPathCounts.isEmpty()) {
@@ -383,23 +617,21 @@ public class CloudWatchLogEmbeddingService {
         }
         
         // Add chronological sequence of the most recent events (up to 10)
-        int recentLogsCount = Math.min(logs.size(), 10);
+        List<LogFeatures> recentLogs = summary.recentEvents.mostRecentFirst();
+        int recentLogsCount = recentLogs.size();
         if (recentLogsCount > 0) {
             processedText.append("Recent activity sequence: ");
             
-            // Sort logs by timestamp (most recent logs first)
-            logs.sort((a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp()));
-            
             for (int i = 0; i < recentLogsCount; i++) {
-                LogEvent log = logs.get(i);
+                LogFeatures log = recentLogs.get(i);
                 String message = log.getMessage();
                 
                 // Extract key information for the sequence
-                String path = extractPattern(API_PATH_PATTERN, message, "unknown_path");
-                String method = extractPattern(HTTP_METHOD_PATTERN, message, "");
-                String statusCode = extractPattern(STATUS_CODE_PATTERN, message, "");
+                String path = log.getApiPath() != null ? log.getApiPath() : "unknown_path";
+                String method = log.getHttpMethod() != null ? log.getHttpMethod() : "";
+                String statusCode = log.getStatusCode() != null ? log.getStatusCode() : "";
                 
-                if (message.contains("Trade:")) {
+                if (log.isTradeRecord()) {
                     // Format trading activity
                     String symbol = "unknown";
                     String action = "unknown";
@@ -420,7 +652,7 @@ public class CloudWatchLogEmbeddingService {
                     
                     processedText.append("TRADE ").append(action).append(" ").append(symbol)
                                 .append(" (").append(status).append("), ");
-                } else if (message.contains("Security:")) {
+                } else if (log.isSecurityRecord()) {
                     // Format security event
                     String event = "unknown";
                     
@@ -429,7 +661,7 @@ public class CloudWatchLogEmbeddingService {
                     }
                     
                     processedText.append("SECURITY ").append(event).append(", ");
-                } else if (message.contains("Compliance:")) {
+                } else if (log.isComplianceRecord()) {
                     // Format compliance check
                     String type = "unknown";
                     String status = "unknown";
@@ -443,7 +675,7 @@ public class CloudWatchLogEmbeddingService {
                     }
                     
                     processedText.append("COMPLIANCE ").append(type).append(" (").append(status).append("), ");
-                } else if (message.contains("Account:")) {
+                } else if (log.isAccountRecord()) {
                     // Format account activity
                     String action = "unknown";
                     
@@ -470,14 +702,6 @@ public class CloudWatchLogEmbeddingService {
         return processedText.toString();
     }
     
-    /**
-     * Helper method to extract a pattern from text.
-     */
-    private String extractPattern(Pattern pattern, String text, String defaultValue) {
-        Matcher matcher = pattern.matcher(text);
-        return matcher.find() ? matcher.group(1) : defaultValue;
-    }
-    
     /**
      * Analyzes user behavior based on CloudWatch logs.
      * 
@@ -487,75 +711,39 @@ public class CloudWatchLogEmbeddingService {
      * @return Map containing behavior analysis results
      */
     public Map<String, Object> analyzeUserBehavior(String userId, String logGroupName, int hoursBack) throws Exception {
-        // 1. Fetch logs for the user
-        List<LogEvent> userLogs = fetchUserLogs(userId, logGroupName, hoursBack);
-        
-        if (userLogs.isEmpty()) {
-            throw new IllegalArgumentException("No logs found for user: " + userId);
-        }
+        // 1. Stream the user's logs into the behavior analysis
+        BehaviorAnalysis behavior = new BehaviorAnalysis();
+        streamUserLogs(userId, logGroupName, hoursBack, behavior);
         
         // 2. Analyze logs
+        return behaviorResults(behavior, hoursBack);
+    }
+    
+    /**
+     * Analyzes user behavior based on the logs of a snapshot.
+     * 
+     * @param snapshot The user's logs for the window
+     * @return Map containing behavior analysis results
+     */
+    public Map<String, Object> analyzeUserBehavior(LogSnapshot snapshot) {
+        return behaviorResults(snapshot.behavior, snapshot.getHoursBack());
+    }
+    
+    /**
+     * Builds the behavior analysis results from the running totals.
+     */
+    private Map<String, Object> behaviorResults(BehaviorAnalysis behavior, int hoursBack) {
         Map<String, Object> analysis = new HashMap<>();
         
         // Basic metrics
-        analysis.put("total_logs", userLogs.size());
+        analysis.put("total_logs", behavior.logCount);
         analysis.put("time_period_hours", hoursBack);
         
-        // Extract API paths and count occurrences
-        Map<String, Integer> apiPaths = new HashMap<>();
-        Map<String, Integer> statusCodes = new HashMap<>();
-        Map<String, Integer> errorTypes = new HashMap<>();
-        List<Map<String, Object>> userJourney = new ArrayList<>();
-        
-        for (LogEvent log : userLogs) {
-            String message = log.getMessage();
-            
-            // Extract API path
-            Matcher pathMatcher = API_PATH_PATTERN.matcher(message);
-            if (pathMatcher.find()) {
-                String path = pathMatcher.group(1);
-                apiPaths.put(path, apiPaths.getOrDefault(path, 0) + 1);
-            }
-            
-            // Extract status code
-            Matcher statusMatcher = STATUS_CODE_PATTERN.matcher(message);
-            if (statusMatcher.find()) {
-                String statusCode = statusMatcher.group(1);
-                statusCodes.put(statusCode, statusCodes.getOrDefault(statusCode, 0) + 1);
-            }
-            
-            // Extract errors
-            Matcher errorMatcher = ERROR_PATTERN.matcher(message);
-            if (errorMatcher.find()) {
-                String error = errorMatcher.group(1).toLowerCase();
-                errorTypes.put(error, errorTypes.getOrDefault(error, 0) + 1);
-            }
-            
-            // Build user journey (for the 20 most recent events)
-            if (userJourney.size() < 20) {
-                Map<String, Object> journeyStep = new HashMap<>();
-                journeyStep.put("timestamp", log.getTimestamp());
-                
-                String path = extractPattern(API_PATH_PATTERN, message, null);
-                if (path != null) {
-                    journeyStep.put("path", path);
-                }
-                
-                String method = extractPattern(HTTP_METHOD_PATTERN, message, null);
-                if (method != null) {
-                    journeyStep.put("method", method);
-                }
-                
-                String statusCode = extractPattern(STATUS_CODE_PATTERN, message, null);
-                if (statusCode != null) {
-                    journeyStep.put("status_code", statusCode);
-                }
-                
-                if (!journeyStep.isEmpty()) {
-                    userJourney.add(journeyStep);
-                }
-            }
-        }
+        // API paths, status codes and errors with their occurrence counts
+        Map<String, Integer> apiPaths = behavior.apiPaths;
+        Map<String, Integer> statusCodes = behavior.statusCodes;
+        Map<String, Integer> errorTypes = behavior.errorTypes;
+        List<Map<String, Object>> userJourney = behavior.userJourney;
         
         // Add analysis results
         analysis.put("api_paths", apiPaths);
@@ -588,13 +776,25 @@ public class CloudWatchLogEmbeddingService {
      * @return Map containing anomaly detection results
      */
     public Map<String, Object> detectAnomalies(String userId, String logGroupName, int hoursBack) throws Exception {
+        // The embedding and the behavior analysis share one read of the logs
+        return detectAnomalies(snapshotUserLogs(userId, logGroupName, hoursBack));
+    }
+    
+    /**
+     * Detects anomalies in user behavior by comparing the logs of a snapshot with the historical
+     * embedding.
+     * 
+     * @param snapshot The user's current logs
+     * @return Map containing anomaly detection results
+     */
+    public Map<String, Object> detectAnomalies(LogSnapshot snapshot) throws Exception {
         Map<String, Object> result = new HashMap<>();
         
         // 1. Get historical embedding for the user
-        double[] historicalEmbedding = dynamoDBService.getEmbedding(userId, EMBEDDING_TYPE_CLOUDWATCH);
+        EmbeddingVector historicalEmbedding = dynamoDBService.getEmbeddingVector(snapshot.getUserId(), EMBEDDING_TYPE_CLOUDWATCH);
         
         // 2. Generate current embedding
-        double[] currentEmbedding = generateUserLogEmbedding(userId, logGroupName, hoursBack);
+        EmbeddingVector currentEmbedding = EmbeddingVector.of(generateUserLogEmbedding(snapshot));
         
         // 3. Compare embeddings
         double similarity = calculateCosineSimilarity(historicalEmbedding, currentEmbedding);
@@ -605,7 +805,7 @@ public class CloudWatchLogEmbeddingService {
         result.put("is_anomaly", isAnomaly);
         
         // 5. Get detailed behavior analysis
-        Map<String, Object> behaviorAnalysis = analyzeUserBehavior(userId, logGroupName, hoursBack);
+        Map<String, Object> behaviorAnalysis = analyzeUserBehavior(snapshot);
         result.put("behavior_analysis", behaviorAnalysis);
         
         return result;
@@ -614,22 +814,12 @@ public class CloudWatchLogEmbeddingService {
     /**
      * Calculates cosine similarity between two embeddings.
      */
-    private double calculateCosineSimilarity(double[] embedding1, double[] embedding2) {
-        if (embedding1 == null || embedding2 == null || embedding1.length != embedding2.length) {
+    private double calculateCosineSimilarity(EmbeddingVector embedding1, EmbeddingVector embedding2) {
+        if (embedding1 == null || embedding2 == null || embedding1.dimension() != embedding2.dimension()) {
             return 0.0;
         }
         
-        double dotProduct = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
-        
-        for (int i = 0; i < embedding1.length; i++) {
-            dotProduct += embedding1[i] * embedding2[i];
-            norm1 += Math.pow(embedding1[i], 2);
-            norm2 += Math.pow(embedding2[i], 2);
-        }
-        
-        return dotProduct / (Math.sqrt(norm1) * Math.sqrt(norm2));
+        return embedding1.cosineSimilarity(embedding2);
     }
     
     /**
@@ -1083,29 +1273,63 @@ public class CloudWatchLogEmbeddingService {
      * @return The generated client effort embedding
      */
     public double[] generateClientEffortEmbedding(String userId, String logGroupName, int hoursBack) throws Exception {
-        // 1. Fetch logs for the user
-        List<LogEvent> userLogs = fetchUserLogs(userId, logGroupName, hoursBack);
-        
-        if (userLogs.isEmpty()) {
-            throw new IllegalArgumentException("No logs found for user: " + userId);
+        // 1. Analyze client effort patterns, from the rolling aggregates if they are kept and
+        //    otherwise by streaming the user's logs into the client effort analysis
+        long windowEnd = System.currentTimeMillis();
+        long windowStart = windowEnd - hoursBack * 3600000L;
+        UserLogAggregates aggregates = refreshLogAggregates(userId, logGroupName, windowStart, windowEnd);
+        int logCount;
+        Map<String, Object> effortAnalysis;
+        List<LogFeatures> highEffortLogs;
+        if (aggregates != null) {
+            UserLogAggregates.EffortCounts counts = aggregates.effortCounts(windowStart);
+            logCount = counts.logCount;
+            if (logCount == 0) {
+                throw new IllegalArgumentException("No logs found for user: " + userId);
+            }
+            effortAnalysis = effortResults(counts.errors, counts.repeatedClicks,
+                    counts.backForthNavigations, counts.channelSwitches);
+            highEffortLogs = aggregates.highEffortEvents(windowStart);
+        } else {
+            ClientEffortAnalysis effort = new ClientEffortAnalysis();
+            logCount = streamUserLogs(userId, logGroupName, hoursBack, effort);
+            effortAnalysis = clientEffortResults(effort);
+            highEffortLogs = effort.highEffortEvents.mostRecentFirst();
         }
+        return storeClientEffortEmbedding(userId, logGroupName, hoursBack, logCount, effortAnalysis, highEffortLogs);
+    }
+    
+    /**
+     * Generates a client effort embedding from the logs of a snapshot.
+     * 
+     * @param snapshot The user's logs for the window
+     * @return The generated client effort embedding
+     */
+    public double[] generateClientEffortEmbedding(LogSnapshot snapshot) throws Exception {
+        return storeClientEffortEmbedding(snapshot.getUserId(), snapshot.getLogGroupName(), snapshot.getHoursBack(),
+                snapshot.getLogCount(), clientEffortResults(snapshot.effort),
+                snapshot.effort.highEffortEvents.mostRecentFirst());
+    }
+    
+    /**
+     * Embeds a client effort analysis and stores the embedding with its metadata.
+     */
+    private double[] storeClientEffortEmbedding(String userId, String logGroupName, int hoursBack, int logCount,
+                                                Map<String, Object> effortAnalysis,
+                                                List<LogFeatures> highEffortLogs) throws Exception {
+        // 2. Process logs into a format suitable for embedding with focus on effort
+        String processedText = processClientEffortLogs(highEffortLogs, effortAnalysis);
         
-        // 2. Analyze client effort patterns
-        Map<String, Object> effortAnalysis = analyzeClientEffort(userLogs);
-        
-        // 3. Process logs into a format suitable for embedding with focus on effort
-        String processedText = processClientEffortLogs(userLogs, effortAnalysis);
-        
-        // 4. Generate embedding
+        // 3. Generate embedding
         long startTime = System.currentTimeMillis();
-        double[] embedding = embeddingService.generateEmbedding(processedText);
+        EmbeddingVector embedding = embeddingService.generateEmbeddingVector(processedText);
         long endTime = System.currentTimeMillis();
         
-        // 5. Create metadata
+        // 4. Create metadata
         EmbeddingMetadata metadata = new EmbeddingMetadata(EMBEDDING_TYPE_CLIENT_EFFORT, "amazon.titan-embed-text-v1");
         metadata.addEncodingDetail("log_group", logGroupName);
         metadata.addEncodingDetail("hours_back", hoursBack);
-        metadata.addEncodingDetail("log_count", userLogs.size());
+        metadata.addEncodingDetail("log_count", logCount);
         metadata.addEncodingDetail("timestamp", System.currentTimeMillis());
         metadata.addPerformanceMetric("generation_time_ms", endTime - startTime);
         
@@ -1116,7 +1340,7 @@ public class CloudWatchLogEmbeddingService {
             }
         }
         
-        // 6. Store in DynamoDB
+        // 5. Store in DynamoDB
         dynamoDBService.storeEmbeddingWithMetadata(
             userId, 
             EMBEDDING_TYPE_CLIENT_EFFORT, 
@@ -1124,104 +1348,60 @@ public class CloudWatchLogEmbeddingService {
             metadata
         );
         
-        return embedding;
+        return embedding.toDoubleArray();
     }
     
     /**
      * Analyzes client effort patterns in user logs.
      * 
-     * @param logs List of user log events
+     * @param logs Classified user log events (see {@link LogClassifier})
      * @return Map containing client effort analysis results
      */
-    public Map<String, Object> analyzeClientEffort(List<LogEvent> logs) {
-        Map<String, Object> analysis = new HashMap<>();
-        
-        // Sort logs by timestamp (oldest first)
-        logs.sort(Comparator.comparing(LogEvent::getTimestamp));
-        
-        // Count errors
-        int errorCount = 0;
-        for (LogEvent log : logs) {
-            if (ERROR_PATTERN.matcher(log.getMessage()).find()) {
-                errorCount++;
-            }
-        }
-        analysis.put("error_count", errorCount);
-        analysis.put("high_error_rate", errorCount >= ERROR_THRESHOLD);
+    public Map<String, Object> analyzeClientEffort(List<LogFeatures> logs) {
+        ClientEffortAnalysis effort = new ClientEffortAnalysis();
+        logs.forEach(effort);
+        return clientEffortResults(effort);
+    }
+    
+    /**
+     * Builds the client effort analysis results from the collected effort signals.
+     */
+    private Map<String, Object> clientEffortResults(ClientEffortAnalysis effort) {
+        // Effort signals collected in one pass over the classified events
+        Map<String, List<Long>> buttonClicks = effort.buttonClicks;
         
-        // Detect repeated button clicks
-        Map<String, List<Long>> buttonClicks = new HashMap<>();
-        for (LogEvent log : logs) {
-            Matcher buttonMatcher = BUTTON_CLICK_PATTERN.matcher(log.getMessage());
-            if (buttonMatcher.find()) {
-                String buttonAction = buttonMatcher.group(1).toLowerCase();
-                
-                // Extract more context to identify the specific button
-                String context = extractContext(log.getMessage(), buttonMatcher.start(), 30);
-                String buttonKey = buttonAction + "_" + context.hashCode();
-                
-                if (!buttonClicks.containsKey(buttonKey)) {
-                    buttonClicks.put(buttonKey, new ArrayList<>());
-                }
-                buttonClicks.get(buttonKey).add(log.getTimestamp());
-            }
-        }
+        // Sort navigation and channel events by timestamp (oldest first)
+        List<NavigationEvent> navigationEvents = new ArrayList<>(effort.navigationEvents);
+        navigationEvents.sort(Comparator.comparingLong(NavigationEvent::getTimestamp));
+        List<ChannelEvent> channelEvents = new ArrayList<>(effort.channelEvents);
+        channelEvents.sort(Comparator.comparingLong(ChannelEvent::getTimestamp));
         
         // Count repeated button clicks within time window
         int repeatedClickCount = 0;
         for (List<Long> timestamps : buttonClicks.values()) {
             repeatedClickCount += countRepeatedActions(timestamps, TIME_WINDOW_MS, BUTTON_CLICK_THRESHOLD);
         }
-        analysis.put("repeated_click_count", repeatedClickCount);
-        analysis.put("high_repeated_clicks", repeatedClickCount > 0);
         
-        // Detect back-and-forth navigation
-        List<NavigationEvent> navigationEvents = new ArrayList<>();
-        for (LogEvent log : logs) {
-            Matcher navMatcher = NAVIGATION_PATTERN.matcher(log.getMessage());
-            if (navMatcher.find()) {
-                // Extract path if available
-                String path = null;
-                Matcher pathMatcher = API_PATH_PATTERN.matcher(log.getMessage());
-                if (pathMatcher.find()) {
-                    path = pathMatcher.group(1);
-                } else {
-                    // Try to extract some context for the navigation
-                    path = extractContext(log.getMessage(), navMatcher.start(), 30);
-                }
-                
-                navigationEvents.add(new NavigationEvent(path, log.getTimestamp()));
-            }
-        }
+        return effortResults(effort.errorCount, repeatedClickCount,
+                detectBackAndForthNavigation(navigationEvents), countChannelSwitches(channelEvents));
+    }
+    
+    /**
+     * Builds the client effort analysis results from the effort counters.
+     */
+    private Map<String, Object> effortResults(int errorCount, int repeatedClickCount,
+                                              int backForthCount, int channelSwitchCount) {
+        Map<String, Object> analysis = new HashMap<>();
+        
+        analysis.put("error_count", errorCount);
+        analysis.put("high_error_rate", errorCount >= ERROR_THRESHOLD);
+        
+        analysis.put("repeated_click_count", repeatedClickCount);
+        analysis.put("high_repeated_clicks", repeatedClickCount > 0);
         
-        // Detect back-and-forth navigation patterns
-        int backForthCount = detectBackAndForthNavigation(navigationEvents);
         analysis.put("back_forth_navigation_count", backForthCount);
         analysis.put("high_back_forth_navigation", backForthCount >= NAVIGATION_THRESHOLD);
         
-        // Detect channel switching
-        List<ChannelEvent> channelEvents = new ArrayList<>();
-        for (LogEvent log : logs) {
-            Matcher channelMatcher = CHANNEL_SWITCH_PATTERN.matcher(log.getMessage());
-            if (channelMatcher.find()) {
-                String channel = channelMatcher.group(1).toLowerCase();
-                // Try to determine the actual channel
-                if (log.getMessage().toLowerCase().contains("mobile")) {
-                    channel = "mobile";
-                } else if (log.getMessage().toLowerCase().contains("web")) {
-                    channel = "web";
-                } else if (log.getMessage().toLowerCase().contains("app")) {
-                    channel = "app";
-                } else if (log.getMessage().toLowerCase().contains("desktop")) {
-                    channel = "desktop";
-                }
-                
-                channelEvents.add(new ChannelEvent(channel, log.getTimestamp()));
-            }
-        }
-        
-        // Count channel switches
-        int channelSwitchCount = countChannelSwitches(channelEvents);
         analysis.put("channel_switch_count", channelSwitchCount);
         analysis.put("high_channel_switching", channelSwitchCount >= CHANNEL_SWITCH_THRESHOLD);
         
@@ -1241,11 +1421,11 @@ public class CloudWatchLogEmbeddingService {
     /**
      * Processes logs into a format suitable for client effort embedding generation.
      * 
-     * @param logs List of user log events
+     * @param highEffortLogs The most recent high-effort events, newest first
      * @param effortAnalysis Results of client effort analysis
      * @return Processed text for embedding generation
      */
-    private String processClientEffortLogs(List<LogEvent> logs, Map<String, Object> effortAnalysis) {
+    private String processClientEffortLogs(List<LogFeatures> highEffortLogs, Map<String, Object> effortAnalysis) {
         StringBuilder processedText = new StringBuilder("User client effort analysis: ");
         
         // Add overall effort score
@@ -1294,45 +1474,32 @@ public class CloudWatchLogEmbeddingService {
         }
         processedText.append(". ");
         
-        // Add chronological sequence of high-effort events
-        List<LogEvent> highEffortLogs = new ArrayList<>();
-        for (LogEvent log : logs) {
-            String message = log.getMessage();
-            if (ERROR_PATTERN.matcher(message).find() || 
-                BUTTON_CLICK_PATTERN.matcher(message).find() || 
-                NAVIGATION_PATTERN.matcher(message).find() || 
-                CHANNEL_SWITCH_PATTERN.matcher(message).find()) {
-                highEffortLogs.add(log);
-            }
-        }
-        
-        // Sort by timestamp and take the most recent 15 high-effort events
-        highEffortLogs.sort((a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp()));
-        int recentLogsCount = Math.min(highEffortLogs.size(), 15);
+        // Add chronological sequence of the most recent 15 high-effort events
+        int recentLogsCount = highEffortLogs.size();
         
         if (recentLogsCount > 0) {
             processedText.append("Recent high-effort events: ");
             
             for (int i = 0; i < recentLogsCount; i++) {
-                LogEvent log = highEffortLogs.get(i);
+                LogFeatures log = highEffortLogs.get(i);
                 String message = log.getMessage();
                 
                 // Create a summary of the high-effort event
                 StringBuilder eventSummary = new StringBuilder();
                 
-                if (ERROR_PATTERN.matcher(message).find()) {
+                if (log.has(LogClassifier.Category.ERROR)) {
                     eventSummary.append("ERROR: ");
                 }
                 
-                if (BUTTON_CLICK_PATTERN.matcher(message).find()) {
+                if (log.has(LogClassifier.Category.BUTTON_CLICK)) {
                     eventSummary.append("CLICK: ");
                 }
                 
-                if (NAVIGATION_PATTERN.matcher(message).find()) {
+                if (log.has(LogClassifier.Category.NAVIGATION)) {
                     eventSummary.append("NAVIGATION: ");
                 }
                 
-                if (CHANNEL_SWITCH_PATTERN.matcher(message).find()) {
+                if (log.has(LogClassifier.Category.CHANNEL_SWITCH)) {
                     eventSummary.append("CHANNEL: ");
                 }
                 
@@ -1361,7 +1528,7 @@ public class CloudWatchLogEmbeddingService {
      * @param length The maximum length of context to extract
      * @return The extracted context
      */
-    private String extractContext(String text, int position, int length) {
+    private static String extractContext(String text, int position, int length) {
         int start = Math.max(0, position - length / 2);
         int end = Math.min(text.length(), position + length / 2);
         return text.substring(start, end).trim();
@@ -1657,74 +1824,86 @@ public class CloudWatchLogEmbeddingService {
     }
     
     /**
-     * Simple class to replace FilteredLogEvent from CloudWatch SDK
+     * Client effort signals, collected one event at a time. Only the compact navigation, channel
+     * and click records and the 15 most recent high-effort events are kept, not the raw logs.
      */
-    private static class LogEvent {
-        private final String message;
-        private final long timestamp;
-        
-        public LogEvent(String message, long timestamp) {
-            this.message = message;
-            this.timestamp = timestamp;
-        }
-        
-        public String getMessage() {
-            return message;
-        }
-        
-        public long getTimestamp() {
-            return timestamp;
+    private static class ClientEffortAnalysis implements Consumer<LogFeatures> {
+        private final Map<String, List<Long>> buttonClicks = new HashMap<>();
+        private final List<NavigationEvent> navigationEvents = new ArrayList<>();
+        private final List<ChannelEvent> channelEvents = new ArrayList<>();
+        private final RecentEvents highEffortEvents = new RecentEvents(15);
+        
+        private int errorCount;
+        
+        @Override
+        public void accept(LogFeatures log) {
+            if (log.has(LogClassifier.Category.ERROR) || 
+                log.has(LogClassifier.Category.BUTTON_CLICK) || 
+                log.has(LogClassifier.Category.NAVIGATION) || 
+                log.has(LogClassifier.Category.CHANNEL_SWITCH)) {
+                highEffortEvents.add(log);
+            }
+            
+            // Count errors
+            if (log.has(LogClassifier.Category.ERROR)) {
+                errorCount++;
+            }
+            
+            // Detect repeated button clicks
+            String buttonAction = log.keyword(LogClassifier.Category.BUTTON_CLICK);
+            if (buttonAction != null) {
+                // Extract more context to identify the specific button
+                String context = extractContext(log.getMessage(), log.keywordStart(LogClassifier.Category.BUTTON_CLICK), 30);
+                String buttonKey = buttonAction + "_" + context.hashCode();
+                
+                buttonClicks.computeIfAbsent(buttonKey, key -> new ArrayList<>()).add(log.getTimestamp());
+            }
+            
+            // Detect navigation
+            if (log.has(LogClassifier.Category.NAVIGATION)) {
+                // Extract path if available, else some context for the navigation
+                String path = log.getApiPath() != null ? log.getApiPath()
+                        : extractContext(log.getMessage(), log.keywordStart(LogClassifier.Category.NAVIGATION), 30);
+                navigationEvents.add(new NavigationEvent(path, log.getTimestamp()));
+            }
+            
+            // Detect channel usage
+            String channel = log.getChannel();
+            if (channel != null) {
+                channelEvents.add(new ChannelEvent(channel, log.getTimestamp()));
+            }
         }
     }
     
     /**
-     * Analyzes trading patterns based on CloudWatch logs.
-     * 
-     * @param userId User ID to analyze
-     * @param logGroupName CloudWatch log group name
-     * @param hoursBack Number of hours to look back for logs
-     * @return Map containing trading pattern analysis results
+     * Running totals behind the trading pattern analysis, folded in one event at a time.
      */
-    public Map<String, Object> analyzeTradingPatterns(String userId, String logGroupName, int hoursBack) throws Exception {
-        // 1. Fetch logs for the user
-        List<LogEvent> userLogs = fetchUserLogs(userId, logGroupName, hoursBack);
-        
-        if (userLogs.isEmpty()) {
-            throw new IllegalArgumentException("No logs found for user: " + userId);
-        }
-        
-        // 2. Filter for trading-related logs
-        List<LogEvent> tradingLogs = userLogs.stream()
-            .filter(log -> TRADE_PATTERN.matcher(log.getMessage()).find() || 
-                   log.getMessage().contains("Trade:"))
-            .collect(java.util.stream.Collectors.toList());
-        
-        // 3. Analyze logs
-        Map<String, Object> analysis = new HashMap<>();
-        
-        // Basic metrics
-        analysis.put("total_trading_logs", tradingLogs.size());
-        analysis.put("time_period_hours", hoursBack);
-        
-        // Extract trading data
-        Map<String, Integer> symbolCounts = new HashMap<>();
-        Map<String, Integer> actionCounts = new HashMap<>();
-        Map<String, Integer> orderTypeCounts = new HashMap<>();
-        Map<String, Integer> statusCounts = new HashMap<>();
-        Map<String, Double> symbolValues = new HashMap<>();
-        List<Map<String, Object>> tradingJourney = new ArrayList<>();
-        
-        int successfulTrades = 0;
-        int rejectedTrades = 0;
-        int cancelledTrades = 0;
-        double totalTradeValue = 0.0;
-        
-        for (LogEvent log : tradingLogs) {
-            String message = log.getMessage();
-            Map<String, Object> tradeInfo = extractTradeInfo(message);
+    private static class TradingAnalysis implements Consumer<LogFeatures> {
+        private final Map<String, Integer> symbolCounts = new HashMap<>();
+        private final Map<String, Integer> actionCounts = new HashMap<>();
+        private final Map<String, Integer> orderTypeCounts = new HashMap<>();
+        private final Map<String, Integer> statusCounts = new HashMap<>();
+        private final Map<String, Double> symbolValues = new HashMap<>();
+        private final List<Map<String, Object>> tradingJourney = new ArrayList<>();
+        
+        private int tradingLogCount;
+        private int successfulTrades;
+        private int rejectedTrades;
+        private int cancelledTrades;
+        private double totalTradeValue;
+        
+        @Override
+        public void accept(LogFeatures log) {
+            // Only trading-related logs count
+            if (!log.has(LogClassifier.Category.TRADE) && !log.isTradeRecord()) {
+                return;
+            }
+            tradingLogCount++;
+            
+            Map<String, Object> tradeInfo = extractTradeInfo(log);
             
             if (tradeInfo.isEmpty()) {
-                continue;
+                return;
             }
             
             // Count symbols
@@ -1775,6 +1954,305 @@ public class CloudWatchLogEmbeddingService {
                 tradingJourney.add(tradeInfo);
             }
         }
+    }
+    
+    /**
+     * Running totals behind the compliance analysis, folded in one event at a time.
+     */
+    private static class ComplianceAnalysis implements Consumer<LogFeatures> {
+        private final Map<String, Integer> complianceTypeCounts = new HashMap<>();
+        private final Map<String, Integer> statusCounts = new HashMap<>();
+        private final Map<String, Integer> actionCounts = new HashMap<>();
+        private final Map<String, Integer> severityCounts = new HashMap<>();
+        private final List<Map<String, Object>> complianceEvents = new ArrayList<>();
+        
+        private int complianceLogCount;
+        private int violations;
+        private int passed;
+        
+        @Override
+        public void accept(LogFeatures log) {
+            // Only compliance-related logs count
+            if (!log.has(LogClassifier.Category.COMPLIANCE) && !log.isComplianceRecord()) {
+                return;
+            }
+            complianceLogCount++;
+            
+            String message = log.getMessage();
+            
+            // Extract compliance type
+            if (message.contains("type:")) {
+                int start = message.indexOf("type:") + 6;
+                int end = message.indexOf(" ", start);
+                if (end > start) {
+                    String type = message.substring(start, end).trim();
+                    complianceTypeCounts.put(type, complianceTypeCounts.getOrDefault(type, 0) + 1);
+                }
+            }
+            
+            // Extract status
+            if (message.contains("status:")) {
+                int start = message.indexOf("status:") + 8;
+                int end = message.indexOf(" ", start);
+                if (end > start) {
+                    String status = message.substring(start, end).trim();
+                    statusCounts.put(status, statusCounts.getOrDefault(status, 0) + 1);
+                    
+                    if (status.equals("VIOLATION")) {
+                        violations++;
+                    } else if (status.equals("PASSED")) {
+                        passed++;
+                    }
+                }
+            }
+            
+            // Extract action
+            if (message.contains("action:")) {
+                int start = message.indexOf("action:") + 8;
+                int end = message.indexOf(" ", start);
+                if (end > start) {
+                    String action = message.substring(start, end).trim();
+                    actionCounts.put(action, actionCounts.getOrDefault(action, 0) + 1);
+                }
+            }
+            
+            // Extract severity
+            if (message.contains("severity:")) {
+                int start = message.indexOf("severity:") + 10;
+                int end = message.indexOf(" ", start);
+                if (end == -1) {
+                    end = message.length();
+                }
+                if (end > start) {
+                    String severity = message.substring(start, end).trim();
+                    severityCounts.put(severity, severityCounts.getOrDefault(severity, 0) + 1);
+                }
+            }
+            
+            // Build compliance events list (for the 20 most recent events)
+            if (complianceEvents.size() < 20 && log.isComplianceRecord()) {
+                Map<String, Object> event = new HashMap<>();
+                event.put("timestamp", log.getTimestamp());
+                
+                if (message.contains("type:")) {
+                    int start = message.indexOf("type:") + 6;
+                    int end = message.indexOf(" ", start);
+                    if (end > start) {
+                        event.put("type", message.substring(start, end).trim());
+                    }
+                }
+                
+                if (message.contains("status:")) {
+                    int start = message.indexOf("status:") + 8;
+                    int end = message.indexOf(" ", start);
+                    if (end > start) {
+                        event.put("status", message.substring(start, end).trim());
+                    }
+                }
+                
+                if (message.contains("action:")) {
+                    int start = message.indexOf("action:") + 8;
+                    int end = message.indexOf(" ", start);
+                    if (end > start) {
+                        event.put("action", message.substring(start, end).trim());
+                    }
+                }
+                
+                if (message.contains("severity:")) {
+                    int start = message.indexOf("severity:") + 10;
+                    int end = message.indexOf(" ", start);
+                    if (end == -1) {
+                        end = message.length();
+                    }
+                    if (end > start) {
+                        event.put("severity", message.substring(start, end).trim());
+                    }
+                }
+                
+                if (!event.isEmpty()) {
+                    complianceEvents.add(event);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Running totals behind the user behavior analysis, folded in one event at a time.
+     */
+    private static class BehaviorAnalysis implements Consumer<LogFeatures> {
+        private final Map<String, Integer> apiPaths = new HashMap<>();
+        private final Map<String, Integer> statusCodes = new HashMap<>();
+        private final Map<String, Integer> errorTypes = new HashMap<>();
+        private final List<Map<String, Object>> userJourney = new ArrayList<>();
+        
+        private int logCount;
+        
+        @Override
+        public void accept(LogFeatures log) {
+            logCount++;
+            
+            // Extract API path
+            String path = log.getApiPath();
+            if (path != null) {
+                apiPaths.put(path, apiPaths.getOrDefault(path, 0) + 1);
+            }
+            
+            // Extract status code
+            String statusCode = log.getStatusCode();
+            if (statusCode != null) {
+                statusCodes.put(statusCode, statusCodes.getOrDefault(statusCode, 0) + 1);
+            }
+            
+            // Extract errors
+            String error = log.keyword(LogClassifier.Category.ERROR);
+            if (error != null) {
+                errorTypes.put(error, errorTypes.getOrDefault(error, 0) + 1);
+            }
+            
+            // Build user journey (for the 20 most recent events)
+            if (userJourney.size() < 20) {
+                Map<String, Object> journeyStep = new HashMap<>();
+                journeyStep.put("timestamp", log.getTimestamp());
+                
+                if (path != null) {
+                    journeyStep.put("path", path);
+                }
+                
+                if (log.getHttpMethod() != null) {
+                    journeyStep.put("method", log.getHttpMethod());
+                }
+                
+                if (statusCode != null) {
+                    journeyStep.put("status_code", statusCode);
+                }
+                
+                if (!journeyStep.isEmpty()) {
+                    userJourney.add(journeyStep);
+                }
+            }
+        }
+    }
+    
+    /**
+     * A user's logs for one window, read and classified once and folded into every analysis in
+     * the same pass. Only the running totals of the analyses are kept, not the raw events.
+     * Take one per request, for the user, log group and window it covers, and pass it to the
+     * analysis methods.
+     */
+    public static final class LogSnapshot {
+        private final String userId;
+        private final String logGroupName;
+        private final int hoursBack;
+        private final long startTime;
+        private final long endTime;
+        
+        private final ActivitySummary summary = new ActivitySummary();
+        private final BehaviorAnalysis behavior = new BehaviorAnalysis();
+        private final ClientEffortAnalysis effort = new ClientEffortAnalysis();
+        private final TradingAnalysis trading = new TradingAnalysis();
+        private final ComplianceAnalysis compliance = new ComplianceAnalysis();
+        
+        private int logCount;
+        
+        private LogSnapshot(String userId, String logGroupName, int hoursBack, long startTime, long endTime) {
+            this.userId = userId;
+            this.logGroupName = logGroupName;
+            this.hoursBack = hoursBack;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+        
+        private void accept(LogFeatures log) {
+            summary.accept(log);
+            behavior.accept(log);
+            effort.accept(log);
+            trading.accept(log);
+            compliance.accept(log);
+        }
+        
+        public String getUserId() {
+            return userId;
+        }
+        
+        public String getLogGroupName() {
+            return logGroupName;
+        }
+        
+        public int getHoursBack() {
+            return hoursBack;
+        }
+        
+        /**
+         * @return Start of the window in epoch milliseconds
+         */
+        public long getStartTime() {
+            return startTime;
+        }
+        
+        /**
+         * @return End of the window in epoch milliseconds
+         */
+        public long getEndTime() {
+            return endTime;
+        }
+        
+        /**
+         * @return Number of log events in the window
+         */
+        public int getLogCount() {
+            return logCount;
+        }
+    }
+    
+    /**
+     * Analyzes trading patterns based on CloudWatch logs.
+     * 
+     * @param userId User ID to analyze
+     * @param logGroupName CloudWatch log group name
+     * @param hoursBack Number of hours to look back for logs
+     * @return Map containing trading pattern analysis results
+     */
+    public Map<String, Object> analyzeTradingPatterns(String userId, String logGroupName, int hoursBack) throws Exception {
+        // 1. Stream the user's logs into the trading analysis, which keeps trading-related logs only
+        TradingAnalysis trading = new TradingAnalysis();
+        streamUserLogs(userId, logGroupName, hoursBack, trading);
+        
+        // 2. Analyze logs
+        return tradingResults(trading, hoursBack);
+    }
+    
+    /**
+     * Analyzes trading patterns based on the logs of a snapshot.
+     * 
+     * @param snapshot The user's logs for the window
+     * @return Map containing trading pattern analysis results
+     */
+    public Map<String, Object> analyzeTradingPatterns(LogSnapshot snapshot) {
+        return tradingResults(snapshot.trading, snapshot.getHoursBack());
+    }
+    
+    /**
+     * Builds the trading pattern analysis results from the running totals.
+     */
+    private Map<String, Object> tradingResults(TradingAnalysis trading, int hoursBack) {
+        Map<String, Object> analysis = new HashMap<>();
+        
+        // Basic metrics
+        analysis.put("total_trading_logs", trading.tradingLogCount);
+        analysis.put("time_period_hours", hoursBack);
+        
+        // Trading data extracted from the logs
+        Map<String, Integer> symbolCounts = trading.symbolCounts;
+        Map<String, Integer> actionCounts = trading.actionCounts;
+        Map<String, Integer> orderTypeCounts = trading.orderTypeCounts;
+        Map<String, Integer> statusCounts = trading.statusCounts;
+        Map<String, Double> symbolValues = trading.symbolValues;
+        List<Map<String, Object>> tradingJourney = trading.tradingJourney;
+        
+        int successfulTrades = trading.successfulTrades;
+        int rejectedTrades = trading.rejectedTrades;
+        int cancelledTrades = trading.cancelledTrades;
+        double totalTradeValue = trading.totalTradeValue;
         
         // Add analysis results
         analysis.put("symbol_counts", symbolCounts);
@@ -1792,7 +2270,7 @@ public class CloudWatchLogEmbeddingService {
         analysis.put("trading_journey", tradingJourney);
         
         // Calculate success rate
-        double successRate = tradingLogs.size() > 0 ? (double) successfulTrades / tradingLogs.size() : 0;
+        double successRate = trading.tradingLogCount > 0 ? (double) successfulTrades / trading.tradingLogCount : 0;
         analysis.put("success_rate", successRate);
         
         // Identify most traded symbols
@@ -1827,14 +2305,15 @@ public class CloudWatchLogEmbeddingService {
     }
     
     /**
-     * Extracts trade information from a log message.
+     * Extracts trade information from a classified log event.
      */
-    private Map<String, Object> extractTradeInfo(String message) {
+    private static Map<String, Object> extractTradeInfo(LogFeatures log) {
         Map<String, Object> tradeInfo = new HashMap<>();
         
-        if (!message.contains("Trade:") && !TRADE_PATTERN.matcher(message).find()) {
+        if (!log.isTradeRecord() && !log.has(LogClassifier.Category.TRADE)) {
             return tradeInfo;
         }
+        String message = log.getMessage();
         
         // Extract symbol
         if (message.contains("symbol:")) {
@@ -1970,133 +2449,43 @@ public class CloudWatchLogEmbeddingService {
      * @return Map containing compliance analysis results
      */
     public Map<String, Object> analyzeCompliancePatterns(String userId, String logGroupName, int hoursBack) throws Exception {
-        // 1. Fetch logs for the user
-        List<LogEvent> userLogs = fetchUserLogs(userId, logGroupName, hoursBack);
+        // 1. Stream the user's logs into the compliance analysis, which keeps compliance-related logs only
+        ComplianceAnalysis compliance = new ComplianceAnalysis();
+        streamUserLogs(userId, logGroupName, hoursBack, compliance);
         
-        if (userLogs.isEmpty()) {
-            throw new IllegalArgumentException("No logs found for user: " + userId);
-        }
-        
-        // 2. Filter for compliance-related logs
-        List<LogEvent> complianceLogs = userLogs.stream()
-            .filter(log -> COMPLIANCE_PATTERN.matcher(log.getMessage()).find() || 
-                   log.getMessage().contains("Compliance:"))
-            .collect(java.util.stream.Collectors.toList());
-        
-        // 3. Analyze logs
+        // 2. Analyze logs
+        return complianceResults(compliance, hoursBack);
+    }
+    
+    /**
+     * Analyzes compliance patterns based on the logs of a snapshot.
+     * 
+     * @param snapshot The user's logs for the window
+     * @return Map containing compliance pattern analysis results
+     */
+    public Map<String, Object> analyzeCompliancePatterns(LogSnapshot snapshot) {
+        return complianceResults(snapshot.compliance, snapshot.getHoursBack());
+    }
+    
+    /**
+     * Builds the compliance analysis results from the running totals.
+     */
+    private Map<String, Object> complianceResults(ComplianceAnalysis compliance, int hoursBack) {
         Map<String, Object> analysis = new HashMap<>();
         
         // Basic metrics
-        analysis.put("total_compliance_logs", complianceLogs.size());
+        analysis.put("total_compliance_logs", compliance.complianceLogCount);
         analysis.put("time_period_hours", hoursBack);
         
-        // Extract compliance data
-        Map<String, Integer> complianceTypeCounts = new HashMap<>();
-        Map<String, Integer> statusCounts = new HashMap<>();
-        Map<String, Integer> actionCounts = new HashMap<>();
-        Map<String, Integer> severityCounts = new HashMap<>();
-        List<Map<String, Object>> complianceEvents = new ArrayList<>();
+        // Compliance data extracted from the logs
+        Map<String, Integer> complianceTypeCounts = compliance.complianceTypeCounts;
+        Map<String, Integer> statusCounts = compliance.statusCounts;
+        Map<String, Integer> actionCounts = compliance.actionCounts;
+        Map<String, Integer> severityCounts = compliance.severityCounts;
+        List<Map<String, Object>> complianceEvents = compliance.complianceEvents;
         
-        int violations = 0;
-        int passed = 0;
-        
-        for (LogEvent log : complianceLogs) {
-            String message = log.getMessage();
-            
-            // Extract compliance type
-            if (message.contains("type:")) {
-                int start = message.indexOf("type:") + 6;
-                int end = message.indexOf(" ", start);
-                if (end > start) {
-                    String type = message.substring(start, end).trim();
-                    complianceTypeCounts.put(type, complianceTypeCounts.getOrDefault(type, 0) + 1);
-                }
-            }
-            
-            // Extract status
-            if (message.contains("status:")) {
-                int start = message.indexOf("status:") + 8;
-                int end = message.indexOf(" ", start);
-                if (end > start) {
-                    String status = message.substring(start, end).trim();
-                    statusCounts.put(status, statusCounts.getOrDefault(status, 0) + 1);
-                    
-                    if (status.equals("VIOLATION")) {
-                        violations++;
-                    } else if (status.equals("PASSED")) {
-                        passed++;
-                    }
-                }
-            }
-            
-            // Extract action
-            if (message.contains("action:")) {
-                int start = message.indexOf("action:") + 8;
-                int end = message.indexOf(" ", start);
-                if (end > start) {
-                    String action = message.substring(start, end).trim();
-                    actionCounts.put(action, actionCounts.getOrDefault(action, 0) + 1);
-                }
-            }
-            
-            // Extract severity
-            if (message.contains("severity:")) {
-                int start = message.indexOf("severity:") + 10;
-                int end = message.indexOf(" ", start);
-                if (end == -1) {
-                    end = message.length();
-                }
-                if (end > start) {
-                    String severity = message.substring(start, end).trim();
-                    severityCounts.put(severity, severityCounts.getOrDefault(severity, 0) + 1);
-                }
-            }
-            
-            // Build compliance events list (for the 20 most recent events)
-            if (complianceEvents.size() < 20 && message.contains("Compliance:")) {
-                Map<String, Object> event = new HashMap<>();
-                event.put("timestamp", log.getTimestamp());
-                
-                if (message.contains("type:")) {
-                    int start = message.indexOf("type:") + 6;
-                    int end = message.indexOf(" ", start);
-                    if (end > start) {
-                        event.put("type", message.substring(start, end).trim());
-                    }
-                }
-                
-                if (message.contains("status:")) {
-                    int start = message.indexOf("status:") + 8;
-                    int end = message.indexOf(" ", start);
-                    if (end > start) {
-                        event.put("status", message.substring(start, end).trim());
-                    }
-                }
-                
-                if (message.contains("action:")) {
-                    int start = message.indexOf("action:") + 8;
-                    int end = message.indexOf(" ", start);
-                    if (end > start) {
-                        event.put("action", message.substring(start, end).trim());
-                    }
-                }
-                
-                if (message.contains("severity:")) {
-                    int start = message.indexOf("severity:") + 10;
-                    int end = message.indexOf(" ", start);
-                    if (end == -1) {
-                        end = message.length();
-                    }
-                    if (end > start) {
-                        event.put("severity", message.substring(start, end).trim());
-                    }
-                }
-                
-                if (!event.isEmpty()) {
-                    complianceEvents.add(event);
-                }
-            }
-        }
+        int violations = compliance.violations;
+        int passed = compliance.passed;
         
         // Add analysis results
         analysis.put("compliance_type_counts", complianceTypeCounts);
@@ -2111,7 +2500,7 @@ public class CloudWatchLogEmbeddingService {
         analysis.put("compliance_events", complianceEvents);
         
         // Calculate compliance rate
-        double complianceRate = complianceLogs.size() > 0 ? (double) passed / complianceLogs.size() : 0;
+        double complianceRate = compliance.complianceLogCount > 0 ? (double) passed / compliance.complianceLogCount : 0;
         analysis.put("compliance_rate", complianceRate);
         
         // Identify compliance risk level
@@ -2138,4 +2527,4 @@ public class CloudWatchLogEmbeddingService {
             return "COMPLIANT";
         }
     }
-} 
\ No newline at end of file
+}
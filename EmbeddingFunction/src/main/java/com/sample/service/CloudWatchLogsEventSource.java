@@ -0,0 +1,125 @@
+package com.sample.service;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.sample.util.Deadline;
+import com.sample.util.EnvConfig;
+
+import software.amazon.awssdk.services.cloudwatchlogs.CloudWatchLogsClient;
+import software.amazon.awssdk.services.cloudwatchlogs.model.FilterLogEventsRequest;
+import software.amazon.awssdk.services.cloudwatchlogs.model.FilterLogEventsResponse;
+import software.amazon.awssdk.services.cloudwatchlogs.model.FilteredLogEvent;
+
+/**
+ * Log event source backed by CloudWatch Logs FilterLogEvents.
+ * This class handles:
+ * 1. Pushing the user filter down to CloudWatch as a quoted filter-pattern term, so only
+ *    matching events leave the service
+ * 2. Paginating lazily: the next page (up to CLOUDWATCH_LOGS_PAGE_SIZE events, default 10000)
+ *    is requested only when the consumer has drained the previous one
+ * 3. Bounding each page request by CLOUDWATCH_LOGS_CALL_TIMEOUT_MILLIS (default 5000) and the
+ *    request deadline
+ *
+ * User IDs containing a double quote cannot be expressed as a filter term; for those the whole
+ * window is read and filtered locally.
+ */
+public class CloudWatchLogsEventSource implements LogEventSource {
+
+    private static final int PAGE_SIZE = (int) Math.max(1, Math.min(10000, EnvConfig.getLong("CLOUDWATCH_LOGS_PAGE_SIZE", 10000)));
+    private static final long CALL_TIMEOUT_MILLIS = EnvConfig.getLong("CLOUDWATCH_LOGS_CALL_TIMEOUT_MILLIS", 5000);
+
+    private final CloudWatchLogsClient client;
+
+    /**
+     * Constructor that initializes the source with the default client.
+     */
+    public CloudWatchLogsEventSource() {
+        this(CloudWatchLogsClient.create());
+    }
+
+    /**
+     * Constructor that allows for dependency injection (useful for testing).
+     */
+    public CloudWatchLogsEventSource(CloudWatchLogsClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public Stream<LogEvent> events(String userId, String logGroupName, long startTimeMillis, long endTimeMillis) {
+        FilterLogEventsRequest.Builder request = FilterLogEventsRequest.builder()
+                .logGroupName(logGroupName)
+                .startTime(startTimeMillis)
+                .endTime(endTimeMillis)
+                .limit(PAGE_SIZE);
+        String filterPattern = filterPattern(userId);
+        if (filterPattern != null) {
+            request.filterPattern(filterPattern);
+        }
+        Stream<LogEvent> events = StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                new PageIterator(request.build()), Spliterator.ORDERED | Spliterator.NONNULL), false);
+        return filterPattern != null ? events : events.filter(event -> event.getMessage().contains(userId));
+    }
+
+    /**
+     * The filter-pattern term matching events that contain the user ID.
+     *
+     * @return The quoted term, or null if the user ID cannot be quoted
+     */
+    static String filterPattern(String userId) {
+        if (userId == null || userId.isEmpty() || userId.indexOf('"') >= 0) {
+            return null;
+        }
+        return "\"" + userId + "\"";
+    }
+
+    /**
+     * Iterates the events of successive FilterLogEvents pages, fetching each page on demand.
+     */
+    private final class PageIterator implements Iterator<LogEvent> {
+        private FilterLogEventsRequest request;
+        private Iterator<FilteredLogEvent> page = Collections.emptyIterator();
+        private boolean lastPage;
+
+        PageIterator(FilterLogEventsRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public boolean hasNext() {
+            // Pages may be empty while CloudWatch is still searching, so keep going until a token runs out
+            while (!page.hasNext() && !lastPage) {
+                fetchPage();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public LogEvent next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            FilteredLogEvent event = page.next();
+            return new LogEvent(event.message(), event.timestamp() != null ? event.timestamp() : 0L, event.eventId());
+        }
+
+        private void fetchPage() {
+            long timeoutMillis = Deadline.sliceMillis("CloudWatch Logs", CALL_TIMEOUT_MILLIS, 1.0);
+            FilterLogEventsResponse response = client.filterLogEvents(request.toBuilder()
+                    .overrideConfiguration(Deadline.apiCallTimeout(timeoutMillis))
+                    .build());
+            page = response.events() != null ? response.events().iterator() : Collections.emptyIterator();
+            String nextToken = response.nextToken();
+            if (nextToken == null || nextToken.isEmpty() || nextToken.equals(request.nextToken())) {
+                lastPage = true;
+            } else {
+                request = request.toBuilder().nextToken(nextToken).build();
+            }
+        }
+    }
+}
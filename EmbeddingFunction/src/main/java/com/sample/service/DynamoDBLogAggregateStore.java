@@ -0,0 +1,126 @@
+package com.sample.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.sample.util.Deadline;
+import com.sample.util.EnvConfig;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+/**
+ * Log aggregate store backed by a DynamoDB table keyed by user_id and log_group.
+ * This class handles:
+ * 1. Storing the aggregates as gzipped JSON in a binary attribute, which keeps a week of hourly
+ *    buckets well under the item size limit
+ * 2. Optimistic locking on a version attribute, so concurrent refreshes of the same user never
+ *    overwrite each other
+ * 3. Bounding each call by DYNAMODB_CALL_TIMEOUT_MILLIS (default 3000) and the request deadline
+ */
+public class DynamoDBLogAggregateStore implements LogAggregateStore {
+
+    private static final long CALL_TIMEOUT_MILLIS = EnvConfig.getLong("DYNAMODB_CALL_TIMEOUT_MILLIS", 3000);
+    private static final LogClassifier CLASSIFIER = new LogClassifier();
+
+    private final DynamoDbClient dynamoDb;
+    private final String tableName;
+
+    /**
+     * Constructor that initializes the store with the default client.
+     */
+    public DynamoDBLogAggregateStore(String tableName) {
+        this(DynamoDbClient.create(), tableName);
+    }
+
+    /**
+     * Constructor that allows for dependency injection (useful for testing).
+     */
+    public DynamoDBLogAggregateStore(DynamoDbClient dynamoDb, String tableName) {
+        this.dynamoDb = dynamoDb;
+        this.tableName = tableName;
+    }
+
+    @Override
+    public UserLogAggregates load(String userId, String logGroupName) {
+        GetItemResponse response = dynamoDb.getItem(GetItemRequest.builder()
+                .tableName(tableName)
+                .key(key(userId, logGroupName))
+                .consistentRead(true)
+                .overrideConfiguration(Deadline.apiCallTimeout(
+                        Deadline.sliceMillis("DynamoDB read", CALL_TIMEOUT_MILLIS, 1.0)))
+                .build());
+        Map<String, AttributeValue> item = response.item();
+        if (item == null || !item.containsKey("aggregates")) {
+            return null;
+        }
+        UserLogAggregates aggregates = UserLogAggregates.fromJson(
+                gunzip(item.get("aggregates").b().asByteArray()), CLASSIFIER);
+        aggregates.setVersion(Long.parseLong(item.get("version").n()));
+        return aggregates;
+    }
+
+    @Override
+    public boolean save(String userId, String logGroupName, UserLogAggregates aggregates) {
+        long version = aggregates.getVersion();
+        Map<String, AttributeValue> item = key(userId, logGroupName);
+        item.put("aggregates", AttributeValue.builder().b(SdkBytes.fromByteArray(gzip(aggregates.toJson()))).build());
+        item.put("version", AttributeValue.builder().n(String.valueOf(version + 1)).build());
+        item.put("updated_at", AttributeValue.builder().s(String.valueOf(System.currentTimeMillis())).build());
+
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":version", AttributeValue.builder().n(String.valueOf(version)).build());
+        try {
+            dynamoDb.putItem(PutItemRequest.builder()
+                    .tableName(tableName)
+                    .item(item)
+                    .conditionExpression("attribute_not_exists(version) OR version = :version")
+                    .expressionAttributeValues(values)
+                    .overrideConfiguration(Deadline.apiCallTimeout(
+                            Deadline.sliceMillis("DynamoDB write", CALL_TIMEOUT_MILLIS, 1.0)))
+                    .build());
+        } catch (ConditionalCheckFailedException e) {
+            System.err.println("Log aggregates for user " + userId + " changed since version " + version + ", not saving");
+            return false;
+        }
+        aggregates.setVersion(version + 1);
+        return true;
+    }
+
+    private static Map<String, AttributeValue> key(String userId, String logGroupName) {
+        Map<String, AttributeValue> key = new HashMap<>();
+        key.put("user_id", AttributeValue.builder().s(userId).build());
+        key.put("log_group", AttributeValue.builder().s(logGroupName).build());
+        return key;
+    }
+
+    static byte[] gzip(String json) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static String gunzip(byte[] compressed) {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid log aggregates item", e);
+        }
+    }
+}
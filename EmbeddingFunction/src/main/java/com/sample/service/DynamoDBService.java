@@ -1,16 +1,21 @@
 package com.sample.service;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
-import com.sample.util.JsonUtils;
+import com.sample.model.EmbeddingVector;
+import com.sample.util.Deadline;
+import com.sample.util.EmbeddingCodec;
+import com.sample.util.EnvConfig;
+import com.sample.util.HedgedGet;
+import com.sample.util.NearCache;
 
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
-import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 import software.amazon.dax.ClusterDaxAsyncClient;
 import software.amazon.dax.Configuration;
@@ -20,6 +25,12 @@ public class DynamoDBService {
     private final DynamoDbClient dynamoDb;
     private static final String TABLE_NAME = "UserEmbeddings";
     private static final String DAX_ENDPOINT = "dax://your-dax-cluster.amazonaws.com"; // Replace with your DAX cluster
+    private static final EmbeddingCodec.Format STORAGE_FORMAT = EmbeddingCodec.Format.fromEnv();
+    private static final long CALL_TIMEOUT_MILLIS = EnvConfig.getLong("DYNAMODB_CALL_TIMEOUT_MILLIS", 3000);
+    private final NearCache<Map<String, AttributeValue>> nearCache = NearCache.forTable(TABLE_NAME);
+
+    // Created on the first hedged read
+    private DynamoDbAsyncClient asyncDynamoDb;
 
     public DynamoDBService()  {
         // Initialize DAX client (for caching) and DynamoDB client (for permanent storage)
@@ -42,11 +53,18 @@ public class DynamoDBService {
      * storage).
      */
     public void storeEmbedding(String userId, double[] embedding) throws Exception {
-        String embeddingJson = JsonUtils.toJson(embedding);
+        storeEmbedding(userId, EmbeddingVector.of(embedding));
+    }
 
+    /**
+     * Stores a float32 user embedding in both DAX (cache) and DynamoDB (permanent
+     * storage).
+     */
+    public void storeEmbedding(String userId, EmbeddingVector embedding) throws Exception {
         Map<String, AttributeValue> item = new HashMap<>();
         item.put("user_id", AttributeValue.builder().s(userId).build());
-        item.put("embedding", AttributeValue.builder().s(embeddingJson).build());
+        item.put("embedding", EmbeddingCodec.toAttributeValue(embedding, STORAGE_FORMAT));
+        EmbeddingKeyFilter.recordStored(userId, null);
 
         // Store in DAX (cache)
         daxClient.putItem(PutItemRequest.builder()
@@ -55,10 +73,18 @@ public class DynamoDBService {
                 .build());
 
         // Store in DynamoDB (permanent storage)
-        dynamoDb.putItem(PutItemRequest.builder()
-                .tableName(TABLE_NAME)
-                .item(item)
-                .build());
+        try {
+            dynamoDb.putItem(PutItemRequest.builder()
+                    .tableName(TABLE_NAME)
+                    .item(item)
+                    .overrideConfiguration(Deadline.apiCallTimeout(
+                            Deadline.sliceMillis("DynamoDB write", CALL_TIMEOUT_MILLIS, 1.0)))
+                    .build());
+        } catch (RuntimeException e) {
+            nearCache.invalidate(userId);
+            throw e;
+        }
+        nearCache.put(userId, Collections.unmodifiableMap(item));
     }
 
     /**
@@ -66,28 +92,45 @@ public class DynamoDBService {
      * not found.
      */
     public double[] getEmbedding(String userId) throws Exception {
+        EmbeddingVector embedding = getEmbeddingVector(userId);
+        return embedding != null ? embedding.toDoubleArray() : null;
+    }
+
+    /**
+     * Retrieves a user embedding as a float32 vector, from DAX first, then DynamoDB.
+     */
+    public EmbeddingVector getEmbeddingVector(String userId) throws Exception {
+        // Check the in-process near-cache before going over the network
+        Map<String, AttributeValue> cached = nearCache.get(userId);
+        if (cached != null) {
+            return EmbeddingCodec.fromAttributeValue(cached.get("embedding"));
+        }
+        // Most lookups for users that were never embedded end here, without a network call
+        if (!EmbeddingKeyFilter.mightExist(userId, null)) {
+            return null;
+        }
+        long stamp = nearCache.stamp();
+
         GetItemRequest request = GetItemRequest.builder()
                 .tableName(TABLE_NAME)
                 .key(Map.of("user_id", AttributeValue.builder().s(userId).build()))
                 .build();
 
-        // Attempt to fetch from DAX (cache)
-        Map<String, AttributeValue> item = null;
-        try {
-            GetItemResponse response = daxClient.getItem(request).get(); // Use .get() to wait for the CompletableFuture
-            item = response.item();
-        } catch (Exception e) {
-            // Log the exception if needed
-            System.err.println("Error fetching from DAX: " + e.getMessage());
-        }
-        
+        // DAX (cache) first, with a hedged DynamoDB read if DAX is slow, then DynamoDB
+        Map<String, AttributeValue> item = HedgedGet.getItem(daxClient, dynamoDb, this::getAsyncDynamoDb, request,
+                found -> found != null && found.containsKey("embedding"));
+
         if (item == null || !item.containsKey("embedding")) {
-            // Fallback to DynamoDB
-            item = dynamoDb.getItem(request).item();
+            return null;
         }
+        nearCache.putIfUnchanged(userId, item, stamp);
+        return EmbeddingCodec.fromAttributeValue(item.get("embedding"));
+    }
 
-        return (item != null && item.containsKey("embedding"))
-                ? JsonUtils.fromJson(item.get("embedding").s(), double[].class)
-                : null;
+    private synchronized DynamoDbAsyncClient getAsyncDynamoDb() {
+        if (asyncDynamoDb == null) {
+            asyncDynamoDb = DynamoDbAsyncClient.create();
+        }
+        return asyncDynamoDb;
     }
 }
@@ -0,0 +1,148 @@
+package com.sample.service;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sample.util.BloomFilter;
+import com.sample.util.EnvConfig;
+
+/**
+ * Process-wide Bloom filter of the (user_id, embedding_type) keys present in the UserEmbeddings
+ * table, used to answer "definitely absent" for embedding reads without a network call.
+ *
+ * The filter is only trusted when it was loaded from a snapshot (EMBEDDING_BLOOM_FILTER_PATH)
+ * or installed after a full rebuild, and only until it is older than
+ * EMBEDDING_BLOOM_FILTER_MAX_AGE_SECONDS (default 3600). Keys stored by this process are added
+ * as they are written, but keys written by other processes are not, so the age limit bounds
+ * how long a new user can be reported missing here. Without a trusted filter, every key is
+ * treated as possibly present. Keys stored while a rebuild scan runs are added to the filter
+ * being rebuilt too, so it does not miss keys written behind the scan.
+ */
+public final class EmbeddingKeyFilter {
+
+    private static final long DEFAULT_MAX_AGE_SECONDS = 3600;
+    private static final long MAX_AGE_MILLIS = EnvConfig.getLong("EMBEDDING_BLOOM_FILTER_MAX_AGE_SECONDS", DEFAULT_MAX_AGE_SECONDS) * 1000L;
+
+    private static volatile BloomFilter filter;
+    private static volatile long builtAt;
+    private static volatile boolean loaded = false;
+    // Filters being rebuilt, which also receive keys stored until they are installed
+    private static final Set<BloomFilter> rebuilding = new CopyOnWriteArraySet<>();
+
+    private static final AtomicLong definitelyAbsent = new AtomicLong();
+
+    private EmbeddingKeyFilter() {
+    }
+
+    /**
+     * Key for an item; items without an embedding_type use an empty type.
+     */
+    public static String key(String userId, String embeddingType) {
+        return userId + '\0' + (embeddingType != null ? embeddingType : "");
+    }
+
+    /**
+     * Returns false only if the key is definitely not stored.
+     */
+    public static boolean mightExist(String userId, String embeddingType) {
+        BloomFilter current = activeFilter();
+        if (current == null || current.mightContain(key(userId, embeddingType))) {
+            return true;
+        }
+        definitelyAbsent.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Records a key this process is about to store. Call before the write, so no concurrent
+     * reader in this process can see the key as absent once the item exists.
+     */
+    public static void recordStored(String userId, String embeddingType) {
+        if (!loaded) {
+            loadFromEnv();
+        }
+        String key = key(userId, embeddingType);
+        // Rebuilt filters first, so the key is in whichever filter install() swaps in
+        for (BloomFilter target : rebuilding) {
+            target.put(key);
+        }
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(key);
+        }
+    }
+
+    /**
+     * Registers a filter about to be filled by a rebuild scan, so keys stored from now on are
+     * added to it as well. Follow with install() or abandonRebuild().
+     */
+    public static void startRebuild(BloomFilter target) {
+        rebuilding.add(target);
+    }
+
+    /**
+     * Stops adding stored keys to a filter whose rebuild failed.
+     */
+    public static void abandonRebuild(BloomFilter target) {
+        rebuilding.remove(target);
+    }
+
+    /**
+     * Installs a freshly rebuilt filter.
+     *
+     * @param rebuilt Filter containing every key in the table
+     * @param builtAtMillis When the scan that built it started
+     */
+    public static synchronized void install(BloomFilter rebuilt, long builtAtMillis) {
+        filter = rebuilt;
+        builtAt = builtAtMillis;
+        loaded = true;
+        rebuilding.remove(rebuilt);
+    }
+
+    /**
+     * Drops the filter, so every key is treated as possibly present.
+     */
+    public static synchronized void clear() {
+        filter = null;
+        loaded = true;
+    }
+
+    public static long getDefinitelyAbsentCount() {
+        return definitelyAbsent.get();
+    }
+
+    private static BloomFilter activeFilter() {
+        if (!loaded) {
+            loadFromEnv();
+        }
+        BloomFilter current = filter;
+        if (current == null) {
+            return null;
+        }
+        return System.currentTimeMillis() - builtAt <= MAX_AGE_MILLIS ? current : null;
+    }
+
+    private static synchronized void loadFromEnv() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        String path = System.getenv("EMBEDDING_BLOOM_FILTER_PATH");
+        if (path == null || path.isEmpty()) {
+            return;
+        }
+        File file = new File(path);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            filter = BloomFilter.readFrom(in);
+            builtAt = file.lastModified();
+        } catch (Exception e) {
+            System.err.println("Error loading embedding key filter from " + path + ": " + e.getMessage());
+        }
+    }
+}
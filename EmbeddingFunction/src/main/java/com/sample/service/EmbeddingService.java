@@ -1,13 +1,28 @@
 package com.sample.service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sample.model.BatchEmbeddingResult;
+import com.sample.model.EmbeddingVector;
+import com.sample.util.BedrockRateController;
+import com.sample.util.Deadline;
+import com.sample.util.EmbeddingCache;
+import com.sample.util.EnvConfig;
+import com.sample.util.TitanResponseDecoder;
 import com.sample.util.UserAttributeFormatter;
 
 import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
 import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
 import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelRequest;
 import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelResponse;
@@ -17,58 +32,73 @@ import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelResponse;
  */
 public class EmbeddingService {
     private final BedrockRuntimeClient bedrockClient;
-    private static final String MODEL_ID = "amazon.titan-embed-text-v2";
+    public static final String MODEL_ID = "amazon.titan-embed-text-v2";
+    private static final int DEFAULT_DIMENSIONS = 1024; // Default dimension for v2
+    private static final int DEFAULT_MAX_IN_FLIGHT = 16;
+    private static final long DEFAULT_CALL_TIMEOUT_MILLIS = 10000;
+    // Leaves the rest of the request's budget for storing the result
+    private static final double CALL_BUDGET_FRACTION = 0.75;
     private static final ObjectMapper objectMapper = new ObjectMapper();
     private final UserAttributeFormatter attributeFormatter;
+    private final EmbeddingCache cache;
+    private final BedrockRateController rateController;
+    private final int maxInFlight;
+    private final long callTimeoutMillis;
+    private BedrockRuntimeAsyncClient asyncClient;
 
     public EmbeddingService() {
-        this.bedrockClient = BedrockRuntimeClient.create();
+        this(BedrockRuntimeClient.builder()
+                .overrideConfiguration(BedrockRateController.clientOverrideConfiguration())
+                .build(), null, EmbeddingCache.getInstance());
+    }
+
+    public EmbeddingService(BedrockRuntimeClient bedrockClient, EmbeddingCache cache) {
+        this(bedrockClient, null, cache);
+    }
+
+    /**
+     * Creates a service with explicit clients. The async client is used by the batch API
+     * and is created on first use when null.
+     */
+    public EmbeddingService(BedrockRuntimeClient bedrockClient, BedrockRuntimeAsyncClient asyncClient,
+                            EmbeddingCache cache) {
+        this(bedrockClient, asyncClient, cache, BedrockRateController.getInstance());
+    }
+
+    public EmbeddingService(BedrockRuntimeClient bedrockClient, BedrockRuntimeAsyncClient asyncClient,
+                            EmbeddingCache cache, BedrockRateController rateController) {
+        this.bedrockClient = bedrockClient;
+        this.asyncClient = asyncClient;
+        this.cache = cache;
+        this.rateController = rateController;
         this.attributeFormatter = new UserAttributeFormatter();
+        this.maxInFlight = readMaxInFlight();
+        this.callTimeoutMillis = readCallTimeout();
     }
 
     /**
      * Generates an embedding using AWS Bedrock Titan.
+     * Results are served from the shared {@link EmbeddingCache} when the same text has
+     * already been embedded with the same model and dimensions.
      *
      * @param inputText The input text to be converted into an embedding.
      * @return An array of double values representing the embedding.
      * @throws Exception If the Bedrock API call fails.
      */
     public double[] generateEmbedding(String inputText) throws Exception {
-        // For Titan v2, we need to specify the embedding type and dimensions
-        Map<String, Object> requestMap = new HashMap<>();
-        requestMap.put("inputText", inputText);
-        requestMap.put("embeddingTypes", List.of("float"));
-        requestMap.put("dimensions", 1024); // Default dimension for v2
-        
-        String requestBody = objectMapper.writeValueAsString(requestMap);
-
-        InvokeModelRequest request = InvokeModelRequest.builder()
-                .modelId(MODEL_ID)
-                .contentType("application/json")
-                .accept("application/json")
-                .body(SdkBytes.fromUtf8String(requestBody))
-                .build();
+        return generateEmbeddingVector(inputText).toDoubleArray();
+    }
 
-        try {
-            InvokeModelResponse response = bedrockClient.invokeModel(request);
-            Map<String, Object> responseMap = objectMapper.readValue(response.body().asUtf8String(), Map.class);
-            
-            // In v2, the embedding is in embeddingsByType.float
-            if (responseMap.containsKey("embeddingsByType") && 
-                ((Map<String, Object>)responseMap.get("embeddingsByType")).containsKey("float")) {
-                return objectMapper.convertValue(
-                    ((Map<String, Object>)responseMap.get("embeddingsByType")).get("float"), 
-                    double[].class
-                );
-            } else if (responseMap.containsKey("embedding")) {
-                // Fallback for v1 format if needed
-                return objectMapper.convertValue(responseMap.get("embedding"), double[].class);
-            } else {
-                throw new RuntimeException("Unexpected response format from AWS Bedrock Titan");
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("Error calling AWS Bedrock Titan: " + e.getMessage(), e);
-        }
+    /**
+     * Generates an embedding using AWS Bedrock Titan as a float32 vector.
+     * Cached vectors are returned without copying.
+     *
+     * @param inputText The input text to be converted into an embedding.
+     * @return The embedding vector.
+     * @throws Exception If the Bedrock API call fails.
+     */
+    public EmbeddingVector generateEmbeddingVector(String inputText) throws Exception {
+        return cachedEmbedding(inputText, DEFAULT_DIMENSIONS);
     }
     
     /**
@@ -83,6 +113,18 @@ public class EmbeddingService {
      * @throws Exception If the Bedrock API call fails
      */
     public double[] generateEmbeddingFromAttributes(Map<String, Object> userAttributes) throws Exception {
+        return generateEmbeddingVectorFromAttributes(userAttributes).toDoubleArray();
+    }
+
+    /**
+     * Generates a float32 embedding from user attributes using AWS Bedrock Titan.
+     *
+     * @param userAttributes Map of raw user attributes
+     * @return The embedding vector
+     * @throws Exception If the Bedrock API call fails
+     * @see #generateEmbeddingFromAttributes(Map)
+     */
+    public EmbeddingVector generateEmbeddingVectorFromAttributes(Map<String, Object> userAttributes) throws Exception {
         // Step 1: Encode raw attributes
         Map<String, Object> encodedAttributes = attributeFormatter.encodeAttributes(userAttributes);
         
@@ -90,7 +132,7 @@ public class EmbeddingService {
         String titanPrompt = attributeFormatter.createTitanPrompt(encodedAttributes);
         
         // Step 3: Generate embedding from the text prompt
-        return generateEmbedding(titanPrompt);
+        return generateEmbeddingVector(titanPrompt);
     }
 
     /**
@@ -103,11 +145,210 @@ public class EmbeddingService {
      * @throws Exception If the Bedrock API call fails.
      */
     public double[] generateEmbeddingWithDimension(String inputText, int dimensions) throws Exception {
+        return generateEmbeddingVector(inputText, dimensions).toDoubleArray();
+    }
+
+    /**
+     * Generates a float32 embedding using AWS Bedrock Titan with a specified dimension.
+     *
+     * @param inputText The input text to be converted into an embedding.
+     * @param dimensions The desired embedding dimensions (256, 512, or 1024).
+     * @return The embedding vector.
+     * @throws Exception If the Bedrock API call fails.
+     */
+    public EmbeddingVector generateEmbeddingVector(String inputText, int dimensions) throws Exception {
         // Validate dimensions
         if (dimensions != 256 && dimensions != 512 && dimensions != 1024) {
             throw new IllegalArgumentException("Dimensions must be 256, 512, or 1024 for Titan v2");
         }
         
+        return cachedEmbedding(inputText, dimensions);
+    }
+
+    /**
+     * Returns the cache used by this service, for monitoring.
+     */
+    public EmbeddingCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Generates embeddings for a list of input texts, blocking until all have completed.
+     *
+     * @param inputTexts The input texts to be converted into embeddings.
+     * @return One result per input, in input order.
+     * @throws Exception If the batch could not be scheduled.
+     * @see #generateEmbeddingsAsync(List, int)
+     */
+    public List<BatchEmbeddingResult> generateEmbeddings(List<String> inputTexts) throws Exception {
+        try {
+            return generateEmbeddingsAsync(inputTexts, DEFAULT_DIMENSIONS).get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error generating batch embeddings: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Generates embeddings for a list of input texts using the async Bedrock client.
+     */
+    public CompletableFuture<List<BatchEmbeddingResult>> generateEmbeddingsAsync(List<String> inputTexts) {
+        return generateEmbeddingsAsync(inputTexts, DEFAULT_DIMENSIONS);
+    }
+
+    /**
+     * Generates embeddings for a list of input texts using the async Bedrock client.
+     * At most BEDROCK_MAX_IN_FLIGHT requests (default 16) are outstanding at once: the batch
+     * runs as that many lanes, each starting its next item when the previous one completes.
+     * Cached inputs complete without a Bedrock call. A failed item is reported in its own
+     * result and does not fail the batch.
+     *
+     * @param inputTexts The input texts to be converted into embeddings.
+     * @param dimensions The desired embedding dimensions (256, 512, or 1024).
+     * @return Future completing with one result per input, in input order.
+     */
+    public CompletableFuture<List<BatchEmbeddingResult>> generateEmbeddingsAsync(List<String> inputTexts, int dimensions) {
+        if (dimensions != 256 && dimensions != 512 && dimensions != 1024) {
+            throw new IllegalArgumentException("Dimensions must be 256, 512, or 1024 for Titan v2");
+        }
+        int count = inputTexts.size();
+        BatchEmbeddingResult[] results = new BatchEmbeddingResult[count];
+        CompletableFuture<List<BatchEmbeddingResult>> done = new CompletableFuture<>();
+        if (count == 0) {
+            done.complete(new ArrayList<>());
+            return done;
+        }
+
+        AtomicInteger nextIndex = new AtomicInteger();
+        AtomicInteger remaining = new AtomicInteger(count);
+        // Lanes continue on SDK callback threads, so the caller's deadline is captured here
+        Deadline deadline = Deadline.current();
+        int lanes = Math.min(maxInFlight, count);
+        for (int lane = 0; lane < lanes; lane++) {
+            runLane(inputTexts, dimensions, deadline, results, nextIndex, remaining, done);
+        }
+        return done;
+    }
+
+    /**
+     * Processes items from the shared index until the batch is exhausted. Items that complete
+     * synchronously (cache hits) are handled in a loop rather than by recursion, so a batch
+     * of cached inputs does not grow the stack.
+     */
+    private void runLane(List<String> inputTexts, int dimensions, Deadline deadline, BatchEmbeddingResult[] results,
+                         AtomicInteger nextIndex, AtomicInteger remaining,
+                         CompletableFuture<List<BatchEmbeddingResult>> done) {
+        while (true) {
+            int index = nextIndex.getAndIncrement();
+            if (index >= results.length) {
+                return;
+            }
+            CompletableFuture<EmbeddingVector> future = cachedEmbeddingAsync(inputTexts.get(index), dimensions, deadline);
+            if (future.isDone()) {
+                recordResult(future, index, results, remaining, done);
+                continue;
+            }
+            future.whenComplete((embedding, error) -> {
+                recordResult(future, index, results, remaining, done);
+                runLane(inputTexts, dimensions, deadline, results, nextIndex, remaining, done);
+            });
+            return;
+        }
+    }
+
+    private void recordResult(CompletableFuture<EmbeddingVector> future, int index, BatchEmbeddingResult[] results,
+                              AtomicInteger remaining, CompletableFuture<List<BatchEmbeddingResult>> done) {
+        try {
+            results[index] = BatchEmbeddingResult.success(index, future.join());
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            // A cancelled call has no message, and a null message would read as success
+            String message = cause.getMessage() != null ? cause.getMessage() : cause.toString();
+            System.err.println("Batch embedding failed for item " + index + ": " + message);
+            results[index] = BatchEmbeddingResult.failure(index, message);
+        }
+        if (remaining.decrementAndGet() == 0) {
+            done.complete(new ArrayList<>(Arrays.asList(results)));
+        }
+    }
+
+    private CompletableFuture<EmbeddingVector> cachedEmbeddingAsync(String inputText, int dimensions, Deadline deadline) {
+        String key = EmbeddingCache.key(MODEL_ID, dimensions, inputText);
+        return cache.getOrLoadAsync(key, () -> invokeTitanAsync(inputText, dimensions, deadline));
+    }
+
+    /**
+     * @param deadline Deadline of the request the batch belongs to, or null if there is none
+     */
+    private CompletableFuture<EmbeddingVector> invokeTitanAsync(String inputText, int dimensions, Deadline deadline) {
+        InvokeModelRequest request;
+        try {
+            request = buildTitanRequest(inputText, dimensions);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return rateController.executeAsync(() -> getAsyncClient().invokeModel(withTimeout(request, deadline)), deadline).thenApply(response -> {
+            try {
+                return EmbeddingVector.wrap(TitanResponseDecoder.decodeFloats(response.body().asInputStream(), dimensions));
+            } catch (Exception e) {
+                throw new CompletionException(
+                        new RuntimeException("Error calling AWS Bedrock Titan: " + e.getMessage(), e));
+            }
+        });
+    }
+
+    private synchronized BedrockRuntimeAsyncClient getAsyncClient() {
+        if (asyncClient == null) {
+            asyncClient = BedrockRuntimeAsyncClient.builder()
+                    .overrideConfiguration(BedrockRateController.clientOverrideConfiguration())
+                    .build();
+        }
+        return asyncClient;
+    }
+
+    private static int readMaxInFlight() {
+        return (int) Math.max(1, EnvConfig.getLong("BEDROCK_MAX_IN_FLIGHT", DEFAULT_MAX_IN_FLIGHT));
+    }
+
+    private EmbeddingVector cachedEmbedding(String inputText, int dimensions) throws Exception {
+        String key = EmbeddingCache.key(MODEL_ID, dimensions, inputText);
+        return cache.getOrLoad(key, () -> invokeTitan(inputText, dimensions));
+    }
+
+    /**
+     * Calls Bedrock Titan for a single input text. Throttled calls are retried by the
+     * rate controller before the error is surfaced.
+     */
+    private EmbeddingVector invokeTitan(String inputText, int dimensions) throws Exception {
+        InvokeModelRequest request = buildTitanRequest(inputText, dimensions);
+
+        try {
+            Deadline deadline = Deadline.current();
+            InvokeModelResponse response = rateController.execute(() -> bedrockClient.invokeModel(withTimeout(request, deadline)));
+            return EmbeddingVector.wrap(TitanResponseDecoder.decodeFloats(response.body().asInputStream(), dimensions));
+        } catch (Exception e) {
+            throw new RuntimeException("Error calling AWS Bedrock Titan: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Applies the API call timeout for one attempt: BEDROCK_CALL_TIMEOUT_MILLIS, capped at a
+     * share of the request's remaining budget. Retries after throttling get a fresh slice, and
+     * stop with Deadline.ExceededException once the budget is gone.
+     */
+    private InvokeModelRequest withTimeout(InvokeModelRequest request, Deadline deadline) {
+        long timeoutMillis = deadline != null
+                ? deadline.slice("Bedrock call", callTimeoutMillis, CALL_BUDGET_FRACTION)
+                : callTimeoutMillis;
+        return request.toBuilder()
+                .overrideConfiguration(Deadline.apiCallTimeout(timeoutMillis))
+                .build();
+    }
+
+    private static long readCallTimeout() {
+        return Math.max(1, EnvConfig.getLong("BEDROCK_CALL_TIMEOUT_MILLIS", DEFAULT_CALL_TIMEOUT_MILLIS));
+    }
+
+    private InvokeModelRequest buildTitanRequest(String inputText, int dimensions) throws Exception {
         // For Titan v2, we need to specify the embedding type and dimensions
         Map<String, Object> requestMap = new HashMap<>();
         requestMap.put("inputText", inputText);
@@ -116,29 +357,11 @@ public class EmbeddingService {
         
         String requestBody = objectMapper.writeValueAsString(requestMap);
 
-        InvokeModelRequest request = InvokeModelRequest.builder()
+        return InvokeModelRequest.builder()
                 .modelId(MODEL_ID)
                 .contentType("application/json")
                 .accept("application/json")
                 .body(SdkBytes.fromUtf8String(requestBody))
                 .build();
-
-        try {
-            InvokeModelResponse response = bedrockClient.invokeModel(request);
-            Map<String, Object> responseMap = objectMapper.readValue(response.body().asUtf8String(), Map.class);
-            
-            // In v2, the embedding is in embeddingsByType.float
-            if (responseMap.containsKey("embeddingsByType") && 
-                ((Map<String, Object>)responseMap.get("embeddingsByType")).containsKey("float")) {
-                return objectMapper.convertValue(
-                    ((Map<String, Object>)responseMap.get("embeddingsByType")).get("float"), 
-                    double[].class
-                );
-            } else {
-                throw new RuntimeException("Unexpected response format from AWS Bedrock Titan");
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("Error calling AWS Bedrock Titan: " + e.getMessage(), e);
-        }
     }
-}
\ No newline at end of file
+}
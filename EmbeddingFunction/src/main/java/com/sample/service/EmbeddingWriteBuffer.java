@@ -0,0 +1,462 @@
+package com.sample.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+/**
+ * Write-behind buffer that groups embedding puts into BatchWriteItem calls.
+ * This class handles:
+ * 1. Collecting items until a batch of up to 25 is full or the flush interval elapses
+ * 2. Keeping only the latest write per (user_id, embedding_type), since a batch may not
+ *    contain duplicate keys
+ * 3. Retrying UnprocessedItems with full-jitter exponential backoff
+ * 4. Serving pending and in-flight items to readers so a buffered write is visible until
+ *    DynamoDB has accepted it
+ * 5. Notifying a listener of each item once DynamoDB has accepted it, so caches and indexes
+ *    never hold a write that was not stored
+ *
+ * add() never throws for a failed write: items that DynamoDB rejected for a transient reason
+ * stay buffered and the failure is reported by the next flush(). Items rejected with a
+ * non-retryable error (a 4xx other than throttling) are dropped, counted as failed, and
+ * reported by that flush(), so a write that can never succeed is not served to readers.
+ *
+ * Lambda freezes background threads between invocations, so callers must call flush()
+ * (or close()) before returning from a handler.
+ */
+public class EmbeddingWriteBuffer implements AutoCloseable {
+    public static final int MAX_BATCH_SIZE = 25;
+
+    private static final long BASE_BACKOFF_MILLIS = 50;
+    private static final long MAX_BACKOFF_MILLIS = 2000;
+    // How long close() waits for a running background flush, which may be in its retry backoff
+    private static final long CLOSE_WAIT_MILLIS = 30000;
+
+    private final DynamoDbClient dynamoDb;
+    private final DynamoDbAsyncClient daxClient;
+    private final String tableName;
+    private final int batchSize;
+    private final int maxRetries;
+    private final Consumer<List<Map<String, AttributeValue>>> onWritten;
+    private final ScheduledExecutorService scheduler;
+
+    // Pending items in arrival order, keyed by user_id + embedding_type
+    private final LinkedHashMap<String, Map<String, AttributeValue>> pending = new LinkedHashMap<>();
+    // Items of the batch being written, readable until the write succeeds; guarded by pending
+    private final Map<String, Map<String, AttributeValue>> inFlight = new HashMap<>();
+    // Serializes flushes so batches are written in order
+    private final Object flushLock = new Object();
+    // Items dropped since the last flush() reported them; guarded by pending
+    private int droppedSinceFlush = 0;
+    private volatile String lastDropReason;
+
+    private final AtomicLong itemsWritten = new AtomicLong();
+    private final AtomicLong batchesWritten = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong itemsFailed = new AtomicLong();
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a buffer without a listener for written items.
+     *
+     * @param dynamoDb DynamoDB client used for the batch writes
+     * @param daxClient Optional DAX client that receives the same batches, or null
+     * @param tableName Table to write to
+     * @param batchSize Items per BatchWriteItem call (at most 25)
+     * @param flushIntervalMillis Maximum time an item waits before a background flush, or 0 to disable
+     * @param maxRetries Retries for UnprocessedItems before flush() fails
+     */
+    public EmbeddingWriteBuffer(DynamoDbClient dynamoDb, DynamoDbAsyncClient daxClient, String tableName,
+                                int batchSize, long flushIntervalMillis, int maxRetries) {
+        this(dynamoDb, daxClient, tableName, batchSize, flushIntervalMillis, maxRetries, items -> { });
+    }
+
+    /**
+     * @param dynamoDb DynamoDB client used for the batch writes
+     * @param daxClient Optional DAX client that receives the same batches, or null
+     * @param tableName Table to write to
+     * @param batchSize Items per BatchWriteItem call (at most 25)
+     * @param flushIntervalMillis Maximum time an item waits before a background flush, or 0 to disable
+     * @param maxRetries Retries for UnprocessedItems before flush() fails
+     * @param onWritten Called with the items DynamoDB accepted, in write order, on the flushing thread
+     */
+    public EmbeddingWriteBuffer(DynamoDbClient dynamoDb, DynamoDbAsyncClient daxClient, String tableName,
+                                int batchSize, long flushIntervalMillis, int maxRetries,
+                                Consumer<List<Map<String, AttributeValue>>> onWritten) {
+        this.dynamoDb = dynamoDb;
+        this.daxClient = daxClient;
+        this.tableName = tableName;
+        this.batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE, batchSize));
+        this.maxRetries = Math.max(0, maxRetries);
+        this.onWritten = onWritten;
+
+        if (flushIntervalMillis > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "embedding-write-buffer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.scheduler.scheduleWithFixedDelay(this::backgroundFlush,
+                    flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    static String itemKey(Map<String, AttributeValue> item) {
+        AttributeValue type = item.get("embedding_type");
+        return item.get("user_id").s() + '\0' + (type != null ? type.s() : "");
+    }
+
+    /**
+     * Buffers an item. When a full batch is pending, it is written on the calling thread; a
+     * failure to write it is logged and reported by the next flush().
+     *
+     * @throws IllegalStateException If the buffer has been closed
+     */
+    public void add(Map<String, AttributeValue> item) {
+        if (closed) {
+            throw new IllegalStateException("Write buffer is closed");
+        }
+        boolean full;
+        synchronized (pending) {
+            String key = itemKey(item);
+            // Re-insert so a rewritten key moves to the back with its latest value
+            pending.remove(key);
+            pending.put(key, item);
+            full = pending.size() >= batchSize;
+        }
+        if (full) {
+            try {
+                flushBatches(false);
+            } catch (Exception e) {
+                System.err.println("Error flushing embedding writes: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns a buffered item that DynamoDB has not accepted yet, or null.
+     */
+    public Map<String, AttributeValue> getPending(String userId, String embeddingType) {
+        String key = userId + '\0' + embeddingType;
+        synchronized (pending) {
+            Map<String, AttributeValue> item = pending.get(key);
+            return item != null ? item : inFlight.get(key);
+        }
+    }
+
+    /**
+     * Number of buffered keys DynamoDB has not accepted yet, including the batch being written.
+     */
+    public int pendingCount() {
+        synchronized (pending) {
+            int count = pending.size();
+            for (String key : inFlight.keySet()) {
+                if (!pending.containsKey(key)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Writes every pending item.
+     *
+     * @throws RuntimeException If items remain unprocessed after all retries, in which case they
+     *         stay buffered, or if items were dropped after a non-retryable error since the last flush
+     */
+    public void flush() {
+        RuntimeException error = null;
+        try {
+            flushBatches(true);
+        } catch (RuntimeException e) {
+            error = e;
+        }
+        int dropped;
+        synchronized (pending) {
+            dropped = droppedSinceFlush;
+            droppedSinceFlush = 0;
+        }
+        if (error != null) {
+            throw error;
+        }
+        if (dropped > 0) {
+            throw new RuntimeException("Dropped " + dropped + " embedding writes after non-retryable errors: "
+                    + lastDropReason);
+        }
+    }
+
+    /**
+     * Stops the background flush, letting a running one finish, and writes every pending item.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                if (!scheduler.awaitTermination(CLOSE_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    System.err.println("Background embedding flush still running after " + CLOSE_WAIT_MILLIS + " ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    private void backgroundFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            System.err.println("Error flushing embedding writes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes pending items in batches. Without drainAll, only full batches are written.
+     */
+    private void flushBatches(boolean drainAll) {
+        synchronized (flushLock) {
+            while (true) {
+                List<Map<String, AttributeValue>> batch = new ArrayList<>(batchSize);
+                synchronized (pending) {
+                    if (pending.isEmpty() || (!drainAll && pending.size() < batchSize)) {
+                        return;
+                    }
+                    Iterator<Map.Entry<String, Map<String, AttributeValue>>> it = pending.entrySet().iterator();
+                    while (it.hasNext() && batch.size() < batchSize) {
+                        Map.Entry<String, Map<String, AttributeValue>> entry = it.next();
+                        batch.add(entry.getValue());
+                        inFlight.put(entry.getKey(), entry.getValue());
+                        it.remove();
+                    }
+                }
+                try {
+                    writeBatch(batch);
+                } finally {
+                    // Failed items were requeued into pending or dropped before this
+                    synchronized (pending) {
+                        inFlight.clear();
+                    }
+                }
+            }
+        }
+    }
+
+    private void writeBatch(List<Map<String, AttributeValue>> batch) {
+        List<WriteRequest> requests = new ArrayList<>(batch.size());
+        for (Map<String, AttributeValue> item : batch) {
+            requests.add(WriteRequest.builder().putRequest(PutRequest.builder().item(item).build()).build());
+        }
+
+        List<WriteRequest> remaining = requests;
+        for (int attempt = 0; ; attempt++) {
+            BatchWriteItemResponse response;
+            try {
+                response = dynamoDb.batchWriteItem(BatchWriteItemRequest.builder()
+                        .requestItems(Map.of(tableName, remaining))
+                        .build());
+            } catch (RuntimeException e) {
+                if (isPermanent(e) && remaining.size() > 1) {
+                    // One bad item fails the whole call, so find it by writing each item alone
+                    writeIndividually(remaining);
+                    return;
+                }
+                if (isPermanent(e)) {
+                    drop(remaining, e);
+                } else {
+                    requeue(remaining);
+                }
+                throw e;
+            }
+
+            List<WriteRequest> unprocessed = response.hasUnprocessedItems()
+                    ? response.unprocessedItems().getOrDefault(tableName, List.of())
+                    : List.of();
+            itemsWritten.addAndGet(remaining.size() - unprocessed.size());
+            notifyWritten(remaining, unprocessed);
+            if (unprocessed.isEmpty()) {
+                break;
+            }
+            if (attempt >= maxRetries) {
+                requeue(unprocessed);
+                throw new RuntimeException("Failed to write " + unprocessed.size()
+                        + " embeddings after " + maxRetries + " retries");
+            }
+            retries.incrementAndGet();
+            try {
+                sleepBackoff(attempt);
+            } catch (RuntimeException e) {
+                requeue(unprocessed);
+                throw e;
+            }
+            remaining = unprocessed;
+        }
+        batchesWritten.incrementAndGet();
+
+        // Store in DAX (cache) if available
+        if (daxClient != null) {
+            try {
+                daxClient.batchWriteItem(BatchWriteItemRequest.builder()
+                        .requestItems(Map.of(tableName, requests))
+                        .build())
+                        .exceptionally(e -> {
+                            System.err.println("Error storing batch in DAX: " + e.getMessage());
+                            return null;
+                        });
+            } catch (Exception e) {
+                System.err.println("Error storing batch in DAX: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes each request as its own batch, then rethrows the first failure, if any.
+     */
+    private void writeIndividually(List<WriteRequest> requests) {
+        RuntimeException firstError = null;
+        for (WriteRequest request : requests) {
+            try {
+                writeBatch(List.of(request.putRequest().item()));
+            } catch (RuntimeException e) {
+                if (firstError == null) {
+                    firstError = e;
+                }
+            }
+        }
+        if (firstError != null) {
+            throw firstError;
+        }
+    }
+
+    /**
+     * Passes the items of a call that DynamoDB accepted to the listener. Listener failures are
+     * logged, not propagated, since the items are stored.
+     */
+    private void notifyWritten(List<WriteRequest> sent, List<WriteRequest> unprocessed) {
+        Set<String> failedKeys = new HashSet<>();
+        for (WriteRequest request : unprocessed) {
+            failedKeys.add(itemKey(request.putRequest().item()));
+        }
+        List<Map<String, AttributeValue>> written = new ArrayList<>(sent.size());
+        for (WriteRequest request : sent) {
+            Map<String, AttributeValue> item = request.putRequest().item();
+            if (!failedKeys.contains(itemKey(item))) {
+                written.add(item);
+            }
+        }
+        if (written.isEmpty()) {
+            return;
+        }
+        try {
+            onWritten.accept(written);
+        } catch (RuntimeException e) {
+            System.err.println("Error handling written embeddings: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Whether retrying the same request can never succeed, e.g. a validation error or a missing table.
+     */
+    static boolean isPermanent(RuntimeException e) {
+        if (!(e instanceof SdkServiceException)) {
+            return false;
+        }
+        SdkServiceException serviceException = (SdkServiceException) e;
+        int status = serviceException.statusCode();
+        return status >= 400 && status < 500 && !serviceException.isThrottlingException();
+    }
+
+    /**
+     * Discards items DynamoDB rejected permanently, so readers stop seeing them.
+     */
+    private void drop(List<WriteRequest> rejected, RuntimeException cause) {
+        itemsFailed.addAndGet(rejected.size());
+        lastDropReason = cause.getMessage();
+        synchronized (pending) {
+            droppedSinceFlush += rejected.size();
+        }
+        System.err.println("Dropping " + rejected.size() + " embedding writes after a non-retryable error: "
+                + cause.getMessage());
+    }
+
+    /**
+     * Puts failed items back at the front of the buffer unless a newer write for the same key arrived.
+     */
+    private void requeue(List<WriteRequest> failed) {
+        synchronized (pending) {
+            LinkedHashMap<String, Map<String, AttributeValue>> merged = new LinkedHashMap<>();
+            for (WriteRequest request : failed) {
+                Map<String, AttributeValue> item = request.putRequest().item();
+                merged.put(itemKey(item), item);
+            }
+            for (Map.Entry<String, Map<String, AttributeValue>> entry : pending.entrySet()) {
+                merged.put(entry.getKey(), entry.getValue());
+            }
+            pending.clear();
+            pending.putAll(merged);
+        }
+    }
+
+    /**
+     * Sleeps for a full-jitter exponential backoff before retry number attempt + 1.
+     */
+    static void sleepBackoff(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt, 16));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while retrying DynamoDB batch request", e);
+        }
+    }
+
+    public long getItemsWritten() {
+        return itemsWritten.get();
+    }
+
+    public long getBatchesWritten() {
+        return batchesWritten.get();
+    }
+
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    public long getItemsFailed() {
+        return itemsFailed.get();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", pendingCount());
+        stats.put("itemsWritten", getItemsWritten());
+        stats.put("batchesWritten", getBatchesWritten());
+        stats.put("retries", getRetryCount());
+        stats.put("itemsFailed", getItemsFailed());
+        return stats;
+    }
+}
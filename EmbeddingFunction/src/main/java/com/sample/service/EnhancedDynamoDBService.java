@@ -2,32 +2,110 @@ package com.sample.service;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
+import com.sample.index.AttributeFilter;
+import com.sample.index.CompressedBitmap;
+import com.sample.index.ProfileAttributeIndex;
+import com.sample.index.SearchResult;
+import com.sample.index.VectorIndex;
+import com.sample.index.VectorIndexRegistry;
 import com.sample.model.EmbeddingMetadata;
+import com.sample.model.EmbeddingVector;
+import com.sample.model.QuantizedVector;
+import com.sample.model.StoredEmbedding;
+import com.sample.util.BloomFilter;
+import com.sample.util.Deadline;
+import com.sample.util.EmbeddingCodec;
+import com.sample.util.EnvConfig;
+import com.sample.util.HedgedGet;
 import com.sample.util.JsonUtils;
+import com.sample.util.NearCache;
 
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
 import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
 import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
 import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
 import software.amazon.dax.ClusterDaxAsyncClient;
 import software.amazon.dax.Configuration;
 
 /**
  * Enhanced DynamoDB service that supports storing different types of embeddings with metadata.
+ *
+ * With EMBEDDING_WRITE_BEHIND=true, writes are buffered and sent as BatchWriteItem calls
+ * (see EmbeddingWriteBuffer); call flush() or close() before the process or invocation ends.
+ * Buffered writes reach the near cache and vector indexes only once DynamoDB has accepted them.
+ * Embeddings can carry the user's profile attributes (age, location, subscription_plan), which
+ * index builds load for every embedding type so similarity searches can filter on them.
  */
-public class EnhancedDynamoDBService {
-    private DynamoDbAsyncClient daxClient = null;
+public class EnhancedDynamoDBService implements AutoCloseable {
+    private final DynamoDbAsyncClient daxClient;
     private final DynamoDbClient dynamoDb;
+    private final EmbeddingWriteBuffer writeBuffer;
+    private final NearCache<Map<String, AttributeValue>> nearCache = NearCache.forTable(TABLE_NAME);
     private static final String TABLE_NAME = "UserEmbeddings";
     private static final String DAX_ENDPOINT = System.getenv("DAX_ENDPOINT");
+    private static final EmbeddingCodec.Format STORAGE_FORMAT = EmbeddingCodec.Format.fromEnv();
+    private static final EmbeddingCodec.Quantization QUANTIZATION = EmbeddingCodec.Quantization.fromEnv();
+    private static final boolean WRITE_BEHIND = Boolean.parseBoolean(System.getenv("EMBEDDING_WRITE_BEHIND"));
+    private static final long WRITE_FLUSH_MILLIS = EnvConfig.getLong("EMBEDDING_WRITE_FLUSH_MILLIS", 1000);
+    private static final int WRITE_MAX_RETRIES = 8;
+    private static final int BATCH_GET_SIZE = 100;
+    private static final int BATCH_GET_MAX_RETRIES = 8;
+    private static final int BATCH_GET_PARALLELISM = 8;
+    private static final long CALL_TIMEOUT_MILLIS = EnvConfig.getLong("DYNAMODB_CALL_TIMEOUT_MILLIS", 3000);
+    private static final long DAX_READ_TIMEOUT_MILLIS = EnvConfig.getLong("DAX_READ_TIMEOUT_MILLIS", 200);
+    // Same share of the request budget a single-item DAX read gets in HedgedGet
+    private static final double DAX_BUDGET_FRACTION = 0.25;
+    // Vector reads skip the metadata JSON, which is most of the item
+    private static final String VECTOR_PROJECTION = "user_id, embedding_type, embedding, embedding_q8";
+    // Index builds also read the profile attributes searches can be filtered by; location is a reserved word
+    private static final String INDEX_PROJECTION = VECTOR_PROJECTION + ", age, #location, subscription_plan";
+    // Items of the indexed type, plus any item carrying profile attributes, whatever its type
+    private static final String INDEX_FILTER = "embedding_type = :type"
+            + " OR attribute_exists(age) OR attribute_exists(#location) OR attribute_exists(subscription_plan)";
+    private static final int VECTOR_INDEX_SCAN_SEGMENTS = (int) EnvConfig.getLong("VECTOR_INDEX_SCAN_SEGMENTS", 4);
+    private static final long VECTOR_INDEX_WAIT_MILLIS = EnvConfig.getLong("VECTOR_INDEX_WAIT_MILLIS", 2000);
+    // Share of the request budget a search may spend waiting for a first index build
+    private static final double VECTOR_INDEX_WAIT_FRACTION = 0.5;
+    // First builds still running, by embedding type; their partial index is already registered
+    private static final Map<String, CompletableFuture<VectorIndex>> VECTOR_INDEX_BUILDS = new ConcurrentHashMap<>();
+    private static final ExecutorService VECTOR_INDEX_BUILD_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "vector-index-build");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     // Embedding types
     public static final String EMBEDDING_TYPE_RAW_TEXT = "raw_text";
@@ -38,13 +116,67 @@ public class EnhancedDynamoDBService {
     public static final String EMBEDDING_TYPE_CLOUDWATCH_LOGS = "cloudwatch_logs";
     public static final String EMBEDDING_TYPE_CLIENT_EFFORT = "client_effort";
 
+    // Created on first multi-chunk batch read
+    private ExecutorService batchReadExecutor;
+
+    // Created on first async call, unless supplied
+    private DynamoDbAsyncClient asyncDynamoDb;
+
     public EnhancedDynamoDBService() {
         // Initialize DAX client (for caching) and DynamoDB client (for permanent storage)
-        this.dynamoDb = DynamoDbClient.create();
-       
+        this(DynamoDbClient.create(), createDaxClient());
+    }
+
+    /**
+     * Creates the service with the given clients.
+     * 
+     * @param dynamoDb DynamoDB client
+     * @param daxClient DAX client, or null to read and write DynamoDB only
+     */
+    public EnhancedDynamoDBService(DynamoDbClient dynamoDb, DynamoDbAsyncClient daxClient) {
+        this(dynamoDb, daxClient, null);
+    }
+
+    /**
+     * Creates the service with the given clients.
+     * 
+     * @param dynamoDb DynamoDB client
+     * @param daxClient DAX client, or null to read and write DynamoDB only
+     * @param asyncDynamoDb Async DynamoDB client for the *Async methods, or null to create one on first use
+     */
+    EnhancedDynamoDBService(DynamoDbClient dynamoDb, DynamoDbAsyncClient daxClient, DynamoDbAsyncClient asyncDynamoDb) {
+        this.dynamoDb = dynamoDb;
+        this.daxClient = daxClient;
+        this.asyncDynamoDb = asyncDynamoDb;
+        this.writeBuffer = WRITE_BEHIND
+                ? new EmbeddingWriteBuffer(dynamoDb, daxClient, TABLE_NAME,
+                        EmbeddingWriteBuffer.MAX_BATCH_SIZE, WRITE_FLUSH_MILLIS, WRITE_MAX_RETRIES,
+                        this::onBufferedWritesStored)
+                : null;
+    }
+
+    /**
+     * Caches and indexes buffered items once DynamoDB has accepted them. Until then readers see
+     * them through the write buffer only.
+     */
+    private void onBufferedWritesStored(List<Map<String, AttributeValue>> items) {
+        for (Map<String, AttributeValue> item : items) {
+            String userId = item.get("user_id").s();
+            String embeddingType = item.get("embedding_type").s();
+            nearCache.put(cacheKey(userId, embeddingType), Collections.unmodifiableMap(item));
+            recordProfile(item);
+            try {
+                VectorIndexRegistry.recordStored(embeddingType, userId, readVector(item).toFloatArray());
+            } catch (Exception e) {
+                System.err.println("Error indexing " + embeddingType + " embedding for user " + userId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static DynamoDbAsyncClient createDaxClient() {
         try {
             if (DAX_ENDPOINT != null && !DAX_ENDPOINT.isEmpty()) {
-                daxClient = ClusterDaxAsyncClient.builder()
+                return ClusterDaxAsyncClient.builder()
                         .overrideConfiguration(Configuration.builder()
                                 .url(DAX_ENDPOINT)
                                 .build())
@@ -54,6 +186,7 @@ public class EnhancedDynamoDBService {
             System.err.println("Error initializing DAX client: " + e.getMessage());
             e.printStackTrace();
         }
+        return null;
     }
 
     /**
@@ -66,35 +199,206 @@ public class EnhancedDynamoDBService {
      */
     public void storeEmbeddingWithMetadata(String userId, String embeddingType, double[] embedding, 
                                           EmbeddingMetadata metadata) throws Exception {
-        String embeddingJson = JsonUtils.toJson(embedding);
+        storeEmbeddingWithMetadata(userId, embeddingType, EmbeddingVector.of(embedding), metadata);
+    }
+
+    /**
+     * Stores a float32 user embedding with metadata in DynamoDB.
+     * 
+     * @param userId User ID
+     * @param embeddingType Type of embedding (raw_text, user_attributes, etc.)
+     * @param embedding The embedding vector
+     * @param metadata Additional metadata about the embedding
+     */
+    public void storeEmbeddingWithMetadata(String userId, String embeddingType, EmbeddingVector embedding, 
+                                          EmbeddingMetadata metadata) throws Exception {
+        storeEmbeddingWithMetadata(userId, embeddingType, embedding, metadata, null);
+    }
+
+    /**
+     * Stores a float32 user embedding with metadata in DynamoDB, along with the user's profile
+     * attributes, so similarity searches over any embedding type can filter on them.
+     * 
+     * @param userId User ID
+     * @param embeddingType Type of embedding (raw_text, user_attributes, etc.)
+     * @param embedding The embedding vector
+     * @param metadata Additional metadata about the embedding
+     * @param profileAttributes age, location and subscription_plan, as picked out by
+     *                          UserAttributeFormatter.profileAttributes, or null for none
+     */
+    public void storeEmbeddingWithMetadata(String userId, String embeddingType, EmbeddingVector embedding, 
+                                          EmbeddingMetadata metadata, Map<String, Object> profileAttributes) throws Exception {
+        Map<String, AttributeValue> item = buildItem(userId, embeddingType, embedding, metadata);
+        if (profileAttributes != null) {
+            putProfileAttributes(item, profileAttributes);
+        }
+
+        String cacheKey = cacheKey(userId, embeddingType);
+        EmbeddingKeyFilter.recordStored(userId, embeddingType);
+        if (writeBuffer != null) {
+            writeBuffer.add(item);
+            return;
+        }
+
+        // Store in DynamoDB (permanent storage)
+        try {
+            dynamoDb.putItem(PutItemRequest.builder()
+                    .tableName(TABLE_NAME)
+                    .item(item)
+                    .overrideConfiguration(Deadline.apiCallTimeout(
+                            Deadline.sliceMillis("DynamoDB write", CALL_TIMEOUT_MILLIS, 1.0)))
+                    .build());
+        } catch (RuntimeException e) {
+            nearCache.invalidate(cacheKey);
+            throw e;
+        }
+        nearCache.put(cacheKey, Collections.unmodifiableMap(item));
+        putInDax(item);
+        recordProfile(item);
+        VectorIndexRegistry.recordStored(embeddingType, userId, embedding.toFloatArray());
+    }
+
+    private static Map<String, AttributeValue> buildItem(String userId, String embeddingType, EmbeddingVector embedding,
+                                                         EmbeddingMetadata metadata) throws Exception {
         String metadataJson = JsonUtils.toJson(metadata);
 
         Map<String, AttributeValue> item = new HashMap<>();
         item.put("user_id", AttributeValue.builder().s(userId).build());
         item.put("embedding_type", AttributeValue.builder().s(embeddingType).build());
-        item.put("embedding", AttributeValue.builder().s(embeddingJson).build());
+        if (QUANTIZATION != EmbeddingCodec.Quantization.ONLY) {
+            item.put("embedding", EmbeddingCodec.toAttributeValue(embedding, STORAGE_FORMAT));
+        }
+        if (QUANTIZATION != EmbeddingCodec.Quantization.NONE) {
+            item.put("embedding_q8", EmbeddingCodec.toQuantizedAttributeValue(QuantizedVector.quantize(embedding)));
+        }
         item.put("metadata", AttributeValue.builder().s(metadataJson).build());
         item.put("created_at", AttributeValue.builder().s(String.valueOf(System.currentTimeMillis())).build());
+        return item;
+    }
 
-        // Store in DynamoDB (permanent storage)
-        dynamoDb.putItem(PutItemRequest.builder()
-                .tableName(TABLE_NAME)
-                .item(item)
-                .build());
+    /**
+     * Writes profile attributes onto an item: age as a number, location and subscription_plan as
+     * strings. An age that is not a whole number is logged and left out.
+     */
+    private static void putProfileAttributes(Map<String, AttributeValue> item, Map<String, Object> profileAttributes) {
+        Object age = profileAttributes.get("age");
+        if (age != null) {
+            try {
+                int parsedAge = age instanceof Number ? ((Number) age).intValue() : Integer.parseInt(age.toString().trim());
+                item.put("age", AttributeValue.builder().n(String.valueOf(parsedAge)).build());
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid age for user " + item.get("user_id").s() + ": " + age);
+            }
+        }
+        Object location = profileAttributes.get("location");
+        if (location != null) {
+            item.put("location", AttributeValue.builder().s(location.toString()).build());
+        }
+        Object plan = profileAttributes.get("subscription_plan");
+        if (plan != null) {
+            item.put("subscription_plan", AttributeValue.builder().s(plan.toString()).build());
+        }
+    }
 
-        // Store in DAX (cache) if available
+    /**
+     * Records an item's profile attributes, if it has any, for filtered searches.
+     */
+    private static void recordProfile(Map<String, AttributeValue> item) {
+        Map<String, Object> profile = new HashMap<>();
+        if (item.containsKey("age")) {
+            profile.put("age", item.get("age").n());
+        }
+        if (item.containsKey("location")) {
+            profile.put("location", item.get("location").s());
+        }
+        if (item.containsKey("subscription_plan")) {
+            profile.put("subscription_plan", item.get("subscription_plan").s());
+        }
+        if (!profile.isEmpty()) {
+            VectorIndexRegistry.getAttributes().recordProfile(item.get("user_id").s(), profile);
+        }
+    }
+
+    /**
+     * Stores an item in DAX (cache) if available. Failures are logged, not propagated.
+     */
+    private void putInDax(Map<String, AttributeValue> item) {
         if (daxClient != null) {
             try {
                 daxClient.putItem(PutItemRequest.builder()
                         .tableName(TABLE_NAME)
                         .item(item)
-                        .build());
+                        .build())
+                        .exceptionally(e -> {
+                            System.err.println("Error storing in DAX: " + e.getMessage());
+                            return null;
+                        });
             } catch (Exception e) {
                 System.err.println("Error storing in DAX: " + e.getMessage());
             }
         }
     }
 
+    /**
+     * Stores a user embedding with metadata without blocking the calling thread.
+     * Fails with a TimeoutException if DynamoDB has not accepted the write within
+     * DYNAMODB_CALL_TIMEOUT_MILLIS.
+     * 
+     * @param userId User ID
+     * @param embeddingType Type of embedding (raw_text, user_attributes, etc.)
+     * @param embedding The embedding vector
+     * @param metadata Additional metadata about the embedding
+     * @return Future that completes once the item is stored (or buffered, with write-behind enabled)
+     */
+    public CompletableFuture<Void> storeEmbeddingWithMetadataAsync(String userId, String embeddingType,
+                                                                  EmbeddingVector embedding, EmbeddingMetadata metadata) {
+        return storeEmbeddingWithMetadataAsync(userId, embeddingType, embedding, metadata, CALL_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Stores a user embedding with metadata without blocking the calling thread.
+     * 
+     * @param timeoutMillis Deadline for the whole call
+     */
+    public CompletableFuture<Void> storeEmbeddingWithMetadataAsync(String userId, String embeddingType,
+                                                                  EmbeddingVector embedding, EmbeddingMetadata metadata,
+                                                                  long timeoutMillis) {
+        Map<String, AttributeValue> item;
+        try {
+            item = buildItem(userId, embeddingType, embedding, metadata);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        String cacheKey = cacheKey(userId, embeddingType);
+        EmbeddingKeyFilter.recordStored(userId, embeddingType);
+        if (writeBuffer != null) {
+            try {
+                writeBuffer.add(item);
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return getAsyncDynamoDb().putItem(PutItemRequest.builder()
+                        .tableName(TABLE_NAME)
+                        .item(item)
+                        .build())
+                .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        // A timed-out write may still land, so drop whatever we had cached
+                        nearCache.invalidate(cacheKey);
+                    } else {
+                        nearCache.put(cacheKey, Collections.unmodifiableMap(item));
+                        putInDax(item);
+                        VectorIndexRegistry.recordStored(embeddingType, userId, embedding.toFloatArray());
+                    }
+                })
+                .thenApply(response -> null);
+    }
+
     /**
      * Retrieves a specific embedding type for a user.
      * 
@@ -103,35 +407,80 @@ public class EnhancedDynamoDBService {
      * @return The embedding vector or null if not found
      */
     public double[] getEmbedding(String userId, String embeddingType) throws Exception {
-        Map<String, AttributeValue> key = new HashMap<>();
-        key.put("user_id", AttributeValue.builder().s(userId).build());
-        key.put("embedding_type", AttributeValue.builder().s(embeddingType).build());
+        EmbeddingVector embedding = getEmbeddingVector(userId, embeddingType);
+        return embedding != null ? embedding.toDoubleArray() : null;
+    }
 
-        GetItemRequest request = GetItemRequest.builder()
-                .tableName(TABLE_NAME)
-                .key(key)
-                .build();
+    /**
+     * Retrieves a specific embedding type for a user as a float32 vector.
+     * If only the int8 copy is stored, the dequantized vector is returned.
+     * 
+     * @param userId User ID
+     * @param embeddingType Type of embedding to retrieve
+     * @return The embedding vector or null if not found
+     */
+    public EmbeddingVector getEmbeddingVector(String userId, String embeddingType) throws Exception {
+        return readVector(fetchItem(userId, embeddingType, true));
+    }
 
-        // Attempt to fetch from DAX (cache) if available
-        Map<String, AttributeValue> item = null;
-        if (daxClient != null) {
+    /**
+     * Retrieves a specific embedding type for a user without blocking the calling thread.
+     * 
+     * @param userId User ID
+     * @param embeddingType Type of embedding to retrieve
+     * @return Future of the embedding vector, or of null if not found
+     */
+    public CompletableFuture<double[]> getEmbeddingAsync(String userId, String embeddingType) {
+        return getEmbeddingVectorAsync(userId, embeddingType)
+                .thenApply(embedding -> embedding != null ? embedding.toDoubleArray() : null);
+    }
+
+    /**
+     * Retrieves a specific embedding type for a user as a float32 vector without blocking the
+     * calling thread. Fails with a TimeoutException after DYNAMODB_CALL_TIMEOUT_MILLIS.
+     * 
+     * @param userId User ID
+     * @param embeddingType Type of embedding to retrieve
+     * @return Future of the embedding vector, or of null if not found
+     */
+    public CompletableFuture<EmbeddingVector> getEmbeddingVectorAsync(String userId, String embeddingType) {
+        return getEmbeddingVectorAsync(userId, embeddingType, CALL_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Retrieves a specific embedding type for a user as a float32 vector without blocking the
+     * calling thread.
+     * 
+     * @param timeoutMillis Deadline for the whole call, including the DAX attempt
+     */
+    public CompletableFuture<EmbeddingVector> getEmbeddingVectorAsync(String userId, String embeddingType, long timeoutMillis) {
+        return fetchItemAsync(userId, embeddingType, timeoutMillis).thenApply(item -> {
             try {
-                GetItemResponse response = daxClient.getItem(request).get();
-                item = response.item();
+                return readVector(item);
             } catch (Exception e) {
-                System.err.println("Error fetching from DAX: " + e.getMessage());
+                throw new CompletionException(e);
             }
+        });
+    }
+
+    /**
+     * Retrieves a specific embedding type for a user as int8 codes with their scale and offset,
+     * for integer dot products. Items stored without a quantized copy are quantized on read.
+     * 
+     * @param userId User ID
+     * @param embeddingType Type of embedding to retrieve
+     * @return The quantized vector or null if not found
+     */
+    public QuantizedVector getQuantizedEmbedding(String userId, String embeddingType) throws Exception {
+        Map<String, AttributeValue> item = fetchItem(userId, embeddingType, true);
+        if (item == null) {
+            return null;
         }
-        
-        if (item == null || !item.containsKey("embedding")) {
-            // Fallback to DynamoDB
-            GetItemResponse response = dynamoDb.getItem(request);
-            item = response.item();
+        if (item.containsKey("embedding_q8")) {
+            return EmbeddingCodec.fromQuantizedAttributeValue(item.get("embedding_q8"));
         }
-
-        return (item != null && item.containsKey("embedding"))
-                ? JsonUtils.fromJson(item.get("embedding").s(), double[].class)
-                : null;
+        EmbeddingVector vector = readVector(item);
+        return vector != null ? QuantizedVector.quantize(vector) : null;
     }
 
     /**
@@ -140,43 +489,401 @@ public class EnhancedDynamoDBService {
      * @param userId User ID
      * @param embeddingType Type of embedding to retrieve
      * @return Map containing the embedding and metadata, or null if not found
+     * @see #getStoredEmbedding(String, String)
      */
     public Map<String, Object> getEmbeddingWithMetadata(String userId, String embeddingType) throws Exception {
+        StoredEmbedding stored = getStoredEmbedding(userId, embeddingType);
+        if (stored != null && stored.hasMetadata()) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("embedding", stored.getVector().toDoubleArray());
+            result.put("metadata", stored.getMetadata());
+            result.put("created_at", String.valueOf(stored.getCreatedAt()));
+            return result;
+        }
+        
+        return null;
+    }
+
+    /**
+     * Retrieves an embedding with its metadata. The metadata JSON is only parsed when
+     * {@link StoredEmbedding#getMetadata()} is called, so callers that end up using just the
+     * vector or creation time do not pay for it.
+     * 
+     * @param userId User ID
+     * @param embeddingType Type of embedding to retrieve
+     * @return The stored embedding, or null if not found
+     */
+    public StoredEmbedding getStoredEmbedding(String userId, String embeddingType) throws Exception {
+        return toStoredEmbedding(fetchItem(userId, embeddingType, false));
+    }
+
+    /**
+     * Retrieves one embedding type for many users.
+     * 
+     * @param userIds User IDs
+     * @param embeddingType Type of embedding to retrieve
+     * @return Map from user ID to embedding vector; users without an embedding are omitted
+     */
+    public Map<String, double[]> getEmbeddings(Collection<String> userIds, String embeddingType) throws Exception {
+        Map<String, double[]> result = new LinkedHashMap<>();
+        for (Map.Entry<String, EmbeddingVector> entry : getEmbeddingVectors(userIds, embeddingType).entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toDoubleArray());
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves one embedding type for many users as float32 vectors.
+     * Keys are read with BatchGetItem in chunks of 100, chunks run in parallel, and each chunk
+     * tries DAX (cache) first and reads the keys DAX did not return from DynamoDB.
+     * 
+     * @param userIds User IDs
+     * @param embeddingType Type of embedding to retrieve
+     * @return Map from user ID to embedding vector; users without an embedding are omitted
+     */
+    public Map<String, EmbeddingVector> getEmbeddingVectors(Collection<String> userIds, String embeddingType) throws Exception {
+        Map<String, EmbeddingVector> result = new LinkedHashMap<>();
+        List<Map<String, AttributeValue>> keys = new ArrayList<>();
+        for (String userId : new LinkedHashSet<>(userIds)) {
+            Map<String, AttributeValue> local = writeBuffer != null ? writeBuffer.getPending(userId, embeddingType) : null;
+            if (local == null) {
+                local = nearCache.get(cacheKey(userId, embeddingType));
+            }
+            if (local != null) {
+                result.put(userId, readVector(local));
+            } else if (EmbeddingKeyFilter.mightExist(userId, embeddingType)) {
+                keys.add(itemKey(userId, embeddingType));
+            }
+        }
+        long stamp = nearCache.stamp();
+
+        List<List<Map<String, AttributeValue>>> chunks = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i += BATCH_GET_SIZE) {
+            chunks.add(keys.subList(i, Math.min(keys.size(), i + BATCH_GET_SIZE)));
+        }
+
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        if (chunks.size() == 1) {
+            items.addAll(batchGetChunk(chunks.get(0), Deadline.current()));
+        } else if (chunks.size() > 1) {
+            ExecutorService executor = getBatchReadExecutor();
+            List<Future<List<Map<String, AttributeValue>>>> futures = new ArrayList<>();
+            // The deadline is thread-local, so hand it to the executor threads
+            Deadline deadline = Deadline.current();
+            for (List<Map<String, AttributeValue>> chunk : chunks) {
+                futures.add(executor.submit(() -> batchGetChunk(chunk, deadline)));
+            }
+            for (Future<List<Map<String, AttributeValue>>> future : futures) {
+                try {
+                    items.addAll(future.get());
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+                }
+            }
+        }
+
+        for (Map<String, AttributeValue> item : items) {
+            EmbeddingVector vector = readVector(item);
+            if (vector != null) {
+                String userId = item.get("user_id").s();
+                result.put(userId, vector);
+                nearCache.putIfUnchanged(cacheKey(userId, embeddingType), item, stamp);
+            }
+        }
+        return result;
+    }
+
+    private synchronized ExecutorService getBatchReadExecutor() {
+        if (batchReadExecutor == null) {
+            batchReadExecutor = Executors.newFixedThreadPool(BATCH_GET_PARALLELISM, r -> {
+                Thread thread = new Thread(r, "embedding-batch-get");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return batchReadExecutor;
+    }
+
+    /**
+     * Reads up to 100 keys, from DAX first if available and then DynamoDB for the rest.
+     * Each DAX call waits at most DAX_READ_TIMEOUT_MILLIS (default 200), capped by the
+     * request deadline, before falling back to DynamoDB.
+     *
+     * @param deadline Deadline of the calling request, or null if there is none
+     */
+    private List<Map<String, AttributeValue>> batchGetChunk(List<Map<String, AttributeValue>> keys, Deadline deadline) {
+        List<Map<String, AttributeValue>> found = new ArrayList<>();
+        List<Map<String, AttributeValue>> missing = keys;
+
+        if (daxClient != null) {
+            long daxMillis = deadline != null
+                    ? deadline.slice("DAX read", DAX_READ_TIMEOUT_MILLIS, DAX_BUDGET_FRACTION)
+                    : DAX_READ_TIMEOUT_MILLIS;
+            try {
+                List<Map<String, AttributeValue>> cached = batchGet(keys,
+                        request -> daxBatchGet(request, daxMillis));
+                Set<String> hits = new HashSet<>();
+                for (Map<String, AttributeValue> item : cached) {
+                    if (hasEmbedding(item)) {
+                        found.add(item);
+                        hits.add(item.get("user_id").s());
+                    }
+                }
+                missing = new ArrayList<>();
+                for (Map<String, AttributeValue> key : keys) {
+                    if (!hits.contains(key.get("user_id").s())) {
+                        missing.add(key);
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("Error batch fetching from DAX: " + e.getMessage());
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            // Fallback to DynamoDB
+            for (Map<String, AttributeValue> item : batchGet(missing, request -> dynamoDb.batchGetItem(request.toBuilder()
+                    .overrideConfiguration(Deadline.apiCallTimeout(
+                            Deadline.sliceMillis("DynamoDB batch read", CALL_TIMEOUT_MILLIS, 1.0)))
+                    .build()))) {
+                if (hasEmbedding(item)) {
+                    found.add(item);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * One DAX BatchGetItem call, failing with a RuntimeException if it takes longer than timeoutMillis.
+     */
+    private BatchGetItemResponse daxBatchGet(BatchGetItemRequest request, long timeoutMillis) {
+        CompletableFuture<BatchGetItemResponse> future = daxClient.batchGetItem(request);
+        try {
+            return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new RuntimeException("DAX batch read timed out after " + timeoutMillis + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while batch fetching from DAX", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Runs BatchGetItem for the keys, retrying UnprocessedKeys with backoff.
+     */
+    private List<Map<String, AttributeValue>> batchGet(List<Map<String, AttributeValue>> keys,
+                                                       Function<BatchGetItemRequest, BatchGetItemResponse> call) {
+        List<Map<String, AttributeValue>> items = new ArrayList<>();
+        List<Map<String, AttributeValue>> remaining = keys;
+        for (int attempt = 0; ; attempt++) {
+            BatchGetItemResponse response = call.apply(BatchGetItemRequest.builder()
+                    .requestItems(Map.of(TABLE_NAME, KeysAndAttributes.builder()
+                            .keys(remaining)
+                            .projectionExpression(VECTOR_PROJECTION)
+                            .build()))
+                    .build());
+            if (response.hasResponses()) {
+                items.addAll(response.responses().getOrDefault(TABLE_NAME, List.of()));
+            }
+
+            KeysAndAttributes unprocessed = response.hasUnprocessedKeys()
+                    ? response.unprocessedKeys().get(TABLE_NAME)
+                    : null;
+            if (unprocessed == null || unprocessed.keys().isEmpty()) {
+                return items;
+            }
+            if (attempt >= BATCH_GET_MAX_RETRIES) {
+                throw new RuntimeException("Failed to read " + unprocessed.keys().size()
+                        + " embeddings after " + BATCH_GET_MAX_RETRIES + " retries");
+            }
+            EmbeddingWriteBuffer.sleepBackoff(attempt);
+            remaining = unprocessed.keys();
+        }
+    }
+
+    private static Map<String, AttributeValue> itemKey(String userId, String embeddingType) {
         Map<String, AttributeValue> key = new HashMap<>();
         key.put("user_id", AttributeValue.builder().s(userId).build());
         key.put("embedding_type", AttributeValue.builder().s(embeddingType).build());
+        return key;
+    }
+
+    /**
+     * Fetches an embedding item, trying DAX (cache) first and falling back to DynamoDB.
+     *
+     * @param vectorOnly Read only the key and embedding attributes
+     * @return The item, or null if it does not exist or holds no embedding
+     */
+    private Map<String, AttributeValue> fetchItem(String userId, String embeddingType, boolean vectorOnly) {
+        GetItemRequest.Builder builder = GetItemRequest.builder()
+                .tableName(TABLE_NAME)
+                .key(itemKey(userId, embeddingType));
+        if (vectorOnly) {
+            builder.projectionExpression(VECTOR_PROJECTION);
+        }
+        GetItemRequest request = builder.build();
+
+        // A buffered write has not reached DAX or DynamoDB yet
+        Map<String, AttributeValue> item = writeBuffer != null ? writeBuffer.getPending(userId, embeddingType) : null;
+        if (item != null) {
+            return item;
+        }
+
+        // Check the in-process near-cache before going over the network. It may hold a
+        // projected item, which only serves vector reads.
+        String cacheKey = cacheKey(userId, embeddingType);
+        item = nearCache.get(cacheKey);
+        if (item != null && (vectorOnly || isComplete(item))) {
+            return item;
+        }
+        if (!EmbeddingKeyFilter.mightExist(userId, embeddingType)) {
+            return null;
+        }
+        long stamp = nearCache.stamp();
+
+        // DAX (cache) first, with a hedged DynamoDB read if DAX is slow, then DynamoDB
+        item = HedgedGet.getItem(daxClient, dynamoDb, this::getAsyncDynamoDb, request,
+                EnhancedDynamoDBService::hasEmbedding);
+
+        if (!hasEmbedding(item)) {
+            return null;
+        }
+        nearCache.putIfUnchanged(cacheKey, item, stamp);
+        return item;
+    }
+
+    /**
+     * Non-blocking version of {@link #fetchItem(String, String, boolean)} for vector reads.
+     * The DAX attempt gets half the deadline, so a slow cache still leaves time for the
+     * DynamoDB fallback.
+     */
+    private CompletableFuture<Map<String, AttributeValue>> fetchItemAsync(String userId, String embeddingType,
+                                                                        long timeoutMillis) {
+        Map<String, AttributeValue> item = writeBuffer != null ? writeBuffer.getPending(userId, embeddingType) : null;
+        if (item != null) {
+            return CompletableFuture.completedFuture(item);
+        }
+        String cacheKey = cacheKey(userId, embeddingType);
+        item = nearCache.get(cacheKey);
+        if (item != null) {
+            return CompletableFuture.completedFuture(item);
+        }
+        if (!EmbeddingKeyFilter.mightExist(userId, embeddingType)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        long stamp = nearCache.stamp();
 
         GetItemRequest request = GetItemRequest.builder()
                 .tableName(TABLE_NAME)
-                .key(key)
+                .key(itemKey(userId, embeddingType))
+                .projectionExpression(VECTOR_PROJECTION)
                 .build();
 
-        // Attempt to fetch from DAX (cache) if available
-        Map<String, AttributeValue> item = null;
+        CompletableFuture<Map<String, AttributeValue>> daxAttempt = CompletableFuture.completedFuture(null);
         if (daxClient != null) {
+            CompletableFuture<GetItemResponse> daxGet;
             try {
-                GetItemResponse response = daxClient.getItem(request).get();
-                item = response.item();
+                daxGet = daxClient.getItem(request);
             } catch (Exception e) {
-                System.err.println("Error fetching from DAX: " + e.getMessage());
+                daxGet = CompletableFuture.failedFuture(e);
             }
+            daxAttempt = daxGet
+                    .orTimeout(Math.max(1, timeoutMillis / 2), TimeUnit.MILLISECONDS)
+                    .thenApply(GetItemResponse::item)
+                    .exceptionally(e -> {
+                        System.err.println("Error fetching from DAX: " + e.getMessage());
+                        return null;
+                    });
         }
-        
-        if (item == null || !item.containsKey("embedding")) {
-            // Fallback to DynamoDB
-            GetItemResponse response = dynamoDb.getItem(request);
-            item = response.item();
+
+        return daxAttempt
+                .thenCompose(daxItem -> hasEmbedding(daxItem)
+                        ? CompletableFuture.completedFuture(daxItem)
+                        // Fallback to DynamoDB
+                        : getAsyncDynamoDb().getItem(request).thenApply(GetItemResponse::item))
+                .thenApply(found -> {
+                    if (!hasEmbedding(found)) {
+                        return null;
+                    }
+                    nearCache.putIfUnchanged(cacheKey, found, stamp);
+                    return found;
+                })
+                .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized DynamoDbAsyncClient getAsyncDynamoDb() {
+        if (asyncDynamoDb == null) {
+            asyncDynamoDb = DynamoDbAsyncClient.create();
         }
+        return asyncDynamoDb;
+    }
 
-        if (item != null && item.containsKey("embedding") && item.containsKey("metadata")) {
-            Map<String, Object> result = new HashMap<>();
-            result.put("embedding", JsonUtils.fromJson(item.get("embedding").s(), double[].class));
-            result.put("metadata", JsonUtils.fromJson(item.get("metadata").s(), EmbeddingMetadata.class));
-            result.put("created_at", item.get("created_at").s());
-            return result;
+    private static String cacheKey(String userId, String embeddingType) {
+        return userId + '\0' + embeddingType;
+    }
+
+    /**
+     * Hit ratio and size of the in-process near-cache for this table.
+     */
+    public Map<String, Object> getNearCacheStats() {
+        return nearCache.getStats();
+    }
+
+    /**
+     * Whether an item was read in full rather than through VECTOR_PROJECTION.
+     */
+    private static boolean isComplete(Map<String, AttributeValue> item) {
+        return item.containsKey("metadata") || item.containsKey("created_at");
+    }
+
+    private static boolean hasEmbedding(Map<String, AttributeValue> item) {
+        return item != null && (item.containsKey("embedding") || item.containsKey("embedding_q8"));
+    }
+
+    /**
+     * Reads the full-precision embedding, or dequantizes the int8 copy if that is all the item holds.
+     */
+    private static EmbeddingVector readVector(Map<String, AttributeValue> item) throws Exception {
+        if (item == null) {
+            return null;
+        }
+        if (item.containsKey("embedding")) {
+            return EmbeddingCodec.fromAttributeValue(item.get("embedding"));
+        }
+        QuantizedVector quantized = EmbeddingCodec.fromQuantizedAttributeValue(item.get("embedding_q8"));
+        return quantized != null ? quantized.dequantize() : null;
+    }
+
+    /**
+     * Writes any buffered embeddings. A no-op unless write-behind is enabled.
+     */
+    public void flush() {
+        if (writeBuffer != null) {
+            writeBuffer.flush();
+        }
+    }
+
+    /**
+     * Flushes buffered embeddings, stops the background flush and releases the async client.
+     */
+    @Override
+    public void close() {
+        if (writeBuffer != null) {
+            writeBuffer.close();
+        }
+        synchronized (this) {
+            if (batchReadExecutor != null) {
+                batchReadExecutor.shutdown();
+            }
+            if (asyncDynamoDb != null) {
+                asyncDynamoDb.close();
+            }
         }
-        
-        return null;
     }
 
     /**
@@ -194,6 +901,8 @@ public class EnhancedDynamoDBService {
                 .keyConditionExpression("user_id = :userId")
                 .expressionAttributeValues(expressionValues)
                 .projectionExpression("embedding_type")
+                .overrideConfiguration(Deadline.apiCallTimeout(
+                        Deadline.sliceMillis("DynamoDB query", CALL_TIMEOUT_MILLIS, 1.0)))
                 .build();
 
         QueryResponse response = dynamoDb.query(queryRequest);
@@ -207,4 +916,527 @@ public class EnhancedDynamoDBService {
         
         return embeddingTypes;
     }
-} 
\ No newline at end of file
+
+    /**
+     * Retrieves every embedding type stored for a user, with metadata, from one paginated Query.
+     *
+     * @param userId User ID
+     * @return Map from embedding type to the stored embedding
+     */
+    public Map<String, StoredEmbedding> getAllEmbeddings(String userId) throws Exception {
+        return getAllEmbeddings(userId, null);
+    }
+
+    /**
+     * Retrieves the given embedding types for a user, with metadata, from one paginated Query.
+     * The sort key range is narrowed to the requested types; embedding_type is a key attribute
+     * and cannot appear in a filter expression, so types inside that range are dropped client-side.
+     *
+     * @param userId User ID
+     * @param embeddingTypes Types to include, or null/empty for all types
+     * @return Map from embedding type to the stored embedding
+     */
+    public Map<String, StoredEmbedding> getAllEmbeddings(String userId, Collection<String> embeddingTypes) throws Exception {
+        TreeSet<String> wanted = wantedTypes(embeddingTypes);
+
+        Map<String, StoredEmbedding> result = new LinkedHashMap<>();
+        Map<String, AttributeValue> lastKey = null;
+        do {
+            QueryResponse response = dynamoDb.query(allEmbeddingsQuery(userId, wanted, lastKey).toBuilder()
+                    .overrideConfiguration(Deadline.apiCallTimeout(
+                            Deadline.sliceMillis("DynamoDB query", CALL_TIMEOUT_MILLIS, 1.0)))
+                    .build());
+            collectEmbeddings(response, wanted, result);
+            lastKey = nextPageKey(response);
+        } while (lastKey != null);
+
+        applyPending(userId, wanted, result);
+        return result;
+    }
+
+    /**
+     * Retrieves the given embedding types for a user from one paginated Query without blocking
+     * the calling thread. Fails with a TimeoutException if every page has not arrived within
+     * DYNAMODB_CALL_TIMEOUT_MILLIS.
+     *
+     * @param userId User ID
+     * @param embeddingTypes Types to include, or null/empty for all types
+     * @return Future of a map from embedding type to the stored embedding
+     */
+    public CompletableFuture<Map<String, StoredEmbedding>> getAllEmbeddingsAsync(String userId, Collection<String> embeddingTypes) {
+        return getAllEmbeddingsAsync(userId, embeddingTypes, CALL_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Retrieves the given embedding types for a user without blocking the calling thread.
+     *
+     * @param timeoutMillis Deadline for the whole call, across all pages
+     */
+    public CompletableFuture<Map<String, StoredEmbedding>> getAllEmbeddingsAsync(String userId, Collection<String> embeddingTypes,
+                                                                               long timeoutMillis) {
+        TreeSet<String> wanted = wantedTypes(embeddingTypes);
+        Map<String, StoredEmbedding> result = new LinkedHashMap<>();
+        return queryPageAsync(userId, wanted, null, result)
+                .thenApply(done -> {
+                    try {
+                        applyPending(userId, wanted, result);
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                    return result;
+                })
+                .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private CompletableFuture<Void> queryPageAsync(String userId, TreeSet<String> wanted,
+                                                   Map<String, AttributeValue> startKey, Map<String, StoredEmbedding> result) {
+        return getAsyncDynamoDb().query(allEmbeddingsQuery(userId, wanted, startKey)).thenCompose(response -> {
+            try {
+                collectEmbeddings(response, wanted, result);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+            Map<String, AttributeValue> lastKey = nextPageKey(response);
+            return lastKey != null
+                    ? queryPageAsync(userId, wanted, lastKey, result)
+                    : CompletableFuture.completedFuture(null);
+        });
+    }
+
+    private static TreeSet<String> wantedTypes(Collection<String> embeddingTypes) {
+        return embeddingTypes != null && !embeddingTypes.isEmpty() ? new TreeSet<>(embeddingTypes) : null;
+    }
+
+    private static QueryRequest allEmbeddingsQuery(String userId, TreeSet<String> wanted, Map<String, AttributeValue> startKey) {
+        Map<String, AttributeValue> expressionValues = new HashMap<>();
+        expressionValues.put(":userId", AttributeValue.builder().s(userId).build());
+        String keyCondition = "user_id = :userId";
+        if (wanted != null) {
+            expressionValues.put(":firstType", AttributeValue.builder().s(wanted.first()).build());
+            expressionValues.put(":lastType", AttributeValue.builder().s(wanted.last()).build());
+            keyCondition += " AND embedding_type BETWEEN :firstType AND :lastType";
+        }
+
+        QueryRequest.Builder query = QueryRequest.builder()
+                .tableName(TABLE_NAME)
+                .keyConditionExpression(keyCondition)
+                .expressionAttributeValues(expressionValues);
+        if (startKey != null) {
+            query.exclusiveStartKey(startKey);
+        }
+        return query.build();
+    }
+
+    private static void collectEmbeddings(QueryResponse response, TreeSet<String> wanted,
+                                          Map<String, StoredEmbedding> result) throws Exception {
+        for (Map<String, AttributeValue> item : response.items()) {
+            String type = item.get("embedding_type").s();
+            if (wanted == null || wanted.contains(type)) {
+                StoredEmbedding stored = toStoredEmbedding(item);
+                if (stored != null) {
+                    result.put(type, stored);
+                }
+            }
+        }
+    }
+
+    private static Map<String, AttributeValue> nextPageKey(QueryResponse response) {
+        return response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                ? response.lastEvaluatedKey() : null;
+    }
+
+    /**
+     * Buffered writes are newer than anything a Query returned, so they replace its results.
+     */
+    private void applyPending(String userId, TreeSet<String> wanted, Map<String, StoredEmbedding> result) throws Exception {
+        if (writeBuffer == null) {
+            return;
+        }
+        Iterable<String> types = wanted != null ? wanted : new ArrayList<>(result.keySet());
+        for (String type : types) {
+            Map<String, AttributeValue> pending = writeBuffer.getPending(userId, type);
+            if (pending != null) {
+                result.put(type, toStoredEmbedding(pending));
+            }
+        }
+    }
+
+    /**
+     * Converts a full item. The metadata JSON is kept undecoded until it is accessed.
+     */
+    private static StoredEmbedding toStoredEmbedding(Map<String, AttributeValue> item) throws Exception {
+        EmbeddingVector vector = readVector(item);
+        if (vector == null) {
+            return null;
+        }
+        String metadataJson = item.containsKey("metadata") ? item.get("metadata").s() : null;
+        long createdAt = item.containsKey("created_at") ? Long.parseLong(item.get("created_at").s()) : 0L;
+        return new StoredEmbedding(item.get("user_id").s(), item.get("embedding_type").s(), vector, metadataJson, createdAt);
+    }
+
+    /**
+     * Rebuilds the negative-lookup filter from a parallel scan of every key in the table and
+     * installs it for this process. Write the result with BloomFilter.writeTo to produce the
+     * snapshot loaded through EMBEDDING_BLOOM_FILTER_PATH.
+     * 
+     * @param totalSegments Number of parallel scan segments
+     * @param expectedKeys Expected number of keys, used to size the filter
+     * @param falsePositiveRate Target false-positive probability
+     * @return The rebuilt filter
+     */
+    public BloomFilter rebuildKeyFilter(int totalSegments, long expectedKeys, double falsePositiveRate) throws Exception {
+        long startedAt = System.currentTimeMillis();
+        BloomFilter rebuilt = BloomFilter.create(expectedKeys, falsePositiveRate);
+        // Keys this process stores during the scan may land behind it, so they are added directly
+        EmbeddingKeyFilter.startRebuild(rebuilt);
+        int segments = Math.max(1, totalSegments);
+        ExecutorService executor = Executors.newFixedThreadPool(segments);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int segment = 0; segment < segments; segment++) {
+                final int currentSegment = segment;
+                futures.add(executor.submit(() -> {
+                    scanKeys(currentSegment, segments, rebuilt);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (Exception e) {
+            EmbeddingKeyFilter.abandonRebuild(rebuilt);
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+        EmbeddingKeyFilter.install(rebuilt, startedAt);
+        return rebuilt;
+    }
+
+    private void scanKeys(int segment, int totalSegments, BloomFilter target) {
+        Map<String, AttributeValue> lastKey = null;
+        do {
+            ScanRequest.Builder scan = ScanRequest.builder()
+                    .tableName(TABLE_NAME)
+                    .segment(segment)
+                    .totalSegments(totalSegments)
+                    .projectionExpression("user_id, embedding_type");
+            if (lastKey != null) {
+                scan.exclusiveStartKey(lastKey);
+            }
+            ScanResponse response = dynamoDb.scan(scan.build());
+
+            for (Map<String, AttributeValue> item : response.items()) {
+                AttributeValue type = item.get("embedding_type");
+                target.put(EmbeddingKeyFilter.key(item.get("user_id").s(), type != null ? type.s() : null));
+            }
+            lastKey = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                    ? response.lastEvaluatedKey() : null;
+        } while (lastKey != null);
+    }
+
+    /**
+     * Finds the users whose embeddings of a type are most similar to the given vector, using the
+     * in-memory vector index for that type. The index is built with a table scan on first use;
+     * see getVectorIndex.
+     * 
+     * @param userId User ID to leave out of the results, usually the user the vector belongs to
+     * @param embedding The embedding to compare against
+     * @param embeddingType Type of embedding
+     * @param maxResults Maximum number of results to return
+     * @return Map of user IDs to cosine similarity, most similar first
+     */
+    public Map<String, Double> findSimilarUsers(String userId, EmbeddingVector embedding, String embeddingType,
+                                                int maxResults) throws Exception {
+        return findSimilarUsers(userId, embedding, embeddingType, maxResults, null);
+    }
+
+    /**
+     * Finds the users whose embeddings of a type are most similar to the given vector, among the
+     * users matching an attribute filter. The filter is compiled to a bitmap and applied inside
+     * the index search, so up to maxResults matching users are returned.
+     * 
+     * @param userId User ID to leave out of the results, usually the user the vector belongs to
+     * @param embedding The embedding to compare against
+     * @param embeddingType Type of embedding
+     * @param maxResults Maximum number of results to return
+     * @param filter Attributes the returned users must have, or null for any user
+     * @return Map of user IDs to cosine similarity, most similar first
+     */
+    public Map<String, Double> findSimilarUsers(String userId, EmbeddingVector embedding, String embeddingType,
+                                                int maxResults, AttributeFilter filter) throws Exception {
+        VectorIndex index = getVectorIndex(embeddingType);
+        CompressedBitmap allowed = VectorIndexRegistry.getAttributes().match(filter);
+        Map<String, Double> similarUsers = new LinkedHashMap<>();
+        if (allowed != null && allowed.isEmpty()) {
+            return similarUsers;
+        }
+        for (SearchResult result : index.search(embedding.toFloatArray(), maxResults, userId, allowed)) {
+            similarUsers.put(result.getId(), result.getScore());
+        }
+        return similarUsers;
+    }
+
+    /**
+     * The vector index for an embedding type. The first call for a type starts building the
+     * index in the background and waits up to VECTOR_INDEX_WAIT_MILLIS (default 2000), capped at
+     * half of the request deadline, for it to finish. If it is still running after that, the
+     * partial index is returned, so searches only see the embeddings scanned so far until the
+     * build completes.
+     */
+    public VectorIndex getVectorIndex(String embeddingType) throws Exception {
+        VectorIndex index = VectorIndexRegistry.get(embeddingType);
+        if (index != null && !VECTOR_INDEX_BUILDS.containsKey(embeddingType)) {
+            return index;
+        }
+        CompletableFuture<VectorIndex> build = startVectorIndexBuild(embeddingType);
+        long waitMillis = Deadline.sliceMillis("vector index build", VECTOR_INDEX_WAIT_MILLIS, VECTOR_INDEX_WAIT_FRACTION);
+        try {
+            return build.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            VectorIndex partial = VectorIndexRegistry.get(embeddingType);
+            if (partial == null) {
+                throw e;
+            }
+            return partial;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Starts the first build of a type's index on a background thread, unless one is running.
+     */
+    private CompletableFuture<VectorIndex> startVectorIndexBuild(String embeddingType) {
+        CompletableFuture<VectorIndex> build = new CompletableFuture<>();
+        CompletableFuture<VectorIndex> running = VECTOR_INDEX_BUILDS.putIfAbsent(embeddingType, build);
+        if (running != null) {
+            return running;
+        }
+        VectorIndex built = VectorIndexRegistry.get(embeddingType);
+        if (built != null) {
+            // Another caller's build finished between our checks
+            VECTOR_INDEX_BUILDS.remove(embeddingType, build);
+            build.complete(built);
+            return build;
+        }
+        VECTOR_INDEX_BUILD_EXECUTOR.execute(() -> {
+            try {
+                build.complete(buildVectorIndex(embeddingType, VECTOR_INDEX_SCAN_SEGMENTS, true));
+            } catch (Throwable e) {
+                System.err.println("Error building vector index for " + embeddingType + ": " + e.getMessage());
+                build.completeExceptionally(e);
+            } finally {
+                VECTOR_INDEX_BUILDS.remove(embeddingType, build);
+            }
+        });
+        return build;
+    }
+
+    /**
+     * Builds the vector index for an embedding type from a parallel scan of the table, reading only
+     * the vector attributes, and installs it in place of any previous index for the type.
+     * Compressed (IVF-PQ) indexes rerank their candidates with vectors read through
+     * getEmbeddingVectors, so the full vectors stay in DAX and DynamoDB rather than in memory.
+     * Each scan call is bounded by DYNAMODB_CALL_TIMEOUT_MILLIS, capped by the calling request's
+     * deadline if it has one. Embeddings this process stores during the scan go into both the
+     * previous index and the new one.
+     * 
+     * @param embeddingType Type of embedding
+     * @param totalSegments Number of parallel scan segments
+     * @return The new index
+     */
+    public VectorIndex buildVectorIndex(String embeddingType, int totalSegments) throws Exception {
+        return buildVectorIndex(embeddingType, totalSegments, false);
+    }
+
+    /**
+     * @param registerPartial Whether to register the index while it is being filled, if the type
+     *                        has none yet, so searches and stored embeddings can use it early
+     */
+    private VectorIndex buildVectorIndex(String embeddingType, int totalSegments, boolean registerPartial) throws Exception {
+        VectorIndex index = VectorIndexRegistry.newIndex(embeddingType, ids -> loadVectors(ids, embeddingType));
+        boolean registered = registerPartial && VectorIndexRegistry.registerIfAbsent(embeddingType, index);
+        if (!registered) {
+            // Embeddings stored during the scan may land behind it, so they are added directly
+            VectorIndexRegistry.startRebuild(embeddingType, index);
+        }
+        int segments = Math.max(1, totalSegments);
+        // The deadline is thread-local, so hand it to the scan threads
+        Deadline deadline = Deadline.current();
+        ExecutorService executor = Executors.newFixedThreadPool(segments);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int segment = 0; segment < segments; segment++) {
+                final int currentSegment = segment;
+                futures.add(executor.submit(() -> {
+                    scanVectors(currentSegment, segments, embeddingType, index, deadline);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (Exception e) {
+            if (registered) {
+                VectorIndexRegistry.unregister(embeddingType, index);
+            } else {
+                VectorIndexRegistry.finishRebuild(embeddingType, index);
+            }
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+        VectorIndexRegistry.register(embeddingType, index);
+        if (!registered) {
+            VectorIndexRegistry.finishRebuild(embeddingType, index);
+        }
+        return index;
+    }
+
+    private Map<String, float[]> loadVectors(Collection<String> userIds, String embeddingType) throws Exception {
+        Map<String, float[]> vectors = new HashMap<>();
+        for (Map.Entry<String, EmbeddingVector> entry : getEmbeddingVectors(userIds, embeddingType).entrySet()) {
+            vectors.put(entry.getKey(), entry.getValue().toFloatArray());
+        }
+        return vectors;
+    }
+
+    /**
+     * @param deadline Deadline of the calling request, or null if there is none
+     */
+    private void scanVectors(int segment, int totalSegments, String embeddingType, VectorIndex target,
+                             Deadline deadline) throws Exception {
+        Map<String, AttributeValue> lastKey = null;
+        do {
+            long callMillis = deadline != null
+                    ? deadline.slice("DynamoDB scan", CALL_TIMEOUT_MILLIS, 1.0)
+                    : CALL_TIMEOUT_MILLIS;
+            ScanRequest.Builder scan = ScanRequest.builder()
+                    .tableName(TABLE_NAME)
+                    .segment(segment)
+                    .totalSegments(totalSegments)
+                    .filterExpression(INDEX_FILTER)
+                    .expressionAttributeValues(Map.of(":type", AttributeValue.builder().s(embeddingType).build()))
+                    .expressionAttributeNames(Map.of("#location", "location"))
+                    .projectionExpression(INDEX_PROJECTION)
+                    .overrideConfiguration(Deadline.apiCallTimeout(callMillis));
+            if (lastKey != null) {
+                scan.exclusiveStartKey(lastKey);
+            }
+            ScanResponse response = dynamoDb.scan(scan.build());
+
+            ProfileAttributeIndex attributes = VectorIndexRegistry.getAttributes();
+            for (Map<String, AttributeValue> item : response.items()) {
+                // Profiles are usually stored with another type's embedding, e.g. user_attributes
+                recordProfile(item);
+                AttributeValue itemType = item.get("embedding_type");
+                if (itemType == null || !embeddingType.equals(itemType.s()) || !hasEmbedding(item)) {
+                    continue;
+                }
+                String userId = item.get("user_id").s();
+                attributes.recordEmbedding(userId, embeddingType);
+                try {
+                    target.add(userId, readVector(item).toFloatArray());
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Skipping " + embeddingType + " embedding for user " + userId + ": " + e.getMessage());
+                }
+            }
+            lastKey = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                    ? response.lastEvaluatedKey() : null;
+        } while (lastKey != null);
+    }
+
+    /**
+     * Re-encodes embeddings stored in the legacy JSON string format into the binary format.
+     * The table is read with a parallel scan filtered on attribute_type(embedding, S), and each
+     * item is rewritten with a conditional UpdateItem that only succeeds if the stored string is
+     * unchanged, so concurrent writers are never overwritten. Safe to re-run.
+     * 
+     * @param totalSegments Number of parallel scan segments
+     * @return Number of items migrated
+     */
+    public long migrateEmbeddingsToBinary(int totalSegments) throws Exception {
+        int segments = Math.max(1, totalSegments);
+        ExecutorService executor = Executors.newFixedThreadPool(segments);
+        AtomicLong migrated = new AtomicLong();
+        AtomicLong skipped = new AtomicLong();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int segment = 0; segment < segments; segment++) {
+                final int currentSegment = segment;
+                futures.add(executor.submit(() -> {
+                    migrateSegment(currentSegment, segments, migrated, skipped);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        if (skipped.get() > 0) {
+            System.err.println("Embedding migration left " + skipped.get()
+                    + " items in the string format (changed concurrently or unreadable)");
+        }
+        return migrated.get();
+    }
+
+    private void migrateSegment(int segment, int totalSegments, AtomicLong migrated, AtomicLong skipped) throws Exception {
+        Map<String, String> names = Map.of("#embedding", "embedding");
+        Map<String, AttributeValue> lastKey = null;
+        do {
+            ScanRequest.Builder scan = ScanRequest.builder()
+                    .tableName(TABLE_NAME)
+                    .segment(segment)
+                    .totalSegments(totalSegments)
+                    .projectionExpression("user_id, embedding_type, #embedding")
+                    .filterExpression("attribute_type(#embedding, :stringType)")
+                    .expressionAttributeNames(names)
+                    .expressionAttributeValues(Map.of(":stringType", AttributeValue.builder().s("S").build()));
+            if (lastKey != null) {
+                scan.exclusiveStartKey(lastKey);
+            }
+            ScanResponse response = dynamoDb.scan(scan.build());
+
+            for (Map<String, AttributeValue> item : response.items()) {
+                AttributeValue original = item.get("embedding");
+                Map<String, AttributeValue> key = new HashMap<>();
+                key.put("user_id", item.get("user_id"));
+                key.put("embedding_type", item.get("embedding_type"));
+                EmbeddingVector vector;
+                try {
+                    vector = EmbeddingCodec.fromAttributeValue(original);
+                } catch (Exception e) {
+                    // Leave an unreadable item as it is rather than abort the segment
+                    System.err.println("Error decoding embedding for user " + key.get("user_id").s()
+                            + " (" + key.get("embedding_type").s() + "), not migrating: " + e.getMessage());
+                    skipped.incrementAndGet();
+                    continue;
+                }
+
+                Map<String, AttributeValue> values = new HashMap<>();
+                values.put(":binary", EmbeddingCodec.toAttributeValue(vector, EmbeddingCodec.Format.BINARY));
+                values.put(":original", original);
+                try {
+                    dynamoDb.updateItem(UpdateItemRequest.builder()
+                            .tableName(TABLE_NAME)
+                            .key(key)
+                            .updateExpression("SET #embedding = :binary")
+                            .conditionExpression("#embedding = :original")
+                            .expressionAttributeNames(names)
+                            .expressionAttributeValues(values)
+                            .build());
+                    nearCache.invalidate(cacheKey(key.get("user_id").s(), key.get("embedding_type").s()));
+                    migrated.incrementAndGet();
+                } catch (ConditionalCheckFailedException e) {
+                    skipped.incrementAndGet();
+                }
+            }
+            lastKey = response.hasLastEvaluatedKey() && !response.lastEvaluatedKey().isEmpty()
+                    ? response.lastEvaluatedKey() : null;
+        } while (lastKey != null);
+    }
+}
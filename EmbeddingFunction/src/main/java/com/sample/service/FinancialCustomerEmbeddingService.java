@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Map;
 
 import com.sample.model.EmbeddingMetadata;
+import com.sample.model.EmbeddingVector;
 
 /**
  * Service for generating embeddings from financial customer data.
@@ -57,6 +58,14 @@ public class FinancialCustomerEmbeddingService {
         this.embeddingService = new EmbeddingService();
         this.dynamoDBService = new EnhancedDynamoDBService();
     }
+
+    /**
+     * Writes embeddings still buffered by write-behind (EMBEDDING_WRITE_BEHIND=true).
+     * Call before the invocation returns; a no-op otherwise.
+     */
+    public void flush() {
+        dynamoDBService.flush();
+    }
     
     /**
      * Generates an embedding from customer financial profile.
@@ -81,7 +90,7 @@ public class FinancialCustomerEmbeddingService {
         
         // 2. Generate embedding using the processed text
         long startTime = System.currentTimeMillis();
-        double[] embedding = embeddingService.generateEmbedding(processedText);
+        EmbeddingVector embedding = embeddingService.generateEmbeddingVector(processedText);
         long endTime = System.currentTimeMillis();
         
         // 3. Create metadata
@@ -100,7 +109,7 @@ public class FinancialCustomerEmbeddingService {
             metadata
         );
         
-        return embedding;
+        return embedding.toDoubleArray();
     }
     
     /**
@@ -120,7 +129,7 @@ public class FinancialCustomerEmbeddingService {
         
         // 1. Generate embedding from transcript
         long startTime = System.currentTimeMillis();
-        double[] embedding = embeddingService.generateEmbedding(transcriptText);
+        EmbeddingVector embedding = embeddingService.generateEmbeddingVector(transcriptText);
         long endTime = System.currentTimeMillis();
         
         // 2. Perform sentiment analysis
@@ -147,7 +156,7 @@ public class FinancialCustomerEmbeddingService {
         
         // 6. Return results
         Map<String, Object> result = new HashMap<>();
-        result.put("embedding", embedding);
+        result.put("embedding", embedding.toDoubleArray());
         result.put("sentiment", sentimentResult);
         result.put("key_terms", keyTerms);
         
@@ -172,7 +181,7 @@ public class FinancialCustomerEmbeddingService {
         
         // 2. Generate embedding using the processed text
         long startTime = System.currentTimeMillis();
-        double[] embedding = embeddingService.generateEmbedding(processedText);
+        EmbeddingVector embedding = embeddingService.generateEmbeddingVector(processedText);
         long endTime = System.currentTimeMillis();
         
         // 3. Calculate transaction statistics
@@ -193,7 +202,7 @@ public class FinancialCustomerEmbeddingService {
             metadata
         );
         
-        return embedding;
+        return embedding.toDoubleArray();
     }
     
     /**
@@ -373,7 +382,7 @@ public class FinancialCustomerEmbeddingService {
      */
     public Map<String, Double> findSimilarCustomers(String customerId, int maxResults) throws Exception {
         // Get the target customer's embedding
-        double[] targetEmbedding = dynamoDBService.getEmbedding(
+        EmbeddingVector targetEmbedding = dynamoDBService.getEmbeddingVector(
             customerId, 
             "FINANCIAL_PROFILE"
         );
@@ -382,14 +391,8 @@ public class FinancialCustomerEmbeddingService {
             throw new IllegalArgumentException("No financial profile embedding found for customer: " + customerId);
         }
         
-        // TODO: In a real implementation, we would query a database of customers
-        // For this example, we'll just return a placeholder
-        Map<String, Double> similarCustomers = new HashMap<>();
-        similarCustomers.put("customer123", 0.92);
-        similarCustomers.put("customer456", 0.87);
-        similarCustomers.put("customer789", 0.75);
-        
-        return similarCustomers;
+        // Nearest neighbours from the in-memory vector index for this embedding type
+        return dynamoDBService.findSimilarUsers(customerId, targetEmbedding, "FINANCIAL_PROFILE", maxResults);
     }
     
     /**
@@ -590,7 +593,7 @@ public class FinancialCustomerEmbeddingService {
         
         // 2. Generate embedding using the processed text with specified dimensions
         long startTime = System.currentTimeMillis();
-        double[] embedding = embeddingService.generateEmbeddingWithDimension(processedText, dimensions);
+        EmbeddingVector embedding = embeddingService.generateEmbeddingVector(processedText, dimensions);
         long endTime = System.currentTimeMillis();
         
         // 3. Create metadata
@@ -610,7 +613,7 @@ public class FinancialCustomerEmbeddingService {
             metadata
         );
         
-        return embedding;
+        return embedding.toDoubleArray();
     }
     
     /**
@@ -632,7 +635,7 @@ public class FinancialCustomerEmbeddingService {
         
         // 1. Generate embedding from transcript with specified dimensions
         long startTime = System.currentTimeMillis();
-        double[] embedding = embeddingService.generateEmbeddingWithDimension(transcriptText, dimensions);
+        EmbeddingVector embedding = embeddingService.generateEmbeddingVector(transcriptText, dimensions);
         long endTime = System.currentTimeMillis();
         
         // 2. Perform sentiment analysis
@@ -660,7 +663,7 @@ public class FinancialCustomerEmbeddingService {
         
         // 6. Return results
         Map<String, Object> result = new HashMap<>();
-        result.put("embedding", embedding);
+        result.put("embedding", embedding.toDoubleArray());
         result.put("sentiment", sentimentResult);
         result.put("key_terms", keyTerms);
         result.put("dimensions", dimensions);
@@ -688,7 +691,7 @@ public class FinancialCustomerEmbeddingService {
         
         // 2. Generate embedding using the processed text with specified dimensions
         long startTime = System.currentTimeMillis();
-        double[] embedding = embeddingService.generateEmbeddingWithDimension(processedText, dimensions);
+        EmbeddingVector embedding = embeddingService.generateEmbeddingVector(processedText, dimensions);
         long endTime = System.currentTimeMillis();
         
         // 3. Calculate transaction statistics
@@ -710,6 +713,6 @@ public class FinancialCustomerEmbeddingService {
             metadata
         );
         
-        return embedding;
+        return embedding.toDoubleArray();
     }
 }
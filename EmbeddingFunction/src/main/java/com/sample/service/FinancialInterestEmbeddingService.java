@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Map;
 
 import com.sample.model.EmbeddingMetadata;
+import com.sample.model.EmbeddingVector;
 
 /**
  * Specialized service for generating embeddings from financial interests, well-being concerns,
@@ -40,6 +41,14 @@ public class FinancialInterestEmbeddingService {
         this.embeddingService = new EmbeddingService();
         this.dynamoDBService = new EnhancedDynamoDBService();
     }
+
+    /**
+     * Writes embeddings still buffered by write-behind (EMBEDDING_WRITE_BEHIND=true).
+     * Call before the invocation returns; a no-op otherwise.
+     */
+    public void flush() {
+        dynamoDBService.flush();
+    }
     
     /**
      * Generates an embedding from financial interests, life events, and wellness concerns.
@@ -66,7 +75,7 @@ public class FinancialInterestEmbeddingService {
         
         // 2. Generate embedding using the processed text
         long startTime = System.currentTimeMillis();
-        double[] embedding = embeddingService.generateEmbedding(processedText);
+        EmbeddingVector embedding = embeddingService.generateEmbeddingVector(processedText);
         long endTime = System.currentTimeMillis();
         
         // 3. Create metadata
@@ -86,7 +95,7 @@ public class FinancialInterestEmbeddingService {
             metadata
         );
         
-        return embedding;
+        return embedding.toDoubleArray();
     }
     
     /**
@@ -158,20 +167,14 @@ public class FinancialInterestEmbeddingService {
      */
     public Map<String, Double> findSimilarFinancialProfiles(String userId, int maxResults) throws Exception {
         // Get the target user's embedding
-        double[] targetEmbedding = dynamoDBService.getEmbedding(userId, "financial_profile");
+        EmbeddingVector targetEmbedding = dynamoDBService.getEmbeddingVector(userId, "financial_profile");
         
         if (targetEmbedding == null) {
             throw new IllegalArgumentException("No financial profile embedding found for user: " + userId);
         }
         
-        // TODO: In a real implementation, we would query a database of users
-        // For this example, we'll just return a placeholder
-        Map<String, Double> similarUsers = new HashMap<>();
-        similarUsers.put("client123", 0.94);
-        similarUsers.put("client456", 0.89);
-        similarUsers.put("client789", 0.78);
-        
-        return similarUsers;
+        // Nearest neighbours from the in-memory vector index for this embedding type
+        return dynamoDBService.findSimilarUsers(userId, targetEmbedding, "financial_profile", maxResults);
     }
     
     /**
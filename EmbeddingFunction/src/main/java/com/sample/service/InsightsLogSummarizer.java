@@ -0,0 +1,324 @@
+package com.sample.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.sample.util.Deadline;
+import com.sample.util.EnvConfig;
+
+import software.amazon.awssdk.services.cloudwatchlogs.CloudWatchLogsAsyncClient;
+import software.amazon.awssdk.services.cloudwatchlogs.model.GetQueryResultsRequest;
+import software.amazon.awssdk.services.cloudwatchlogs.model.QueryStatus;
+import software.amazon.awssdk.services.cloudwatchlogs.model.ResultField;
+import software.amazon.awssdk.services.cloudwatchlogs.model.StartQueryRequest;
+import software.amazon.awssdk.services.cloudwatchlogs.model.StopQueryRequest;
+
+/**
+ * Log summarizer that pushes the aggregation down to CloudWatch Logs Insights, so only counts
+ * and a handful of recent events leave the service instead of every raw event.
+ * This class handles:
+ * 1. Building a stats query from the {@link LogClassifier} catalogue: parse commands extract the
+ *    API path, status code, first keyword of each summarized category and the alert terms, and
+ *    stats counts the events of each combination
+ * 2. Running it alongside a query for the most recent events, polling both asynchronously every
+ *    LOG_INSIGHTS_POLL_MILLIS (default 500) until they complete or LOG_INSIGHTS_TIMEOUT_MILLIS
+ *    (default 20000) and the request deadline run out
+ * 3. Folding the result rows into an {@link ActivitySummary} through the same counting rules as
+ *    the streaming path
+ *
+ * Insights works in whole seconds, so the window is widened to the enclosing seconds. One
+ * difference from the classifier remains: an account record's activity is the first activity term
+ * in the message rather than the first in catalogue order. Failures surface as RuntimeException;
+ * CloudWatchLogEmbeddingService then streams and summarizes the events locally instead.
+ */
+public class InsightsLogSummarizer implements LogSummarizer {
+
+    private static final long POLL_MILLIS = EnvConfig.getLong("LOG_INSIGHTS_POLL_MILLIS", 500);
+    private static final long TIMEOUT_MILLIS = EnvConfig.getLong("LOG_INSIGHTS_TIMEOUT_MILLIS", 20000);
+    private static final long CALL_TIMEOUT_MILLIS = EnvConfig.getLong("CLOUDWATCH_LOGS_CALL_TIMEOUT_MILLIS", 5000);
+
+    // Insights returns at most this many rows per query
+    static final int MAX_RESULT_ROWS = 10000;
+
+    // Fields of the stats query
+    static final String COUNT_FIELD = "events";
+    static final String PATH_FIELD = "apiPath";
+    static final String STATUS_FIELD = "statusCode";
+    static final String TRADING_ERROR_FIELD = "tradingErrorTerm";
+    static final String SECURITY_ALERT_FIELD = "securityAlertTerm";
+    static final String COMPLIANCE_VIOLATION_FIELD = "complianceViolationTerm";
+    static final String ACCOUNT_RECORD_FIELD = "accountRecord";
+    static final String ACCOUNT_TERM_FIELD = "accountTerm";
+
+    private static final DateTimeFormatter INSIGHTS_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final LogClassifier CLASSIFIER = new LogClassifier();
+
+    private final CloudWatchLogsAsyncClient client;
+
+    /**
+     * Constructor that initializes the summarizer with the default client.
+     */
+    public InsightsLogSummarizer() {
+        this(CloudWatchLogsAsyncClient.create());
+    }
+
+    /**
+     * Constructor that allows for dependency injection (useful for testing).
+     */
+    public InsightsLogSummarizer(CloudWatchLogsAsyncClient client) {
+        this.client = client;
+    }
+
+    @Override
+    public ActivitySummary summarize(String userId, String logGroupName, long startTimeMillis, long endTimeMillis) {
+        long timeoutMillis = Deadline.sliceMillis("CloudWatch Logs Insights", TIMEOUT_MILLIS, 1.0);
+        try {
+            // Polling stops itself at the timeout; the extra call timeout only guards a stuck request
+            return summarizeAsync(userId, logGroupName, startTimeMillis, endTimeMillis, timeoutMillis)
+                    .get(timeoutMillis + CALL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for Insights queries", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Insights summary failed: " + e.getCause().getMessage(), e.getCause());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Insights summary timed out after " + timeoutMillis + " ms", e);
+        }
+    }
+
+    /**
+     * Runs the stats and recent-events queries concurrently and combines their results.
+     *
+     * @param timeoutMillis How long the queries may take before they are stopped
+     * @return The summary, completed exceptionally if a query fails or times out
+     */
+    public CompletableFuture<ActivitySummary> summarizeAsync(String userId, String logGroupName,
+                                                             long startTimeMillis, long endTimeMillis,
+                                                             long timeoutMillis) {
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        long callTimeoutMillis = Math.min(CALL_TIMEOUT_MILLIS, timeoutMillis);
+        CompletableFuture<List<List<ResultField>>> counts = runQuery(logGroupName, startTimeMillis, endTimeMillis,
+                statsQuery(userId), MAX_RESULT_ROWS, deadlineNanos, callTimeoutMillis);
+        CompletableFuture<List<List<ResultField>>> recent = runQuery(logGroupName, startTimeMillis, endTimeMillis,
+                recentEventsQuery(userId), ActivitySummary.RECENT_EVENT_LIMIT, deadlineNanos, callTimeoutMillis);
+
+        return counts.thenCombine(recent, (countRows, recentRows) -> {
+            if (countRows.size() >= MAX_RESULT_ROWS) {
+                throw new IllegalStateException("Insights stats result reached the " + MAX_RESULT_ROWS + " row limit");
+            }
+            ActivitySummary summary = new ActivitySummary();
+            for (List<ResultField> row : countRows) {
+                addCountRow(summary, fields(row));
+            }
+            for (List<ResultField> row : recentRows) {
+                addRecentRow(summary, fields(row));
+            }
+            return summary;
+        });
+    }
+
+    /**
+     * The stats query counting a user's events by every feature the activity summary reads.
+     */
+    static String statsQuery(String userId) {
+        StringBuilder query = new StringBuilder(userFilter(userId));
+        query.append("\n| parse @message /(?i)path\"?\\s*[:=]\\s*\"?(?<").append(PATH_FIELD).append(">\\/[\\w\\/]+)/");
+        query.append("\n| parse @message /(?i)statusCode\"?\\s*[:=]\\s*\"?(?<").append(STATUS_FIELD).append(">\\d{3})/");
+        for (LogClassifier.Category category : summarizedCategories()) {
+            query.append("\n| parse @message /(?i)\\b(?<").append(keywordField(category)).append(">")
+                 .append(alternation(category.getKeywords())).append(")\\b/");
+        }
+        appendTermParse(query, TRADING_ERROR_FIELD, LogClassifier.TRADING_ERROR_TERMS, true);
+        appendTermParse(query, SECURITY_ALERT_FIELD, LogClassifier.SECURITY_ALERT_TERMS, true);
+        appendTermParse(query, COMPLIANCE_VIOLATION_FIELD, LogClassifier.COMPLIANCE_VIOLATION_TERMS, true);
+        appendTermParse(query, ACCOUNT_RECORD_FIELD, List.of("Account:"), false);
+        appendTermParse(query, ACCOUNT_TERM_FIELD, LogClassifier.ACCOUNT_ACTIVITY_TERMS, false);
+
+        query.append("\n| stats count(*) as ").append(COUNT_FIELD).append(" by ")
+             .append(PATH_FIELD).append(", ").append(STATUS_FIELD);
+        for (LogClassifier.Category category : summarizedCategories()) {
+            query.append(", ").append(keywordField(category));
+        }
+        query.append(", ").append(TRADING_ERROR_FIELD)
+             .append(", ").append(SECURITY_ALERT_FIELD)
+             .append(", ").append(COMPLIANCE_VIOLATION_FIELD)
+             .append(", ").append(ACCOUNT_RECORD_FIELD)
+             .append(", ").append(ACCOUNT_TERM_FIELD);
+        return query.toString();
+    }
+
+    /**
+     * The query returning a user's most recent events for the activity sequence.
+     */
+    static String recentEventsQuery(String userId) {
+        return userFilter(userId)
+                + "\n| fields @timestamp, @message"
+                + "\n| sort @timestamp desc"
+                + "\n| limit " + ActivitySummary.RECENT_EVENT_LIMIT;
+    }
+
+    /**
+     * Categories the activity summary counts keywords of.
+     */
+    static List<LogClassifier.Category> summarizedCategories() {
+        return List.of(LogClassifier.Category.ERROR, LogClassifier.Category.TRADE,
+                LogClassifier.Category.SECURITY, LogClassifier.Category.COMPLIANCE);
+    }
+
+    static String keywordField(LogClassifier.Category category) {
+        return category.name().toLowerCase(Locale.ROOT) + "Keyword";
+    }
+
+    private static String userFilter(String userId) {
+        return "filter @message like \"" + userId.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static void appendTermParse(StringBuilder query, String field, List<String> terms, boolean ignoreCase) {
+        query.append("\n| parse @message /").append(ignoreCase ? "(?i)" : "")
+             .append("(?<").append(field).append(">").append(alternation(terms)).append(")/");
+    }
+
+    /**
+     * Joins terms into a regex alternation, escaping anything but word characters.
+     */
+    private static String alternation(List<String> terms) {
+        StringBuilder alternation = new StringBuilder();
+        for (String term : terms) {
+            if (alternation.length() > 0) {
+                alternation.append('|');
+            }
+            for (int i = 0; i < term.length(); i++) {
+                char c = term.charAt(i);
+                if (!Character.isLetterOrDigit(c) && c != '_' && c != ':') {
+                    alternation.append('\\');
+                }
+                alternation.append(c);
+            }
+        }
+        return alternation.toString();
+    }
+
+    /**
+     * Folds one stats row, the count of events sharing one combination of features, into the summary.
+     */
+    static void addCountRow(ActivitySummary summary, Map<String, String> row) {
+        String count = row.get(COUNT_FIELD);
+        if (count == null) {
+            return;
+        }
+        String accountActivity = null;
+        if (row.containsKey(ACCOUNT_RECORD_FIELD)) {
+            String term = row.get(ACCOUNT_TERM_FIELD);
+            int index = term != null ? LogClassifier.ACCOUNT_ACTIVITY_TERMS.indexOf(term) : -1;
+            accountActivity = index >= 0 ? LogClassifier.ACCOUNT_ACTIVITY_NAMES.get(index) : "general";
+        }
+        summary.addEvents(Integer.parseInt(count), row.get(PATH_FIELD), row.get(STATUS_FIELD),
+                keyword(row, LogClassifier.Category.ERROR),
+                keyword(row, LogClassifier.Category.TRADE), row.containsKey(TRADING_ERROR_FIELD),
+                keyword(row, LogClassifier.Category.SECURITY), row.containsKey(SECURITY_ALERT_FIELD),
+                keyword(row, LogClassifier.Category.COMPLIANCE), row.containsKey(COMPLIANCE_VIOLATION_FIELD),
+                accountActivity);
+    }
+
+    private static String keyword(Map<String, String> row, LogClassifier.Category category) {
+        String keyword = row.get(keywordField(category));
+        return keyword != null ? keyword.toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static void addRecentRow(ActivitySummary summary, Map<String, String> row) {
+        String message = row.get("@message");
+        if (message == null) {
+            return;
+        }
+        summary.addRecent(CLASSIFIER.classify(message, parseTimestamp(row.get("@timestamp"))));
+    }
+
+    /**
+     * Parses an Insights @timestamp ("2023-06-15 12:34:56.789", UTC).
+     *
+     * @return Epoch milliseconds, or 0 if the value is missing or malformed
+     */
+    static long parseTimestamp(String value) {
+        if (value == null) {
+            return 0L;
+        }
+        try {
+            return LocalDateTime.parse(value, INSIGHTS_TIMESTAMP).toInstant(ZoneOffset.UTC).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return 0L;
+        }
+    }
+
+    /**
+     * The fields of a result row; Insights leaves out or empties fields that did not match.
+     */
+    private static Map<String, String> fields(List<ResultField> row) {
+        Map<String, String> fields = new HashMap<>();
+        for (ResultField field : row) {
+            if (field.value() != null && !field.value().isEmpty()) {
+                fields.put(field.field(), field.value());
+            }
+        }
+        return fields;
+    }
+
+    private CompletableFuture<List<List<ResultField>>> runQuery(String logGroupName, long startTimeMillis,
+                                                                long endTimeMillis, String query, int limit,
+                                                                long deadlineNanos, long callTimeoutMillis) {
+        // Insights takes epoch seconds; widen the window to whole seconds
+        StartQueryRequest request = StartQueryRequest.builder()
+                .logGroupName(logGroupName)
+                .startTime(Math.floorDiv(startTimeMillis, 1000L))
+                .endTime(Math.floorDiv(endTimeMillis + 999L, 1000L))
+                .queryString(query)
+                .limit(limit)
+                .overrideConfiguration(Deadline.apiCallTimeout(callTimeoutMillis))
+                .build();
+        return client.startQuery(request)
+                .thenCompose(response -> poll(response.queryId(), deadlineNanos, callTimeoutMillis));
+    }
+
+    private CompletableFuture<List<List<ResultField>>> poll(String queryId, long deadlineNanos, long callTimeoutMillis) {
+        GetQueryResultsRequest request = GetQueryResultsRequest.builder()
+                .queryId(queryId)
+                .overrideConfiguration(Deadline.apiCallTimeout(callTimeoutMillis))
+                .build();
+        return client.getQueryResults(request).thenCompose(response -> {
+            QueryStatus status = response.status();
+            if (status == QueryStatus.COMPLETE) {
+                return CompletableFuture.completedFuture(response.results());
+            }
+            if (status != QueryStatus.SCHEDULED && status != QueryStatus.RUNNING) {
+                return CompletableFuture.failedFuture(
+                        new RuntimeException("Insights query " + queryId + " ended with status " + status));
+            }
+            if (System.nanoTime() - deadlineNanos >= 0) {
+                stopQuery(queryId);
+                return CompletableFuture.failedFuture(
+                        new RuntimeException("Insights query " + queryId + " did not complete in time"));
+            }
+            return CompletableFuture.supplyAsync(() -> queryId,
+                            CompletableFuture.delayedExecutor(POLL_MILLIS, TimeUnit.MILLISECONDS))
+                    .thenCompose(id -> poll(id, deadlineNanos, callTimeoutMillis));
+        });
+    }
+
+    private void stopQuery(String queryId) {
+        client.stopQuery(StopQueryRequest.builder().queryId(queryId).build())
+                .whenComplete((response, e) -> {
+                    if (e != null) {
+                        System.err.println("Error stopping Insights query " + queryId + ": " + e.getMessage());
+                    }
+                });
+    }
+}
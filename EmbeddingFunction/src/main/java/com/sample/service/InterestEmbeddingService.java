@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Map;
 
 import com.sample.model.EmbeddingMetadata;
+import com.sample.model.EmbeddingVector;
 
 /**
  * Service for generating embeddings from user interests.
@@ -27,6 +28,14 @@ public class InterestEmbeddingService {
         this.embeddingService = new EmbeddingService();
         this.dynamoDBService = new EnhancedDynamoDBService();
     }
+
+    /**
+     * Writes embeddings still buffered by write-behind (EMBEDDING_WRITE_BEHIND=true).
+     * Call before the invocation returns; a no-op otherwise.
+     */
+    public void flush() {
+        dynamoDBService.flush();
+    }
     
     /**
      * Generates an embedding from user interests.
@@ -43,7 +52,7 @@ public class InterestEmbeddingService {
         
         // 2. Generate embedding using the processed text
         long startTime = System.currentTimeMillis();
-        double[] embedding = embeddingService.generateEmbedding(processedText);
+        EmbeddingVector embedding = embeddingService.generateEmbeddingVector(processedText);
         long endTime = System.currentTimeMillis();
         
         // 3. Create metadata
@@ -60,7 +69,7 @@ public class InterestEmbeddingService {
             metadata
         );
         
-        return embedding;
+        return embedding.toDoubleArray();
     }
     
     /**
@@ -119,7 +128,7 @@ public class InterestEmbeddingService {
      */
     public Map<String, Double> findSimilarInterests(String userId, int maxResults) throws Exception {
         // Get the target user's embedding
-        double[] targetEmbedding = dynamoDBService.getEmbedding(
+        EmbeddingVector targetEmbedding = dynamoDBService.getEmbeddingVector(
             userId, 
             EnhancedDynamoDBService.EMBEDDING_TYPE_INTERESTS
         );
@@ -128,14 +137,13 @@ public class InterestEmbeddingService {
             throw new IllegalArgumentException("No interest embedding found for user: " + userId);
         }
         
-        // TODO: In a real implementation, we would query a database of users
-        // For this example, we'll just return a placeholder
-        Map<String, Double> similarUsers = new HashMap<>();
-        similarUsers.put("user123", 0.92);
-        similarUsers.put("user456", 0.87);
-        similarUsers.put("user789", 0.75);
-        
-        return similarUsers;
+        // Nearest neighbours from the in-memory vector index for this embedding type
+        return dynamoDBService.findSimilarUsers(
+            userId, 
+            targetEmbedding, 
+            EnhancedDynamoDBService.EMBEDDING_TYPE_INTERESTS, 
+            maxResults
+        );
     }
     
     /**
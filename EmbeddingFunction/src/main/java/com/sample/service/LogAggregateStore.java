@@ -0,0 +1,19 @@
+package com.sample.service;
+
+/**
+ * Persistent storage for {@link UserLogAggregates}, keyed by user and log group.
+ */
+public interface LogAggregateStore {
+
+    /**
+     * @return The stored aggregates, with their version set, or null if there are none
+     */
+    UserLogAggregates load(String userId, String logGroupName);
+
+    /**
+     * Stores aggregates if the stored copy still has the version they were loaded with.
+     *
+     * @return true if stored, false if another writer stored a newer copy first
+     */
+    boolean save(String userId, String logGroupName, UserLogAggregates aggregates);
+}
@@ -0,0 +1,263 @@
+package com.sample.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.sample.util.KeywordAutomaton;
+
+/**
+ * Compiled classifier for CloudWatch log messages.
+ * This class handles:
+ * 1. Holding the keyword catalogue ({@link Category}) the log analyses are built on
+ * 2. Compiling the catalogue, the field names (path, httpMethod, statusCode) and the marker
+ *    and alert terms into one {@link KeywordAutomaton}
+ * 3. Classifying a message in a single pass into a {@link LogFeatures} record
+ *
+ * The result is the same as running the per-category {@code \b(...)\b} regexes (CASE_INSENSITIVE)
+ * and the field regexes with find(): the first whole-word keyword of each category and the
+ * first field value that parses. Instances are immutable and safe to share between threads.
+ */
+public final class LogClassifier {
+
+    /**
+     * Keyword categories. Keywords are matched as whole words, ignoring case.
+     */
+    public enum Category {
+        ERROR("error", "exception", "failed", "timeout", "denied", "rejected"),
+        TRADE("trade", "order", "buy", "sell", "execute", "cancel", "modify"),
+        SECURITY("login", "logout", "auth", "password", "mfa", "2fa", "verification", "suspicious"),
+        COMPLIANCE("compliance", "regulatory", "restriction", "limit", "threshold", "kyc", "aml", "fraud"),
+        BUTTON_CLICK("click", "button", "submit", "tap"),
+        NAVIGATION("navigate", "page", "view", "screen", "back", "forward"),
+        CHANNEL_SWITCH("channel", "switch", "mobile", "web", "app", "desktop", "device");
+
+        private final List<String> keywords;
+
+        Category(String... keywords) {
+            this.keywords = Collections.unmodifiableList(Arrays.asList(keywords));
+        }
+
+        public List<String> getKeywords() {
+            return keywords;
+        }
+    }
+
+    static final List<String> CHANNELS = List.of("mobile", "web", "app", "desktop");
+    static final List<String> ACCOUNT_ACTIVITY_NAMES = List.of(
+            "deposit", "withdrawal", "transfer", "margin_call", "dividend", "interest", "restriction");
+
+    static final int TRADE_RECORD = 1;
+    static final int SECURITY_RECORD = 2;
+    static final int COMPLIANCE_RECORD = 4;
+    static final int ACCOUNT_RECORD = 8;
+
+    static final List<String> TRADING_ERROR_TERMS = List.of("rejected", "failed", "error");
+    static final List<String> SECURITY_ALERT_TERMS = List.of("warning", "suspicious", "failure", "locked");
+    static final List<String> COMPLIANCE_VIOLATION_TERMS = List.of("violation", "blocked", "flagged");
+    private static final List<String> RECORD_MARKERS = List.of("Trade:", "Security:", "Compliance:", "Account:");
+    static final List<String> ACCOUNT_ACTIVITY_TERMS = List.of(
+            "DEPOSIT", "WITHDRAWAL", "TRANSFER", "MARGIN_CALL", "DIVIDEND", "INTEREST", "RESTRICTION");
+    private static final String[] HTTP_METHODS = {"GET", "POST", "PUT", "DELETE", "PATCH"};
+
+    // What each automaton keyword means
+    private static final int KEYWORD = 0;
+    private static final int PATH_FIELD = 1;
+    private static final int METHOD_FIELD = 2;
+    private static final int STATUS_FIELD = 3;
+    private static final int TRADING_ERROR_TERM = 4;
+    private static final int SECURITY_ALERT_TERM = 5;
+    private static final int COMPLIANCE_VIOLATION_TERM = 6;
+    private static final int CHANNEL_MENTION = 7;
+    private static final int RECORD_MARKER = 8;
+    private static final int ACCOUNT_ACTIVITY = 9;
+
+    private final KeywordAutomaton automaton;
+    private final String[] terms;
+    private final int[] kinds;
+    private final int[] arguments;
+
+    public LogClassifier() {
+        List<String> termList = new ArrayList<>();
+        List<int[]> meanings = new ArrayList<>();
+        for (Category category : Category.values()) {
+            addTerms(termList, meanings, category.getKeywords(), KEYWORD, category.ordinal());
+        }
+        addTerms(termList, meanings, List.of("path"), PATH_FIELD, 0);
+        addTerms(termList, meanings, List.of("httpMethod"), METHOD_FIELD, 0);
+        addTerms(termList, meanings, List.of("statusCode"), STATUS_FIELD, 0);
+        addTerms(termList, meanings, TRADING_ERROR_TERMS, TRADING_ERROR_TERM, 0);
+        addTerms(termList, meanings, SECURITY_ALERT_TERMS, SECURITY_ALERT_TERM, 0);
+        addTerms(termList, meanings, COMPLIANCE_VIOLATION_TERMS, COMPLIANCE_VIOLATION_TERM, 0);
+        addTerms(termList, meanings, CHANNELS, CHANNEL_MENTION, -1);
+        addTerms(termList, meanings, RECORD_MARKERS, RECORD_MARKER, -1);
+        addTerms(termList, meanings, ACCOUNT_ACTIVITY_TERMS, ACCOUNT_ACTIVITY, -1);
+
+        automaton = new KeywordAutomaton(termList);
+        terms = termList.toArray(new String[0]);
+        kinds = new int[terms.length];
+        arguments = new int[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            kinds[i] = meanings.get(i)[0];
+            arguments[i] = meanings.get(i)[1];
+        }
+    }
+
+    /**
+     * Adds terms of one kind. An argument of -1 stores each term's position in its list instead.
+     */
+    private static void addTerms(List<String> termList, List<int[]> meanings, List<String> values,
+                                 int kind, int argument) {
+        for (int i = 0; i < values.size(); i++) {
+            termList.add(values.get(i));
+            meanings.add(new int[] {kind, argument >= 0 ? argument : i});
+        }
+    }
+
+    /**
+     * Classifies one log message.
+     */
+    public LogFeatures classify(String message, long timestamp) {
+        LogFeatures features = new LogFeatures(message, timestamp);
+        automaton.scan(message, (term, start, end) -> record(features, message, term, start, end));
+        return features;
+    }
+
+    private void record(LogFeatures features, String message, int term, int start, int end) {
+        int argument = arguments[term];
+        switch (kinds[term]) {
+            case KEYWORD:
+                // Whole-word matches of distinct words never overlap, so the first reported is leftmost
+                if (features.keywords[argument] == null && KeywordAutomaton.isWholeWord(message, start, end)) {
+                    features.keywords[argument] = terms[term];
+                    features.keywordStarts[argument] = start;
+                }
+                break;
+            case PATH_FIELD:
+                if (features.apiPath == null) {
+                    features.apiPath = parsePath(message, end);
+                }
+                break;
+            case METHOD_FIELD:
+                if (features.httpMethod == null) {
+                    features.httpMethod = parseMethod(message, end);
+                }
+                break;
+            case STATUS_FIELD:
+                if (features.statusCode == null) {
+                    features.statusCode = parseStatusCode(message, end);
+                }
+                break;
+            case TRADING_ERROR_TERM:
+                features.tradingErrorTerm = true;
+                break;
+            case SECURITY_ALERT_TERM:
+                features.securityAlertTerm = true;
+                break;
+            case COMPLIANCE_VIOLATION_TERM:
+                features.complianceViolationTerm = true;
+                break;
+            case CHANNEL_MENTION:
+                // Earlier entries in CHANNELS take priority regardless of position
+                if (features.channelMention < 0 || argument < features.channelMention) {
+                    features.channelMention = argument;
+                }
+                break;
+            case RECORD_MARKER:
+                if (message.startsWith(terms[term], start)) {
+                    features.recordMarkers |= 1 << argument;
+                }
+                break;
+            case ACCOUNT_ACTIVITY:
+                if (message.startsWith(terms[term], start)
+                        && (features.accountActivity < 0 || argument < features.accountActivity)) {
+                    features.accountActivity = argument;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Parses {@code "?\s*[:=]\s*"?(/[\w/]+)} after a "path" field name.
+     */
+    private static String parsePath(String message, int from) {
+        int i = skipSeparator(message, from);
+        if (i < 0 || i >= message.length() || message.charAt(i) != '/') {
+            return null;
+        }
+        int end = i + 1;
+        while (end < message.length() && (isAsciiWordChar(message.charAt(end)) || message.charAt(end) == '/')) {
+            end++;
+        }
+        return end > i + 1 ? message.substring(i, end) : null;
+    }
+
+    /**
+     * Parses {@code "?\s*[:=]\s*"?(GET|POST|PUT|DELETE|PATCH)} after an "httpMethod" field name.
+     */
+    private static String parseMethod(String message, int from) {
+        int i = skipSeparator(message, from);
+        if (i < 0) {
+            return null;
+        }
+        for (String method : HTTP_METHODS) {
+            if (message.regionMatches(true, i, method, 0, method.length())) {
+                return message.substring(i, i + method.length());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses {@code "?\s*[:=]\s*"?(\d{3})} after a "statusCode" field name.
+     */
+    private static String parseStatusCode(String message, int from) {
+        int i = skipSeparator(message, from);
+        if (i < 0 || i + 3 > message.length()) {
+            return null;
+        }
+        for (int j = i; j < i + 3; j++) {
+            char c = message.charAt(j);
+            if (c < '0' || c > '9') {
+                return null;
+            }
+        }
+        return message.substring(i, i + 3);
+    }
+
+    /**
+     * Skips {@code "?\s*[:=]\s*"?} and returns the index of the value, or -1 if there is no separator.
+     */
+    private static int skipSeparator(String message, int from) {
+        int i = from;
+        int length = message.length();
+        if (i < length && message.charAt(i) == '"') {
+            i++;
+        }
+        while (i < length && isRegexSpace(message.charAt(i))) {
+            i++;
+        }
+        if (i >= length || (message.charAt(i) != ':' && message.charAt(i) != '=')) {
+            return -1;
+        }
+        i++;
+        while (i < length && isRegexSpace(message.charAt(i))) {
+            i++;
+        }
+        if (i < length && message.charAt(i) == '"') {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isRegexSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isAsciiWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+}
@@ -0,0 +1,38 @@
+package com.sample.service;
+
+/**
+ * One log event as read from CloudWatch Logs or a captured export.
+ */
+public final class LogEvent {
+
+    private final String message;
+    private final long timestamp;
+    private final String eventId;
+
+    public LogEvent(String message, long timestamp) {
+        this(message, timestamp, null);
+    }
+
+    /**
+     * @param message Raw log message
+     * @param timestamp Event time in epoch milliseconds
+     * @param eventId CloudWatch event ID, or null if the source has none
+     */
+    public LogEvent(String message, long timestamp, String eventId) {
+        this.message = message;
+        this.timestamp = timestamp;
+        this.eventId = eventId;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+}
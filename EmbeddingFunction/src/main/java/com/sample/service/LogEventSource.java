@@ -0,0 +1,23 @@
+package com.sample.service;
+
+import java.util.stream.Stream;
+
+/**
+ * Where CloudWatchLogEmbeddingService reads a user's log events from.
+ * Implementations produce events lazily, page by page or line by line, so a long window is
+ * never held in memory at once. Callers must close the returned stream, ideally with
+ * try-with-resources, to release connections and file handles.
+ */
+public interface LogEventSource {
+
+    /**
+     * Streams the events of a log group that mention a user.
+     *
+     * @param userId User ID the events must contain
+     * @param logGroupName CloudWatch log group name
+     * @param startTimeMillis Earliest event time, inclusive, in epoch milliseconds
+     * @param endTimeMillis Latest event time, inclusive, in epoch milliseconds
+     * @return The matching events, in no guaranteed order
+     */
+    Stream<LogEvent> events(String userId, String logGroupName, long startTimeMillis, long endTimeMillis);
+}
@@ -0,0 +1,108 @@
+package com.sample.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Log event source that replays captured log exports from local files, for tests and offline
+ * runs. It applies the same user and time filters CloudWatchLogsEventSource pushes down.
+ * This class handles:
+ * 1. Locating the export of a log group: the root file itself, or in a root directory the file
+ *    named after the group with '/' replaced by '_' and a .jsonl extension
+ *    (e.g. /aws/lambda/orders becomes aws_lambda_orders.jsonl)
+ * 2. Reading the export lazily, one line at a time
+ * 3. Parsing each line as either a JSON event as printed by {@code aws logs filter-log-events}
+ *    ({"timestamp": ..., "message": ..., "eventId": ...}) or an S3 export line
+ *    ("2023-06-15T12:34:56.789Z message")
+ *
+ * Lines that fit neither format are skipped.
+ */
+public class LogExportReplaySource implements LogEventSource {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Path root;
+
+    /**
+     * @param root An export file replayed for every log group, or a directory of per-group exports
+     */
+    public LogExportReplaySource(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public Stream<LogEvent> events(String userId, String logGroupName, long startTimeMillis, long endTimeMillis) {
+        Path export = exportFile(logGroupName);
+        if (!Files.isRegularFile(export)) {
+            return Stream.empty();
+        }
+        Stream<String> lines;
+        try {
+            lines = Files.lines(export, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading log export " + export, e);
+        }
+        return lines
+                .map(LogExportReplaySource::parseLine)
+                .filter(Objects::nonNull)
+                .filter(event -> event.getTimestamp() >= startTimeMillis && event.getTimestamp() <= endTimeMillis)
+                .filter(event -> userId == null || event.getMessage().contains(userId));
+    }
+
+    /**
+     * The file holding a log group's export.
+     */
+    Path exportFile(String logGroupName) {
+        if (!Files.isDirectory(root)) {
+            return root;
+        }
+        String name = logGroupName.startsWith("/") ? logGroupName.substring(1) : logGroupName;
+        return root.resolve(name.replace('/', '_') + ".jsonl");
+    }
+
+    /**
+     * Parses one export line.
+     *
+     * @return The event, or null if the line is blank or in neither format
+     */
+    static LogEvent parseLine(String line) {
+        // Keep trailing whitespace, it is part of the message
+        String trimmed = line.stripLeading();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+        if (trimmed.startsWith("{")) {
+            try {
+                JsonNode node = OBJECT_MAPPER.readTree(trimmed);
+                JsonNode message = node.get("message");
+                JsonNode timestamp = node.get("timestamp");
+                if (message == null || timestamp == null || !timestamp.canConvertToLong()) {
+                    return null;
+                }
+                JsonNode eventId = node.get("eventId");
+                return new LogEvent(message.asText(), timestamp.asLong(), eventId != null ? eventId.asText() : null);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        int space = trimmed.indexOf(' ');
+        if (space <= 0) {
+            return null;
+        }
+        try {
+            long timestamp = Instant.parse(trimmed.substring(0, space)).toEpochMilli();
+            return new LogEvent(trimmed.substring(space + 1), timestamp);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.sample.service;
+
+/**
+ * Everything the CloudWatch log analyses read from one log event, extracted by a single
+ * {@link LogClassifier} pass so no analysis rescans the message.
+ * Keyword fields hold the first whole-word match of each {@link LogClassifier.Category}, in
+ * lowercase, exactly as the find() of the corresponding {@code \b(...)\b} pattern would.
+ */
+public final class LogFeatures {
+
+    private final String message;
+    private final long timestamp;
+
+    // Filled in by LogClassifier
+    final String[] keywords = new String[LogClassifier.Category.values().length];
+    final int[] keywordStarts = new int[LogClassifier.Category.values().length];
+    String apiPath;
+    String httpMethod;
+    String statusCode;
+    boolean tradingErrorTerm;
+    boolean securityAlertTerm;
+    boolean complianceViolationTerm;
+    int channelMention = -1;
+    int recordMarkers;
+    int accountActivity = -1;
+
+    LogFeatures(String message, long timestamp) {
+        this.message = message;
+        this.timestamp = timestamp;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return true if a keyword of the category occurs as a whole word
+     */
+    public boolean has(LogClassifier.Category category) {
+        return keywords[category.ordinal()] != null;
+    }
+
+    /**
+     * @return The first keyword of the category, lowercased, or null if there is none
+     */
+    public String keyword(LogClassifier.Category category) {
+        return keywords[category.ordinal()];
+    }
+
+    /**
+     * @return Index in the message of the first keyword of the category, or -1 if there is none
+     */
+    public int keywordStart(LogClassifier.Category category) {
+        return has(category) ? keywordStarts[category.ordinal()] : -1;
+    }
+
+    /**
+     * @return The API path ({@code path: /...}), or null if absent
+     */
+    public String getApiPath() {
+        return apiPath;
+    }
+
+    /**
+     * @return The HTTP method ({@code httpMethod: GET}) as written, or null if absent
+     */
+    public String getHttpMethod() {
+        return httpMethod;
+    }
+
+    /**
+     * @return The three-digit status code ({@code statusCode: 200}), or null if absent
+     */
+    public String getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return true if the message contains "rejected", "failed" or "error" anywhere, ignoring case
+     */
+    public boolean hasTradingErrorTerm() {
+        return tradingErrorTerm;
+    }
+
+    /**
+     * @return true if the message contains "warning", "suspicious", "failure" or "locked"
+     *         anywhere, ignoring case
+     */
+    public boolean hasSecurityAlertTerm() {
+        return securityAlertTerm;
+    }
+
+    /**
+     * @return true if the message contains "violation", "blocked" or "flagged" anywhere,
+     *         ignoring case
+     */
+    public boolean hasComplianceViolationTerm() {
+        return complianceViolationTerm;
+    }
+
+    /**
+     * The channel of a channel event: the first of mobile, web, app and desktop mentioned
+     * anywhere in the message, else the channel keyword itself.
+     *
+     * @return The channel, or null if the message has no channel keyword
+     */
+    public String getChannel() {
+        String keyword = keyword(LogClassifier.Category.CHANNEL_SWITCH);
+        if (keyword == null) {
+            return null;
+        }
+        return channelMention >= 0 ? LogClassifier.CHANNELS.get(channelMention) : keyword;
+    }
+
+    /**
+     * @return true if the message contains "Trade:"
+     */
+    public boolean isTradeRecord() {
+        return (recordMarkers & LogClassifier.TRADE_RECORD) != 0;
+    }
+
+    /**
+     * @return true if the message contains "Security:"
+     */
+    public boolean isSecurityRecord() {
+        return (recordMarkers & LogClassifier.SECURITY_RECORD) != 0;
+    }
+
+    /**
+     * @return true if the message contains "Compliance:"
+     */
+    public boolean isComplianceRecord() {
+        return (recordMarkers & LogClassifier.COMPLIANCE_RECORD) != 0;
+    }
+
+    /**
+     * @return true if the message contains "Account:"
+     */
+    public boolean isAccountRecord() {
+        return (recordMarkers & LogClassifier.ACCOUNT_RECORD) != 0;
+    }
+
+    /**
+     * @return The account activity (deposit, withdrawal, ...; "general" if none is named) of an
+     *         account record, or null if this is not an account record
+     */
+    public String getAccountActivity() {
+        if (!isAccountRecord()) {
+            return null;
+        }
+        return accountActivity >= 0 ? LogClassifier.ACCOUNT_ACTIVITY_NAMES.get(accountActivity) : "general";
+    }
+}
@@ -0,0 +1,20 @@
+package com.sample.service;
+
+/**
+ * Produces the activity summary of a user's logs for a time window.
+ * CloudWatchLogEmbeddingService streams and classifies the events itself unless a summarizer
+ * that aggregates closer to the data is configured.
+ */
+public interface LogSummarizer {
+
+    /**
+     * Summarizes the events of a log group that mention a user.
+     *
+     * @param userId User ID the events must contain
+     * @param logGroupName CloudWatch log group name
+     * @param startTimeMillis Earliest event time, inclusive, in epoch milliseconds
+     * @param endTimeMillis Latest event time, inclusive, in epoch milliseconds
+     * @return The summary; its log count is 0 if there were no events
+     */
+    ActivitySummary summarize(String userId, String logGroupName, long startTimeMillis, long endTimeMillis);
+}
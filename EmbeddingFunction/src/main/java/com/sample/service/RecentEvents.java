@@ -0,0 +1,38 @@
+package com.sample.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The most recent events seen so far, up to a limit, kept in a min-heap by timestamp.
+ */
+final class RecentEvents {
+
+    private final int limit;
+    private final PriorityQueue<LogFeatures> heap = new PriorityQueue<>(Comparator.comparingLong(LogFeatures::getTimestamp));
+
+    RecentEvents(int limit) {
+        this.limit = limit;
+    }
+
+    void add(LogFeatures log) {
+        if (heap.size() < limit) {
+            heap.add(log);
+        } else if (limit > 0 && log.getTimestamp() > heap.peek().getTimestamp()) {
+            heap.poll();
+            heap.add(log);
+        }
+    }
+
+    void clear() {
+        heap.clear();
+    }
+
+    List<LogFeatures> mostRecentFirst() {
+        List<LogFeatures> events = new ArrayList<>(heap);
+        events.sort((a, b) -> Long.compare(b.getTimestamp(), a.getTimestamp()));
+        return events;
+    }
+}
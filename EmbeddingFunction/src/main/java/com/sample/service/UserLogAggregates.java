@@ -0,0 +1,466 @@
+package com.sample.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Rolling log aggregates of one user and log group, refreshed incrementally.
+ * This class handles:
+ * 1. Keeping an ingestion checkpoint (the latest event timestamp folded in and the IDs of the
+ *    events at that timestamp) so each refresh reads only newer events, without double counting
+ * 2. Holding the activity summary counts and client effort counters in a ring of hourly buckets;
+ *    folding an event into an hour whose slot still holds an older hour expires that hour
+ * 3. Carrying the state of the client effort detectors (back-and-forth navigation, channel
+ *    switches, repeated clicks) between refreshes, so each pattern is counted once, in the
+ *    bucket of the event that completes it
+ * 4. Answering for any window within the retention, to the hour, by merging buckets
+ * 5. Converting to and from JSON for a {@link LogAggregateStore}
+ *
+ * The effort detectors expect events in timestamp order; a refresh sorts its new effort events
+ * before feeding them. Patterns are counted when completed inside the window, so one that starts
+ * just before the window may count where a full recomputation would not.
+ */
+public final class UserLogAggregates {
+
+    static final long HOUR_MILLIS = 3600000L;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final int HIGH_EFFORT_EVENT_LIMIT = 15;
+
+    private final int retentionHours;
+    private final Bucket[] ring;
+
+    private long coveredSince;
+    private long checkpointTimestamp = -1;
+    private final Set<String> checkpointEventIds = new HashSet<>();
+
+    // Checkpoint as of the start of the current refresh
+    private long refreshFromTimestamp = -1;
+    private Set<String> refreshFromEventIds = new HashSet<>();
+
+    // Client effort detector state, carried across refreshes
+    private final List<String> navigationWindow = new ArrayList<>();
+    private String currentChannel;
+    private final Map<String, List<Long>> pendingClicks = new HashMap<>();
+
+    private final RecentEvents recentEvents = new RecentEvents(ActivitySummary.RECENT_EVENT_LIMIT);
+    private final RecentEvents highEffortEvents = new RecentEvents(HIGH_EFFORT_EVENT_LIMIT);
+
+    // Version of the stored copy this was loaded from, for optimistic locking; 0 if new
+    private long version;
+
+    /**
+     * @param retentionHours Hours of history kept
+     * @param coveredSince Time in epoch milliseconds from which the aggregates hold every event
+     */
+    public UserLogAggregates(int retentionHours, long coveredSince) {
+        this.retentionHours = retentionHours;
+        // One extra slot for the current, partial hour
+        this.ring = new Bucket[retentionHours + 1];
+        this.coveredSince = coveredSince;
+    }
+
+    /**
+     * Counts per hour: the activity summary and the client effort counters.
+     */
+    static final class Bucket {
+        final long hour;
+        final ActivitySummary summary = new ActivitySummary();
+        int errors;
+        int repeatedClicks;
+        int backForthNavigations;
+        int channelSwitches;
+
+        Bucket(long hour) {
+            this.hour = hour;
+        }
+    }
+
+    /**
+     * Client effort counters of a window.
+     */
+    static final class EffortCounts {
+        int logCount;
+        int errors;
+        int repeatedClicks;
+        int backForthNavigations;
+        int channelSwitches;
+    }
+
+    public int getRetentionHours() {
+        return retentionHours;
+    }
+
+    /**
+     * @return Time from which the aggregates hold every event, in epoch milliseconds
+     */
+    public long getCoveredSince() {
+        return coveredSince;
+    }
+
+    /**
+     * @return Timestamp of the latest event folded in, or -1 if there is none yet
+     */
+    public long getCheckpointTimestamp() {
+        return checkpointTimestamp;
+    }
+
+    /**
+     * @return Where the next refresh should start reading, in epoch milliseconds
+     */
+    public long nextReadFrom() {
+        return checkpointTimestamp >= 0 ? checkpointTimestamp : coveredSince;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * Drops everything but the stored version and starts covering again from the given time.
+     */
+    void reset(long coveredSince) {
+        Arrays.fill(ring, null);
+        this.coveredSince = coveredSince;
+        checkpointTimestamp = -1;
+        checkpointEventIds.clear();
+        refreshFromTimestamp = -1;
+        refreshFromEventIds.clear();
+        navigationWindow.clear();
+        currentChannel = null;
+        pendingClicks.clear();
+        recentEvents.clear();
+        highEffortEvents.clear();
+    }
+
+    /**
+     * Starts a refresh. Its events are checked against the checkpoint as it stands now, so a
+     * source need not deliver them in timestamp order.
+     */
+    void beginRefresh() {
+        refreshFromTimestamp = checkpointTimestamp;
+        refreshFromEventIds = new HashSet<>(checkpointEventIds);
+    }
+
+    /**
+     * Advances the checkpoint past an event of the current refresh unless it was already folded in.
+     *
+     * @return true if the event is new and should be folded in
+     */
+    boolean advanceCheckpoint(LogEvent event) {
+        long timestamp = event.getTimestamp();
+        String eventId = event.getEventId();
+        if (timestamp < refreshFromTimestamp || timestamp < coveredSince) {
+            return false;
+        }
+        // Without an ID an event at the checkpoint cannot be told apart from one already seen
+        if (timestamp == refreshFromTimestamp && (eventId == null || refreshFromEventIds.contains(eventId))) {
+            return false;
+        }
+        if (timestamp > checkpointTimestamp) {
+            checkpointTimestamp = timestamp;
+            checkpointEventIds.clear();
+        }
+        if (timestamp == checkpointTimestamp && eventId != null) {
+            checkpointEventIds.add(eventId);
+        }
+        return true;
+    }
+
+    /**
+     * Counts a new event in its hour's activity summary and error counter.
+     */
+    void count(LogFeatures log) {
+        Bucket bucket = bucket(log.getTimestamp());
+        bucket.summary.count(log);
+        if (log.has(LogClassifier.Category.ERROR)) {
+            bucket.errors++;
+        }
+        recentEvents.add(log);
+    }
+
+    void addHighEffortEvent(LogFeatures log) {
+        highEffortEvents.add(log);
+    }
+
+    /**
+     * Feeds the next navigation event, in timestamp order, to the back-and-forth detector.
+     * An A -> B -> A sequence counts once, and the detector starts over after it.
+     */
+    void navigate(String path, long timestamp) {
+        if (navigationWindow.size() == 2 && navigationWindow.get(0).equals(path)
+                && !navigationWindow.get(0).equals(navigationWindow.get(1))) {
+            bucket(timestamp).backForthNavigations++;
+            navigationWindow.clear();
+            return;
+        }
+        navigationWindow.add(path);
+        if (navigationWindow.size() > 2) {
+            navigationWindow.remove(0);
+        }
+    }
+
+    /**
+     * Feeds the next channel event, in timestamp order, to the channel switch detector.
+     */
+    void useChannel(String channel, long timestamp) {
+        if (currentChannel != null && !currentChannel.equals(channel)) {
+            bucket(timestamp).channelSwitches++;
+        }
+        currentChannel = channel;
+    }
+
+    /**
+     * Feeds the next click on a button, in timestamp order, to the repeated click detector.
+     * {@code threshold} clicks within {@code windowMillis} count once, and the detector starts
+     * over after them.
+     */
+    void click(String buttonKey, long timestamp, int threshold, long windowMillis) {
+        List<Long> pending = pendingClicks.computeIfAbsent(buttonKey, key -> new ArrayList<>());
+        pending.add(timestamp);
+        if (pending.size() < threshold) {
+            return;
+        }
+        if (timestamp - pending.get(0) <= windowMillis) {
+            bucket(timestamp).repeatedClicks++;
+            pending.clear();
+        } else {
+            pending.remove(0);
+        }
+    }
+
+    /**
+     * Forgets pending clicks too old to be part of a burst with any click after the checkpoint.
+     */
+    void pruneClicks(long windowMillis) {
+        long oldest = checkpointTimestamp - windowMillis;
+        Iterator<List<Long>> iterator = pendingClicks.values().iterator();
+        while (iterator.hasNext()) {
+            List<Long> pending = iterator.next();
+            pending.removeIf(timestamp -> timestamp < oldest);
+            if (pending.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Summarizes the hours overlapping the window.
+     *
+     * @param windowStart Start of the window in epoch milliseconds
+     */
+    ActivitySummary summary(long windowStart) {
+        ActivitySummary summary = new ActivitySummary();
+        for (Bucket bucket : bucketsSince(windowStart)) {
+            summary.merge(bucket.summary);
+        }
+        for (LogFeatures log : recentEvents.mostRecentFirst()) {
+            if (log.getTimestamp() >= windowStart) {
+                summary.addRecent(log);
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Client effort counters of the hours overlapping the window.
+     */
+    EffortCounts effortCounts(long windowStart) {
+        EffortCounts counts = new EffortCounts();
+        for (Bucket bucket : bucketsSince(windowStart)) {
+            counts.logCount += bucket.summary.logCount;
+            counts.errors += bucket.errors;
+            counts.repeatedClicks += bucket.repeatedClicks;
+            counts.backForthNavigations += bucket.backForthNavigations;
+            counts.channelSwitches += bucket.channelSwitches;
+        }
+        return counts;
+    }
+
+    /**
+     * The most recent high-effort events in the window, newest first.
+     */
+    List<LogFeatures> highEffortEvents(long windowStart) {
+        List<LogFeatures> events = new ArrayList<>();
+        for (LogFeatures log : highEffortEvents.mostRecentFirst()) {
+            if (log.getTimestamp() >= windowStart) {
+                events.add(log);
+            }
+        }
+        return events;
+    }
+
+    private Bucket bucket(long timestamp) {
+        long hour = Math.floorDiv(timestamp, HOUR_MILLIS);
+        int slot = (int) Math.floorMod(hour, (long) ring.length);
+        Bucket bucket = ring[slot];
+        if (bucket == null || bucket.hour != hour) {
+            // The slot held an expired hour (or nothing)
+            bucket = new Bucket(hour);
+            ring[slot] = bucket;
+        }
+        return bucket;
+    }
+
+    private List<Bucket> bucketsSince(long windowStart) {
+        long firstHour = Math.floorDiv(windowStart, HOUR_MILLIS);
+        long lastHour = Math.floorDiv(Math.max(checkpointTimestamp, windowStart), HOUR_MILLIS);
+        List<Bucket> buckets = new ArrayList<>();
+        for (Bucket bucket : ring) {
+            if (bucket != null && bucket.hour >= firstHour && bucket.hour <= lastHour
+                    && bucket.hour > lastHour - ring.length) {
+                buckets.add(bucket);
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Serializes the aggregates. Buckets outside the retention are left out.
+     */
+    public String toJson() {
+        ObjectNode root = OBJECT_MAPPER.createObjectNode();
+        root.put("retentionHours", retentionHours);
+        root.put("coveredSince", coveredSince);
+        root.put("checkpointTimestamp", checkpointTimestamp);
+        ArrayNode ids = root.putArray("checkpointEventIds");
+        checkpointEventIds.forEach(ids::add);
+
+        ArrayNode navigation = root.putArray("navigationWindow");
+        navigationWindow.forEach(navigation::add);
+        if (currentChannel != null) {
+            root.put("currentChannel", currentChannel);
+        }
+        ObjectNode clicks = root.putObject("pendingClicks");
+        pendingClicks.forEach((key, timestamps) -> {
+            ArrayNode values = clicks.putArray(key);
+            timestamps.forEach(values::add);
+        });
+
+        writeEvents(root.putArray("recentEvents"), recentEvents.mostRecentFirst());
+        writeEvents(root.putArray("highEffortEvents"), highEffortEvents.mostRecentFirst());
+
+        ArrayNode buckets = root.putArray("buckets");
+        long lastHour = Math.floorDiv(checkpointTimestamp, HOUR_MILLIS);
+        for (Bucket bucket : ring) {
+            if (bucket == null || bucket.hour <= lastHour - ring.length) {
+                continue;
+            }
+            ActivitySummary summary = bucket.summary;
+            ObjectNode node = buckets.addObject();
+            node.put("hour", bucket.hour);
+            node.put("logCount", summary.logCount);
+            writeCounts(node.putObject("apiPathCounts"), summary.apiPathCounts);
+            writeCounts(node.putObject("statusCodeCounts"), summary.statusCodeCounts);
+            writeCounts(node.putObject("errorCounts"), summary.errorCounts);
+            writeCounts(node.putObject("tradingActivityCounts"), summary.tradingActivityCounts);
+            writeCounts(node.putObject("securityEventCounts"), summary.securityEventCounts);
+            writeCounts(node.putObject("complianceCheckCounts"), summary.complianceCheckCounts);
+            writeCounts(node.putObject("accountActivityCounts"), summary.accountActivityCounts);
+            node.put("successfulRequests", summary.successfulRequests);
+            node.put("failedRequests", summary.failedRequests);
+            node.put("tradingErrors", summary.tradingErrors);
+            node.put("securityAlerts", summary.securityAlerts);
+            node.put("complianceViolations", summary.complianceViolations);
+            node.put("errors", bucket.errors);
+            node.put("repeatedClicks", bucket.repeatedClicks);
+            node.put("backForthNavigations", bucket.backForthNavigations);
+            node.put("channelSwitches", bucket.channelSwitches);
+        }
+        return root.toString();
+    }
+
+    /**
+     * Restores aggregates serialized by {@link #toJson()}. Recent events are classified again.
+     *
+     * @throws IllegalArgumentException If the JSON cannot be parsed
+     */
+    public static UserLogAggregates fromJson(String json, LogClassifier classifier) {
+        JsonNode root;
+        try {
+            root = OBJECT_MAPPER.readTree(json);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Invalid log aggregates JSON", e);
+        }
+        UserLogAggregates aggregates = new UserLogAggregates(root.path("retentionHours").asInt(),
+                root.path("coveredSince").asLong());
+        aggregates.checkpointTimestamp = root.path("checkpointTimestamp").asLong(-1);
+        root.path("checkpointEventIds").forEach(id -> aggregates.checkpointEventIds.add(id.asText()));
+
+        root.path("navigationWindow").forEach(path -> aggregates.navigationWindow.add(path.asText()));
+        JsonNode channel = root.get("currentChannel");
+        aggregates.currentChannel = channel != null ? channel.asText() : null;
+        root.path("pendingClicks").fields().forEachRemaining(entry -> {
+            List<Long> timestamps = new ArrayList<>();
+            entry.getValue().forEach(timestamp -> timestamps.add(timestamp.asLong()));
+            aggregates.pendingClicks.put(entry.getKey(), timestamps);
+        });
+
+        readEvents(root.path("recentEvents"), classifier).forEach(aggregates.recentEvents::add);
+        readEvents(root.path("highEffortEvents"), classifier).forEach(aggregates.highEffortEvents::add);
+
+        for (JsonNode node : root.path("buckets")) {
+            long hour = node.path("hour").asLong();
+            Bucket bucket = aggregates.bucket(hour * HOUR_MILLIS);
+            ActivitySummary summary = bucket.summary;
+            summary.logCount = node.path("logCount").asInt();
+            readCounts(node.path("apiPathCounts"), summary.apiPathCounts);
+            readCounts(node.path("statusCodeCounts"), summary.statusCodeCounts);
+            readCounts(node.path("errorCounts"), summary.errorCounts);
+            readCounts(node.path("tradingActivityCounts"), summary.tradingActivityCounts);
+            readCounts(node.path("securityEventCounts"), summary.securityEventCounts);
+            readCounts(node.path("complianceCheckCounts"), summary.complianceCheckCounts);
+            readCounts(node.path("accountActivityCounts"), summary.accountActivityCounts);
+            summary.successfulRequests = node.path("successfulRequests").asInt();
+            summary.failedRequests = node.path("failedRequests").asInt();
+            summary.tradingErrors = node.path("tradingErrors").asInt();
+            summary.securityAlerts = node.path("securityAlerts").asInt();
+            summary.complianceViolations = node.path("complianceViolations").asInt();
+            bucket.errors = node.path("errors").asInt();
+            bucket.repeatedClicks = node.path("repeatedClicks").asInt();
+            bucket.backForthNavigations = node.path("backForthNavigations").asInt();
+            bucket.channelSwitches = node.path("channelSwitches").asInt();
+        }
+        return aggregates;
+    }
+
+    private static void writeCounts(ObjectNode node, Map<String, Integer> counts) {
+        counts.forEach(node::put);
+    }
+
+    private static void readCounts(JsonNode node, Map<String, Integer> counts) {
+        node.fields().forEachRemaining(entry -> counts.put(entry.getKey(), entry.getValue().asInt()));
+    }
+
+    private static void writeEvents(ArrayNode array, List<LogFeatures> events) {
+        for (LogFeatures log : events) {
+            ObjectNode node = array.addObject();
+            node.put("timestamp", log.getTimestamp());
+            node.put("message", log.getMessage());
+        }
+    }
+
+    private static List<LogFeatures> readEvents(JsonNode array, LogClassifier classifier) {
+        List<LogFeatures> events = new ArrayList<>();
+        for (JsonNode node : array) {
+            events.add(classifier.classify(node.path("message").asText(), node.path("timestamp").asLong()));
+        }
+        return events;
+    }
+}
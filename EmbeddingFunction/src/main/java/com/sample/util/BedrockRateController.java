@@ -0,0 +1,378 @@
+package com.sample.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.core.retry.conditions.RetryCondition;
+
+/**
+ * Adaptive rate controller for AWS Bedrock invokeModel calls.
+ * Every call site acquires a permit from this controller before calling Bedrock.
+ * This class handles:
+ * 1. A token bucket that caps the request rate (requests per second)
+ * 2. An AIMD concurrency limit: +1/limit per success, halved when Bedrock throttles
+ * 3. Retrying throttled calls with full-jitter exponential backoff
+ * 4. Counters for the current rate, concurrency limit, throttles and retries
+ *
+ * Waits for a permit or a backoff never run past the request's {@link Deadline}: a call that
+ * would have to wait longer than the time left fails with {@link Deadline.ExceededException}.
+ *
+ * The rate follows the same AIMD rule as the concurrency limit, so after a throttle storm
+ * the controller backs off quickly and then probes back up towards BEDROCK_MAX_RATE.
+ *
+ * Bedrock clients used with the controller must be built with {@link #clientOverrideConfiguration()}
+ * so the SDK does not retry throttles itself; otherwise each throttle is retried underneath the
+ * controller and it only sees the last one.
+ */
+public class BedrockRateController {
+
+    private static final double DEFAULT_INITIAL_RATE = 20.0;
+    private static final double DEFAULT_MAX_RATE = 200.0;
+    private static final double MIN_RATE = 1.0;
+    private static final int DEFAULT_MAX_CONCURRENCY = 64;
+    private static final int DEFAULT_MAX_RETRIES = 5;
+    private static final double DECREASE_FACTOR = 0.5;
+    // Throttles arriving within this window are treated as one congestion event
+    private static final long DECREASE_COOLDOWN_MS = 500;
+    private static final long BASE_BACKOFF_MS = 100;
+    private static final long MAX_BACKOFF_MS = 5000;
+
+    private static BedrockRateController sharedInstance;
+
+    private final double maxRate;
+    private final int maxConcurrency;
+    private final int maxRetries;
+
+    // Guarded by this
+    private double rate;
+    private double tokens;
+    private long lastRefillNanos;
+    private double concurrencyLimit;
+    private int inFlight;
+    private long lastDecreaseMillis;
+
+    private final AtomicLong throttleCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong successCount = new AtomicLong();
+    private final AtomicLong decreaseCount = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a controller with explicit bounds.
+     *
+     * @param initialRate Starting request rate in requests per second
+     * @param maxRate Upper bound for the request rate
+     * @param maxConcurrency Upper bound for concurrent in-flight calls
+     * @param maxRetries Maximum number of retries for a throttled call
+     */
+    public BedrockRateController(double initialRate, double maxRate, int maxConcurrency, int maxRetries) {
+        this.maxRate = Math.max(MIN_RATE, maxRate);
+        this.rate = Math.min(this.maxRate, Math.max(MIN_RATE, initialRate));
+        this.tokens = 1.0;
+        this.lastRefillNanos = System.nanoTime();
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+        this.concurrencyLimit = Math.min(this.maxConcurrency, Math.max(1.0, this.rate));
+        this.maxRetries = Math.max(0, maxRetries);
+    }
+
+    /**
+     * Returns the process-wide controller, configured from BEDROCK_INITIAL_RATE, BEDROCK_MAX_RATE,
+     * BEDROCK_MAX_CONCURRENCY and BEDROCK_MAX_RETRIES. Shared so that all services in a
+     * container draw from the same budget.
+     */
+    public static synchronized BedrockRateController getInstance() {
+        if (sharedInstance == null) {
+            sharedInstance = new BedrockRateController(
+                    EnvConfig.getDouble("BEDROCK_INITIAL_RATE", DEFAULT_INITIAL_RATE),
+                    EnvConfig.getDouble("BEDROCK_MAX_RATE", DEFAULT_MAX_RATE),
+                    (int) EnvConfig.getDouble("BEDROCK_MAX_CONCURRENCY", DEFAULT_MAX_CONCURRENCY),
+                    (int) EnvConfig.getDouble("BEDROCK_MAX_RETRIES", DEFAULT_MAX_RETRIES));
+        }
+        return sharedInstance;
+    }
+
+    /**
+     * Client configuration for Bedrock clients used with the controller. The SDK keeps its
+     * default retries for other transient errors but leaves throttles to the controller.
+     */
+    public static ClientOverrideConfiguration clientOverrideConfiguration() {
+        RetryCondition sdkDefault = RetryCondition.defaultRetryCondition();
+        return ClientOverrideConfiguration.builder()
+                .retryPolicy(RetryPolicy.builder()
+                        .retryCondition(context -> !isThrottle(context.exception()) && sdkDefault.shouldRetry(context))
+                        .build())
+                .build();
+    }
+
+    /**
+     * Runs a blocking Bedrock call under the controller, retrying when throttled.
+     *
+     * @param call The call to run
+     * @return The call's result
+     * @throws Exception The last error if the call fails or stays throttled after all retries
+     * @throws Deadline.ExceededException If waiting for a permit or a retry would outlast the deadline
+     */
+    public <T> T execute(Callable<T> call) throws Exception {
+        Deadline deadline = Deadline.current();
+        for (int attempt = 0; ; attempt++) {
+            acquire(deadline);
+            try {
+                T result = call.call();
+                onSuccess();
+                return result;
+            } catch (Throwable e) {
+                if (!isThrottle(e)) {
+                    release();
+                    throw e;
+                }
+                onThrottle();
+                if (attempt >= maxRetries) {
+                    throw e;
+                }
+                retryCount.incrementAndGet();
+                pause(deadline, backoffMillis(attempt));
+            }
+        }
+    }
+
+    /**
+     * Runs an asynchronous Bedrock call under the controller, retrying when throttled.
+     * Waiting for a permit or a backoff never blocks the caller's thread. The caller's deadline
+     * is captured here and bounds the waits.
+     *
+     * @param call Supplier that starts the call
+     * @return Future completing with the call's result
+     */
+    public <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> call) {
+        return executeAsync(call, Deadline.current());
+    }
+
+    /**
+     * Runs an asynchronous Bedrock call under the controller, with waits bounded by the given
+     * deadline. Use this from callbacks, where the thread-local deadline is not the caller's.
+     *
+     * @param call Supplier that starts the call
+     * @param deadline Deadline of the request the call belongs to, or null if there is none
+     * @return Future completing with the call's result
+     */
+    public <T> CompletableFuture<T> executeAsync(Supplier<CompletableFuture<T>> call, Deadline deadline) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        attemptAsync(call, 0, result, deadline);
+        return result;
+    }
+
+    private <T> void attemptAsync(Supplier<CompletableFuture<T>> call, int attempt, CompletableFuture<T> result,
+                                  Deadline deadline) {
+        long waitMillis = tryAcquire();
+        if (waitMillis > 0) {
+            if (outlasts(deadline, waitMillis)) {
+                result.completeExceptionally(new Deadline.ExceededException("Bedrock"));
+                return;
+            }
+            getScheduler().schedule(() -> attemptAsync(call, attempt, result, deadline),
+                    waitMillis, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (Throwable e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                onSuccess();
+                result.complete(value);
+            } else if (!isThrottle(error)) {
+                release();
+                result.completeExceptionally(unwrap(error));
+            } else {
+                onThrottle();
+                if (attempt >= maxRetries) {
+                    result.completeExceptionally(unwrap(error));
+                } else {
+                    long backoff = backoffMillis(attempt);
+                    if (outlasts(deadline, backoff)) {
+                        result.completeExceptionally(new Deadline.ExceededException("Bedrock"));
+                        return;
+                    }
+                    retryCount.incrementAndGet();
+                    getScheduler().schedule(() -> attemptAsync(call, attempt + 1, result, deadline),
+                            backoff, TimeUnit.MILLISECONDS);
+                }
+            }
+        });
+    }
+
+    /**
+     * Blocks until a concurrency slot and a rate token are both available.
+     */
+    private void acquire(Deadline deadline) throws InterruptedException {
+        long waitMillis;
+        while ((waitMillis = tryAcquire()) > 0) {
+            pause(deadline, waitMillis);
+        }
+    }
+
+    /**
+     * Sleeps before the next permit or retry.
+     *
+     * @throws Deadline.ExceededException If the wait would outlast the deadline
+     */
+    private static void pause(Deadline deadline, long waitMillis) throws InterruptedException {
+        if (outlasts(deadline, waitMillis)) {
+            throw new Deadline.ExceededException("Bedrock");
+        }
+        Thread.sleep(waitMillis);
+    }
+
+    private static boolean outlasts(Deadline deadline, long waitMillis) {
+        return deadline != null && deadline.remainingMillis() <= waitMillis;
+    }
+
+    /**
+     * Takes a permit if one is available.
+     *
+     * @return 0 if the permit was taken, otherwise the suggested wait in milliseconds
+     */
+    synchronized long tryAcquire() {
+        refill();
+        if (inFlight >= (int) concurrencyLimit) {
+            return 5;
+        }
+        if (tokens < 1.0) {
+            return Math.max(1, (long) Math.ceil((1.0 - tokens) * 1000.0 / rate));
+        }
+        tokens -= 1.0;
+        inFlight++;
+        return 0;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        double elapsedSeconds = (now - lastRefillNanos) / 1_000_000_000.0;
+        lastRefillNanos = now;
+        // Burst is capped at one second of budget
+        tokens = Math.min(Math.max(1.0, rate), tokens + elapsedSeconds * rate);
+    }
+
+    synchronized void onSuccess() {
+        inFlight--;
+        successCount.incrementAndGet();
+        concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1.0 / concurrencyLimit);
+        rate = Math.min(maxRate, rate + 1.0 / rate);
+    }
+
+    synchronized void onThrottle() {
+        inFlight--;
+        throttleCount.incrementAndGet();
+        long now = System.currentTimeMillis();
+        if (now - lastDecreaseMillis >= DECREASE_COOLDOWN_MS) {
+            lastDecreaseMillis = now;
+            concurrencyLimit = Math.max(1.0, concurrencyLimit * DECREASE_FACTOR);
+            rate = Math.max(MIN_RATE, rate * DECREASE_FACTOR);
+            tokens = Math.min(tokens, 0.0);
+            decreaseCount.incrementAndGet();
+        }
+    }
+
+    private synchronized void release() {
+        inFlight--;
+    }
+
+    /**
+     * Full-jitter exponential backoff: a random delay in [0, min(cap, base * 2^attempt)].
+     */
+    static long backoffMillis(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempt, 16));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * Returns true if the error, or any of its causes, is a Bedrock throttling response.
+     */
+    public static boolean isThrottle(Throwable error) {
+        Throwable current = error;
+        while (current != null) {
+            if (current instanceof AwsServiceException && ((AwsServiceException) current).isThrottlingException()) {
+                return true;
+            }
+            if (current instanceof SdkServiceException && ((SdkServiceException) current).statusCode() == 429) {
+                return true;
+            }
+            current = current.getCause() == current ? null : current.getCause();
+        }
+        return false;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    private synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "bedrock-rate-controller");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return scheduler;
+    }
+
+    public synchronized double getCurrentRate() {
+        return rate;
+    }
+
+    public synchronized int getConcurrencyLimit() {
+        return (int) concurrencyLimit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public long getThrottleCount() {
+        return throttleCount.get();
+    }
+
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    /**
+     * Returns the controller statistics as a map, for logging or the stats endpoint.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("ratePerSecond", rate);
+            stats.put("concurrencyLimit", (int) concurrencyLimit);
+            stats.put("inFlight", inFlight);
+        }
+        stats.put("successes", successCount.get());
+        stats.put("throttles", throttleCount.get());
+        stats.put("decreases", decreaseCount.get());
+        stats.put("retries", retryCount.get());
+        return stats;
+    }
+}
@@ -0,0 +1,168 @@
+package com.sample.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over string keys.
+ * mightContain never returns false for a key that was added, and returns true for an absent
+ * key with roughly the configured false-positive probability.
+ *
+ * Bit positions come from double hashing (h1 + i * h2) of a 64-bit FNV-1a hash of the UTF-8
+ * key, and bits are set with lock-free CAS so concurrent writers never lose an insertion.
+ * The serialized form is a small header followed by the bit array, so a filter built offline
+ * loads with a single read.
+ */
+public class BloomFilter {
+
+    private static final int MAGIC = 0x424C4F4D; // "BLOM"
+    private static final byte VERSION = 1;
+
+    private final AtomicLongArray words;
+    private final long numBits;
+    private final int numHashes;
+    private final AtomicLong insertions;
+
+    private BloomFilter(AtomicLongArray words, long numBits, int numHashes, long insertions) {
+        this.words = words;
+        this.numBits = numBits;
+        this.numHashes = numHashes;
+        this.insertions = new AtomicLong(insertions);
+    }
+
+    /**
+     * Creates a filter sized for the expected number of keys and false-positive probability.
+     *
+     * @param expectedInsertions Expected number of distinct keys
+     * @param falsePositiveRate Target false-positive probability, e.g. 0.01
+     */
+    public static BloomFilter create(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        double p = Math.min(0.5, Math.max(1e-9, falsePositiveRate));
+        long bits = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        bits = Math.max(64, (bits + 63) / 64 * 64);
+        int hashes = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, bits / 64);
+        return new BloomFilter(new AtomicLongArray(wordCount), (long) wordCount * 64, hashes, 0);
+    }
+
+    public void put(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1) | 1L;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, numBits);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << (bit & 63);
+            long current = words.get(index);
+            while ((current & mask) == 0 && !words.compareAndSet(index, current, current | mask)) {
+                current = words.get(index);
+            }
+        }
+        insertions.incrementAndGet();
+    }
+
+    public boolean mightContain(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1) | 1L;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = Math.floorMod(h1 + i * h2, numBits);
+            if ((words.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getBitCount() {
+        return numBits;
+    }
+
+    public int getHashCount() {
+        return numHashes;
+    }
+
+    /**
+     * Number of put calls, including repeated keys.
+     */
+    public long getInsertionCount() {
+        return insertions.get();
+    }
+
+    /**
+     * Estimated false-positive probability given the fraction of bits currently set.
+     */
+    public double expectedFalsePositiveRate() {
+        long set = 0;
+        for (int i = 0; i < words.length(); i++) {
+            set += Long.bitCount(words.get(i));
+        }
+        return Math.pow((double) set / numBits, numHashes);
+    }
+
+    /**
+     * Writes the filter as a header (magic, version, hash count, word count, insertions)
+     * followed by the bit array.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(numHashes);
+        data.writeInt(words.length());
+        data.writeLong(insertions.get());
+        for (int i = 0; i < words.length(); i++) {
+            data.writeLong(words.get(i));
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a filter written by {@link #writeTo(OutputStream)}.
+     *
+     * @throws IOException If the stream is not a serialized filter or is truncated
+     */
+    public static BloomFilter readFrom(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a serialized Bloom filter");
+        }
+        byte version = data.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported Bloom filter version: " + version);
+        }
+        int hashes = data.readInt();
+        int wordCount = data.readInt();
+        long insertions = data.readLong();
+        if (hashes < 1 || wordCount < 1) {
+            throw new IOException("Corrupt Bloom filter header");
+        }
+        AtomicLongArray words = new AtomicLongArray(wordCount);
+        for (int i = 0; i < wordCount; i++) {
+            words.set(i, data.readLong());
+        }
+        return new BloomFilter(words, (long) wordCount * 64, hashes, insertions);
+    }
+
+    private static long hash(String key) {
+        // 64-bit FNV-1a
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long z) {
+        // SplitMix64 finalizer
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
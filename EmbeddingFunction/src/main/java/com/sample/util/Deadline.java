@@ -0,0 +1,142 @@
+package com.sample.util;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+
+/**
+ * Request-scoped time budget, propagated to downstream calls through a thread-local.
+ * This class handles:
+ * 1. Seeding the budget from the Lambda Context's remaining time, less a safety margin
+ *    (DEADLINE_SAFETY_MARGIN_MILLIS, default 500) to build and return the response
+ * 2. Handing each downstream hop (DAX, DynamoDB, Bedrock, Comprehend) a slice of what is left
+ * 3. Stopping work early with {@link ExceededException} once the budget is gone
+ *
+ * Code running without a deadline (tests, examples, the Jetty server) gets each hop's
+ * configured timeout, so it is never unbounded either.
+ *
+ * Both function modules keep an identical copy of this class; change them together.
+ */
+public final class Deadline implements AutoCloseable {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+    private static final long SAFETY_MARGIN_MILLIS = EnvConfig.getLong("DEADLINE_SAFETY_MARGIN_MILLIS", 500);
+
+    private final long expiresAtNanos;
+    private final Deadline previous;
+    private final boolean installed;
+
+    /**
+     * Thrown when a hop is about to start after the request's budget has run out.
+     */
+    public static class ExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public ExceededException(String hop) {
+            super("Request deadline exceeded before " + hop);
+        }
+    }
+
+    private Deadline(long expiresAtNanos, boolean installed) {
+        this.expiresAtNanos = expiresAtNanos;
+        this.previous = installed ? CURRENT.get() : null;
+        this.installed = installed;
+        if (installed) {
+            CURRENT.set(this);
+        }
+    }
+
+    /**
+     * Starts a deadline for the current thread from the invocation's remaining time, e.g.
+     * Context.getRemainingTimeInMillis(). Close it when the request completes.
+     * A non-positive remaining time means the caller does not know it (test contexts return 0),
+     * and no deadline is installed.
+     *
+     * @param remainingMillis Time left before the invocation is cut off
+     */
+    public static Deadline start(long remainingMillis) {
+        if (remainingMillis <= 0) {
+            return new Deadline(Long.MAX_VALUE, false);
+        }
+        long budget = Math.max(1, remainingMillis - Math.min(SAFETY_MARGIN_MILLIS, remainingMillis / 2));
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget), true);
+    }
+
+    /**
+     * The deadline of the request running on this thread, or null if there is none.
+     * Capture it before handing work to another thread.
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    public long remainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime());
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Time the next hop may take: its configured timeout, capped at a fraction of the time left.
+     *
+     * @param hop Name of the hop, for the error message
+     * @param timeoutMillis Configured timeout for the hop
+     * @param fraction Share of the remaining budget the hop may use
+     * @throws ExceededException If no time is left
+     */
+    public long slice(String hop, long timeoutMillis, double fraction) {
+        long remaining = remainingMillis();
+        if (remaining <= 0) {
+            throw new ExceededException(hop);
+        }
+        return Math.max(1, Math.min(timeoutMillis, (long) (remaining * fraction)));
+    }
+
+    /**
+     * {@link #slice(String, long, double)} of the current thread's deadline, or the configured
+     * timeout if there is no deadline.
+     */
+    public static long sliceMillis(String hop, long timeoutMillis, double fraction) {
+        Deadline deadline = CURRENT.get();
+        return deadline != null ? deadline.slice(hop, timeoutMillis, fraction) : timeoutMillis;
+    }
+
+    /**
+     * Throws if the current thread's deadline has passed.
+     *
+     * @throws ExceededException If no time is left
+     */
+    public static void check(String hop) {
+        Deadline deadline = CURRENT.get();
+        if (deadline != null && deadline.isExpired()) {
+            throw new ExceededException(hop);
+        }
+    }
+
+    /**
+     * Per-request SDK override that makes the client give up after the given time.
+     */
+    public static AwsRequestOverrideConfiguration apiCallTimeout(long timeoutMillis) {
+        return AwsRequestOverrideConfiguration.builder()
+                .apiCallTimeout(Duration.ofMillis(timeoutMillis))
+                .build();
+    }
+
+    /**
+     * Ends the deadline, restoring the one that was current when it started.
+     */
+    @Override
+    public void close() {
+        if (!installed) {
+            return;
+        }
+        if (previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+}
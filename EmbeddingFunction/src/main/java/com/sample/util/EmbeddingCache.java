@@ -0,0 +1,330 @@
+package com.sample.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import com.sample.model.EmbeddingVector;
+
+/**
+ * Bounded, content-addressed cache for embedding vectors.
+ * Entries are keyed on a SHA-256 hash of (modelId, dimensions, normalized input text), so
+ * identical prompts produced by different services share a single Bedrock call.
+ * This class handles:
+ * 1. Size-based (LRU) and TTL-based eviction
+ * 2. Single-flight loading, so concurrent misses for the same key invoke the loader once
+ * 3. Hit, miss and eviction counters for monitoring
+ *
+ * Cached vectors are immutable, so they are shared with callers without copying.
+ */
+public class EmbeddingCache {
+
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+    private static final long DEFAULT_TTL_SECONDS = 3600;
+
+    private static EmbeddingCache sharedInstance;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry> entries;
+    private final ConcurrentHashMap<String, CompletableFuture<EmbeddingVector>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Loads an embedding on a cache miss.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        EmbeddingVector load() throws Exception;
+    }
+
+    private static final class Entry {
+        final EmbeddingVector vector;
+        final long expiresAt;
+
+        Entry(EmbeddingVector vector, long expiresAt) {
+            this.vector = vector;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Creates a cache with the given bounds.
+     *
+     * @param maxEntries Maximum number of vectors to keep; 0 disables caching
+     * @param ttlSeconds Time to live for each entry in seconds
+     */
+    public EmbeddingCache(int maxEntries, long ttlSeconds) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.ttlMillis = ttlSeconds * 1000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the process-wide cache, configured from EMBEDDING_CACHE_MAX_ENTRIES and
+     * EMBEDDING_CACHE_TTL_SECONDS. Shared so that warm Lambda containers reuse vectors
+     * across invocations and across the specialized embedding services.
+     */
+    public static synchronized EmbeddingCache getInstance() {
+        if (sharedInstance == null) {
+            sharedInstance = new EmbeddingCache(
+                    (int) EnvConfig.getLong("EMBEDDING_CACHE_MAX_ENTRIES", DEFAULT_MAX_ENTRIES),
+                    EnvConfig.getLong("EMBEDDING_CACHE_TTL_SECONDS", DEFAULT_TTL_SECONDS));
+        }
+        return sharedInstance;
+    }
+
+    /**
+     * Builds the cache key for a request.
+     * Input text is normalized by trimming and collapsing whitespace runs, which does not
+     * change what Titan embeds but lets cosmetically different prompts share an entry.
+     *
+     * @param modelId The Bedrock model ID
+     * @param dimensions The requested embedding dimensions
+     * @param inputText The raw input text
+     * @return Hex-encoded SHA-256 key
+     */
+    public static String key(String modelId, int dimensions, String inputText) {
+        String normalized = inputText == null ? "" : inputText.trim().replaceAll("\\s+", " ");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(modelId.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Integer.toString(dimensions).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            byte[] hash = digest.digest(normalized.getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Returns the cached vector for a key, or loads it exactly once across concurrent callers.
+     *
+     * @param key Cache key from {@link #key(String, int, String)}
+     * @param loader Loader invoked on a miss
+     * @return The embedding vector
+     * @throws Exception If the loader fails
+     */
+    public EmbeddingVector getOrLoad(String key, Loader loader) throws Exception {
+        EmbeddingVector cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+        if (maxEntries == 0) {
+            misses.incrementAndGet();
+            return requireLoaded(loader.load());
+        }
+
+        CompletableFuture<EmbeddingVector> future = new CompletableFuture<>();
+        CompletableFuture<EmbeddingVector> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            // Another caller is already loading this key; wait for its result
+            hits.incrementAndGet();
+            return await(existing);
+        }
+        // A load may have finished between the cache check and claiming the key
+        EmbeddingVector stored = get(key);
+        if (stored != null) {
+            future.complete(stored);
+            inFlight.remove(key, future);
+            return stored;
+        }
+
+        misses.incrementAndGet();
+        try {
+            EmbeddingVector loaded = requireLoaded(loader.load());
+            put(key, loaded);
+            future.complete(loaded);
+            return loaded;
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            // Only after the result is cached, so no caller misses both the cache and the in-flight load
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #getOrLoad(String, Loader)}. Shares the in-flight map
+     * with the blocking path, so sync and async callers single-flight against each other.
+     *
+     * @param key Cache key from {@link #key(String, int, String)}
+     * @param loader Supplier that starts the asynchronous load on a miss
+     * @return Future completing with the embedding vector
+     */
+    public CompletableFuture<EmbeddingVector> getOrLoadAsync(String key, Supplier<CompletableFuture<EmbeddingVector>> loader) {
+        EmbeddingVector cached = get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        if (maxEntries == 0) {
+            misses.incrementAndGet();
+            return loader.get().thenApply(EmbeddingCache::requireLoaded);
+        }
+
+        CompletableFuture<EmbeddingVector> future = new CompletableFuture<>();
+        CompletableFuture<EmbeddingVector> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            hits.incrementAndGet();
+            return existing;
+        }
+        // A load may have finished between the cache check and claiming the key
+        EmbeddingVector stored = get(key);
+        if (stored != null) {
+            future.complete(stored);
+            inFlight.remove(key, future);
+            return future;
+        }
+
+        misses.incrementAndGet();
+        CompletableFuture<EmbeddingVector> load;
+        try {
+            load = loader.get();
+        } catch (RuntimeException e) {
+            load = CompletableFuture.failedFuture(e);
+        }
+        load.whenComplete((loaded, error) -> {
+            try {
+                if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    EmbeddingVector result = requireLoaded(loaded);
+                    put(key, result);
+                    future.complete(result);
+                }
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            } finally {
+                // As in getOrLoad, the key is released only once the result is cached
+                inFlight.remove(key, future);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Returns the cached vector for a key, or null if absent or expired.
+     * Counts a hit only when a vector is returned; misses are counted by the loading path.
+     */
+    public EmbeddingVector get(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt <= System.currentTimeMillis()) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return entry.vector;
+        }
+    }
+
+    /**
+     * Stores a vector, evicting the least recently used entries when over capacity.
+     */
+    public void put(String key, EmbeddingVector vector) {
+        if (maxEntries == 0 || vector == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            entries.put(key, new Entry(vector, now + ttlMillis));
+            if (entries.size() > maxEntries) {
+                Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+                while (entries.size() > maxEntries && it.hasNext()) {
+                    it.next();
+                    it.remove();
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all entries. Counters are left untouched.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Returns the cache statistics as a map, for logging or the stats endpoint.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long h = hits.get();
+        long m = misses.get();
+        stats.put("size", size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("evictions", evictions.get());
+        stats.put("hitRatio", (h + m) == 0 ? 0.0 : (double) h / (h + m));
+        return stats;
+    }
+
+    /**
+     * Fails a load that produced no vector, so it is neither cached nor handed to waiting callers.
+     */
+    private static EmbeddingVector requireLoaded(EmbeddingVector loaded) {
+        if (loaded == null) {
+            throw new IllegalStateException("Embedding loader returned no vector");
+        }
+        return loaded;
+    }
+
+    private static EmbeddingVector await(CompletableFuture<EmbeddingVector> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.sample.util;
+
+/**
+ * Numeric settings read from environment variables.
+ * A missing or empty variable gives the default; an unparseable one is reported to stderr
+ * and also gives the default, so a typo in the template never stops a cold start.
+ *
+ * Both function modules keep an identical copy of this class; change them together.
+ */
+public final class EnvConfig {
+
+    private EnvConfig() {
+    }
+
+    public static long getLong(String name, long defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + name + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public static double getDouble(String name, double defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + name + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.sample.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton over a fixed set of ASCII keywords, matched ignoring ASCII case.
+ * This class handles:
+ * 1. Compiling the keywords into a trie with failure links, flattened into a complete
+ *    transition table so scanning costs one array lookup per character
+ * 2. Reporting every occurrence of every keyword in a single left-to-right pass, in order of
+ *    the position where each occurrence ends
+ *
+ * Case is folded per character while scanning, so callers never need a lowercased copy of the
+ * text. Characters outside ASCII reset the automaton, since no keyword contains them.
+ * Word-boundary checks are left to the caller; see {@link #isWholeWord}.
+ */
+public final class KeywordAutomaton {
+
+    private static final int ALPHABET = 128;
+    private static final int[] NO_OUTPUT = new int[0];
+
+    /**
+     * Receives keyword occurrences from {@link #scan}.
+     */
+    public interface MatchListener {
+        /**
+         * @param keyword Index of the keyword in the list the automaton was built from
+         * @param start Index of the first matched character
+         * @param end Index one past the last matched character
+         */
+        void onMatch(int keyword, int start, int end);
+    }
+
+    private final int[][] transitions;
+    private final int[][] outputs;
+    private final int[] lengths;
+
+    /**
+     * @param keywords Non-empty ASCII keywords; duplicates are reported under each index
+     */
+    public KeywordAutomaton(List<String> keywords) {
+        lengths = new int[keywords.size()];
+        List<int[]> trie = new ArrayList<>();
+        List<int[]> trieOutputs = new ArrayList<>();
+        trie.add(newState());
+        trieOutputs.add(NO_OUTPUT);
+
+        for (int k = 0; k < keywords.size(); k++) {
+            String keyword = keywords.get(k);
+            if (keyword == null || keyword.isEmpty()) {
+                throw new IllegalArgumentException("Keyword " + k + " is empty");
+            }
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if (c >= ALPHABET) {
+                    throw new IllegalArgumentException("Keyword is not ASCII: " + keyword);
+                }
+                int folded = fold(c);
+                if (trie.get(state)[folded] < 0) {
+                    trie.get(state)[folded] = trie.size();
+                    trie.add(newState());
+                    trieOutputs.add(NO_OUTPUT);
+                }
+                state = trie.get(state)[folded];
+            }
+            trieOutputs.set(state, append(trieOutputs.get(state), k));
+            lengths[k] = keyword.length();
+        }
+
+        transitions = trie.toArray(new int[0][]);
+        outputs = trieOutputs.toArray(new int[0][]);
+        int[] failure = new int[transitions.length];
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int child = transitions[0][c];
+            if (child < 0) {
+                transitions[0][c] = 0;
+            } else {
+                failure[child] = 0;
+                queue.add(child);
+            }
+        }
+        // Breadth-first, so a state's failure target is complete before the state is expanded
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int[] fallbackOutputs = outputs[failure[state]];
+            if (fallbackOutputs.length > 0) {
+                int[] merged = Arrays.copyOf(outputs[state], outputs[state].length + fallbackOutputs.length);
+                System.arraycopy(fallbackOutputs, 0, merged, outputs[state].length, fallbackOutputs.length);
+                outputs[state] = merged;
+            }
+            for (int c = 0; c < ALPHABET; c++) {
+                int child = transitions[state][c];
+                if (child < 0) {
+                    transitions[state][c] = transitions[failure[state]][c];
+                } else {
+                    failure[child] = transitions[failure[state]][c];
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of keywords
+     */
+    public int size() {
+        return lengths.length;
+    }
+
+    /**
+     * Reports every keyword occurrence in the text, ignoring ASCII case.
+     */
+    public void scan(CharSequence text, MatchListener listener) {
+        int state = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= ALPHABET) {
+                state = 0;
+                continue;
+            }
+            state = transitions[state][fold(c)];
+            int[] matched = outputs[state];
+            for (int keyword : matched) {
+                listener.onMatch(keyword, i + 1 - lengths[keyword], i + 1);
+            }
+        }
+    }
+
+    /**
+     * @return true if the characters before start and at end are not word characters, which is
+     *         what {@code \b...\b} around the match requires
+     */
+    public static boolean isWholeWord(CharSequence text, int start, int end) {
+        return (start == 0 || !isWordChar(text.charAt(start - 1)))
+                && (end == text.length() || !isWordChar(text.charAt(end)));
+    }
+
+    /**
+     * Word characters as java.util.regex treats them for {@code \b}: letters, digits and '_'.
+     */
+    public static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    private static int fold(char c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    private static int[] newState() {
+        int[] state = new int[ALPHABET];
+        Arrays.fill(state, -1);
+        return state;
+    }
+
+    private static int[] append(int[] values, int value) {
+        int[] result = Arrays.copyOf(values, values.length + 1);
+        result[values.length] = value;
+        return result;
+    }
+}
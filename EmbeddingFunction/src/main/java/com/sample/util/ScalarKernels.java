@@ -0,0 +1,34 @@
+package com.sample.util;
+
+/**
+ * Plain-loop VectorMath kernels, used when the Vector API is unavailable.
+ */
+final class ScalarKernels implements VectorMath.Kernels {
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0f;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double dot(double[] a, double[] b, int length) {
+        double sum = 0.0;
+        for (int i = 0; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public long dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        long sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,115 @@
+package com.sample.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Decodes Bedrock Titan embedding responses with the Jackson streaming API.
+ * Values are written straight into a primitive array, so a response never materializes
+ * as a Map, a JsonNode tree or a List of boxed numbers.
+ *
+ * Supported response shapes:
+ * 1. Titan v2: {"embedding": [...], "embeddingsByType": {"float": [...]}, ...}
+ * 2. Titan v1: {"embedding": [...], "inputTextTokenCount": n}
+ *
+ * The first vector found is used. Titan v2 returns the same values under both keys.
+ */
+public final class TitanResponseDecoder {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private TitanResponseDecoder() {
+    }
+
+    /**
+     * Decodes the embedding into a float[].
+     *
+     * @param body Response body stream
+     * @param expectedDimensions Expected vector length, used to size the buffer (0 if unknown)
+     * @return The embedding vector
+     * @throws IOException If the body is not valid JSON or contains no embedding
+     */
+    public static float[] decodeFloats(InputStream body, int expectedDimensions) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            seekToVector(parser);
+            float[] values = new float[expectedDimensions > 0 ? expectedDimensions : DEFAULT_CAPACITY];
+            int count = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                checkNumber(token);
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, values.length * 2);
+                }
+                values[count++] = parser.getFloatValue();
+            }
+            return count == values.length ? values : Arrays.copyOf(values, count);
+        }
+    }
+
+    /**
+     * Decodes the embedding into a double[].
+     *
+     * @param body Response body stream
+     * @param expectedDimensions Expected vector length, used to size the buffer (0 if unknown)
+     * @return The embedding vector
+     * @throws IOException If the body is not valid JSON or contains no embedding
+     */
+    public static double[] decodeDoubles(InputStream body, int expectedDimensions) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(body)) {
+            seekToVector(parser);
+            double[] values = new double[expectedDimensions > 0 ? expectedDimensions : DEFAULT_CAPACITY];
+            int count = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                checkNumber(token);
+                if (count == values.length) {
+                    values = Arrays.copyOf(values, values.length * 2);
+                }
+                values[count++] = parser.getDoubleValue();
+            }
+            return count == values.length ? values : Arrays.copyOf(values, count);
+        }
+    }
+
+    /**
+     * Advances the parser to the START_ARRAY token of the first embedding vector, skipping
+     * every other field without building it.
+     */
+    private static void seekToVector(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Unexpected response format from AWS Bedrock Titan");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if ("embedding".equals(field) && value == JsonToken.START_ARRAY) {
+                return;
+            }
+            if ("embeddingsByType".equals(field) && value == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String type = parser.getCurrentName();
+                    JsonToken typeValue = parser.nextToken();
+                    if ("float".equals(type) && typeValue == JsonToken.START_ARRAY) {
+                        return;
+                    }
+                    parser.skipChildren();
+                }
+                continue;
+            }
+            parser.skipChildren();
+        }
+        throw new IOException("Unexpected response format from AWS Bedrock Titan");
+    }
+
+    private static void checkNumber(JsonToken token) throws IOException {
+        if (token != JsonToken.VALUE_NUMBER_FLOAT && token != JsonToken.VALUE_NUMBER_INT) {
+            throw new IOException("Unexpected token in embedding vector: " + token);
+        }
+    }
+}
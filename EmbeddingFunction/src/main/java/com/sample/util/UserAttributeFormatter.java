@@ -17,6 +17,7 @@ import java.util.Map;
  * 1. Parsing raw user attributes from JSON
  * 2. Encoding attributes into numerical features
  * 3. Converting encoded attributes into a text prompt for Titan
+ * 4. Picking out the profile attributes similarity searches can be filtered by
  */
 public class UserAttributeFormatter {
 
@@ -30,6 +31,9 @@ public class UserAttributeFormatter {
             "Enterprise", 3
     );
     
+    // Raw attributes stored with the embedding so searches can filter on them
+    public static final List<String> PROFILE_ATTRIBUTES = List.of("age", "location", "subscription_plan");
+    
     // Max values for scaling
     private static final int MAX_PAGE_VIEWS = 100;
     
@@ -76,6 +80,24 @@ public class UserAttributeFormatter {
         return encodedAttributes;
     }
     
+    /**
+     * Picks the profile attributes (age, location, subscription_plan) out of raw user attributes,
+     * to be stored alongside the embedding generated from them.
+     * 
+     * @param rawAttributes Map of raw user attributes
+     * @return Map of the profile attributes present, empty if there are none
+     */
+    public static Map<String, Object> profileAttributes(Map<String, Object> rawAttributes) {
+        Map<String, Object> profile = new HashMap<>();
+        for (String name : PROFILE_ATTRIBUTES) {
+            Object value = rawAttributes.get(name);
+            if (value != null) {
+                profile.put(name, value);
+            }
+        }
+        return profile;
+    }
+    
     /**
      * Converts encoded attributes into a text prompt for Titan embedding model.
      * 
@@ -169,10 +191,29 @@ public class UserAttributeFormatter {
     }
     
     /**
-     * Encode subscription plan as integer label
+     * Encode subscription plan as integer label. Unknown plans are encoded as Free.
      */
     private int encodeSubscriptionPlan(String plan) {
-        return SUBSCRIPTION_PLANS.getOrDefault(plan, 0);
+        return Math.max(0, subscriptionPlanLabel(plan));
+    }
+    
+    /**
+     * Integer label for a subscription plan, as used in encoded attributes. Plan names are
+     * matched ignoring case and surrounding whitespace.
+     * 
+     * @return The label, or -1 if the plan is not a known one
+     */
+    public static int subscriptionPlanLabel(String plan) {
+        if (plan == null) {
+            return -1;
+        }
+        String trimmed = plan.trim();
+        for (Map.Entry<String, Integer> entry : SUBSCRIPTION_PLANS.entrySet()) {
+            if (entry.getKey().equalsIgnoreCase(trimmed)) {
+                return entry.getValue();
+            }
+        }
+        return -1;
     }
     
     /**
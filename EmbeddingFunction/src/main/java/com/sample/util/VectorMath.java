@@ -0,0 +1,163 @@
+package com.sample.util;
+
+/**
+ * Dot product, norm and cosine kernels for embedding vectors, shared by every similarity call site.
+ * This class handles:
+ * 1. Running the kernels with SIMD instructions through the Java Vector API when the jar was
+ *    built with the simd Maven profile, the JVM is started with
+ *    --add-modules jdk.incubator.vector, and VECTOR_MATH_SIMD is not false
+ * 2. Falling back to scalar loops otherwise, with the same results up to float rounding
+ * 3. Scoring one query against many vectors in a single call, for float32 and int8
+ *
+ * Float kernels accumulate in float lanes, so results can differ from a double-precision
+ * loop in the last few bits.
+ */
+public final class VectorMath {
+
+    /**
+     * The kernels behind VectorMath; implemented by ScalarKernels and SimdKernels.
+     */
+    interface Kernels {
+        float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+
+        double dot(double[] a, double[] b, int length);
+
+        long dot(byte[] a, int aOffset, byte[] b, int bOffset, int length);
+    }
+
+    private static final Kernels KERNELS = selectKernels();
+
+    private VectorMath() {
+    }
+
+    /**
+     * Whether the SIMD kernels are in use.
+     */
+    public static boolean isSimd() {
+        return !(KERNELS instanceof ScalarKernels);
+    }
+
+    public static float dot(float[] a, float[] b) {
+        checkDimension(a.length, b.length);
+        return KERNELS.dot(a, 0, b, 0, a.length);
+    }
+
+    public static double dot(double[] a, double[] b) {
+        checkDimension(a.length, b.length);
+        return KERNELS.dot(a, b, a.length);
+    }
+
+    /**
+     * Dot product of two int8 vectors, exact.
+     */
+    public static long dot(byte[] a, byte[] b) {
+        checkDimension(a.length, b.length);
+        return KERNELS.dot(a, 0, b, 0, a.length);
+    }
+
+    public static float squaredNorm(float[] a) {
+        return KERNELS.dot(a, 0, a, 0, a.length);
+    }
+
+    public static double norm(float[] a) {
+        return Math.sqrt(squaredNorm(a));
+    }
+
+    public static double norm(double[] a) {
+        return Math.sqrt(KERNELS.dot(a, a, a.length));
+    }
+
+    /**
+     * Cosine similarity. Returns 0 if either vector is all zeros.
+     */
+    public static double cosine(float[] a, float[] b) {
+        checkDimension(a.length, b.length);
+        double normProduct = Math.sqrt((double) squaredNorm(a) * squaredNorm(b));
+        return normProduct == 0.0 ? 0.0 : KERNELS.dot(a, 0, b, 0, a.length) / normProduct;
+    }
+
+    /**
+     * Cosine similarity. Returns 0 if either vector is all zeros.
+     */
+    public static double cosine(double[] a, double[] b) {
+        checkDimension(a.length, b.length);
+        double normProduct = Math.sqrt(KERNELS.dot(a, a, a.length) * KERNELS.dot(b, b, b.length));
+        return normProduct == 0.0 ? 0.0 : KERNELS.dot(a, b, a.length) / normProduct;
+    }
+
+    /**
+     * Dot products of a query with each of several vectors.
+     *
+     * @param query The query vector
+     * @param vectors Vectors to score, each the same dimension as the query
+     * @param scores Receives the dot product with vectors[i] at index i
+     */
+    public static void dotMany(float[] query, float[][] vectors, float[] scores) {
+        for (int i = 0; i < vectors.length; i++) {
+            scores[i] = dot(query, vectors[i]);
+        }
+    }
+
+    /**
+     * Dot products of a query with each row of a row-major matrix, e.g. vectors packed
+     * back to back in one array.
+     *
+     * @param query The query vector; its length is the row length
+     * @param matrix Rows of query.length values each
+     * @param fromRow First row to score
+     * @param toRow Row after the last row to score
+     * @param scores Receives the dot product with row r at index r - fromRow
+     */
+    public static void dotRows(float[] query, float[] matrix, int fromRow, int toRow, float[] scores) {
+        int dimension = query.length;
+        for (int row = fromRow; row < toRow; row++) {
+            scores[row - fromRow] = KERNELS.dot(query, 0, matrix, row * dimension, dimension);
+        }
+    }
+
+    /**
+     * Int8 dot products of a query with each row of a row-major code matrix.
+     *
+     * @param query The query codes; its length is the row length
+     * @param matrix Rows of query.length codes each
+     * @param fromRow First row to score
+     * @param toRow Row after the last row to score
+     * @param scores Receives the dot product with row r at index r - fromRow
+     */
+    public static void dotRows(byte[] query, byte[] matrix, int fromRow, int toRow, long[] scores) {
+        int dimension = query.length;
+        for (int row = fromRow; row < toRow; row++) {
+            scores[row - fromRow] = KERNELS.dot(query, 0, matrix, row * dimension, dimension);
+        }
+    }
+
+    private static void checkDimension(int a, int b) {
+        if (a != b) {
+            throw new IllegalArgumentException("Embeddings must have the same dimension");
+        }
+    }
+
+    private static Kernels selectKernels() {
+        Kernels simd = "false".equalsIgnoreCase(System.getenv("VECTOR_MATH_SIMD")) ? null : simdKernels();
+        return simd != null ? simd : new ScalarKernels();
+    }
+
+    /**
+     * The SIMD kernels, or null if the build left them out (no simd profile) or the JVM was
+     * started without jdk.incubator.vector.
+     */
+    static Kernels simdKernels() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            // Loaded by name so this class never links against the incubator module when it is absent
+            return (Kernels) Class.forName("com.sample.util.SimdKernels").getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return null;
+        } catch (Throwable e) {
+            System.err.println("SIMD vector math unavailable, using scalar kernels: " + e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.sample.util;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorMath kernels on the Java Vector API, using the widest vectors the CPU supports
+ * (e.g. AVX2/AVX-512 on x86, NEON on Graviton). Only loaded when jdk.incubator.vector is present.
+ *
+ * Float and double kernels use two fused multiply-add accumulators to hide FMA latency.
+ * The int8 kernel widens 8 bytes at a time into two 4-lane int vectors, which every
+ * SIMD target supports, so products never overflow.
+ */
+final class SimdKernels implements VectorMath.Kernels {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_64;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_128;
+
+    @Override
+    public float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        int step = FLOATS.length();
+        FloatVector acc0 = FloatVector.zero(FLOATS);
+        FloatVector acc1 = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = length - 2 * step; i <= bound; i += 2 * step) {
+            acc0 = FloatVector.fromArray(FLOATS, a, aOffset + i)
+                    .fma(FloatVector.fromArray(FLOATS, b, bOffset + i), acc0);
+            acc1 = FloatVector.fromArray(FLOATS, a, aOffset + i + step)
+                    .fma(FloatVector.fromArray(FLOATS, b, bOffset + i + step), acc1);
+        }
+        if (i <= length - step) {
+            acc0 = FloatVector.fromArray(FLOATS, a, aOffset + i)
+                    .fma(FloatVector.fromArray(FLOATS, b, bOffset + i), acc0);
+            i += step;
+        }
+        float sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public double dot(double[] a, double[] b, int length) {
+        int step = DOUBLES.length();
+        DoubleVector acc0 = DoubleVector.zero(DOUBLES);
+        DoubleVector acc1 = DoubleVector.zero(DOUBLES);
+        int i = 0;
+        for (int bound = length - 2 * step; i <= bound; i += 2 * step) {
+            acc0 = DoubleVector.fromArray(DOUBLES, a, i).fma(DoubleVector.fromArray(DOUBLES, b, i), acc0);
+            acc1 = DoubleVector.fromArray(DOUBLES, a, i + step).fma(DoubleVector.fromArray(DOUBLES, b, i + step), acc1);
+        }
+        if (i <= length - step) {
+            acc0 = DoubleVector.fromArray(DOUBLES, a, i).fma(DoubleVector.fromArray(DOUBLES, b, i), acc0);
+            i += step;
+        }
+        double sum = acc0.add(acc1).reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public long dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        int step = BYTES.length();
+        IntVector acc0 = IntVector.zero(INTS);
+        IntVector acc1 = IntVector.zero(INTS);
+        long sum = 0;
+        int i = 0;
+        for (int bound = length - step; i <= bound; i += step) {
+            ByteVector va = ByteVector.fromArray(BYTES, a, aOffset + i);
+            ByteVector vb = ByteVector.fromArray(BYTES, b, bOffset + i);
+            acc0 = ((IntVector) va.castShape(INTS, 0)).mul((IntVector) vb.castShape(INTS, 0)).add(acc0);
+            acc1 = ((IntVector) va.castShape(INTS, 1)).mul((IntVector) vb.castShape(INTS, 1)).add(acc1);
+            // Each lane gains at most 128 * 128 per step; drain every 64K bytes, well before an int lane overflows
+            if ((i & 0xFFFF) == 0xFFF8) {
+                sum += acc0.add(acc1).reduceLanesToLong(VectorOperators.ADD);
+                acc0 = IntVector.zero(INTS);
+                acc1 = IntVector.zero(INTS);
+            }
+        }
+        sum += acc0.add(acc1).reduceLanesToLong(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+}
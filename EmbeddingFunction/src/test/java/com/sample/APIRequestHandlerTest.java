@@ -0,0 +1,168 @@
+package com.sample;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.amazonaws.services.lambda.runtime.ClientContext;
+import com.amazonaws.services.lambda.runtime.CognitoIdentity;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.LambdaLogger;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyRequestEvent;
+import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent;
+import com.sample.index.AttributeFilter;
+import com.sample.index.VectorIndexRegistry;
+import com.sample.service.EmbeddingService;
+import com.sample.service.EnhancedDynamoDBService;
+import com.sample.util.EmbeddingCache;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeClient;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelRequest;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelResponse;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+
+/**
+ * Tests API request routing against fake Bedrock and DynamoDB clients.
+ */
+public class APIRequestHandlerTest {
+
+    private static class FakeBedrock implements BedrockRuntimeClient {
+        @Override
+        public InvokeModelResponse invokeModel(InvokeModelRequest request) {
+            String json = "{\"embeddingsByType\":{\"float\":[0.6,0.8]}}";
+            return InvokeModelResponse.builder().body(SdkBytes.fromUtf8String(json)).build();
+        }
+
+        @Override
+        public String serviceName() {
+            return "bedrock-runtime";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class FakeDynamoDb implements DynamoDbClient {
+        final List<Map<String, AttributeValue>> puts = new ArrayList<>();
+
+        @Override
+        public synchronized PutItemResponse putItem(PutItemRequest request) {
+            puts.add(request.item());
+            return PutItemResponse.builder().build();
+        }
+
+        @Override
+        public String serviceName() {
+            return "dynamodb";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class TestContext implements Context {
+        @Override
+        public String getAwsRequestId() {
+            return "test-request";
+        }
+
+        @Override
+        public String getLogGroupName() {
+            return "test";
+        }
+
+        @Override
+        public String getLogStreamName() {
+            return "test";
+        }
+
+        @Override
+        public String getFunctionName() {
+            return "test";
+        }
+
+        @Override
+        public String getFunctionVersion() {
+            return "1";
+        }
+
+        @Override
+        public String getInvokedFunctionArn() {
+            return "test";
+        }
+
+        @Override
+        public CognitoIdentity getIdentity() {
+            return null;
+        }
+
+        @Override
+        public ClientContext getClientContext() {
+            return null;
+        }
+
+        @Override
+        public int getRemainingTimeInMillis() {
+            return 0;
+        }
+
+        @Override
+        public int getMemoryLimitInMB() {
+            return 512;
+        }
+
+        @Override
+        public LambdaLogger getLogger() {
+            return new LambdaLogger() {
+                @Override
+                public void log(String message) {
+                }
+
+                @Override
+                public void log(byte[] message) {
+                }
+            };
+        }
+    }
+
+    @AfterEach
+    public void clearIndexes() {
+        VectorIndexRegistry.clear();
+    }
+
+    @Test
+    public void testAttributeEmbeddingIsStoredWithItsTypeAndProfile() throws Exception {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        EmbeddingService embeddingService = new EmbeddingService(new FakeBedrock(), new EmbeddingCache(10, 60));
+        try (EnhancedDynamoDBService enhancedDynamoDBService = new EnhancedDynamoDBService(dynamoDb, null)) {
+            APIRequestHandler handler = new APIRequestHandler(null, enhancedDynamoDBService, embeddingService);
+
+            APIGatewayProxyResponseEvent response = handler.handleRequest(new APIGatewayProxyRequestEvent()
+                    .withPath("/generateEmbeddingFromAttributes")
+                    .withBody("{\"userId\":\"u1\",\"attributes\":{\"age\":34,\"location\":\"Seattle\","
+                            + "\"subscription_plan\":\"Premium\",\"page_views\":25}}"), new TestContext());
+
+            assertEquals(200, response.getStatusCode().intValue());
+            assertEquals(1, dynamoDb.puts.size());
+            Map<String, AttributeValue> item = dynamoDb.puts.get(0);
+            assertEquals("u1", item.get("user_id").s());
+            assertEquals(EnhancedDynamoDBService.EMBEDDING_TYPE_USER_ATTRIBUTES, item.get("embedding_type").s());
+            assertEquals("34", item.get("age").n());
+            assertEquals("Seattle", item.get("location").s());
+            assertEquals("Premium", item.get("subscription_plan").s());
+            assertTrue(VectorIndexRegistry.getAttributes()
+                    .match(new AttributeFilter(null, 30, 40, "Seattle", "Premium")).cardinality() == 1);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.sample.index;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for CompressedBitmap, checked against java.util.BitSet.
+ */
+public class CompressedBitmapTest {
+
+    private static void assertSameValues(BitSet expected, CompressedBitmap actual) {
+        assertEquals(expected.cardinality(), actual.cardinality());
+        List<Integer> values = new ArrayList<>();
+        actual.forEach(values::add);
+        List<Integer> expectedValues = new ArrayList<>();
+        expected.stream().forEach(expectedValues::add);
+        assertEquals(expectedValues, values);
+    }
+
+    /**
+     * Values spread over several containers: one sparse (array form), one dense (bitmap form).
+     */
+    private static void fill(Random random, BitSet expected, CompressedBitmap bitmap, int sparse, int dense) {
+        for (int i = 0; i < sparse; i++) {
+            int value = random.nextInt(1 << 16);
+            expected.set(value);
+            bitmap.add(value);
+        }
+        for (int i = 0; i < dense; i++) {
+            int value = (1 << 16) + random.nextInt(1 << 16);
+            expected.set(value);
+            bitmap.add(value);
+        }
+    }
+
+    @Test
+    public void testAddRemoveContainsAcrossContainerForms() {
+        Random random = new Random(1);
+        BitSet expected = new BitSet();
+        CompressedBitmap bitmap = new CompressedBitmap();
+        fill(random, expected, bitmap, 1000, 30000);
+        assertSameValues(expected, bitmap);
+
+        // Shrink the dense container back below the array threshold
+        for (int value = 1 << 16; value < 2 << 16; value++) {
+            if (value % 10 != 0) {
+                assertEquals(expected.get(value), bitmap.remove(value));
+                expected.clear(value);
+            }
+        }
+        assertSameValues(expected, bitmap);
+        for (int value = 0; value < 2 << 16; value += 7) {
+            assertEquals(expected.get(value), bitmap.contains(value));
+        }
+
+        assertFalse(bitmap.add(expected.nextSetBit(0)));
+        assertFalse(bitmap.remove(5 << 16));
+        assertFalse(bitmap.contains(-1));
+        assertThrows(IllegalArgumentException.class, () -> bitmap.add(-1));
+    }
+
+    @Test
+    public void testAndOrMatchBitSet() {
+        Random random = new Random(2);
+        BitSet expectedA = new BitSet();
+        BitSet expectedB = new BitSet();
+        CompressedBitmap a = new CompressedBitmap();
+        CompressedBitmap b = new CompressedBitmap();
+        fill(random, expectedA, a, 3000, 40000);
+        fill(random, expectedB, b, 3000, 2000);
+        a.add(9 << 16);
+        expectedA.set(9 << 16);
+
+        BitSet and = (BitSet) expectedA.clone();
+        and.and(expectedB);
+        assertSameValues(and, a.and(b));
+        assertSameValues(and, b.and(a));
+
+        BitSet or = (BitSet) expectedA.clone();
+        or.or(expectedB);
+        assertSameValues(or, a.or(b));
+        assertSameValues(or, b.or(a));
+
+        // Results are independent of their inputs
+        CompressedBitmap copy = a.copy();
+        copy.add(12 << 16);
+        assertFalse(a.contains(12 << 16));
+        assertSameValues(expectedA, a);
+    }
+
+    @Test
+    public void testEmptyBitmap() {
+        CompressedBitmap empty = new CompressedBitmap();
+        assertTrue(empty.isEmpty());
+        assertEquals(0, empty.cardinality());
+        assertTrue(empty.and(CompressedBitmap.of(1, 2, 3)).isEmpty());
+        assertEquals(3, empty.or(CompressedBitmap.of(1, 2, 3)).cardinality());
+
+        CompressedBitmap single = CompressedBitmap.of(70000);
+        assertTrue(single.remove(70000));
+        assertTrue(single.isEmpty());
+    }
+}
@@ -0,0 +1,151 @@
+package com.sample.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for FlatIndex.
+ */
+public class FlatIndexTest {
+
+    private static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0.0;
+        double normA = 0.0;
+        double normB = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+
+    @Test
+    public void testParallelSearchMatchesExactOrder() {
+        Random random = new Random(11);
+        int dimension = 24;
+        int count = 20000;
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            FlatIndex index = new FlatIndex(pool);
+            List<float[]> vectors = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                float[] vector = randomVector(random, dimension);
+                vectors.add(vector);
+                index.add("user-" + i, vector);
+            }
+
+            for (int q = 0; q < 5; q++) {
+                float[] query = vectors.get(q * 1000);
+                List<Integer> order = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    if (i != q * 1000) {
+                        order.add(i);
+                    }
+                }
+                order.sort((a, b) -> Double.compare(cosine(query, vectors.get(b)), cosine(query, vectors.get(a))));
+
+                List<SearchResult> results = index.search(query, 20, "user-" + (q * 1000));
+                assertEquals(20, results.size());
+                for (int i = 0; i < results.size(); i++) {
+                    assertEquals(cosine(query, vectors.get(order.get(i))), results.get(i).getScore(), 1e-5);
+                    assertFalse(results.get(i).getId().equals("user-" + (q * 1000)));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testExcludeDoesNotCostAResultSlot() {
+        FlatIndex index = new FlatIndex();
+        index.add("a", new float[] {1f, 0f});
+        index.add("b", new float[] {0.9f, 0.1f});
+        index.add("c", new float[] {0f, 1f});
+
+        List<SearchResult> results = index.search(new float[] {1f, 0f}, 2, "a");
+        assertEquals(2, results.size());
+        assertEquals("b", results.get(0).getId());
+        assertEquals("c", results.get(1).getId());
+        assertEquals(3, index.search(new float[] {1f, 0f}, 10).size());
+    }
+
+    @Test
+    public void testRemoveKeepsRowsDense() {
+        FlatIndex index = new FlatIndex();
+        for (int i = 0; i < 5; i++) {
+            index.add("u" + i, new float[] {1f, i});
+        }
+        assertTrue(index.remove("u1"));
+        assertFalse(index.remove("u1"));
+        assertEquals(4, index.size());
+        assertFalse(index.contains("u1"));
+
+        // u4 moved into u1's row and must still score as itself
+        List<SearchResult> results = index.search(new float[] {1f, 4f}, 1);
+        assertEquals("u4", results.get(0).getId());
+        assertEquals(1.0, results.get(0).getScore(), 1e-6);
+
+        index.add("u4", new float[] {-1f, 0f});
+        assertEquals(4, index.size());
+        assertEquals("u4", index.search(new float[] {-1f, 0f}, 1).get(0).getId());
+    }
+
+    @Test
+    public void testEmptyIndexAndDimensionMismatch() {
+        FlatIndex index = new FlatIndex();
+        assertTrue(index.search(new float[] {1f, 0f}, 3).isEmpty());
+
+        index.add("a", new float[] {1f, 0f});
+        assertThrows(IllegalArgumentException.class, () -> index.add("b", new float[] {1f, 0f, 0f}));
+        assertThrows(IllegalArgumentException.class, () -> index.search(new float[] {1f}, 1));
+        assertTrue(index.search(new float[] {1f, 0f}, 0).isEmpty());
+    }
+
+    @Test
+    public void testFilteredSearchFillsTopK() {
+        FlatIndex index = new FlatIndex();
+        for (int i = 0; i < 100; i++) {
+            index.add("flat-" + i, new float[] {1f, i / 100f});
+        }
+        CompressedBitmap evens = new CompressedBitmap();
+        CompressedBitmap few = new CompressedBitmap();
+        for (int i = 0; i < 100; i += 2) {
+            evens.add(IdOrdinals.of("flat-" + i));
+        }
+        few.add(IdOrdinals.of("flat-50"));
+        few.add(IdOrdinals.of("flat-90"));
+        few.add(IdOrdinals.of("not-indexed"));
+
+        // Sweep with the filter applied per row
+        List<SearchResult> results = index.search(new float[] {1f, 0f}, 5, "flat-0", evens);
+        assertEquals(5, results.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("flat-" + (2 * i + 2), results.get(i).getId());
+        }
+
+        // Allowed IDs are a small fraction of the rows: only they are scored
+        results = index.search(new float[] {1f, 1f}, 5, null, few);
+        assertEquals(2, results.size());
+        assertEquals("flat-90", results.get(0).getId());
+        assertEquals("flat-50", results.get(1).getId());
+        assertTrue(index.search(new float[] {1f, 0f}, 5, null, new CompressedBitmap()).isEmpty());
+    }
+}
@@ -0,0 +1,216 @@
+package com.sample.index;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for HnswIndex.
+ */
+public class HnswIndexTest {
+
+    private static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0.0;
+        double normA = 0.0;
+        double normB = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+
+    @Test
+    public void testRecallAgainstExactSearch() {
+        Random random = new Random(42);
+        int dimension = 32;
+        int count = 2000;
+        int k = 10;
+        HnswIndex index = new HnswIndex(16, 200, 64, new Random(7));
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            float[] vector = randomVector(random, dimension);
+            vectors.add(vector);
+            index.add("user-" + i, vector);
+        }
+        assertEquals(count, index.size());
+
+        int found = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVector(random, dimension);
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                order.add(i);
+            }
+            order.sort((a, b) -> Double.compare(cosine(query, vectors.get(b)), cosine(query, vectors.get(a))));
+            Set<String> exact = new HashSet<>();
+            for (int i = 0; i < k; i++) {
+                exact.add("user-" + order.get(i));
+            }
+
+            List<SearchResult> results = index.search(query, k);
+            assertEquals(k, results.size());
+            for (int i = 1; i < results.size(); i++) {
+                assertTrue(results.get(i - 1).getScore() >= results.get(i).getScore());
+            }
+            for (SearchResult result : results) {
+                if (exact.contains(result.getId())) {
+                    found++;
+                }
+            }
+        }
+        double recall = (double) found / (queries * k);
+        assertTrue(recall >= 0.9, "recall@10: " + recall);
+    }
+
+    @Test
+    public void testScoreIsCosineSimilarity() {
+        HnswIndex index = new HnswIndex();
+        index.add("a", new float[] {3f, 4f});
+        index.add("b", new float[] {0f, 2f});
+
+        List<SearchResult> results = index.search(new float[] {1f, 0f}, 2);
+        assertEquals("a", results.get(0).getId());
+        assertEquals(0.6, results.get(0).getScore(), 1e-6);
+        assertEquals(0.0, results.get(1).getScore(), 1e-6);
+    }
+
+    @Test
+    public void testRemoveAndReplace() {
+        HnswIndex index = new HnswIndex();
+        index.add("a", new float[] {1f, 0f});
+        index.add("b", new float[] {0f, 1f});
+
+        index.add("a", new float[] {0f, 1f});
+        List<SearchResult> results = index.search(new float[] {0f, 1f}, 5);
+        assertEquals(2, results.size());
+        assertEquals(1.0, results.get(0).getScore(), 1e-6);
+        assertEquals(1.0, results.get(1).getScore(), 1e-6);
+
+        assertTrue(index.remove("b"));
+        assertFalse(index.remove("b"));
+        assertFalse(index.contains("b"));
+        results = index.search(new float[] {0f, 1f}, 5);
+        assertEquals(1, results.size());
+        assertEquals("a", results.get(0).getId());
+        assertEquals(1, index.size());
+        assertEquals(2, index.getTombstoneCount());
+    }
+
+    @Test
+    public void testEmptyIndexAndDimensionMismatch() {
+        HnswIndex index = new HnswIndex();
+        assertTrue(index.search(new float[] {1f, 0f}, 3).isEmpty());
+
+        index.add("a", new float[] {1f, 0f});
+        assertEquals(2, index.getDimension());
+        assertThrows(IllegalArgumentException.class, () -> index.add("b", new float[] {1f, 0f, 0f}));
+        assertThrows(IllegalArgumentException.class, () -> index.search(new float[] {1f}, 1));
+        assertTrue(index.search(new float[] {1f, 0f}, 0).isEmpty());
+    }
+
+    @Test
+    public void testFilteredSearchKeepsOnlyAllowedIds() {
+        Random random = new Random(8);
+        int dimension = 16;
+        HnswIndex index = new HnswIndex(16, 200, 64, new Random(8));
+        List<float[]> vectors = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            float[] vector = randomVector(random, dimension);
+            vectors.add(vector);
+            index.add("filtered-" + i, vector);
+        }
+
+        // A third of the index is searched through the graph, 1% is scored directly
+        for (int stride : new int[] {3, 100}) {
+            CompressedBitmap allowed = new CompressedBitmap();
+            for (int i = 0; i < 2000; i += stride) {
+                allowed.add(IdOrdinals.of("filtered-" + i));
+            }
+            float[] query = vectors.get(1);
+            List<Integer> exact = new ArrayList<>();
+            for (int i = 0; i < 2000; i += stride) {
+                exact.add(i);
+            }
+            exact.sort((a, b) -> Double.compare(cosine(query, vectors.get(b)), cosine(query, vectors.get(a))));
+            Set<String> expected = new HashSet<>();
+            for (int i = 0; i < 10; i++) {
+                expected.add("filtered-" + exact.get(i));
+            }
+
+            List<SearchResult> results = index.search(query, 10, null, allowed);
+            assertEquals(10, results.size());
+            int hits = 0;
+            for (SearchResult result : results) {
+                int row = Integer.parseInt(result.getId().substring("filtered-".length()));
+                assertEquals(0, row % stride);
+                hits += expected.contains(result.getId()) ? 1 : 0;
+            }
+            assertTrue(hits >= 9, "stride " + stride + " found " + hits + " of the exact top 10");
+        }
+    }
+
+    @Test
+    public void testCompactDropsTombstones() {
+        HnswIndex index = new HnswIndex();
+        index.add("a", new float[] {1f, 0f});
+        index.add("b", new float[] {0f, 1f});
+        index.add("a", new float[] {0.6f, 0.8f});
+        index.remove("b");
+        assertEquals(2, index.getTombstoneCount());
+
+        index.compact();
+        assertEquals(0, index.getTombstoneCount());
+        assertEquals(1, index.size());
+        assertFalse(index.contains("b"));
+        List<SearchResult> results = index.search(new float[] {0.6f, 0.8f}, 5);
+        assertEquals(1, results.size());
+        assertEquals("a", results.get(0).getId());
+        assertEquals(1.0, results.get(0).getScore(), 1e-6);
+    }
+
+    @Test
+    public void testRepeatedReplacementsAreCompactedInTheBackground() throws Exception {
+        Random random = new Random(11);
+        HnswIndex index = new HnswIndex(8, 50, 32, new Random(11));
+        int users = 100;
+        float[][] latest = new float[users][];
+        for (int round = 0; round < 12; round++) {
+            for (int i = 0; i < users; i++) {
+                latest[i] = randomVector(random, 8);
+                index.add("replaced-" + i, latest[i]);
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (index.getTombstoneCount() >= HnswIndex.COMPACTION_MIN_TOMBSTONES && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(index.getTombstoneCount() < HnswIndex.COMPACTION_MIN_TOMBSTONES,
+                "tombstones: " + index.getTombstoneCount());
+        assertEquals(users, index.size());
+        for (int i = 0; i < users; i += 10) {
+            List<SearchResult> results = index.search(latest[i], 1);
+            assertEquals("replaced-" + i, results.get(0).getId());
+            assertEquals(1.0, results.get(0).getScore(), 1e-5);
+        }
+    }
+}
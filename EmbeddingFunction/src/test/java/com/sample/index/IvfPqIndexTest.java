@@ -0,0 +1,334 @@
+package com.sample.index;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for IvfPqIndex.
+ */
+public class IvfPqIndexTest {
+
+    private static final int DIMENSION = 32;
+
+    /**
+     * Vectors scattered around a set of cluster centres, like embeddings of similar users.
+     */
+    private static List<float[]> clusteredVectors(Random random, int count, int clusters) {
+        List<float[]> centres = new ArrayList<>();
+        for (int c = 0; c < clusters; c++) {
+            float[] centre = new float[DIMENSION];
+            for (int i = 0; i < DIMENSION; i++) {
+                centre[i] = (float) random.nextGaussian();
+            }
+            centres.add(centre);
+        }
+        List<float[]> vectors = new ArrayList<>();
+        for (int n = 0; n < count; n++) {
+            float[] centre = centres.get(random.nextInt(clusters));
+            float[] vector = new float[DIMENSION];
+            for (int i = 0; i < DIMENSION; i++) {
+                vector[i] = centre[i] + 0.4f * (float) random.nextGaussian();
+            }
+            vectors.add(vector);
+        }
+        return vectors;
+    }
+
+    private static double cosine(float[] a, float[] b) {
+        double dot = 0.0;
+        double normA = 0.0;
+        double normB = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+
+    private static Set<String> exactTopK(List<float[]> vectors, float[] query, int k, int excluded) {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < vectors.size(); i++) {
+            if (i != excluded) {
+                order.add(i);
+            }
+        }
+        order.sort((a, b) -> Double.compare(cosine(query, vectors.get(b)), cosine(query, vectors.get(a))));
+        Set<String> ids = new HashSet<>();
+        for (int i = 0; i < k; i++) {
+            ids.add("user-" + order.get(i));
+        }
+        return ids;
+    }
+
+    @Test
+    public void testRerankedRecallAgainstExactSearch() {
+        Random random = new Random(21);
+        List<float[]> vectors = clusteredVectors(random, 5000, 40);
+        Map<String, float[]> store = new HashMap<>();
+        for (int i = 0; i < vectors.size(); i++) {
+            store.put("user-" + i, vectors.get(i));
+        }
+        List<Integer> loadSizes = new ArrayList<>();
+        IvfPqIndex index = new IvfPqIndex(32, 8, 8, 100, 2000, ids -> {
+            loadSizes.add(ids.size());
+            Map<String, float[]> found = new HashMap<>();
+            ids.forEach(id -> found.put(id, store.get(id)));
+            return found;
+        }, new Random(5));
+        for (int i = 0; i < vectors.size(); i++) {
+            index.add("user-" + i, vectors.get(i));
+        }
+        index.train();
+        assertTrue(index.isTrained());
+        assertEquals(5000, index.size());
+
+        int k = 10;
+        int hits = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            int queryRow = q * 97;
+            float[] query = vectors.get(queryRow);
+            List<SearchResult> results = index.search(query, k, "user-" + queryRow);
+            assertEquals(k, results.size());
+            Set<String> expected = exactTopK(vectors, query, k, queryRow);
+            for (SearchResult result : results) {
+                assertFalse(result.getId().equals("user-" + queryRow));
+                // Reranked scores are exact
+                int row = Integer.parseInt(result.getId().substring("user-".length()));
+                assertEquals(cosine(query, vectors.get(row)), result.getScore(), 1e-5);
+                if (expected.contains(result.getId())) {
+                    hits++;
+                }
+            }
+        }
+        double recall = hits / (double) (queries * k);
+        assertTrue(recall >= 0.9, "recall@10 was " + recall);
+        assertEquals(100, (int) loadSizes.get(0));
+    }
+
+    @Test
+    public void testEstimatesWithoutLoader() {
+        Random random = new Random(3);
+        List<float[]> vectors = clusteredVectors(random, 1000, 10);
+        IvfPqIndex index = new IvfPqIndex(8, 8, 8, 100, 500, null, new Random(9));
+        for (int i = 0; i < vectors.size(); i++) {
+            index.add("user-" + i, vectors.get(i));
+        }
+        index.train();
+        assertTrue(index.isTrained());
+
+        float[] query = vectors.get(0);
+        List<SearchResult> results = index.search(query, 5);
+        assertEquals(5, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            int row = Integer.parseInt(results.get(i).getId().substring("user-".length()));
+            assertEquals(cosine(query, vectors.get(row)), results.get(i).getScore(), 0.1);
+            if (i > 0) {
+                assertTrue(results.get(i - 1).getScore() >= results.get(i).getScore());
+            }
+        }
+    }
+
+    @Test
+    public void testExactSearchBeforeTraining() {
+        IvfPqIndex index = new IvfPqIndex(4, 2, 2, 10, 100, null, new Random(1));
+        index.add("a", new float[] {1f, 0f, 0f, 0f});
+        index.add("b", new float[] {0.9f, 0.1f, 0f, 0f});
+        index.add("c", new float[] {0f, 0f, 1f, 0f});
+        assertFalse(index.isTrained());
+
+        List<SearchResult> results = index.search(new float[] {1f, 0f, 0f, 0f}, 2, "a");
+        assertEquals(2, results.size());
+        assertEquals("b", results.get(0).getId());
+        assertEquals("c", results.get(1).getId());
+        assertEquals(0.0, results.get(1).getScore(), 1e-6);
+
+        index.train();
+        assertTrue(index.isTrained());
+        assertEquals(3, index.size());
+        assertEquals("a", index.search(new float[] {1f, 0f, 0f, 0f}, 1).get(0).getId());
+    }
+
+    @Test
+    public void testRemoveAndReplaceAfterTraining() {
+        Random random = new Random(13);
+        List<float[]> vectors = clusteredVectors(random, 300, 5);
+        IvfPqIndex index = new IvfPqIndex(4, 4, 4, 0, 200, null, new Random(2));
+        for (int i = 0; i < vectors.size(); i++) {
+            index.add("user-" + i, vectors.get(i));
+        }
+        index.train();
+        assertTrue(index.remove("user-7"));
+        assertFalse(index.remove("user-7"));
+        assertFalse(index.contains("user-7"));
+        assertEquals(299, index.size());
+        for (SearchResult result : index.search(vectors.get(7), 20)) {
+            assertFalse(result.getId().equals("user-7"));
+        }
+
+        float[] opposite = vectors.get(8).clone();
+        for (int i = 0; i < opposite.length; i++) {
+            opposite[i] = -opposite[i];
+        }
+        index.add("user-8", opposite);
+        assertEquals(299, index.size());
+        for (SearchResult result : index.search(vectors.get(8), 20, "user-9")) {
+            assertFalse(result.getId().equals("user-8"));
+            assertFalse(result.getId().equals("user-9"));
+        }
+    }
+
+    @Test
+    public void testLoaderFailureFallsBackToEstimates() {
+        Random random = new Random(17);
+        List<float[]> vectors = clusteredVectors(random, 400, 5);
+        IvfPqIndex index = new IvfPqIndex(4, 4, 4, 50, 200, ids -> {
+            throw new IllegalStateException("table unavailable");
+        }, new Random(4));
+        for (int i = 0; i < vectors.size(); i++) {
+            index.add("user-" + i, vectors.get(i));
+        }
+        index.train();
+        assertEquals(5, index.search(vectors.get(0), 5).size());
+    }
+
+    @Test
+    public void testEmptyIndexAndDimensionMismatch() {
+        IvfPqIndex index = new IvfPqIndex(4, 2, 2, 10, 100, null);
+        assertTrue(index.search(new float[] {1f, 0f}, 3).isEmpty());
+
+        index.add("a", new float[] {1f, 0f});
+        assertThrows(IllegalArgumentException.class, () -> index.add("b", new float[] {1f, 0f, 0f}));
+        assertThrows(IllegalArgumentException.class, () -> index.search(new float[] {1f}, 1));
+        assertTrue(index.search(new float[] {1f, 0f}, 0).isEmpty());
+    }
+
+    @Test
+    public void testFilteredSearchProbesUntilFull() {
+        Random random = new Random(23);
+        List<float[]> vectors = clusteredVectors(random, 2000, 20);
+        IvfPqIndex index = new IvfPqIndex(32, 8, 1, 0, 1000, null, new Random(6));
+        CompressedBitmap allowed = new CompressedBitmap();
+        for (int i = 0; i < vectors.size(); i++) {
+            index.add("ivf-" + i, vectors.get(i));
+            if (i % 50 == 0) {
+                allowed.add(IdOrdinals.of("ivf-" + i));
+            }
+        }
+        index.train();
+
+        // One probed list rarely holds 10 allowed rows, so more lists are probed
+        List<SearchResult> results = index.search(vectors.get(7), 10, null, allowed);
+        assertEquals(10, results.size());
+        for (SearchResult result : results) {
+            assertEquals(0, Integer.parseInt(result.getId().substring("ivf-".length())) % 50);
+        }
+    }
+
+    @Test
+    public void testTrainingRunsInTheBackground() throws Exception {
+        Random random = new Random(31);
+        List<float[]> vectors = clusteredVectors(random, 600, 5);
+        IvfPqIndex index = new IvfPqIndex(4, 4, 4, 0, 500, null, new Random(3));
+        for (int i = 0; i < vectors.size(); i++) {
+            index.add("user-" + i, vectors.get(i));
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!index.isTrained() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(index.isTrained());
+        assertEquals(600, index.size());
+        assertEquals(5, index.search(vectors.get(599), 5).size());
+    }
+
+    @Test
+    public void testSavedQuantizerSkipsTraining() throws Exception {
+        Random random = new Random(37);
+        List<float[]> vectors = clusteredVectors(random, 400, 5);
+        IvfPqIndex trained = new IvfPqIndex(4, 4, 4, 0, 1000, null, new Random(7));
+        for (int i = 0; i < vectors.size(); i++) {
+            trained.add("user-" + i, vectors.get(i));
+        }
+        assertThrows(IllegalStateException.class, () -> trained.writeQuantizer(new ByteArrayOutputStream()));
+        trained.train();
+        ByteArrayOutputStream saved = new ByteArrayOutputStream();
+        trained.writeQuantizer(saved);
+
+        // Created with other settings; the saved list and subspace counts win
+        IvfPqIndex loaded = new IvfPqIndex(64, 8, 4, 0, 1000, null, new Random(8));
+        loaded.add("user-0", vectors.get(0));
+        loaded.loadQuantizer(new ByteArrayInputStream(saved.toByteArray()));
+        assertTrue(loaded.isTrained());
+        for (int i = 1; i < vectors.size(); i++) {
+            loaded.add("user-" + i, vectors.get(i));
+        }
+        assertEquals(400, loaded.size());
+        for (int q = 0; q < 5; q++) {
+            float[] query = vectors.get(q * 50);
+            List<SearchResult> expected = trained.search(query, 5);
+            List<SearchResult> actual = loaded.search(query, 5);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getScore(), actual.get(i).getScore(), 1e-6);
+            }
+        }
+
+        assertThrows(IllegalStateException.class,
+                () -> loaded.loadQuantizer(new ByteArrayInputStream(saved.toByteArray())));
+        IvfPqIndex other = new IvfPqIndex(4, 4, 4, 0, 1000, null);
+        other.add("a", new float[] {1f, 0f});
+        assertThrows(IOException.class, () -> other.loadQuantizer(new ByteArrayInputStream(saved.toByteArray())));
+        assertThrows(IOException.class, () -> other.loadQuantizer(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5})));
+    }
+
+    @Test
+    public void testReplacedRowsAreCompacted() throws Exception {
+        Random random = new Random(41);
+        IvfPqIndex index = new IvfPqIndex(4, 4, 4, 20, 200, null, new Random(5));
+        Map<String, float[]> latest = new HashMap<>();
+        for (int round = 0; round < 8; round++) {
+            List<float[]> vectors = clusteredVectors(random, 200, 5);
+            for (int i = 0; i < vectors.size(); i++) {
+                latest.put("user-" + i, vectors.get(i));
+                index.add("user-" + i, vectors.get(i));
+            }
+            index.train();
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (index.getTombstoneCount() >= IvfPqIndex.COMPACTION_MIN_TOMBSTONES && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(index.getTombstoneCount() < IvfPqIndex.COMPACTION_MIN_TOMBSTONES,
+                "tombstones: " + index.getTombstoneCount());
+
+        index.compact();
+        assertEquals(0, index.getTombstoneCount());
+        assertEquals(200, index.size());
+        Set<String> seen = new HashSet<>();
+        for (SearchResult result : index.search(latest.get("user-3"), 200)) {
+            assertTrue(seen.add(result.getId()));
+        }
+        assertEquals(200, seen.size());
+        assertTrue(index.remove("user-3"));
+        assertFalse(index.contains("user-3"));
+        assertEquals(199, index.search(latest.get("user-3"), 200).size());
+    }
+}
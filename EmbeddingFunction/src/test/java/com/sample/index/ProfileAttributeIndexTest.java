@@ -0,0 +1,83 @@
+package com.sample.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for ProfileAttributeIndex.
+ */
+public class ProfileAttributeIndexTest {
+
+    private static List<String> ids(CompressedBitmap bitmap) {
+        List<String> ids = new ArrayList<>();
+        bitmap.forEach(ordinal -> ids.add(IdOrdinals.id(ordinal)));
+        ids.sort(null);
+        return ids;
+    }
+
+    @Test
+    public void testFilterCriteriaAreIntersected() {
+        ProfileAttributeIndex index = new ProfileAttributeIndex();
+        index.recordProfile("attr-a", 25, "Seattle", "Premium");
+        index.recordProfile("attr-b", 40, "Seattle", "Basic");
+        index.recordProfile("attr-c", 35, "Denver", "Premium");
+        index.recordProfile("attr-d", Map.of("age", "38", "location", " SEATTLE", "subscription_plan", "Premium"));
+        index.recordProfile("attr-e", null, "Seattle", null);
+        index.recordEmbedding("attr-a", "interests");
+        index.recordEmbedding("attr-d", "interests");
+
+        assertNull(index.match(null));
+        assertNull(index.match(new AttributeFilter(null, null, null, null, null)));
+        assertEquals(List.of("attr-a", "attr-b", "attr-d", "attr-e"),
+                ids(index.match(new AttributeFilter(null, null, null, "seattle", null))));
+        assertEquals(List.of("attr-c", "attr-d"), ids(index.match(new AttributeFilter(null, 30, 39, null, null))));
+        assertEquals(List.of("attr-b"), ids(index.match(new AttributeFilter(null, 39, null, null, null))));
+        assertEquals(List.of("attr-a", "attr-d"),
+                ids(index.match(new AttributeFilter(null, null, null, "Seattle", "Premium"))));
+        assertEquals(List.of("attr-d"),
+                ids(index.match(new AttributeFilter("interests", 30, null, "Seattle", "Premium"))));
+        assertEquals(List.of(), ids(index.match(new AttributeFilter("behavior", null, null, null, null))));
+    }
+
+    @Test
+    public void testRecordingAgainMergesAttributes() {
+        ProfileAttributeIndex index = new ProfileAttributeIndex();
+        index.recordProfile("attr-m", 25, "Seattle", "Free");
+        index.recordProfile("attr-m", 52, "Austin", null);
+
+        assertEquals(List.of(), ids(index.match(new AttributeFilter(null, 20, 30, null, null))));
+        assertEquals(List.of(), ids(index.match(new AttributeFilter(null, null, null, "Seattle", null))));
+        assertEquals(List.of("attr-m"), ids(index.match(new AttributeFilter(null, 50, 60, "austin", "Free"))));
+
+        // An item carrying only the plan leaves age and location alone
+        index.recordProfile("attr-m", Map.of("subscription_plan", "Basic"));
+        assertEquals(List.of(), ids(index.match(new AttributeFilter(null, null, null, null, "Free"))));
+        assertEquals(List.of("attr-m"), ids(index.match(new AttributeFilter(null, 50, 60, "austin", "Basic"))));
+
+        index.clear();
+        assertEquals(List.of(), ids(index.match(new AttributeFilter(null, 50, 60, null, null))));
+    }
+
+    @Test
+    public void testUnknownPlansMatchNoPlanFilter() {
+        ProfileAttributeIndex index = new ProfileAttributeIndex();
+        index.recordProfile("attr-f", 25, "Seattle", "Free");
+        index.recordProfile("attr-g", 26, "Seattle", "Gold");
+        index.recordProfile("attr-p", 27, "Seattle", " premium");
+
+        assertEquals(List.of("attr-f"), ids(index.match(new AttributeFilter(null, null, null, null, "Free"))));
+        assertEquals(List.of("attr-p"), ids(index.match(new AttributeFilter(null, null, null, null, "Premium"))));
+        assertEquals(List.of(), ids(index.match(new AttributeFilter(null, null, null, null, "Gold"))));
+        assertEquals(List.of("attr-f", "attr-g", "attr-p"),
+                ids(index.match(new AttributeFilter(null, null, null, "Seattle", null))));
+
+        // A plan that is no longer recognised drops the user from the old plan
+        index.recordProfile("attr-f", null, null, "Legacy");
+        assertEquals(List.of(), ids(index.match(new AttributeFilter(null, null, null, null, "Free"))));
+    }
+}
@@ -0,0 +1,32 @@
+package com.sample.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sample.util.JsonUtils;
+
+/**
+ * Unit tests for the JSON form of EmbeddingResult.
+ */
+public class EmbeddingResultTest {
+
+    @Test
+    public void testJsonKeepsEmbeddingVectorFieldName() throws Exception {
+        EmbeddingResult result = new EmbeddingResult("id-1", new double[] {0.5, -0.25}, "text");
+
+        JsonNode json = new ObjectMapper().readTree(JsonUtils.toJson(result));
+        assertEquals("[0.5,-0.25]", json.get("embeddingVector").toString());
+        assertFalse(json.has("vector"));
+        assertEquals(2, json.get("dimensions").asInt());
+        assertTrue(json.has("embeddingId"));
+
+        EmbeddingResult read = JsonUtils.fromJson(JsonUtils.toJson(result), EmbeddingResult.class);
+        assertArrayEquals(new double[] {0.5, -0.25}, read.getEmbeddingVector(), 0.0);
+        assertEquals("text", read.getSourceType());
+    }
+}
@@ -0,0 +1,32 @@
+package com.sample.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+import com.sample.util.JsonUtils;
+
+/**
+ * Unit tests for EmbeddingVector.
+ */
+public class EmbeddingVectorTest {
+
+    @Test
+    public void testCosineSimilarityUsesPrecomputedNorms() {
+        EmbeddingVector a = EmbeddingVector.of(new double[] {1, 0, 0});
+        EmbeddingVector b = EmbeddingVector.of(new double[] {1, 1, 0});
+        assertEquals(1.0, a.norm(), 1e-9);
+        assertEquals(Math.sqrt(0.5), a.cosineSimilarity(b), 1e-6);
+        assertEquals(0.0, a.cosineSimilarity(EmbeddingVector.of(new double[] {0, 0, 0})), 0.0);
+    }
+
+    @Test
+    public void testJsonIsPlainNumberArrayAndReadsLegacyDoubles() throws Exception {
+        EmbeddingVector vector = EmbeddingVector.of(new float[] {0.5f, -0.25f});
+        assertEquals("[0.5,-0.25]", JsonUtils.toJson(vector));
+
+        // Items written before the float32 migration store double precision values
+        EmbeddingVector legacy = JsonUtils.fromJson("[0.1234567890123,2.0]", EmbeddingVector.class);
+        assertArrayEquals(new float[] {0.12345679f, 2.0f}, legacy.toFloatArray(), 0f);
+    }
+}
@@ -0,0 +1,84 @@
+package com.sample.model;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.sample.util.EmbeddingCodec;
+
+/**
+ * Unit tests for QuantizedVector and its storage encoding.
+ */
+public class QuantizedVectorTest {
+
+    private static EmbeddingVector randomVector(Random random, int dimension) {
+        float[] values = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            values[i] = (float) random.nextGaussian() * 0.05f;
+        }
+        return EmbeddingVector.wrap(values);
+    }
+
+    @Test
+    public void testDequantizeErrorIsWithinHalfAStep() {
+        EmbeddingVector vector = randomVector(new Random(7), 1024);
+        QuantizedVector quantized = QuantizedVector.quantize(vector);
+        EmbeddingVector restored = quantized.dequantize();
+
+        double tolerance = quantized.scale() / 2 + 1e-6;
+        for (int i = 0; i < vector.dimension(); i++) {
+            assertEquals(vector.get(i), restored.get(i), tolerance);
+        }
+    }
+
+    @Test
+    public void testQuantizedSimilarityMatchesDequantizedVectors() {
+        Random random = new Random(11);
+        EmbeddingVector a = randomVector(random, 512);
+        EmbeddingVector b = randomVector(random, 512);
+        QuantizedVector qa = QuantizedVector.quantize(a);
+        QuantizedVector qb = QuantizedVector.quantize(b);
+
+        EmbeddingVector da = qa.dequantize();
+        EmbeddingVector db = qb.dequantize();
+        assertEquals(da.dot(db), qa.dot(qb), 1e-4);
+        assertEquals(da.norm(), qa.norm(), 1e-4);
+        assertEquals(a.cosineSimilarity(b), qa.cosineSimilarity(qb), 0.01);
+    }
+
+    @Test
+    public void testConstantVectorRoundTrips() {
+        QuantizedVector quantized = QuantizedVector.quantize(EmbeddingVector.of(new float[] {0.5f, 0.5f, 0.5f}));
+        assertArrayEquals(new float[] {0.5f, 0.5f, 0.5f}, quantized.dequantize().toFloatArray(), 0f);
+
+        QuantizedVector zero = QuantizedVector.quantize(EmbeddingVector.of(new float[] {0f, 0f, 0f}));
+        assertEquals(0.0, zero.norm(), 0.0);
+        assertEquals(0.0, zero.cosineSimilarity(quantized), 0.0);
+    }
+
+    @Test
+    public void testCodecLayoutAndRoundTrip() {
+        QuantizedVector quantized = QuantizedVector.quantize(EmbeddingVector.of(new float[] {-1f, 0f, 1f}));
+        byte[] encoded = EmbeddingCodec.encodeQuantized(quantized);
+
+        assertEquals(1 + 2 * Float.BYTES + 3, encoded.length);
+        assertEquals(EmbeddingCodec.FORMAT_INT8_SCALED, encoded[0]);
+
+        QuantizedVector decoded = EmbeddingCodec.decodeQuantized(ByteBuffer.wrap(encoded));
+        assertEquals(quantized.scale(), decoded.scale(), 0f);
+        assertEquals(quantized.offset(), decoded.offset(), 0f);
+        assertArrayEquals(quantized.codes(), decoded.codes());
+        assertTrue(decoded.codeDot(quantized) > 0);
+    }
+
+    @Test
+    public void testCodecRejectsFloat32Payload() {
+        byte[] float32 = EmbeddingCodec.encode(EmbeddingVector.of(new float[] {1f, 2f}));
+        assertThrows(IllegalArgumentException.class, () -> EmbeddingCodec.decodeQuantized(ByteBuffer.wrap(float32)));
+    }
+}
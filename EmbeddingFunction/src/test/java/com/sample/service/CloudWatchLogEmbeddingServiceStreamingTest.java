@@ -0,0 +1,251 @@
+package com.sample.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the streaming log analyses of CloudWatchLogEmbeddingService, fed from a replayed export
+ * so no AWS service is needed.
+ */
+public class CloudWatchLogEmbeddingServiceStreamingTest {
+
+    @TempDir
+    Path tempDir;
+
+    private CloudWatchLogEmbeddingService serviceReplaying(String... lines) throws IOException {
+        Path export = tempDir.resolve("export.log");
+        Files.write(export, List.of(lines));
+        return new CloudWatchLogEmbeddingService(null, null, new LogExportReplaySource(export));
+    }
+
+    private static String recent(int minutesAgo) {
+        return Instant.now().minusSeconds(minutesAgo * 60L).toString();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAnalyzesUserBehaviorFromStream() throws Exception {
+        CloudWatchLogEmbeddingService service = serviceReplaying(
+                recent(5) + " {\"path\":\"/api/orders\",\"httpMethod\":\"POST\",\"statusCode\":\"201\",\"userId\":\"user-1\"}",
+                recent(4) + " {\"path\":\"/api/orders\",\"httpMethod\":\"GET\",\"statusCode\":\"500\",\"userId\":\"user-1\"}",
+                recent(3) + " {\"path\":\"/api/quotes\",\"httpMethod\":\"GET\",\"statusCode\":\"200\",\"userId\":\"user-2\"}",
+                recent(600) + " {\"path\":\"/api/old\",\"httpMethod\":\"GET\",\"statusCode\":\"200\",\"userId\":\"user-1\"}");
+
+        Map<String, Object> analysis = service.analyzeUserBehavior("user-1", "/aws/api-gateway", 1);
+
+        assertEquals(2, analysis.get("total_logs"));
+        assertEquals(Map.of("/api/orders", 2), analysis.get("api_paths"));
+        assertEquals(2, ((List<Object>) analysis.get("user_journey")).size());
+    }
+
+    @Test
+    public void testAnalyzesTradingAndCompliancePatternsFromStream() throws Exception {
+        CloudWatchLogEmbeddingService service = serviceReplaying(
+                recent(10) + " [INFO] Trade: userId: user-1 symbol: AAPL action: BUY quantity: 10 price: 100.00 orderType: MARKET status: FILLED",
+                recent(9) + " [ERROR] Trade: userId: user-1 symbol: MSFT action: SELL quantity: 5 price: 200.00 status: REJECTED reason: MARKET_CLOSED",
+                recent(8) + " [INFO] Compliance: userId: user-1 type: AML_CHECK status: PASSED ",
+                recent(7) + " [WARNING] Compliance: userId: user-1 type: KYC_VERIFICATION status: VIOLATION action: TRADE_BLOCKED severity: HIGH ",
+                recent(6) + " [INFO] Login: userId: user-1 ok");
+
+        Map<String, Object> trading = service.analyzeTradingPatterns("user-1", "/aws/trading", 1);
+        assertEquals(2, trading.get("total_trading_logs"));
+        assertEquals(1, trading.get("successful_trades"));
+        assertEquals(1, trading.get("rejected_trades"));
+
+        Map<String, Object> compliance = service.analyzeCompliancePatterns("user-1", "/aws/compliance", 1);
+        assertEquals(2, compliance.get("total_compliance_logs"));
+        assertEquals(1, compliance.get("violations"));
+        assertEquals(1, compliance.get("passed"));
+    }
+
+    @Test
+    public void testSummarizesLocallyWhenSummarizerFails() throws Exception {
+        Path export = tempDir.resolve("export.log");
+        Files.write(export, List.of(
+                recent(5) + " {\"path\":\"/api/orders\",\"statusCode\":\"200\",\"userId\":\"user-1\"}",
+                recent(4) + " [ERROR] Trade: userId: user-1 action: SELL status: REJECTED"));
+        LogSummarizer failing = (userId, logGroupName, start, end) -> {
+            throw new RuntimeException("Insights unavailable");
+        };
+        CloudWatchLogEmbeddingService service =
+                new CloudWatchLogEmbeddingService(null, null, new LogExportReplaySource(export), failing);
+
+        ActivitySummary summary = service.summarizeUserLogs("user-1", "/aws/app", 1);
+
+        assertEquals(2, summary.getLogCount());
+        assertEquals(Map.of("/api/orders", 1), summary.apiPathCounts);
+        assertEquals(1, summary.tradingErrors);
+    }
+
+    @Test
+    public void testUsesSummarizerResult() throws Exception {
+        ActivitySummary aggregated = new ActivitySummary();
+        aggregated.addEvents(7, "/api/quotes", "200", null, null, false, null, false, null, false, null);
+        CloudWatchLogEmbeddingService service = new CloudWatchLogEmbeddingService(null, null,
+                serviceSourceWithoutEvents(), (userId, logGroupName, start, end) -> aggregated);
+
+        assertEquals(7, service.summarizeUserLogs("user-1", "/aws/app", 1).getLogCount());
+
+        CloudWatchLogEmbeddingService empty = new CloudWatchLogEmbeddingService(null, null,
+                serviceSourceWithoutEvents(), (userId, logGroupName, start, end) -> new ActivitySummary());
+        assertThrows(IllegalArgumentException.class, () -> empty.summarizeUserLogs("user-1", "/aws/app", 1));
+    }
+
+    private LogEventSource serviceSourceWithoutEvents() {
+        return new LogExportReplaySource(tempDir.resolve("missing"));
+    }
+
+    /**
+     * Log aggregate store keeping the JSON form in memory, with the DynamoDB store's version check.
+     */
+    private static class InMemoryLogAggregateStore implements LogAggregateStore {
+        final Map<String, String> json = new HashMap<>();
+        final Map<String, Long> versions = new HashMap<>();
+
+        @Override
+        public UserLogAggregates load(String userId, String logGroupName) {
+            String key = userId + " " + logGroupName;
+            if (!json.containsKey(key)) {
+                return null;
+            }
+            UserLogAggregates aggregates = UserLogAggregates.fromJson(json.get(key), new LogClassifier());
+            aggregates.setVersion(versions.get(key));
+            return aggregates;
+        }
+
+        @Override
+        public boolean save(String userId, String logGroupName, UserLogAggregates aggregates) {
+            String key = userId + " " + logGroupName;
+            if (versions.getOrDefault(key, 0L) != aggregates.getVersion()) {
+                return false;
+            }
+            json.put(key, aggregates.toJson());
+            versions.put(key, aggregates.getVersion() + 1);
+            aggregates.setVersion(aggregates.getVersion() + 1);
+            return true;
+        }
+    }
+
+    @Test
+    public void testRefreshesLogAggregatesIncrementally() {
+        String[] messages = {
+            "[INFO] userId: user-1 click submit button on order form via web",
+            "[INFO] userId: user-1 click submit button on order form via web",
+            "[INFO] userId: user-1 navigate to page /orders",
+            "[INFO] userId: user-1 navigate to page /quotes",
+            "[INFO] userId: user-1 switched channel to mobile",
+            "[INFO] userId: user-1 opened desktop app",
+            "[ERROR] Exception in OrderService for userId: user-1",
+            "{\"path\":\"/api/orders\",\"statusCode\":\"201\",\"userId\":\"user-1\"}",
+            "[INFO] Trade: userId: user-1 symbol: AAPL action: BUY quantity: 10 price: 100.00 orderType: MARKET status: FILLED"
+        };
+        Random random = new Random(7);
+        long now = System.currentTimeMillis();
+        List<LogEvent> events = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            events.add(new LogEvent(messages[random.nextInt(messages.length)], now - 5400000L + i * 10000L, "event-" + i));
+        }
+
+        // Events become visible over time; count how many each refresh reads
+        long[] visibleUntil = {now - 3600000L};
+        AtomicInteger read = new AtomicInteger();
+        LogEventSource source = (userId, logGroupName, start, end) -> events.stream()
+                .filter(event -> event.getTimestamp() >= start && event.getTimestamp() <= Math.min(end, visibleUntil[0]))
+                .peek(event -> read.incrementAndGet());
+        InMemoryLogAggregateStore store = new InMemoryLogAggregateStore();
+        CloudWatchLogEmbeddingService service = new CloudWatchLogEmbeddingService(null, null, source, null, store);
+
+        service.summarizeUserLogs("user-1", "/aws/app", 2);
+        int firstRead = read.getAndSet(0);
+        visibleUntil[0] = now;
+        ActivitySummary summary = service.summarizeUserLogs("user-1", "/aws/app", 2);
+        // Only the events after the checkpoint, plus the one at it, are read again
+        assertEquals(events.size() - firstRead + 1, read.get());
+        assertEquals(2L, (long) store.versions.get("user-1 /aws/app"));
+
+        List<LogFeatures> logs = events.stream()
+                .map(event -> new LogClassifier().classify(event.getMessage(), event.getTimestamp()))
+                .collect(Collectors.toList());
+        ActivitySummary full = new ActivitySummary();
+        logs.forEach(full);
+        assertEquals(full.getLogCount(), summary.getLogCount());
+        assertEquals(full.apiPathCounts, summary.apiPathCounts);
+        assertEquals(full.errorCounts, summary.errorCounts);
+        assertEquals(full.tradingActivityCounts, summary.tradingActivityCounts);
+        assertEquals(full.successfulRequests, summary.successfulRequests);
+
+        // The effort counters carried across refreshes match a full recomputation
+        long windowStart = System.currentTimeMillis() - 2 * 3600000L;
+        UserLogAggregates.EffortCounts counts = store.load("user-1", "/aws/app").effortCounts(windowStart);
+        Map<String, Object> expected = service.analyzeClientEffort(logs);
+        assertEquals(expected.get("error_count"), counts.errors);
+        assertEquals(expected.get("repeated_click_count"), counts.repeatedClicks);
+        assertEquals(expected.get("back_forth_navigation_count"), counts.backForthNavigations);
+        assertEquals(expected.get("channel_switch_count"), counts.channelSwitches);
+        assertEquals(events.size(), counts.logCount);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSnapshotReadsLogsOnceForEveryAnalysis() throws Exception {
+        Path export = tempDir.resolve("export.log");
+        Files.write(export, List.of(
+                recent(10) + " [INFO] Trade: userId: user-1 symbol: AAPL action: BUY quantity: 10 price: 100.00 orderType: MARKET status: FILLED",
+                recent(9) + " [INFO] Compliance: userId: user-1 type: AML_CHECK status: PASSED ",
+                recent(8) + " {\"path\":\"/api/orders\",\"httpMethod\":\"POST\",\"statusCode\":\"201\",\"userId\":\"user-1\"}",
+                recent(7) + " [ERROR] userId: user-1 click submit failed on web",
+                recent(6) + " [INFO] userId: user-1 switched to mobile app"));
+        LogExportReplaySource replay = new LogExportReplaySource(export);
+        AtomicInteger reads = new AtomicInteger();
+        LogEventSource counting = (userId, logGroupName, start, end) -> {
+            reads.incrementAndGet();
+            return replay.events(userId, logGroupName, start, end);
+        };
+        CloudWatchLogEmbeddingService service = new CloudWatchLogEmbeddingService(null, null, counting);
+
+        CloudWatchLogEmbeddingService.LogSnapshot snapshot = service.snapshotUserLogs("user-1", "/aws/app", 1);
+        Map<String, Object> all = service.analyzeAll(snapshot);
+        Map<String, Object> behavior = service.analyzeUserBehavior(snapshot);
+        Map<String, Object> trading = service.analyzeTradingPatterns(snapshot);
+        Map<String, Object> compliance = service.analyzeCompliancePatterns(snapshot);
+        assertEquals(1, reads.get());
+        assertEquals(5, snapshot.getLogCount());
+        assertEquals("user-1", snapshot.getUserId());
+        assertEquals(3600000L, snapshot.getEndTime() - snapshot.getStartTime());
+
+        // The same views as reading the logs for each analysis
+        assertEquals(service.analyzeUserBehavior("user-1", "/aws/app", 1).get("api_paths"), behavior.get("api_paths"));
+        assertEquals(5, behavior.get("total_logs"));
+        assertEquals(1, trading.get("total_trading_logs"));
+        assertEquals(1, compliance.get("passed"));
+        assertEquals(behavior.get("status_codes"), ((Map<String, Object>) all.get("behavior_analysis")).get("status_codes"));
+        assertEquals(trading.get("successful_trades"), ((Map<String, Object>) all.get("trading_analysis")).get("successful_trades"));
+        assertEquals(compliance.get("passed"), ((Map<String, Object>) all.get("compliance_analysis")).get("passed"));
+        Map<String, Object> effort = (Map<String, Object>) all.get("client_effort_analysis");
+        assertEquals(service.analyzeClientEffort(List.of()).keySet(), effort.keySet());
+        assertEquals(1, effort.get("error_count"));
+        assertEquals(5, all.get("total_logs"));
+
+        assertThrows(IllegalArgumentException.class, () -> service.snapshotUserLogs("user-2", "/aws/app", 1));
+    }
+
+    @Test
+    public void testRejectsUserWithoutLogs() throws Exception {
+        CloudWatchLogEmbeddingService service = serviceReplaying(recent(1) + " [INFO] userId: user-2 hello");
+        assertThrows(IllegalArgumentException.class, () -> service.analyzeUserBehavior("user-1", "/aws/app", 1));
+    }
+}
@@ -0,0 +1,107 @@
+package com.sample.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.cloudwatchlogs.CloudWatchLogsClient;
+import software.amazon.awssdk.services.cloudwatchlogs.model.FilterLogEventsRequest;
+import software.amazon.awssdk.services.cloudwatchlogs.model.FilterLogEventsResponse;
+import software.amazon.awssdk.services.cloudwatchlogs.model.FilteredLogEvent;
+
+/**
+ * Tests for CloudWatchLogsEventSource, using a fake CloudWatch Logs client that serves fixed pages.
+ */
+public class CloudWatchLogsEventSourceTest {
+
+    /**
+     * Fake client that serves one page per call, chaining them with tokens "1", "2", ...
+     */
+    private static class FakeLogsClient implements CloudWatchLogsClient {
+        final List<List<String>> pages;
+        final List<FilterLogEventsRequest> requests = new ArrayList<>();
+
+        FakeLogsClient(List<List<String>> pages) {
+            this.pages = pages;
+        }
+
+        @Override
+        public FilterLogEventsResponse filterLogEvents(FilterLogEventsRequest request) {
+            requests.add(request);
+            int index = request.nextToken() == null ? 0 : Integer.parseInt(request.nextToken());
+            List<FilteredLogEvent> events = new ArrayList<>();
+            for (String message : pages.get(index)) {
+                events.add(FilteredLogEvent.builder().message(message).timestamp(1000L + index).eventId(message).build());
+            }
+            return FilterLogEventsResponse.builder()
+                    .events(events)
+                    .nextToken(index + 1 < pages.size() ? String.valueOf(index + 1) : null)
+                    .build();
+        }
+
+        @Override
+        public String serviceName() {
+            return "logs";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testFetchesPagesOnlyAsTheyAreConsumed() {
+        FakeLogsClient client = new FakeLogsClient(List.of(
+                List.of("a user-1", "b user-1"), List.of(), List.of("c user-1")));
+        CloudWatchLogsEventSource source = new CloudWatchLogsEventSource(client);
+
+        try (Stream<LogEvent> events = source.events("user-1", "/aws/lambda/orders", 10L, 20L)) {
+            Iterator<LogEvent> iterator = events.iterator();
+            assertEquals("a user-1", iterator.next().getMessage());
+            assertEquals(1, client.requests.size());
+            assertEquals("b user-1", iterator.next().getMessage());
+            assertEquals(1, client.requests.size());
+
+            // The empty second page is skipped over on the way to the third
+            LogEvent last = iterator.next();
+            assertEquals("c user-1", last.getMessage());
+            assertEquals(1002L, last.getTimestamp());
+            assertEquals(3, client.requests.size());
+            assertFalse(iterator.hasNext());
+        }
+
+        FilterLogEventsRequest first = client.requests.get(0);
+        assertEquals("/aws/lambda/orders", first.logGroupName());
+        assertEquals(10L, (long) first.startTime());
+        assertEquals(20L, (long) first.endTime());
+        assertEquals("\"user-1\"", first.filterPattern());
+        assertNull(first.nextToken());
+        assertEquals("2", client.requests.get(2).nextToken());
+    }
+
+    @Test
+    public void testFiltersLocallyWhenUserIdCannotBeQuoted() {
+        FakeLogsClient client = new FakeLogsClient(List.of(List.of("id a\"b here", "someone else")));
+        CloudWatchLogsEventSource source = new CloudWatchLogsEventSource(client);
+
+        try (Stream<LogEvent> events = source.events("a\"b", "group", 0L, 1L)) {
+            assertEquals(List.of("id a\"b here"), events.map(LogEvent::getMessage).collect(Collectors.toList()));
+        }
+        assertNull(client.requests.get(0).filterPattern());
+    }
+
+    @Test
+    public void testFilterPattern() {
+        assertEquals("\"user-1\"", CloudWatchLogsEventSource.filterPattern("user-1"));
+        assertNull(CloudWatchLogsEventSource.filterPattern(""));
+        assertNull(CloudWatchLogsEventSource.filterPattern(null));
+        assertNull(CloudWatchLogsEventSource.filterPattern("x\"y"));
+    }
+}
@@ -0,0 +1,125 @@
+package com.sample.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.sample.model.EmbeddingMetadata;
+import com.sample.model.EmbeddingVector;
+import com.sample.util.BloomFilter;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+
+/**
+ * Tests that reads for keys missing from the installed key filter never reach DynamoDB.
+ */
+public class EmbeddingKeyFilterTest {
+
+    @AfterEach
+    public void clearFilter() {
+        EmbeddingKeyFilter.clear();
+    }
+
+    private static class CountingDynamoDb implements DynamoDbClient {
+        final AtomicInteger calls = new AtomicInteger();
+        Runnable onScan = () -> { };
+
+        @Override
+        public GetItemResponse getItem(GetItemRequest request) {
+            calls.incrementAndGet();
+            return GetItemResponse.builder().build();
+        }
+
+        @Override
+        public ScanResponse scan(ScanRequest request) {
+            onScan.run();
+            return ScanResponse.builder().items(new ArrayList<>()).build();
+        }
+
+        @Override
+        public PutItemResponse putItem(PutItemRequest request) {
+            return PutItemResponse.builder().build();
+        }
+
+        @Override
+        public BatchGetItemResponse batchGetItem(BatchGetItemRequest request) {
+            calls.incrementAndGet();
+            return BatchGetItemResponse.builder().responses(Map.of()).build();
+        }
+
+        @Override
+        public String serviceName() {
+            return "dynamodb";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testDefinitelyAbsentKeysSkipTheNetwork() throws Exception {
+        BloomFilter filter = BloomFilter.create(1000, 0.001);
+        filter.put(EmbeddingKeyFilter.key("known", "interests"));
+        EmbeddingKeyFilter.install(filter, System.currentTimeMillis());
+
+        CountingDynamoDb dynamoDb = new CountingDynamoDb();
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb, null)) {
+            assertNull(service.getEmbeddingVector("never-embedded", "interests"));
+            assertEquals(0, dynamoDb.calls.get());
+
+            assertNull(service.getEmbeddingVector("known", "interests"));
+            assertEquals(1, dynamoDb.calls.get());
+
+            assertTrue(service.getEmbeddingVectors(List.of("a", "b", "c"), "interests").isEmpty());
+            assertEquals(1, dynamoDb.calls.get());
+        }
+    }
+
+    @Test
+    public void testExpiredFilterIsIgnored() throws Exception {
+        EmbeddingKeyFilter.install(BloomFilter.create(1000, 0.001), 0L);
+
+        CountingDynamoDb dynamoDb = new CountingDynamoDb();
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb, null)) {
+            assertNull(service.getEmbeddingVector("never-embedded", "interests"));
+            assertEquals(1, dynamoDb.calls.get());
+        }
+    }
+
+    @Test
+    public void testKeysStoredDuringRebuildAreKept() throws Exception {
+        EmbeddingKeyFilter.install(BloomFilter.create(1000, 0.001), System.currentTimeMillis());
+
+        CountingDynamoDb dynamoDb = new CountingDynamoDb();
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb, null)) {
+            // The scan has already passed this key's position when it is stored
+            dynamoDb.onScan = () -> {
+                try {
+                    service.storeEmbeddingWithMetadata("late", "interests", EmbeddingVector.of(new float[] {1f, 0f}),
+                            new EmbeddingMetadata("interests", "titan"));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            };
+            service.rebuildKeyFilter(1, 1000, 0.001);
+
+            assertTrue(EmbeddingKeyFilter.mightExist("late", "interests"));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.sample.service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.sample.model.BatchEmbeddingResult;
+import com.sample.util.BedrockRateController;
+import com.sample.util.Deadline;
+import com.sample.util.EmbeddingCache;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.bedrockruntime.BedrockRuntimeAsyncClient;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelRequest;
+import software.amazon.awssdk.services.bedrockruntime.model.InvokeModelResponse;
+
+/**
+ * Tests for the batch embedding API of EmbeddingService, using a fake async Bedrock client.
+ */
+public class EmbeddingServiceBatchTest {
+
+    /**
+     * Fake client that answers after a short delay, echoes the input length as the vector,
+     * fails any input containing "fail" and never answers any input containing "hang".
+     * Records each request's API call timeout.
+     */
+    private static class FakeAsyncClient implements BedrockRuntimeAsyncClient {
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+        final List<Long> callTimeouts = new CopyOnWriteArrayList<>();
+
+        @Override
+        public CompletableFuture<InvokeModelResponse> invokeModel(InvokeModelRequest request) {
+            calls.incrementAndGet();
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            String body = request.body().asUtf8String();
+            callTimeouts.add(request.overrideConfiguration().get().apiCallTimeout().get().toMillis());
+            CompletableFuture<InvokeModelResponse> future = new CompletableFuture<>();
+            scheduler.schedule(() -> {
+                inFlight.decrementAndGet();
+                if (body.contains("hang")) {
+                    return;
+                } else if (body.contains("fail")) {
+                    future.completeExceptionally(new RuntimeException("model error"));
+                } else {
+                    String json = "{\"embeddingsByType\":{\"float\":[" + body.length() + ".0]}}";
+                    future.complete(InvokeModelResponse.builder().body(SdkBytes.fromUtf8String(json)).build());
+                }
+            }, 5, TimeUnit.MILLISECONDS);
+            return future;
+        }
+
+        @Override
+        public String serviceName() {
+            return "bedrock-runtime";
+        }
+
+        @Override
+        public void close() {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testResultsKeepInputOrderAndReportFailuresPerItem() throws Exception {
+        FakeAsyncClient client = new FakeAsyncClient();
+        EmbeddingService service = new EmbeddingService(null, client, new EmbeddingCache(100, 60),
+                new BedrockRateController(1000, 1000, 64, 3));
+        try {
+            List<BatchEmbeddingResult> results = service.generateEmbeddings(List.of("a", "please fail", "ccc"));
+
+            assertEquals(3, results.size());
+            assertTrue(results.get(0).isSuccess());
+            assertFalse(results.get(1).isSuccess());
+            assertTrue(results.get(2).isSuccess());
+            assertEquals(1, results.get(1).getIndex());
+            assertTrue(results.get(0).getEmbedding().get(0) < results.get(2).getEmbedding().get(0));
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testCancelledCallIsReportedAsAFailure() throws Exception {
+        FakeAsyncClient client = new FakeAsyncClient();
+        EmbeddingCache cache = new EmbeddingCache(100, 60);
+        EmbeddingService service = new EmbeddingService(null, client, cache,
+                new BedrockRateController(1000, 1000, 64, 3));
+        try {
+            CompletableFuture<List<BatchEmbeddingResult>> batch = service.generateEmbeddingsAsync(List.of("a", "hang"));
+            // Another caller waiting on the same single-flight load gives up on it
+            cache.getOrLoadAsync(EmbeddingCache.key(EmbeddingService.MODEL_ID, 1024, "hang"),
+                    () -> new CompletableFuture<>()).cancel(true);
+            List<BatchEmbeddingResult> results = batch.get(5, TimeUnit.SECONDS);
+
+            assertTrue(results.get(0).isSuccess());
+            assertFalse(results.get(1).isSuccess());
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testEveryCallIsBoundedByTheCallersDeadline() throws Exception {
+        FakeAsyncClient client = new FakeAsyncClient();
+        EmbeddingService service = new EmbeddingService(null, client, new EmbeddingCache(100, 60),
+                new BedrockRateController(1000, 1000, 64, 3));
+        try {
+            String[] texts = new String[40];
+            for (int i = 0; i < texts.length; i++) {
+                texts[i] = "user " + i;
+            }
+            CompletableFuture<List<BatchEmbeddingResult>> batch;
+            try (Deadline deadline = Deadline.start(4000)) {
+                batch = service.generateEmbeddingsAsync(List.of(texts));
+            }
+            batch.get(10, TimeUnit.SECONDS);
+
+            // Items past the first lanes start on callback threads, which have no deadline of their own
+            assertEquals(40, client.callTimeouts.size());
+            for (long timeout : client.callTimeouts) {
+                assertTrue(timeout < 4000, "call not bounded by the deadline: " + timeout);
+            }
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testInFlightLimitAndCacheReuse() throws Exception {
+        FakeAsyncClient client = new FakeAsyncClient();
+        EmbeddingService service = new EmbeddingService(null, client, new EmbeddingCache(1000, 60),
+                new BedrockRateController(1000, 1000, 64, 3));
+        try {
+            String[] texts = new String[200];
+            for (int i = 0; i < texts.length; i++) {
+                texts[i] = "user " + (i % 50);
+            }
+            List<BatchEmbeddingResult> results = service.generateEmbeddingsAsync(List.of(texts)).get(10, TimeUnit.SECONDS);
+
+            assertEquals(200, results.size());
+            for (BatchEmbeddingResult result : results) {
+                assertTrue(result.isSuccess());
+            }
+            assertEquals(50, client.calls.get());
+            assertTrue(client.maxInFlight.get() <= 16, "in-flight limit exceeded: " + client.maxInFlight.get());
+        } finally {
+            client.close();
+        }
+    }
+}
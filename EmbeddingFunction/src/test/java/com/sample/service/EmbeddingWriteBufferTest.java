@@ -0,0 +1,297 @@
+package com.sample.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.awscore.exception.AwsErrorDetails;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.DynamoDbException;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+/**
+ * Tests for EmbeddingWriteBuffer, using a fake DynamoDB client.
+ */
+public class EmbeddingWriteBufferTest {
+
+    private static final String TABLE = "UserEmbeddings";
+
+    /**
+     * Fake client that records batch sizes and leaves the last item of the first
+     * `unprocessedRounds` calls unprocessed. `onWrite` runs at the start of every call, and
+     * `failure`, if set, is thrown for any batch containing an item with metadata "bad".
+     */
+    private static class FakeDynamoDb implements DynamoDbClient {
+        final List<Integer> batchSizes = new ArrayList<>();
+        final Map<String, Map<String, AttributeValue>> table = new HashMap<>();
+        int unprocessedRounds = 0;
+        Runnable onWrite = () -> { };
+        RuntimeException failure;
+
+        @Override
+        public synchronized BatchWriteItemResponse batchWriteItem(BatchWriteItemRequest request) {
+            onWrite.run();
+            List<WriteRequest> writes = request.requestItems().get(TABLE);
+            batchSizes.add(writes.size());
+            if (failure != null && writes.stream()
+                    .anyMatch(write -> "bad".equals(write.putRequest().item().get("metadata").s()))) {
+                throw failure;
+            }
+            int accepted = writes.size();
+            List<WriteRequest> unprocessed = new ArrayList<>();
+            if (unprocessedRounds > 0) {
+                unprocessedRounds--;
+                accepted--;
+                unprocessed.add(writes.get(accepted));
+            }
+            for (int i = 0; i < accepted; i++) {
+                Map<String, AttributeValue> item = writes.get(i).putRequest().item();
+                table.put(EmbeddingWriteBuffer.itemKey(item), item);
+            }
+            return BatchWriteItemResponse.builder()
+                    .unprocessedItems(unprocessed.isEmpty() ? Map.of() : Map.of(TABLE, unprocessed))
+                    .build();
+        }
+
+        @Override
+        public String serviceName() {
+            return "dynamodb";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static Map<String, AttributeValue> item(String userId, String type, String value) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("user_id", AttributeValue.builder().s(userId).build());
+        item.put("embedding_type", AttributeValue.builder().s(type).build());
+        item.put("metadata", AttributeValue.builder().s(value).build());
+        return item;
+    }
+
+    @Test
+    public void testWritesFullBatchesOfTwentyFiveAndFlushesTheRest() {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        EmbeddingWriteBuffer buffer = new EmbeddingWriteBuffer(dynamoDb, null, TABLE, 25, 0, 3);
+
+        for (int i = 0; i < 60; i++) {
+            buffer.add(item("user-" + i, "interests", "v"));
+        }
+        assertEquals(List.of(25, 25), dynamoDb.batchSizes);
+        assertEquals(10, buffer.pendingCount());
+
+        buffer.close();
+        assertEquals(List.of(25, 25, 10), dynamoDb.batchSizes);
+        assertEquals(60, dynamoDb.table.size());
+        assertEquals(60, buffer.getItemsWritten());
+        assertThrows(IllegalStateException.class, () -> buffer.add(item("late", "interests", "v")));
+    }
+
+    @Test
+    public void testLatestWriteWinsAndPendingItemsAreReadable() {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        EmbeddingWriteBuffer buffer = new EmbeddingWriteBuffer(dynamoDb, null, TABLE, 25, 0, 3);
+
+        buffer.add(item("u1", "interests", "old"));
+        buffer.add(item("u1", "interests", "new"));
+        buffer.add(item("u1", "behavior", "b"));
+
+        assertEquals(2, buffer.pendingCount());
+        assertEquals("new", buffer.getPending("u1", "interests").get("metadata").s());
+        assertNull(buffer.getPending("u2", "interests"));
+
+        buffer.flush();
+        assertEquals(List.of(2), dynamoDb.batchSizes);
+        assertNull(buffer.getPending("u1", "interests"));
+        assertEquals("new", dynamoDb.table.get("u1\0interests").get("metadata").s());
+    }
+
+    @Test
+    public void testInFlightItemsStayReadableUntilWritten() {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        dynamoDb.unprocessedRounds = 1;
+        EmbeddingWriteBuffer buffer = new EmbeddingWriteBuffer(dynamoDb, null, TABLE, 25, 0, 3);
+        List<String> seen = new ArrayList<>();
+        // u2 is left unprocessed by the first call and retried after a backoff
+        dynamoDb.onWrite = () -> {
+            Map<String, AttributeValue> pending = buffer.getPending("u2", "interests");
+            seen.add(pending != null ? pending.get("metadata").s() : null);
+        };
+
+        buffer.add(item("u1", "interests", "a"));
+        buffer.add(item("u2", "interests", "b"));
+        buffer.flush();
+
+        assertEquals(List.of("b", "b"), seen);
+        assertNull(buffer.getPending("u2", "interests"));
+        assertEquals(0, buffer.pendingCount());
+    }
+
+    @Test
+    public void testRetriesUnprocessedItems() {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        dynamoDb.unprocessedRounds = 2;
+        EmbeddingWriteBuffer buffer = new EmbeddingWriteBuffer(dynamoDb, null, TABLE, 25, 0, 3);
+
+        for (int i = 0; i < 5; i++) {
+            buffer.add(item("user-" + i, "interests", "v"));
+        }
+        buffer.flush();
+
+        assertEquals(List.of(5, 1, 1), dynamoDb.batchSizes);
+        assertEquals(5, dynamoDb.table.size());
+        assertEquals(2, buffer.getRetryCount());
+        assertEquals(0, buffer.pendingCount());
+    }
+
+    @Test
+    public void testItemsStayBufferedWhenRetriesAreExhausted() {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        dynamoDb.unprocessedRounds = 10;
+        EmbeddingWriteBuffer buffer = new EmbeddingWriteBuffer(dynamoDb, null, TABLE, 25, 0, 1);
+
+        buffer.add(item("u1", "interests", "a"));
+        buffer.add(item("u2", "interests", "b"));
+        assertThrows(RuntimeException.class, buffer::flush);
+
+        assertEquals(1, buffer.pendingCount());
+        assertNotNull(buffer.getPending("u2", "interests"));
+
+        dynamoDb.unprocessedRounds = 0;
+        buffer.flush();
+        assertEquals(2, dynamoDb.table.size());
+    }
+
+    @Test
+    public void testBackgroundFlushWritesAfterInterval() throws Exception {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        EmbeddingWriteBuffer buffer = new EmbeddingWriteBuffer(dynamoDb, null, TABLE, 25, 20, 3);
+        try {
+            buffer.add(item("u1", "interests", "v"));
+            long deadline = System.currentTimeMillis() + 2000;
+            while (buffer.pendingCount() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, buffer.pendingCount());
+            assertEquals(1, dynamoDb.table.size());
+        } finally {
+            buffer.close();
+        }
+    }
+
+    @Test
+    public void testInterruptedBackoffKeepsUnprocessedItems() throws Exception {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        dynamoDb.unprocessedRounds = 1;
+        EmbeddingWriteBuffer buffer = new EmbeddingWriteBuffer(dynamoDb, null, TABLE, 25, 0, 3);
+        buffer.add(item("u1", "interests", "a"));
+        buffer.add(item("u2", "interests", "b"));
+
+        // The flush is interrupted while backing off before retrying u2
+        Thread.currentThread().interrupt();
+        assertThrows(RuntimeException.class, buffer::flush);
+        assertTrue(Thread.interrupted());
+
+        assertEquals(1, buffer.pendingCount());
+        assertNotNull(buffer.getPending("u2", "interests"));
+        buffer.close();
+        assertEquals(2, dynamoDb.table.size());
+    }
+
+    @Test
+    public void testCloseWaitsForBackgroundFlushInBackoff() throws Exception {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        dynamoDb.unprocessedRounds = 3;
+        EmbeddingWriteBuffer buffer = new EmbeddingWriteBuffer(dynamoDb, null, TABLE, 25, 10, 8);
+        buffer.add(item("u1", "interests", "a"));
+        buffer.add(item("u2", "interests", "b"));
+        long deadline = System.currentTimeMillis() + 2000;
+        while (dynamoDb.batchSizes.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+
+        buffer.close();
+        assertEquals(2, dynamoDb.table.size());
+        assertEquals(0, buffer.pendingCount());
+    }
+
+    @Test
+    public void testListenerSeesItemsOnlyOnceWritten() {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        dynamoDb.unprocessedRounds = 1;
+        List<String> written = new ArrayList<>();
+        EmbeddingWriteBuffer buffer = new EmbeddingWriteBuffer(dynamoDb, null, TABLE, 25, 0, 3,
+                items -> items.forEach(item -> {
+                    assertTrue(dynamoDb.table.containsKey(EmbeddingWriteBuffer.itemKey(item)));
+                    written.add(item.get("user_id").s());
+                }));
+
+        buffer.add(item("u1", "interests", "a"));
+        buffer.add(item("u2", "interests", "b"));
+        assertTrue(written.isEmpty());
+
+        buffer.flush();
+        // u2 was left unprocessed by the first call and reported after the retry
+        assertEquals(List.of("u1", "u2"), written);
+    }
+
+    @Test
+    public void testAddDoesNotThrowWhenAFullBatchFails() {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        dynamoDb.failure = ProvisionedThroughputExceededException.builder()
+                .statusCode(400)
+                .awsErrorDetails(AwsErrorDetails.builder().errorCode("ProvisionedThroughputExceededException").build())
+                .message("throttled")
+                .build();
+        EmbeddingWriteBuffer buffer = new EmbeddingWriteBuffer(dynamoDb, null, TABLE, 2, 0, 3);
+
+        buffer.add(item("u1", "interests", "bad"));
+        buffer.add(item("u2", "interests", "b"));
+
+        assertEquals(2, buffer.pendingCount());
+        assertEquals("bad", buffer.getPending("u1", "interests").get("metadata").s());
+        assertThrows(RuntimeException.class, buffer::flush);
+        assertEquals(2, buffer.pendingCount());
+
+        dynamoDb.failure = null;
+        buffer.flush();
+        assertEquals(2, dynamoDb.table.size());
+    }
+
+    @Test
+    public void testPermanentlyRejectedItemsAreDroppedAndReported() {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        dynamoDb.failure = DynamoDbException.builder().statusCode(400).message("Item size has exceeded the maximum").build();
+        List<String> written = new ArrayList<>();
+        EmbeddingWriteBuffer buffer = new EmbeddingWriteBuffer(dynamoDb, null, TABLE, 25, 0, 3,
+                items -> items.forEach(item -> written.add(item.get("user_id").s())));
+
+        buffer.add(item("u1", "interests", "a"));
+        buffer.add(item("u2", "interests", "bad"));
+        buffer.add(item("u3", "interests", "c"));
+        assertThrows(RuntimeException.class, buffer::flush);
+
+        // The good items are written one by one; the bad one is no longer served
+        assertEquals(List.of("u1", "u3"), written);
+        assertNull(buffer.getPending("u2", "interests"));
+        assertEquals(0, buffer.pendingCount());
+        assertEquals(1, buffer.getItemsFailed());
+
+        // Reported once
+        buffer.flush();
+    }
+}
@@ -0,0 +1,170 @@
+package com.sample.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.sample.model.EmbeddingMetadata;
+import com.sample.model.EmbeddingVector;
+import com.sample.model.StoredEmbedding;
+import com.sample.util.EmbeddingCodec;
+import com.sample.util.JsonUtils;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+/**
+ * Tests for the non-blocking *Async methods of EnhancedDynamoDBService.
+ */
+public class EnhancedDynamoDBServiceAsyncTest {
+
+    /**
+     * In-memory async table keyed by user_id and embedding_type. A hung client never completes.
+     */
+    private static class FakeAsyncDynamoDb implements DynamoDbAsyncClient {
+        final Map<String, Map<String, AttributeValue>> items = new HashMap<>();
+        final AtomicInteger calls = new AtomicInteger();
+        final boolean hung;
+
+        FakeAsyncDynamoDb(boolean hung) {
+            this.hung = hung;
+        }
+
+        private static String key(Map<String, AttributeValue> item) {
+            return item.get("user_id").s() + '\0' + item.get("embedding_type").s();
+        }
+
+        @Override
+        public CompletableFuture<PutItemResponse> putItem(PutItemRequest request) {
+            calls.incrementAndGet();
+            if (hung) {
+                return new CompletableFuture<>();
+            }
+            synchronized (items) {
+                items.put(key(request.item()), request.item());
+            }
+            return CompletableFuture.completedFuture(PutItemResponse.builder().build());
+        }
+
+        @Override
+        public CompletableFuture<GetItemResponse> getItem(GetItemRequest request) {
+            calls.incrementAndGet();
+            if (hung) {
+                return new CompletableFuture<>();
+            }
+            synchronized (items) {
+                Map<String, AttributeValue> item = items.get(key(request.key()));
+                return CompletableFuture.completedFuture(GetItemResponse.builder().item(item).build());
+            }
+        }
+
+        @Override
+        public CompletableFuture<QueryResponse> query(QueryRequest request) {
+            calls.incrementAndGet();
+            // One item per page, so every page after the first uses the start key
+            String userId = request.expressionAttributeValues().get(":userId").s();
+            List<String> types = List.of("behavior", "interests");
+            int page = request.hasExclusiveStartKey() ? 1 : 0;
+            QueryResponse.Builder response = QueryResponse.builder();
+            synchronized (items) {
+                Map<String, AttributeValue> item = items.get(userId + '\0' + types.get(page));
+                response.items(item != null ? List.of(item) : List.of());
+            }
+            if (page == 0) {
+                response.lastEvaluatedKey(Map.of("page", AttributeValue.builder().n("1").build()));
+            }
+            return CompletableFuture.completedFuture(response.build());
+        }
+
+        @Override
+        public String serviceName() {
+            return "dynamodb";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static Map<String, AttributeValue> item(String userId, String type, float value) throws Exception {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("user_id", AttributeValue.builder().s(userId).build());
+        item.put("embedding_type", AttributeValue.builder().s(type).build());
+        item.put("embedding", EmbeddingCodec.toAttributeValue(EmbeddingVector.of(new float[] {value}), EmbeddingCodec.Format.BINARY));
+        item.put("metadata", AttributeValue.builder().s(JsonUtils.toJson(new EmbeddingMetadata(type, "titan"))).build());
+        item.put("created_at", AttributeValue.builder().s("1700000000000").build());
+        return item;
+    }
+
+    @Test
+    public void testStoreThenGet() throws Exception {
+        FakeAsyncDynamoDb asyncDynamoDb = new FakeAsyncDynamoDb(false);
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(null, null, asyncDynamoDb)) {
+            service.storeEmbeddingWithMetadataAsync("u1", "interests", EmbeddingVector.of(new float[] {1f, 2f}),
+                    new EmbeddingMetadata("interests", "titan")).get();
+
+            EmbeddingVector vector = service.getEmbeddingVectorAsync("u1", "interests").get();
+            assertArrayEquals(new float[] {1f, 2f}, vector.toFloatArray());
+            assertNull(service.getEmbeddingAsync("u2", "interests").get());
+        }
+    }
+
+    @Test
+    public void testHungDaxFallsBackToDynamoDbWithinDeadline() throws Exception {
+        FakeAsyncDynamoDb asyncDynamoDb = new FakeAsyncDynamoDb(false);
+        asyncDynamoDb.items.put("u1\0interests", item("u1", "interests", 3f));
+        FakeAsyncDynamoDb dax = new FakeAsyncDynamoDb(true);
+
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(null, dax, asyncDynamoDb)) {
+            EmbeddingVector vector = service.getEmbeddingVectorAsync("u1", "interests", 400).get();
+            assertArrayEquals(new float[] {3f}, vector.toFloatArray());
+            assertEquals(1, dax.calls.get());
+        }
+    }
+
+    @Test
+    public void testDeadlineFailsHungCalls() throws Exception {
+        FakeAsyncDynamoDb asyncDynamoDb = new FakeAsyncDynamoDb(true);
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(null, null, asyncDynamoDb)) {
+            ExecutionException read = assertThrows(ExecutionException.class,
+                    () -> service.getEmbeddingVectorAsync("u1", "interests", 50).get());
+            assertTrue(read.getCause() instanceof TimeoutException);
+
+            ExecutionException write = assertThrows(ExecutionException.class,
+                    () -> service.storeEmbeddingWithMetadataAsync("u1", "interests", EmbeddingVector.of(new float[] {1f}),
+                            new EmbeddingMetadata("interests", "titan"), 50).get());
+            assertTrue(write.getCause() instanceof TimeoutException);
+        }
+    }
+
+    @Test
+    public void testGetAllEmbeddingsFollowsPages() throws Exception {
+        FakeAsyncDynamoDb asyncDynamoDb = new FakeAsyncDynamoDb(false);
+        asyncDynamoDb.items.put("u1\0behavior", item("u1", "behavior", 1f));
+        asyncDynamoDb.items.put("u1\0interests", item("u1", "interests", 2f));
+
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(null, null, asyncDynamoDb)) {
+            Map<String, StoredEmbedding> all = service.getAllEmbeddingsAsync("u1", null).get();
+            assertEquals(2, all.size());
+            assertArrayEquals(new float[] {2f}, all.get("interests").getVector().toFloatArray());
+            assertEquals(2, asyncDynamoDb.calls.get());
+        }
+    }
+}
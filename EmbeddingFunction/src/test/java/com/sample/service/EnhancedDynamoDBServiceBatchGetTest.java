@@ -0,0 +1,217 @@
+package com.sample.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.sample.model.EmbeddingVector;
+import com.sample.util.Deadline;
+import com.sample.util.EmbeddingCodec;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+
+/**
+ * Tests for the multi-user BatchGetItem read path of EnhancedDynamoDBService.
+ */
+public class EnhancedDynamoDBServiceBatchGetTest {
+
+    private static final String TABLE = "UserEmbeddings";
+
+    /**
+     * In-memory table that answers BatchGetItem and leaves the last key of the first
+     * `unprocessedRounds` calls unprocessed.
+     */
+    private static class FakeTable {
+        final Map<String, Map<String, AttributeValue>> items = new HashMap<>();
+        final List<Integer> requestSizes = new ArrayList<>();
+        final List<BatchGetItemRequest> requests = new ArrayList<>();
+        int unprocessedRounds = 0;
+
+        synchronized BatchGetItemResponse batchGetItem(BatchGetItemRequest request) {
+            List<Map<String, AttributeValue>> keys = request.requestItems().get(TABLE).keys();
+            requests.add(request);
+            requestSizes.add(keys.size());
+            int served = keys.size();
+            Map<String, KeysAndAttributes> unprocessed = Map.of();
+            if (unprocessedRounds > 0) {
+                unprocessedRounds--;
+                served--;
+                unprocessed = Map.of(TABLE, KeysAndAttributes.builder().keys(keys.get(served)).build());
+            }
+            List<Map<String, AttributeValue>> found = new ArrayList<>();
+            for (Map<String, AttributeValue> key : keys.subList(0, served)) {
+                Map<String, AttributeValue> item = items.get(key.get("user_id").s() + "/" + key.get("embedding_type").s());
+                if (item != null) {
+                    found.add(item);
+                }
+            }
+            return BatchGetItemResponse.builder()
+                    .responses(Map.of(TABLE, found))
+                    .unprocessedKeys(unprocessed)
+                    .build();
+        }
+
+        void put(String userId, String type, float value) {
+            Map<String, AttributeValue> item = new HashMap<>();
+            item.put("user_id", AttributeValue.builder().s(userId).build());
+            item.put("embedding_type", AttributeValue.builder().s(type).build());
+            item.put("embedding", AttributeValue.builder()
+                    .b(SdkBytes.fromByteArray(EmbeddingCodec.encode(EmbeddingVector.of(new float[] {value, 1f}))))
+                    .build());
+            items.put(userId + "/" + type, item);
+        }
+    }
+
+    private static DynamoDbClient dynamoDb(FakeTable table) {
+        return new DynamoDbClient() {
+            @Override
+            public BatchGetItemResponse batchGetItem(BatchGetItemRequest request) {
+                return table.batchGetItem(request);
+            }
+
+            @Override
+            public String serviceName() {
+                return "dynamodb";
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static DynamoDbAsyncClient dax(FakeTable table) {
+        return new DynamoDbAsyncClient() {
+            @Override
+            public CompletableFuture<BatchGetItemResponse> batchGetItem(BatchGetItemRequest request) {
+                return CompletableFuture.completedFuture(table.batchGetItem(request));
+            }
+
+            @Override
+            public String serviceName() {
+                return "dax";
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Test
+    public void testChunksOfOneHundredAndOmitsMissingUsers() throws Exception {
+        FakeTable table = new FakeTable();
+        List<String> userIds = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            userIds.add("user-" + i);
+            if (i % 5 != 0) {
+                table.put("user-" + i, "interests", i);
+            }
+        }
+        userIds.add("user-1");
+
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb(table), null)) {
+            Map<String, double[]> embeddings = service.getEmbeddings(userIds, "interests");
+
+            assertEquals(200, embeddings.size());
+            assertArrayEquals(new double[] {7, 1}, embeddings.get("user-7"), 0.0);
+            assertFalse(embeddings.containsKey("user-5"));
+            assertEquals(List.of(100, 100, 50), table.requestSizes.stream().sorted((a, b) -> b - a).toList());
+        }
+    }
+
+    @Test
+    public void testReadsDaxFirstAndOnlyMissesFromDynamoDb() throws Exception {
+        FakeTable cache = new FakeTable();
+        FakeTable table = new FakeTable();
+        cache.put("a", "behavior", 1);
+        table.put("a", "behavior", 99);
+        table.put("b", "behavior", 2);
+
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb(table), dax(cache))) {
+            Map<String, EmbeddingVector> embeddings = service.getEmbeddingVectors(List.of("a", "b", "c"), "behavior");
+
+            assertEquals(2, embeddings.size());
+            assertEquals(1f, embeddings.get("a").get(0), 0f);
+            assertEquals(2f, embeddings.get("b").get(0), 0f);
+            assertEquals(List.of(2), table.requestSizes);
+        }
+    }
+
+    @Test
+    public void testFallsBackToDynamoDbWhenDaxHangs() throws Exception {
+        FakeTable table = new FakeTable();
+        table.put("a", "behavior", 1);
+        DynamoDbAsyncClient hungDax = new DynamoDbAsyncClient() {
+            @Override
+            public CompletableFuture<BatchGetItemResponse> batchGetItem(BatchGetItemRequest request) {
+                return new CompletableFuture<>();
+            }
+
+            @Override
+            public String serviceName() {
+                return "dax";
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb(table), hungDax)) {
+            long startedAt = System.currentTimeMillis();
+            Map<String, EmbeddingVector> embeddings = service.getEmbeddingVectors(List.of("a", "b"), "behavior");
+
+            assertEquals(1, embeddings.size());
+            assertEquals(1f, embeddings.get("a").get(0), 0f);
+            assertTrue(System.currentTimeMillis() - startedAt < 2000);
+        }
+    }
+
+    @Test
+    public void testRetriesUnprocessedKeys() throws Exception {
+        FakeTable table = new FakeTable();
+        table.put("a", "interests", 1);
+        table.put("b", "interests", 2);
+        table.put("c", "interests", 3);
+        table.unprocessedRounds = 2;
+
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb(table), null)) {
+            Map<String, EmbeddingVector> embeddings = service.getEmbeddingVectors(List.of("a", "b", "c"), "interests");
+
+            assertEquals(3, embeddings.size());
+            assertEquals(List.of(3, 1, 1), table.requestSizes);
+        }
+    }
+
+    @Test
+    public void testDynamoDbReadsGetASliceOfTheDeadline() throws Exception {
+        FakeTable table = new FakeTable();
+        table.put("a", "interests", 1);
+
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb(table), null);
+             Deadline deadline = Deadline.start(1500)) {
+            service.getEmbeddingVectors(List.of("a", "b"), "interests");
+
+            Duration timeout = table.requests.get(0).overrideConfiguration()
+                    .flatMap(config -> config.apiCallTimeout())
+                    .orElseThrow();
+            assertTrue(timeout.toMillis() > 0 && timeout.toMillis() <= 1000, "timeout " + timeout);
+        }
+    }
+}
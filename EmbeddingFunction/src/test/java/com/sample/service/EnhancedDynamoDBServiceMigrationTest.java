@@ -0,0 +1,80 @@
+package com.sample.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+import com.sample.util.EmbeddingCodec;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemResponse;
+
+/**
+ * Tests for the JSON-to-binary embedding migration of EnhancedDynamoDBService.
+ */
+public class EnhancedDynamoDBServiceMigrationTest {
+
+    /**
+     * Fake client whose single scan segment returns the legacy string items.
+     */
+    private static class FakeDynamoDb implements DynamoDbClient {
+        final List<Map<String, AttributeValue>> items = new ArrayList<>();
+        final List<UpdateItemRequest> updates = new ArrayList<>();
+
+        @Override
+        public ScanResponse scan(ScanRequest request) {
+            return ScanResponse.builder().items(items).build();
+        }
+
+        @Override
+        public UpdateItemResponse updateItem(UpdateItemRequest request) {
+            updates.add(request);
+            return UpdateItemResponse.builder().build();
+        }
+
+        @Override
+        public String serviceName() {
+            return "dynamodb";
+        }
+
+        @Override
+        public void close() {
+        }
+
+        void put(String userId, String type, String embeddingJson) {
+            Map<String, AttributeValue> item = new HashMap<>();
+            item.put("user_id", AttributeValue.builder().s(userId).build());
+            item.put("embedding_type", AttributeValue.builder().s(type).build());
+            item.put("embedding", AttributeValue.builder().s(embeddingJson).build());
+            items.add(item);
+        }
+    }
+
+    @Test
+    public void testSkipsUnreadableItemsAndMigratesTheRest() throws Exception {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        dynamoDb.put("u1", "profile", "[0.5,-0.25]");
+        dynamoDb.put("u2", "profile", "not an embedding");
+        dynamoDb.put("u3", "behavior", "[1.0]");
+
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb, null)) {
+            assertEquals(2L, service.migrateEmbeddingsToBinary(1));
+        }
+
+        assertEquals(2, dynamoDb.updates.size());
+        UpdateItemRequest first = dynamoDb.updates.get(0);
+        assertEquals("u1", first.key().get("user_id").s());
+        assertArrayEquals(new float[] {0.5f, -0.25f},
+                EmbeddingCodec.fromAttributeValue(first.expressionAttributeValues().get(":binary")).toFloatArray(), 0f);
+        assertEquals("u3", dynamoDb.updates.get(1).key().get("user_id").s());
+    }
+}
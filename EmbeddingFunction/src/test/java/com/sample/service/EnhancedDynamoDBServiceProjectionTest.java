@@ -0,0 +1,117 @@
+package com.sample.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.sample.model.EmbeddingMetadata;
+import com.sample.model.EmbeddingVector;
+import com.sample.model.StoredEmbedding;
+import com.sample.util.EmbeddingCodec;
+import com.sample.util.JsonUtils;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchGetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.KeysAndAttributes;
+
+/**
+ * Tests that vector reads project away the metadata and that metadata is decoded lazily.
+ */
+public class EnhancedDynamoDBServiceProjectionTest {
+
+    /**
+     * Fake client holding one full item, which applies projection expressions to its answers.
+     */
+    private static class FakeDynamoDb implements DynamoDbClient {
+        final Map<String, AttributeValue> item = new HashMap<>();
+        final List<String> projections = new ArrayList<>();
+
+        FakeDynamoDb() throws Exception {
+            item.put("user_id", AttributeValue.builder().s("u1").build());
+            item.put("embedding_type", AttributeValue.builder().s("interests").build());
+            item.put("embedding", EmbeddingCodec.toAttributeValue(EmbeddingVector.of(new float[] {1f, 2f}), EmbeddingCodec.Format.BINARY));
+            item.put("metadata", AttributeValue.builder().s(JsonUtils.toJson(new EmbeddingMetadata("interests", "titan"))).build());
+            item.put("created_at", AttributeValue.builder().s("1700000000000").build());
+        }
+
+        private Map<String, AttributeValue> project(String projection) {
+            projections.add(projection);
+            if (projection == null) {
+                return item;
+            }
+            Map<String, AttributeValue> projected = new HashMap<>();
+            for (String name : projection.split(",")) {
+                AttributeValue value = item.get(name.trim());
+                if (value != null) {
+                    projected.put(name.trim(), value);
+                }
+            }
+            return projected;
+        }
+
+        @Override
+        public GetItemResponse getItem(GetItemRequest request) {
+            return GetItemResponse.builder().item(project(request.projectionExpression())).build();
+        }
+
+        @Override
+        public BatchGetItemResponse batchGetItem(BatchGetItemRequest request) {
+            KeysAndAttributes keys = request.requestItems().get("UserEmbeddings");
+            return BatchGetItemResponse.builder()
+                    .responses(Map.of("UserEmbeddings", List.of(project(keys.projectionExpression()))))
+                    .build();
+        }
+
+        @Override
+        public String serviceName() {
+            return "dynamodb";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testVectorReadsSkipMetadata() throws Exception {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb, null)) {
+            assertArrayEquals(new float[] {1f, 2f}, service.getEmbeddingVector("u1", "interests").toFloatArray());
+            assertEquals(1, service.getEmbeddingVectors(List.of("u1"), "interests").size());
+
+            assertEquals(2, dynamoDb.projections.size());
+            for (String projection : dynamoDb.projections) {
+                assertTrue(projection.contains("embedding"));
+                assertFalse(projection.contains("metadata"));
+            }
+        }
+    }
+
+    @Test
+    public void testMetadataReadsFetchTheWholeItem() throws Exception {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb, null)) {
+            StoredEmbedding stored = service.getStoredEmbedding("u1", "interests");
+            assertNull(dynamoDb.projections.get(0));
+            assertTrue(stored.hasMetadata());
+            assertEquals(1700000000000L, stored.getCreatedAt());
+            assertEquals("interests", stored.getMetadata().getSourceType());
+
+            Map<String, Object> withMetadata = service.getEmbeddingWithMetadata("u1", "interests");
+            assertEquals("titan", ((EmbeddingMetadata) withMetadata.get("metadata")).getModelId());
+            assertEquals("1700000000000", withMetadata.get("created_at"));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.sample.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.sample.model.EmbeddingMetadata;
+import com.sample.model.EmbeddingVector;
+import com.sample.model.StoredEmbedding;
+import com.sample.util.EmbeddingCodec;
+import com.sample.util.JsonUtils;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+/**
+ * Tests for the single-Query getAllEmbeddings read path of EnhancedDynamoDBService.
+ */
+public class EnhancedDynamoDBServiceQueryTest {
+
+    /**
+     * Fake client that serves a user's items two per page, sorted by embedding_type.
+     */
+    private static class FakeDynamoDb implements DynamoDbClient {
+        final List<Map<String, AttributeValue>> items = new ArrayList<>();
+        final List<QueryRequest> requests = new ArrayList<>();
+
+        @Override
+        public QueryResponse query(QueryRequest request) {
+            requests.add(request);
+            int start = 0;
+            if (request.hasExclusiveStartKey()) {
+                start = Integer.parseInt(request.exclusiveStartKey().get("page").n());
+            }
+            int end = Math.min(items.size(), start + 2);
+            QueryResponse.Builder response = QueryResponse.builder().items(items.subList(start, end));
+            if (end < items.size()) {
+                response.lastEvaluatedKey(Map.of("page", AttributeValue.builder().n(String.valueOf(end)).build()));
+            }
+            return response.build();
+        }
+
+        @Override
+        public String serviceName() {
+            return "dynamodb";
+        }
+
+        @Override
+        public void close() {
+        }
+
+        void put(String type, float value) throws Exception {
+            Map<String, AttributeValue> item = new HashMap<>();
+            item.put("user_id", AttributeValue.builder().s("u1").build());
+            item.put("embedding_type", AttributeValue.builder().s(type).build());
+            item.put("embedding", EmbeddingCodec.toAttributeValue(EmbeddingVector.of(new float[] {value}), EmbeddingCodec.Format.BINARY));
+            item.put("metadata", AttributeValue.builder().s(JsonUtils.toJson(new EmbeddingMetadata(type, "titan"))).build());
+            item.put("created_at", AttributeValue.builder().s("1700000000000").build());
+            items.add(item);
+        }
+    }
+
+    private static FakeDynamoDb tableWithFiveTypes() throws Exception {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        dynamoDb.put("behavior", 1);
+        dynamoDb.put("client_effort", 2);
+        dynamoDb.put("cloudwatch_logs", 3);
+        dynamoDb.put("financial_profile", 4);
+        dynamoDb.put("interests", 5);
+        return dynamoDb;
+    }
+
+    @Test
+    public void testReturnsEveryTypeAcrossPages() throws Exception {
+        FakeDynamoDb dynamoDb = tableWithFiveTypes();
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb, null)) {
+            Map<String, StoredEmbedding> all = service.getAllEmbeddings("u1");
+
+            assertEquals(5, all.size());
+            assertEquals(3, dynamoDb.requests.size());
+            StoredEmbedding interests = all.get("interests");
+            assertEquals(5f, interests.getVector().get(0), 0f);
+            assertEquals("interests", interests.getMetadata().getSourceType());
+            assertEquals(1700000000000L, interests.getCreatedAt());
+        }
+    }
+
+    @Test
+    public void testNarrowsSortKeyRangeToRequestedTypes() throws Exception {
+        FakeDynamoDb dynamoDb = tableWithFiveTypes();
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb, null)) {
+            Map<String, StoredEmbedding> some = service.getAllEmbeddings("u1", List.of("interests", "behavior"));
+
+            assertEquals(List.of("behavior", "interests"), new ArrayList<>(some.keySet()));
+            QueryRequest request = dynamoDb.requests.get(0);
+            assertTrue(request.keyConditionExpression().contains("BETWEEN"));
+            assertEquals("behavior", request.expressionAttributeValues().get(":firstType").s());
+            assertEquals("interests", request.expressionAttributeValues().get(":lastType").s());
+        }
+    }
+}
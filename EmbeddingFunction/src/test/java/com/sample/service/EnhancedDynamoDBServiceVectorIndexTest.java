@@ -0,0 +1,300 @@
+package com.sample.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.sample.index.AttributeFilter;
+import com.sample.index.VectorIndex;
+import com.sample.index.VectorIndexRegistry;
+import com.sample.model.EmbeddingMetadata;
+import com.sample.model.EmbeddingVector;
+import com.sample.util.Deadline;
+import com.sample.util.EmbeddingCodec;
+import com.sample.util.UserAttributeFormatter;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.ScanRequest;
+import software.amazon.awssdk.services.dynamodb.model.ScanResponse;
+
+/**
+ * Tests that similarity search builds the per-type vector index from a scan and keeps it current.
+ */
+public class EnhancedDynamoDBServiceVectorIndexTest {
+
+    /**
+     * Fake client whose scan returns the stored items of the filtered type, plus any item with
+     * profile attributes, one item per page. Put items are stored, replacing the user's item of
+     * the same type. Scans wait for `scanGate`, if set, to be opened, and run `onScan` once
+     * they have read the page they return.
+     */
+    private static class FakeDynamoDb implements DynamoDbClient {
+        final List<Map<String, AttributeValue>> items = new ArrayList<>();
+        final List<ScanRequest> scans = new ArrayList<>();
+        CountDownLatch scanGate;
+        Runnable onScan = () -> { };
+
+        Map<String, AttributeValue> add(String userId, String embeddingType, float... values) throws Exception {
+            Map<String, AttributeValue> item = new HashMap<>();
+            item.put("user_id", AttributeValue.builder().s(userId).build());
+            item.put("embedding_type", AttributeValue.builder().s(embeddingType).build());
+            item.put("embedding", EmbeddingCodec.toAttributeValue(EmbeddingVector.of(values), EmbeddingCodec.Format.BINARY));
+            items.add(item);
+            return item;
+        }
+
+        void addProfile(String userId, int age, String location, String plan, float... values) throws Exception {
+            Map<String, AttributeValue> item = add(userId, "profile", values);
+            item.put("age", AttributeValue.builder().n(String.valueOf(age)).build());
+            item.put("location", AttributeValue.builder().s(location).build());
+            item.put("subscription_plan", AttributeValue.builder().s(plan).build());
+        }
+
+        @Override
+        public synchronized ScanResponse scan(ScanRequest request) {
+            if (scanGate != null) {
+                try {
+                    scanGate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            scans.add(request);
+            assertEquals("embedding_type = :type OR attribute_exists(age) OR attribute_exists(#location)"
+                    + " OR attribute_exists(subscription_plan)", request.filterExpression());
+            String type = request.expressionAttributeValues().get(":type").s();
+            List<Map<String, AttributeValue>> matching = new ArrayList<>();
+            for (Map<String, AttributeValue> item : items) {
+                boolean hasProfile = item.containsKey("age") || item.containsKey("location")
+                        || item.containsKey("subscription_plan");
+                if (Math.floorMod(item.get("user_id").s().hashCode(), request.totalSegments()) == request.segment()
+                        && (item.get("embedding_type").s().equals(type) || hasProfile)) {
+                    matching.add(item);
+                }
+            }
+            int start = request.hasExclusiveStartKey()
+                    ? Integer.parseInt(request.exclusiveStartKey().get("index").n()) : 0;
+            ScanResponse.Builder response = ScanResponse.builder()
+                    .items(start < matching.size() ? List.of(matching.get(start)) : new ArrayList<>());
+            if (start + 1 < matching.size()) {
+                response.lastEvaluatedKey(Map.of("index", AttributeValue.builder().n(String.valueOf(start + 1)).build()));
+            }
+            onScan.run();
+            return response.build();
+        }
+
+        @Override
+        public synchronized PutItemResponse putItem(PutItemRequest request) {
+            Map<String, AttributeValue> stored = request.item();
+            items.removeIf(item -> item.get("user_id").equals(stored.get("user_id"))
+                    && item.get("embedding_type").equals(stored.get("embedding_type")));
+            items.add(stored);
+            return PutItemResponse.builder().build();
+        }
+
+        @Override
+        public String serviceName() {
+            return "dynamodb";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @AfterEach
+    public void clearIndexes() {
+        VectorIndexRegistry.clear();
+    }
+
+    @Test
+    public void testFindSimilarUsersBuildsIndexOncePerType() throws Exception {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        dynamoDb.add("u1", "interests", 1f, 0f);
+        dynamoDb.add("u2", "interests", 0.9f, 0.1f);
+        dynamoDb.add("u3", "interests", 0f, 1f);
+        dynamoDb.add("u4", "interests", 0.5f, 0.5f);
+        dynamoDb.add("u5", "behavior", 1f, 0f);
+
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb, null)) {
+            Map<String, Double> similar = service.findSimilarUsers("u1", EmbeddingVector.of(new float[] {1f, 0f}), "interests", 2);
+            assertEquals(List.of("u2", "u4"), new ArrayList<>(similar.keySet()));
+            assertTrue(similar.get("u2") > similar.get("u4"));
+            assertEquals(4, VectorIndexRegistry.get("interests").size());
+            for (ScanRequest scan : dynamoDb.scans) {
+                assertEquals("user_id, embedding_type, embedding, embedding_q8, age, #location, subscription_plan",
+                        scan.projectionExpression());
+                assertEquals("location", scan.expressionAttributeNames().get("#location"));
+            }
+
+            int scans = dynamoDb.scans.size();
+            service.findSimilarUsers("u3", EmbeddingVector.of(new float[] {0f, 1f}), "interests", 2);
+            assertEquals(scans, dynamoDb.scans.size());
+            assertSame(VectorIndexRegistry.get("interests"), service.getVectorIndex("interests"));
+        }
+    }
+
+    @Test
+    public void testStoredEmbeddingsJoinBuiltIndex() throws Exception {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        dynamoDb.add("u1", "interests", 1f, 0f);
+
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb, null)) {
+            service.storeEmbeddingWithMetadata("u9", "behavior", EmbeddingVector.of(new float[] {1f, 0f}),
+                    new EmbeddingMetadata("behavior", "titan"));
+            assertEquals(null, VectorIndexRegistry.get("behavior"));
+
+            service.getVectorIndex("interests");
+            service.storeEmbeddingWithMetadata("u2", "interests", EmbeddingVector.of(new float[] {1f, 0.1f}),
+                    new EmbeddingMetadata("interests", "titan"));
+
+            Map<String, Double> similar = service.findSimilarUsers("u1", EmbeddingVector.of(new float[] {1f, 0f}), "interests", 5);
+            assertEquals(List.of("u2"), new ArrayList<>(similar.keySet()));
+            assertFalse(similar.containsKey("u1"));
+        }
+    }
+
+    @Test
+    public void testEmbeddingsStoredDuringRebuildAreKept() throws Exception {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        dynamoDb.add("u1", "interests", 1f, 0f);
+
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb, null)) {
+            service.getVectorIndex("interests");
+            // Stored after the rebuild's scan has read the only page
+            dynamoDb.onScan = () -> {
+                dynamoDb.onScan = () -> { };
+                try {
+                    service.storeEmbeddingWithMetadata("u2", "interests", EmbeddingVector.of(new float[] {0.9f, 0.1f}),
+                            new EmbeddingMetadata("interests", "titan"));
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            };
+            VectorIndex rebuilt = service.buildVectorIndex("interests", 1);
+
+            assertSame(rebuilt, VectorIndexRegistry.get("interests"));
+            assertEquals(2, rebuilt.size());
+            assertEquals(List.of("u2"), new ArrayList<>(
+                    service.findSimilarUsers("u1", EmbeddingVector.of(new float[] {1f, 0f}), "interests", 5).keySet()));
+        }
+    }
+
+    @Test
+    public void testFilteredSearchReturnsFullTopK() throws Exception {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        dynamoDb.addProfile("p0", 30, "Seattle", "Premium", 1f, 0f);
+        dynamoDb.addProfile("p1", 31, "Seattle", "Free", 0.99f, 0.01f);
+        dynamoDb.addProfile("p2", 32, "Boston", "Premium", 0.98f, 0.02f);
+        dynamoDb.addProfile("p3", 45, "seattle ", "Premium", 0.5f, 0.5f);
+        dynamoDb.addProfile("p4", 33, "Seattle", "Premium", 0f, 1f);
+        dynamoDb.addProfile("p5", 29, "Seattle", "Premium", -1f, 0f);
+        dynamoDb.add("p4", "financial_profile", 1f, 0f);
+
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb, null)) {
+            EmbeddingVector query = EmbeddingVector.of(new float[] {1f, 0f});
+
+            // The three closest users all fail the filter; the search still fills maxResults
+            AttributeFilter premiumInSeattle = new AttributeFilter(null, 25, 50, "Seattle", "Premium");
+            Map<String, Double> similar = service.findSimilarUsers("p0", query, "profile", 3, premiumInSeattle);
+            assertEquals(List.of("p3", "p4", "p5"), new ArrayList<>(similar.keySet()));
+
+            AttributeFilter thirties = new AttributeFilter(null, 30, 39, null, null);
+            assertEquals(List.of("p1", "p2"),
+                    new ArrayList<>(service.findSimilarUsers("p0", query, "profile", 2, thirties).keySet()));
+
+            // Users with a financial profile embedding, which is only known once that index is built
+            service.getVectorIndex("financial_profile");
+            AttributeFilter withFinancialProfile = new AttributeFilter("financial_profile", null, null, null, null);
+            assertEquals(List.of("p4"),
+                    new ArrayList<>(service.findSimilarUsers("p0", query, "profile", 5, withFinancialProfile).keySet()));
+
+            AttributeFilter nobody = new AttributeFilter(null, null, null, "Tokyo", null);
+            assertTrue(service.findSimilarUsers("p0", query, "profile", 5, nobody).isEmpty());
+        }
+    }
+
+    @Test
+    public void testProfilesStoredWithAttributeEmbeddingsFilterOtherTypes() throws Exception {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb, null)) {
+            storeUser(service, "a1", 34, "Seattle", "Premium", 1f, 0f);
+            storeUser(service, "a2", 52, "Seattle", "Premium", 0.99f, 0.01f);
+            storeUser(service, "a3", 36, "Boston", "Premium", 0.98f, 0.02f);
+            storeUser(service, "a4", 30, "Seattle", "Free", 0.97f, 0.03f);
+            storeUser(service, "a5", 31, "Seattle", "Premium", 0.5f, 0.5f);
+            AttributeFilter premiumInSeattle = new AttributeFilter(null, 25, 40, "Seattle", "Premium");
+            EmbeddingVector query = EmbeddingVector.of(new float[] {1f, 0f});
+
+            assertEquals(List.of("a5"),
+                    new ArrayList<>(service.findSimilarUsers("a1", query, "interests", 5, premiumInSeattle).keySet()));
+
+            // A new process only has what the index build reads back from the table
+            VectorIndexRegistry.clear();
+            assertEquals(List.of("a5"),
+                    new ArrayList<>(service.findSimilarUsers("a1", query, "interests", 5, premiumInSeattle).keySet()));
+            assertEquals(5, VectorIndexRegistry.get("interests").size());
+        }
+    }
+
+    /**
+     * Stores a user the way the attribute endpoint does, plus an interests embedding.
+     */
+    private static void storeUser(EnhancedDynamoDBService service, String userId, int age, String location,
+                                  String plan, float... interests) throws Exception {
+        Map<String, Object> rawAttributes = new HashMap<>();
+        rawAttributes.put("age", age);
+        rawAttributes.put("location", location);
+        rawAttributes.put("subscription_plan", plan);
+        rawAttributes.put("page_views", 25);
+        service.storeEmbeddingWithMetadata(userId, EnhancedDynamoDBService.EMBEDDING_TYPE_USER_ATTRIBUTES,
+                EmbeddingVector.of(new float[] {0.5f, 0.5f}), new EmbeddingMetadata("user_attributes", "titan"),
+                UserAttributeFormatter.profileAttributes(rawAttributes));
+        service.storeEmbeddingWithMetadata(userId, EnhancedDynamoDBService.EMBEDDING_TYPE_INTERESTS,
+                EmbeddingVector.of(interests), new EmbeddingMetadata("interests", "titan"));
+    }
+
+    @Test
+    public void testSlowFirstBuildFallsBackToThePartialIndex() throws Exception {
+        FakeDynamoDb dynamoDb = new FakeDynamoDb();
+        dynamoDb.add("u1", "interests", 1f, 0f);
+        dynamoDb.add("u2", "interests", 0.9f, 0.1f);
+        dynamoDb.scanGate = new CountDownLatch(1);
+
+        try (EnhancedDynamoDBService service = new EnhancedDynamoDBService(dynamoDb, null)) {
+            VectorIndex partial;
+            try (Deadline deadline = Deadline.start(1000)) {
+                long startedAt = System.currentTimeMillis();
+                partial = service.getVectorIndex("interests");
+                assertTrue(System.currentTimeMillis() - startedAt < 1000);
+            }
+            assertSame(partial, VectorIndexRegistry.get("interests"));
+            assertEquals(0, partial.size());
+
+            // Embeddings stored during the build are not lost
+            service.storeEmbeddingWithMetadata("u3", "interests", EmbeddingVector.of(new float[] {0f, 1f}),
+                    new EmbeddingMetadata("interests", "titan"));
+
+            dynamoDb.scanGate.countDown();
+            assertSame(partial, service.getVectorIndex("interests"));
+            assertEquals(3, partial.size());
+            for (ScanRequest scan : dynamoDb.scans) {
+                assertTrue(scan.overrideConfiguration().get().apiCallTimeout().isPresent());
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.sample.service;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.cloudwatchlogs.CloudWatchLogsAsyncClient;
+import software.amazon.awssdk.services.cloudwatchlogs.model.GetQueryResultsRequest;
+import software.amazon.awssdk.services.cloudwatchlogs.model.GetQueryResultsResponse;
+import software.amazon.awssdk.services.cloudwatchlogs.model.QueryStatus;
+import software.amazon.awssdk.services.cloudwatchlogs.model.ResultField;
+import software.amazon.awssdk.services.cloudwatchlogs.model.StartQueryRequest;
+import software.amazon.awssdk.services.cloudwatchlogs.model.StartQueryResponse;
+
+/**
+ * Tests for InsightsLogSummarizer, using a fake async client that evaluates the generated
+ * filter, parse, stats, sort and limit commands over in-memory events with java.util.regex.
+ */
+public class InsightsLogSummarizerTest {
+
+    private static final Pattern FILTER = Pattern.compile("^filter @message like \"((?:[^\"\\\\]|\\\\.)*)\"$");
+    private static final Pattern PARSE = Pattern.compile("^\\| parse @message /(.*)/$");
+    private static final Pattern GROUP_NAME = Pattern.compile("\\(\\?<(\\w+)>");
+    private static final Pattern STATS = Pattern.compile("^\\| stats count\\(\\*\\) as (\\w+) by (.*)$");
+    private static final Pattern LIMIT = Pattern.compile("^\\| limit (\\d+)$");
+    private static final DateTimeFormatter INSIGHTS_TIMESTAMP =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneOffset.UTC);
+
+    /**
+     * Fake Insights backend. Each query reports RUNNING once before completing, or ends with
+     * the configured failure status.
+     */
+    private static class FakeInsightsClient implements CloudWatchLogsAsyncClient {
+        final List<LogEvent> events;
+        final Map<String, String> queries = new HashMap<>();
+        final Map<String, Integer> polls = new HashMap<>();
+        final AtomicInteger ids = new AtomicInteger();
+        QueryStatus failure;
+
+        FakeInsightsClient(List<LogEvent> events) {
+            this.events = events;
+        }
+
+        @Override
+        public CompletableFuture<StartQueryResponse> startQuery(StartQueryRequest request) {
+            String queryId = "query-" + ids.incrementAndGet();
+            queries.put(queryId, request.queryString());
+            return CompletableFuture.completedFuture(StartQueryResponse.builder().queryId(queryId).build());
+        }
+
+        @Override
+        public CompletableFuture<GetQueryResultsResponse> getQueryResults(GetQueryResultsRequest request) {
+            int poll = polls.merge(request.queryId(), 1, Integer::sum);
+            if (poll == 1) {
+                return CompletableFuture.completedFuture(GetQueryResultsResponse.builder().status(QueryStatus.RUNNING).build());
+            }
+            if (failure != null) {
+                return CompletableFuture.completedFuture(GetQueryResultsResponse.builder().status(failure).build());
+            }
+            return CompletableFuture.completedFuture(GetQueryResultsResponse.builder()
+                    .status(QueryStatus.COMPLETE)
+                    .results(evaluate(queries.get(request.queryId())))
+                    .build());
+        }
+
+        @Override
+        public String serviceName() {
+            return "logs";
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private List<List<ResultField>> evaluate(String query) {
+            List<Map<String, String>> rows = new ArrayList<>();
+            String countField = null;
+            List<String> groupFields = null;
+            int limit = Integer.MAX_VALUE;
+            String userId = null;
+            List<Pattern> parses = new ArrayList<>();
+            for (String line : query.split("\n")) {
+                Matcher matcher;
+                if ((matcher = FILTER.matcher(line)).matches()) {
+                    userId = matcher.group(1).replaceAll("\\\\(.)", "$1");
+                } else if ((matcher = PARSE.matcher(line)).matches()) {
+                    parses.add(Pattern.compile(matcher.group(1)));
+                } else if ((matcher = STATS.matcher(line)).matches()) {
+                    countField = matcher.group(1);
+                    groupFields = List.of(matcher.group(2).split(", "));
+                } else if ((matcher = LIMIT.matcher(line)).matches()) {
+                    limit = Integer.parseInt(matcher.group(1));
+                }
+            }
+
+            List<LogEvent> newestFirst = new ArrayList<>(events);
+            newestFirst.sort(Comparator.comparingLong(LogEvent::getTimestamp).reversed());
+            for (LogEvent event : newestFirst) {
+                if (!event.getMessage().contains(userId)) {
+                    continue;
+                }
+                Map<String, String> row = new LinkedHashMap<>();
+                row.put("@timestamp", INSIGHTS_TIMESTAMP.format(Instant.ofEpochMilli(event.getTimestamp())));
+                row.put("@message", event.getMessage());
+                for (Pattern parse : parses) {
+                    Matcher matcher = parse.matcher(event.getMessage());
+                    Matcher names = GROUP_NAME.matcher(parse.pattern());
+                    boolean found = matcher.find();
+                    while (names.find()) {
+                        row.put(names.group(1), found ? matcher.group(names.group(1)) : null);
+                    }
+                }
+                rows.add(row);
+            }
+
+            if (groupFields != null) {
+                Map<List<String>, Integer> counts = new LinkedHashMap<>();
+                for (Map<String, String> row : rows) {
+                    List<String> key = new ArrayList<>();
+                    for (String field : groupFields) {
+                        key.add(row.get(field));
+                    }
+                    counts.merge(key, 1, Integer::sum);
+                }
+                rows = new ArrayList<>();
+                for (Map.Entry<List<String>, Integer> entry : counts.entrySet()) {
+                    Map<String, String> row = new LinkedHashMap<>();
+                    for (int i = 0; i < groupFields.size(); i++) {
+                        row.put(groupFields.get(i), entry.getKey().get(i));
+                    }
+                    row.put(countField, String.valueOf(entry.getValue()));
+                    rows.add(row);
+                }
+            } else {
+                rows.replaceAll(row -> Map.of("@timestamp", row.get("@timestamp"), "@message", row.get("@message")));
+            }
+
+            List<List<ResultField>> results = new ArrayList<>();
+            for (Map<String, String> row : rows.subList(0, Math.min(limit, rows.size()))) {
+                List<ResultField> fields = new ArrayList<>();
+                row.forEach((field, value) -> {
+                    if (value != null) {
+                        fields.add(ResultField.builder().field(field).value(value).build());
+                    }
+                });
+                results.add(fields);
+            }
+            return results;
+        }
+    }
+
+    private static List<LogEvent> sampleEvents() {
+        String[] messages = {
+            "{\"path\":\"/api/orders\",\"httpMethod\":\"POST\",\"statusCode\":\"201\",\"userId\":\"user-1\"}",
+            "{\"path\":\"/api/orders\",\"httpMethod\":\"GET\",\"statusCode\":\"500\",\"userId\":\"user-1\"}",
+            "{\"path\":\"/api/quotes\",\"httpMethod\":\"GET\",\"statusCode\":\"404\",\"userId\":\"user-1\"}",
+            "[ERROR] Exception in OrderService: Timeout calling pricing for userId: user-1",
+            "[INFO] Trade: userId: user-1 symbol: AAPL action: BUY quantity: 10 price: 100.00 orderType: MARKET status: FILLED",
+            "[ERROR] Trade: userId: user-1 symbol: MSFT action: SELL quantity: 5 price: 200.00 orderType: LIMIT status: REJECTED reason: MARKET_CLOSED",
+            "[INFO] Security: userId: user-1 event: LOGIN ip: 192.168.1.2 userAgent: Mozilla/5.0 (Windows) ",
+            "[WARNING] Security: userId: user-1 event: MFA_FAILED ip: 192.168.1.3 reason: suspicious password attempt ",
+            "[INFO] Compliance: userId: user-1 type: AML_CHECK status: PASSED ",
+            "[WARNING] Compliance: userId: user-1 type: KYC_VERIFICATION status: VIOLATION action: TRADE_BLOCKED severity: HIGH ",
+            "[INFO] Account: userId: user-1 action: DEPOSIT amount: $100.00 ",
+            "[INFO] Account: userId: user-1 action: PROFILE_UPDATE ",
+            "[INFO] Page view for userId: user-1 on mobile",
+            "[INFO] userId: user-2 login from web"
+        };
+        List<LogEvent> events = new ArrayList<>();
+        for (int i = 0; i < messages.length; i++) {
+            events.add(new LogEvent(messages[i], 1700000000000L + i * 1000L));
+        }
+        return events;
+    }
+
+    private static List<String> recentMessages(ActivitySummary summary) {
+        return summary.recentEvents.mostRecentFirst().stream().map(LogFeatures::getMessage).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testInsightsSummaryMatchesLocalSummary() {
+        List<LogEvent> events = sampleEvents();
+        InsightsLogSummarizer summarizer = new InsightsLogSummarizer(new FakeInsightsClient(events));
+        ActivitySummary insights = summarizer.summarize("user-1", "/aws/app", 1699999990000L, 1700000100000L);
+
+        LogClassifier classifier = new LogClassifier();
+        ActivitySummary local = new ActivitySummary();
+        for (LogEvent event : events) {
+            if (event.getMessage().contains("user-1")) {
+                local.accept(classifier.classify(event.getMessage(), event.getTimestamp()));
+            }
+        }
+
+        assertEquals(13, insights.getLogCount());
+        assertEquals(local.getLogCount(), insights.getLogCount());
+        assertEquals(local.apiPathCounts, insights.apiPathCounts);
+        assertEquals(local.statusCodeCounts, insights.statusCodeCounts);
+        assertEquals(local.errorCounts, insights.errorCounts);
+        assertEquals(local.tradingActivityCounts, insights.tradingActivityCounts);
+        assertEquals(local.securityEventCounts, insights.securityEventCounts);
+        assertEquals(local.complianceCheckCounts, insights.complianceCheckCounts);
+        assertEquals(local.accountActivityCounts, insights.accountActivityCounts);
+        assertEquals(Map.of("deposit", 1, "general", 1), insights.accountActivityCounts);
+        assertEquals(local.successfulRequests, insights.successfulRequests);
+        assertEquals(local.failedRequests, insights.failedRequests);
+        assertEquals(local.tradingErrors, insights.tradingErrors);
+        assertEquals(local.securityAlerts, insights.securityAlerts);
+        assertEquals(local.complianceViolations, insights.complianceViolations);
+        assertEquals(recentMessages(local), recentMessages(insights));
+    }
+
+    @Test
+    public void testFailedQuerySurfacesAsRuntimeException() {
+        FakeInsightsClient client = new FakeInsightsClient(sampleEvents());
+        client.failure = QueryStatus.FAILED;
+        InsightsLogSummarizer summarizer = new InsightsLogSummarizer(client);
+
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> summarizer.summarize("user-1", "/aws/app", 0L, 1L));
+        assertTrue(e.getMessage().contains("FAILED"));
+    }
+
+    @Test
+    public void testQueriesAreBuiltFromCatalogue() {
+        String stats = InsightsLogSummarizer.statsQuery("user-\"1\"");
+        assertTrue(stats.startsWith("filter @message like \"user-\\\"1\\\"\"\n"));
+        for (LogClassifier.Category category : InsightsLogSummarizer.summarizedCategories()) {
+            for (String keyword : category.getKeywords()) {
+                assertTrue(stats.contains(keyword), keyword);
+            }
+            assertTrue(stats.contains(InsightsLogSummarizer.keywordField(category)));
+        }
+        assertTrue(stats.contains("| stats count(*) as events by apiPath, statusCode, errorKeyword"));
+
+        assertTrue(InsightsLogSummarizer.recentEventsQuery("user-1").endsWith("| sort @timestamp desc\n| limit 10"));
+        assertEquals(1686832496789L, InsightsLogSummarizer.parseTimestamp("2023-06-15 12:34:56.789"));
+        assertEquals(0L, InsightsLogSummarizer.parseTimestamp("not a time"));
+    }
+}
@@ -0,0 +1,106 @@
+package com.sample.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for LogClassifier, checked against the regular expressions it replaces.
+ */
+public class LogClassifierTest {
+
+    private static final Pattern API_PATH_PATTERN = Pattern.compile("\"?path\"?\\s*[:=]\\s*\"?(/[\\w/]+)\"?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern HTTP_METHOD_PATTERN = Pattern.compile("\"?httpMethod\"?\\s*[:=]\\s*\"?(GET|POST|PUT|DELETE|PATCH)\"?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern STATUS_CODE_PATTERN = Pattern.compile("\"?statusCode\"?\\s*[:=]\\s*\"?(\\d{3})\"?", Pattern.CASE_INSENSITIVE);
+
+    private static Pattern categoryPattern(LogClassifier.Category category) {
+        return Pattern.compile("\\b(" + String.join("|", category.getKeywords()) + ")\\b", Pattern.CASE_INSENSITIVE);
+    }
+
+    private static String group(Pattern pattern, String message) {
+        Matcher matcher = pattern.matcher(message);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static List<String> sampleMessages() {
+        CloudWatchLogEmbeddingService service = new CloudWatchLogEmbeddingService(null, null);
+        List<String> messages = new ArrayList<>();
+        String[] types = {
+            CloudWatchLogEmbeddingService.LOG_TYPE_API_GATEWAY, CloudWatchLogEmbeddingService.LOG_TYPE_LAMBDA,
+            CloudWatchLogEmbeddingService.LOG_TYPE_APPLICATION, CloudWatchLogEmbeddingService.LOG_TYPE_ERROR,
+            CloudWatchLogEmbeddingService.LOG_TYPE_TRADING, CloudWatchLogEmbeddingService.LOG_TYPE_ACCOUNT,
+            CloudWatchLogEmbeddingService.LOG_TYPE_COMPLIANCE, CloudWatchLogEmbeddingService.LOG_TYPE_SECURITY
+        };
+        for (String type : types) {
+            messages.addAll(service.generateSampleLogs("user-12345", type, 40));
+        }
+        messages.add("User action: button_click button: submit on mobile then web view");
+        messages.add("Channel switch detected: from: desktop to: app device");
+        messages.add("errors ERROR_CODE timeout_ms TimeOut; denied");
+        messages.add("path = \"/api/x\" apiPath: / PATH: /api/y_2/z statusCode=2001 httpmethod: patch");
+        messages.add("statusCode: 20 statusCode:\"404\" httpMethod = \"Delete\" path:\"\"");
+        messages.add("café order étrade 2FA mfa_x loginé kyc-aml");
+        messages.add("");
+        return messages;
+    }
+
+    @Test
+    public void testMatchesRegexFirstMatchSemantics() {
+        LogClassifier classifier = new LogClassifier();
+        for (String message : sampleMessages()) {
+            LogFeatures features = classifier.classify(message, 7L);
+            assertEquals(7L, features.getTimestamp());
+            assertEquals(group(API_PATH_PATTERN, message), features.getApiPath(), message);
+            assertEquals(group(HTTP_METHOD_PATTERN, message), features.getHttpMethod(), message);
+            assertEquals(group(STATUS_CODE_PATTERN, message), features.getStatusCode(), message);
+            for (LogClassifier.Category category : LogClassifier.Category.values()) {
+                Matcher matcher = categoryPattern(category).matcher(message);
+                if (matcher.find()) {
+                    assertEquals(matcher.group(1).toLowerCase(), features.keyword(category), message);
+                    assertEquals(matcher.start(), features.keywordStart(category), message);
+                } else {
+                    assertFalse(features.has(category), message);
+                    assertEquals(-1, features.keywordStart(category));
+                }
+            }
+
+            String lower = message.toLowerCase(Locale.ROOT);
+            assertEquals(lower.contains("rejected") || lower.contains("failed") || lower.contains("error"),
+                    features.hasTradingErrorTerm(), message);
+            assertEquals(lower.contains("warning") || lower.contains("suspicious") || lower.contains("failure")
+                    || lower.contains("locked"), features.hasSecurityAlertTerm(), message);
+            assertEquals(lower.contains("violation") || lower.contains("blocked") || lower.contains("flagged"),
+                    features.hasComplianceViolationTerm(), message);
+            assertEquals(message.contains("Trade:"), features.isTradeRecord());
+            assertEquals(message.contains("Security:"), features.isSecurityRecord());
+            assertEquals(message.contains("Compliance:"), features.isComplianceRecord());
+            assertEquals(message.contains("Account:"), features.isAccountRecord());
+        }
+    }
+
+    @Test
+    public void testChannelAndAccountActivityPriorities() {
+        LogClassifier classifier = new LogClassifier();
+
+        // The first listed channel mentioned wins, not the first in the message
+        assertEquals("mobile", classifier.classify("switch from web to mobile", 0L).getChannel());
+        assertEquals("app", classifier.classify("Channel: happy path", 0L).getChannel());
+        assertEquals("device", classifier.classify("new device registered", 0L).getChannel());
+        assertEquals("mobile", classifier.classify("web mobile", 0L).getChannel());
+        assertNull(classifier.classify("webinar mobiles", 0L).getChannel());
+
+        assertEquals("transfer", classifier.classify("Account: action: TRANSFER INTEREST", 0L).getAccountActivity());
+        assertEquals("deposit", classifier.classify("Account: INTEREST then DEPOSIT", 0L).getAccountActivity());
+        assertEquals("general", classifier.classify("Account: action: transfer", 0L).getAccountActivity());
+        assertNull(classifier.classify("account: DEPOSIT", 0L).getAccountActivity());
+        assertTrue(classifier.classify("[INFO] Account: x", 0L).isAccountRecord());
+    }
+}
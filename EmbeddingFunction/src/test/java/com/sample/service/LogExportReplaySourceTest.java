@@ -0,0 +1,72 @@
+package com.sample.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for LogExportReplaySource, replaying exports written to a temporary directory.
+ */
+public class LogExportReplaySourceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static List<String> messages(LogEventSource source, String userId, String group, long start, long end) {
+        try (Stream<LogEvent> events = source.events(userId, group, start, end)) {
+            return events.map(LogEvent::getMessage).collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void testReplaysPerGroupExportsWithinWindow() throws IOException {
+        Files.write(tempDir.resolve("aws_lambda_orders.jsonl"), List.of(
+                "{\"timestamp\": 1000, \"message\": \"order user-1 placed\", \"eventId\": \"e1\"}",
+                "{\"timestamp\": 2000, \"message\": \"order user-2 placed\"}",
+                "",
+                "not an event",
+                "1970-01-01T00:00:03Z order user-1 filled",
+                "1970-01-01T00:00:09Z order user-1 late"));
+        LogExportReplaySource source = new LogExportReplaySource(tempDir);
+
+        assertEquals(List.of("order user-1 placed", "order user-1 filled"),
+                messages(source, "user-1", "/aws/lambda/orders", 1000L, 3000L));
+        assertEquals(List.of("order user-2 placed"), messages(source, "user-2", "/aws/lambda/orders", 0L, 10000L));
+        assertEquals(List.of(), messages(source, "user-1", "/aws/lambda/missing", 0L, 10000L));
+    }
+
+    @Test
+    public void testReplaysSingleFileForEveryGroup() throws IOException {
+        Path export = tempDir.resolve("export.log");
+        Files.write(export, List.of("1970-01-01T00:00:01Z hello user-1"));
+        LogExportReplaySource source = new LogExportReplaySource(export);
+
+        assertEquals(List.of("hello user-1"), messages(source, "user-1", "any-group", 0L, 5000L));
+    }
+
+    @Test
+    public void testParseLine() {
+        LogEvent json = LogExportReplaySource.parseLine("{\"timestamp\": 5, \"message\": \"m\", \"eventId\": \"id\"}");
+        assertEquals("m", json.getMessage());
+        assertEquals(5L, json.getTimestamp());
+        assertEquals("id", json.getEventId());
+
+        LogEvent export = LogExportReplaySource.parseLine("2023-06-15T12:34:56.789Z [INFO] started");
+        assertEquals("[INFO] started", export.getMessage());
+        assertEquals(1686832496789L, export.getTimestamp());
+        assertNull(export.getEventId());
+
+        assertNull(LogExportReplaySource.parseLine("{\"message\": \"no timestamp\"}"));
+        assertNull(LogExportReplaySource.parseLine("{broken"));
+        assertNull(LogExportReplaySource.parseLine("yesterday something happened"));
+        assertNull(LogExportReplaySource.parseLine("   "));
+    }
+}
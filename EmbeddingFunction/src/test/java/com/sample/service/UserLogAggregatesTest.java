@@ -0,0 +1,151 @@
+package com.sample.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for UserLogAggregates: checkpointing, bucket expiry, the carried effort detectors and
+ * the JSON form.
+ */
+public class UserLogAggregatesTest {
+
+    private static final long HOUR = UserLogAggregates.HOUR_MILLIS;
+    private static final LogClassifier CLASSIFIER = new LogClassifier();
+
+    private static void fold(UserLogAggregates aggregates, String message, long timestamp, String eventId) {
+        if (aggregates.advanceCheckpoint(new LogEvent(message, timestamp, eventId))) {
+            aggregates.count(CLASSIFIER.classify(message, timestamp));
+        }
+    }
+
+    @Test
+    public void testCheckpointSkipsEventsAlreadyFoldedIn() {
+        UserLogAggregates aggregates = new UserLogAggregates(24, 0L);
+        aggregates.beginRefresh();
+        assertTrue(aggregates.advanceCheckpoint(new LogEvent("a", 100L, "a")));
+        assertTrue(aggregates.advanceCheckpoint(new LogEvent("b", 100L, "b")));
+        // Events of one refresh may arrive out of order
+        assertTrue(aggregates.advanceCheckpoint(new LogEvent("c", 50L, "c")));
+        assertEquals(100L, aggregates.getCheckpointTimestamp());
+        assertEquals(100L, aggregates.nextReadFrom());
+
+        aggregates.beginRefresh();
+        assertFalse(aggregates.advanceCheckpoint(new LogEvent("a", 100L, "a")));
+        assertFalse(aggregates.advanceCheckpoint(new LogEvent("no id", 100L, null)));
+        assertFalse(aggregates.advanceCheckpoint(new LogEvent("late", 99L, "late")));
+        assertTrue(aggregates.advanceCheckpoint(new LogEvent("d", 100L, "d")));
+        assertTrue(aggregates.advanceCheckpoint(new LogEvent("e", 101L, null)));
+        assertEquals(101L, aggregates.getCheckpointTimestamp());
+
+        UserLogAggregates covering = new UserLogAggregates(24, 1000L);
+        covering.beginRefresh();
+        assertFalse(covering.advanceCheckpoint(new LogEvent("before coverage", 999L, "x")));
+        assertEquals(1000L, covering.nextReadFrom());
+    }
+
+    @Test
+    public void testExpiresBucketsOutsideRetention() {
+        UserLogAggregates aggregates = new UserLogAggregates(2, 0L);
+        aggregates.beginRefresh();
+        fold(aggregates, "[INFO] userId: user-1 page view", 10L, "1");
+        fold(aggregates, "[ERROR] userId: user-1 failed", HOUR + 10L, "2");
+        assertEquals(2, aggregates.summary(0L).getLogCount());
+
+        // Hour 3 takes the slot of hour 0
+        aggregates.beginRefresh();
+        fold(aggregates, "[INFO] userId: user-1 page view", 3 * HOUR + 10L, "3");
+        assertEquals(2, aggregates.summary(0L).getLogCount());
+        assertEquals(1, aggregates.effortCounts(0L).errors);
+        assertEquals(1, aggregates.summary(2 * HOUR).getLogCount());
+        assertEquals(0, aggregates.effortCounts(2 * HOUR).errors);
+
+        aggregates.reset(5 * HOUR);
+        assertEquals(0, aggregates.summary(0L).getLogCount());
+        assertEquals(5 * HOUR, aggregates.nextReadFrom());
+    }
+
+    @Test
+    public void testDetectorsCarryStateAcrossRefreshes() {
+        UserLogAggregates aggregates = new UserLogAggregates(24, 0L);
+        aggregates.navigate("/a", 1000L);
+        aggregates.navigate("/b", 2000L);
+        aggregates.useChannel("web", 1000L);
+        aggregates.click("submit", 1000L, 3, 300000L);
+        aggregates.click("submit", 2000L, 3, 300000L);
+
+        UserLogAggregates restored = UserLogAggregates.fromJson(aggregates.toJson(), CLASSIFIER);
+        restored.navigate("/a", 3000L);
+        restored.navigate("/a", 4000L);
+        restored.useChannel("web", 3000L);
+        restored.useChannel("mobile", 4000L);
+        restored.click("submit", 3000L, 3, 300000L);
+        restored.click("submit", 4000L, 3, 300000L);
+
+        UserLogAggregates.EffortCounts counts = restored.effortCounts(0L);
+        assertEquals(1, counts.backForthNavigations);
+        assertEquals(1, counts.channelSwitches);
+        assertEquals(1, counts.repeatedClicks);
+    }
+
+    @Test
+    public void testPrunesClicksOutsideTheWindow() {
+        UserLogAggregates aggregates = new UserLogAggregates(24, 0L);
+        aggregates.click("submit", 1000L, 2, 5000L);
+        aggregates.beginRefresh();
+        aggregates.advanceCheckpoint(new LogEvent("later", 10000L, "1"));
+        aggregates.pruneClicks(5000L);
+
+        aggregates.click("submit", 10000L, 2, 5000L);
+        assertEquals(0, aggregates.effortCounts(0L).repeatedClicks);
+        aggregates.click("submit", 11000L, 2, 5000L);
+        assertEquals(1, aggregates.effortCounts(0L).repeatedClicks);
+    }
+
+    @Test
+    public void testJsonRoundTrip() {
+        UserLogAggregates aggregates = new UserLogAggregates(24, 0L);
+        aggregates.beginRefresh();
+        fold(aggregates, "{\"path\":\"/api/orders\",\"statusCode\":\"201\",\"userId\":\"user-1\"}", 1000L, "1");
+        fold(aggregates, "[ERROR] Trade: userId: user-1 action: SELL status: REJECTED", HOUR + 1000L, "2");
+        fold(aggregates, "[WARNING] Security: userId: user-1 event: MFA_FAILED reason: suspicious ", HOUR + 2000L, "3");
+        aggregates.addHighEffortEvent(CLASSIFIER.classify("[ERROR] userId: user-1 click failed", HOUR + 500L));
+        aggregates.setVersion(4L);
+
+        UserLogAggregates restored = UserLogAggregates.fromJson(aggregates.toJson(), CLASSIFIER);
+        ActivitySummary expected = aggregates.summary(0L);
+        ActivitySummary actual = restored.summary(0L);
+
+        assertEquals(3, actual.getLogCount());
+        assertEquals(Map.of("/api/orders", 1), actual.apiPathCounts);
+        assertEquals(expected.statusCodeCounts, actual.statusCodeCounts);
+        assertEquals(expected.errorCounts, actual.errorCounts);
+        assertEquals(expected.tradingActivityCounts, actual.tradingActivityCounts);
+        assertEquals(expected.securityEventCounts, actual.securityEventCounts);
+        assertEquals(expected.successfulRequests, actual.successfulRequests);
+        assertEquals(expected.tradingErrors, actual.tradingErrors);
+        assertEquals(expected.securityAlerts, actual.securityAlerts);
+        assertEquals(messages(expected.recentEvents.mostRecentFirst()), messages(actual.recentEvents.mostRecentFirst()));
+        assertEquals(messages(aggregates.highEffortEvents(0L)), messages(restored.highEffortEvents(0L)));
+        assertEquals(aggregates.effortCounts(0L).errors, restored.effortCounts(0L).errors);
+        assertEquals(HOUR + 2000L, restored.getCheckpointTimestamp());
+        assertEquals(24, restored.getRetentionHours());
+        // The version belongs to the store, not the JSON
+        assertEquals(0L, restored.getVersion());
+
+        restored.beginRefresh();
+        assertFalse(restored.advanceCheckpoint(new LogEvent("again", HOUR + 2000L, "3")));
+
+        assertThrows(IllegalArgumentException.class, () -> UserLogAggregates.fromJson("{not json", CLASSIFIER));
+    }
+
+    private static List<String> messages(List<LogFeatures> logs) {
+        return logs.stream().map(LogFeatures::getMessage).collect(Collectors.toList());
+    }
+}
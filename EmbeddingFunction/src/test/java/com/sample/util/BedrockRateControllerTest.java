@@ -0,0 +1,168 @@
+package com.sample.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.retry.RetryPolicyContext;
+import software.amazon.awssdk.core.retry.conditions.RetryCondition;
+
+/**
+ * Unit tests for BedrockRateController.
+ */
+public class BedrockRateControllerTest {
+
+    private static AwsServiceException throttled() {
+        return (AwsServiceException) AwsServiceException.builder()
+                .statusCode(429)
+                .message("Too many requests")
+                .build();
+    }
+
+    @Test
+    public void testDetectsThrottlingThroughWrappers() {
+        assertTrue(BedrockRateController.isThrottle(throttled()));
+        assertTrue(BedrockRateController.isThrottle(new RuntimeException("wrapped", throttled())));
+        assertFalse(BedrockRateController.isThrottle(new RuntimeException("other")));
+    }
+
+    @Test
+    public void testThrottledCallIsRetriedAndRateIsCut() throws Exception {
+        BedrockRateController controller = new BedrockRateController(100, 200, 32, 3);
+        double initialRate = controller.getCurrentRate();
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = controller.execute(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw throttled();
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, controller.getThrottleCount());
+        assertEquals(2, controller.getRetryCount());
+        assertTrue(controller.getCurrentRate() < initialRate);
+        assertEquals(0, controller.getInFlight());
+    }
+
+    @Test
+    public void testGivesUpAfterMaxRetries() {
+        BedrockRateController controller = new BedrockRateController(100, 200, 32, 1);
+        assertThrows(AwsServiceException.class, () -> controller.execute(() -> {
+            throw throttled();
+        }));
+        assertEquals(2, controller.getThrottleCount());
+        assertEquals(0, controller.getInFlight());
+    }
+
+    @Test
+    public void testNonThrottleErrorsAreNotRetried() {
+        BedrockRateController controller = new BedrockRateController(100, 200, 32, 3);
+        AtomicInteger attempts = new AtomicInteger();
+        assertThrows(IllegalStateException.class, () -> controller.execute(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("bad request");
+        }));
+        assertEquals(1, attempts.get());
+        assertEquals(0, controller.getInFlight());
+    }
+
+    @Test
+    public void testSuccessIncreasesRateAdditively() throws Exception {
+        BedrockRateController controller = new BedrockRateController(10, 200, 32, 3);
+        for (int i = 0; i < 10; i++) {
+            controller.execute(() -> "ok");
+        }
+        double rate = controller.getCurrentRate();
+        assertTrue(rate > 10 && rate < 12, "unexpected rate " + rate);
+    }
+
+    @Test
+    public void testAsyncRetriesThrottledCalls() throws Exception {
+        BedrockRateController controller = new BedrockRateController(100, 200, 32, 3);
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = controller.<String>executeAsync(() -> attempts.incrementAndGet() == 1
+                ? CompletableFuture.failedFuture(throttled())
+                : CompletableFuture.completedFuture("ok")).get(5, TimeUnit.SECONDS);
+
+        assertEquals("ok", result);
+        assertEquals(2, attempts.get());
+        assertEquals(1, controller.getThrottleCount());
+        assertEquals(0, controller.getInFlight());
+    }
+
+    @Test
+    public void testRetryBackoffStopsAtDeadline() throws Exception {
+        BedrockRateController controller = new BedrockRateController(100, 200, 32, 10);
+        AtomicInteger attempts = new AtomicInteger();
+        try (Deadline deadline = Deadline.start(2)) {
+            Thread.sleep(5);
+            assertThrows(Deadline.ExceededException.class, () -> controller.execute(() -> {
+                attempts.incrementAndGet();
+                throw throttled();
+            }));
+        }
+        assertEquals(1, attempts.get());
+        assertEquals(0, controller.getInFlight());
+    }
+
+    @Test
+    public void testAsyncRetryBackoffStopsAtDeadline() throws Exception {
+        BedrockRateController controller = new BedrockRateController(100, 200, 32, 10);
+        CompletableFuture<String> result;
+        try (Deadline deadline = Deadline.start(2)) {
+            Thread.sleep(5);
+            result = controller.executeAsync(() -> CompletableFuture.failedFuture(throttled()));
+        }
+        ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof Deadline.ExceededException);
+        assertEquals(0, controller.getInFlight());
+    }
+
+    @Test
+    public void testErrorsReleaseThePermit() {
+        BedrockRateController controller = new BedrockRateController(100, 200, 32, 3);
+        assertThrows(AssertionError.class, () -> controller.execute(() -> {
+            throw new AssertionError("broken");
+        }));
+        assertEquals(0, controller.getInFlight());
+
+        CompletableFuture<String> result = controller.executeAsync(() -> {
+            throw new AssertionError("broken");
+        });
+        ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof AssertionError);
+        assertEquals(0, controller.getInFlight());
+    }
+
+    @Test
+    public void testClientConfigurationLeavesThrottlesToTheController() {
+        RetryCondition condition = BedrockRateController.clientOverrideConfiguration()
+                .retryPolicy().orElseThrow()
+                .retryCondition();
+        AwsServiceException unavailable = (AwsServiceException) AwsServiceException.builder()
+                .statusCode(503)
+                .message("Service unavailable")
+                .build();
+
+        assertFalse(condition.shouldRetry(RetryPolicyContext.builder()
+                .exception(throttled())
+                .httpStatusCode(429)
+                .build()));
+        assertTrue(condition.shouldRetry(RetryPolicyContext.builder()
+                .exception(unavailable)
+                .httpStatusCode(503)
+                .build()));
+    }
+}
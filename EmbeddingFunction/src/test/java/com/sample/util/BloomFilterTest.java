@@ -0,0 +1,58 @@
+package com.sample.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for BloomFilter.
+ */
+public class BloomFilterTest {
+
+    @Test
+    public void testNoFalseNegativesAndFalsePositiveRateNearTarget() {
+        BloomFilter filter = BloomFilter.create(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.put("user-" + i + "\0interests");
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain("user-" + i + "\0interests"));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain("missing-" + i + "\0interests")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2000, "false positives: " + falsePositives);
+        assertEquals(0.01, filter.expectedFalsePositiveRate(), 0.01);
+    }
+
+    @Test
+    public void testSerializationRoundTrip() throws Exception {
+        BloomFilter filter = BloomFilter.create(100, 0.01);
+        filter.put("a");
+        filter.put("b");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        filter.writeTo(out);
+        BloomFilter loaded = BloomFilter.readFrom(new ByteArrayInputStream(out.toByteArray()));
+
+        assertTrue(loaded.mightContain("a"));
+        assertTrue(loaded.mightContain("b"));
+        assertEquals(filter.getBitCount(), loaded.getBitCount());
+        assertEquals(filter.getHashCount(), loaded.getHashCount());
+        assertEquals(2, loaded.getInsertionCount());
+    }
+
+    @Test
+    public void testRejectsForeignData() {
+        assertThrows(IOException.class, () -> BloomFilter.readFrom(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5})));
+    }
+}
@@ -0,0 +1,58 @@
+package com.sample.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for Deadline.
+ */
+public class DeadlineTest {
+
+    @Test
+    public void testHopsGetASliceOfTheRemainingBudget() {
+        try (Deadline deadline = Deadline.start(10000)) {
+            assertSame(deadline, Deadline.current());
+            long slice = Deadline.sliceMillis("DAX read", 200, 0.25);
+            assertEquals(200, slice);
+
+            long bedrock = Deadline.sliceMillis("Bedrock call", 60000, 0.75);
+            assertTrue(bedrock <= 7500 && bedrock > 6000, "slice: " + bedrock);
+        }
+        assertNull(Deadline.current());
+    }
+
+    @Test
+    public void testNoDeadlineUsesConfiguredTimeouts() {
+        assertEquals(3000, Deadline.sliceMillis("DynamoDB read", 3000, 1.0));
+
+        // Test contexts report no remaining time; that must not fail every call
+        try (Deadline deadline = Deadline.start(0)) {
+            assertNull(Deadline.current());
+            assertEquals(3000, Deadline.sliceMillis("DynamoDB read", 3000, 1.0));
+        }
+    }
+
+    @Test
+    public void testExpiredBudgetStopsWork() throws Exception {
+        try (Deadline deadline = Deadline.start(2)) {
+            Thread.sleep(5);
+            assertTrue(deadline.isExpired());
+            assertThrows(Deadline.ExceededException.class, () -> Deadline.check("Bedrock call"));
+            assertThrows(Deadline.ExceededException.class, () -> Deadline.sliceMillis("DAX read", 200, 0.25));
+        }
+    }
+
+    @Test
+    public void testNestedDeadlinesRestoreTheOuterOne() {
+        try (Deadline outer = Deadline.start(10000)) {
+            try (Deadline inner = Deadline.start(5000)) {
+                assertSame(inner, Deadline.current());
+            }
+            assertSame(outer, Deadline.current());
+        }
+    }
+}
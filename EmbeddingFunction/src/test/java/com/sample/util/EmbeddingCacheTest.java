@@ -0,0 +1,139 @@
+package com.sample.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.sample.model.EmbeddingVector;
+
+/**
+ * Unit tests for EmbeddingCache.
+ */
+public class EmbeddingCacheTest {
+
+    private static final String MODEL = "amazon.titan-embed-text-v2";
+
+    private static EmbeddingVector vec(double... values) {
+        return EmbeddingVector.of(values);
+    }
+
+    @Test
+    public void testKeyNormalizesWhitespaceAndSeparatesModelAndDimensions() {
+        String key = EmbeddingCache.key(MODEL, 1024, "User interests:  Hiking,\n Camping ");
+        assertEquals(key, EmbeddingCache.key(MODEL, 1024, "User interests: Hiking, Camping"));
+        assertNotEquals(key, EmbeddingCache.key(MODEL, 512, "User interests: Hiking, Camping"));
+        assertNotEquals(key, EmbeddingCache.key("amazon.titan-embed-text-v1", 1024, "User interests: Hiking, Camping"));
+    }
+
+    @Test
+    public void testHitDoesNotCallLoader() throws Exception {
+        EmbeddingCache cache = new EmbeddingCache(10, 60);
+        AtomicInteger calls = new AtomicInteger();
+        String key = EmbeddingCache.key(MODEL, 1024, "hello");
+
+        EmbeddingVector first = cache.getOrLoad(key, () -> {
+            calls.incrementAndGet();
+            return vec(0.1, 0.2, 0.3);
+        });
+        EmbeddingVector second = cache.getOrLoad(key, () -> {
+            calls.incrementAndGet();
+            return vec(9, 9, 9);
+        });
+
+        assertEquals(1, calls.get());
+        assertEquals(first, second);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testCallersCannotModifyCachedVectors() throws Exception {
+        EmbeddingCache cache = new EmbeddingCache(10, 60);
+        double[] loaded = cache.getOrLoad("k", () -> vec(1, 2)).toDoubleArray();
+        loaded[0] = 42;
+        assertArrayEquals(new double[] {1, 2}, cache.get("k").toDoubleArray(), 0.0);
+    }
+
+    @Test
+    public void testSizeEvictionDropsLeastRecentlyUsed() {
+        EmbeddingCache cache = new EmbeddingCache(2, 60);
+        cache.put("a", vec(1));
+        cache.put("b", vec(2));
+        cache.get("a");
+        cache.put("c", vec(3));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertArrayEquals(new double[] {1}, cache.get("a").toDoubleArray(), 0.0);
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testExpiredEntriesAreEvicted() {
+        EmbeddingCache cache = new EmbeddingCache(10, 0);
+        cache.put("a", vec(1));
+        assertNull(cache.get("a"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() throws Exception {
+        EmbeddingCache cache = new EmbeddingCache(10, 60);
+        assertThrows(IllegalStateException.class, () -> cache.getOrLoad("k", () -> {
+            throw new IllegalStateException("boom");
+        }));
+        assertArrayEquals(new double[] {5}, cache.getOrLoad("k", () -> vec(5)).toDoubleArray(), 0.0);
+    }
+
+    @Test
+    public void testNullLoadIsRejected() throws Exception {
+        EmbeddingCache cache = new EmbeddingCache(10, 60);
+        assertThrows(IllegalStateException.class, () -> cache.getOrLoad("k", () -> null));
+        ExecutionException error = assertThrows(ExecutionException.class,
+                () -> cache.getOrLoadAsync("k", () -> CompletableFuture.completedFuture(null)).get());
+        assertTrue(error.getCause() instanceof IllegalStateException);
+        assertNull(cache.get("k"));
+        assertArrayEquals(new double[] {3}, cache.getOrLoadAsync("k", () -> CompletableFuture.completedFuture(vec(3)))
+                .get().toDoubleArray(), 0.0);
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception {
+        EmbeddingCache cache = new EmbeddingCache(10, 60);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int i = 0; i < threads; i++) {
+                futures[i] = executor.submit(() -> cache.getOrLoad("k", () -> {
+                    calls.incrementAndGet();
+                    release.await(5, TimeUnit.SECONDS);
+                    return vec(7);
+                }));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            for (Future<?> future : futures) {
+                assertArrayEquals(new double[] {7}, ((EmbeddingVector) future.get(5, TimeUnit.SECONDS)).toDoubleArray(), 0.0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, calls.get());
+    }
+}
@@ -0,0 +1,49 @@
+package com.sample.util;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+import com.sample.model.EmbeddingVector;
+
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+/**
+ * Unit tests for EmbeddingCodec.
+ */
+public class EmbeddingCodecTest {
+
+    private static final EmbeddingVector VECTOR = EmbeddingVector.of(new float[] {0.5f, -1.25f, 3.0f});
+
+    @Test
+    public void testBinaryLayoutIsVersionByteAndLittleEndianFloats() {
+        byte[] encoded = EmbeddingCodec.encode(VECTOR);
+        assertEquals(1 + 3 * 4, encoded.length);
+        assertEquals(EmbeddingCodec.FORMAT_FLOAT32_LE, encoded[0]);
+        // 0.5f is 0x3F000000, stored low byte first
+        assertArrayEquals(new byte[] {0, 0, 0, 0x3F}, new byte[] {encoded[1], encoded[2], encoded[3], encoded[4]});
+        assertEquals(VECTOR, EmbeddingCodec.decode(ByteBuffer.wrap(encoded)));
+    }
+
+    @Test
+    public void testReadsBothAttributeFormats() throws Exception {
+        AttributeValue binary = EmbeddingCodec.toAttributeValue(VECTOR, EmbeddingCodec.Format.BINARY);
+        AttributeValue json = EmbeddingCodec.toAttributeValue(VECTOR, EmbeddingCodec.Format.JSON);
+        AttributeValue legacy = AttributeValue.builder().s("[0.5,-1.25,3.0]").build();
+
+        assertEquals(VECTOR, EmbeddingCodec.fromAttributeValue(binary));
+        assertEquals(VECTOR, EmbeddingCodec.fromAttributeValue(json));
+        assertEquals(VECTOR, EmbeddingCodec.fromAttributeValue(legacy));
+        assertNull(EmbeddingCodec.fromAttributeValue(null));
+    }
+
+    @Test
+    public void testRejectsUnknownVersionAndTruncatedPayload() {
+        assertThrows(IllegalArgumentException.class, () -> EmbeddingCodec.decode(ByteBuffer.wrap(new byte[] {0x02, 0, 0, 0, 0})));
+        assertThrows(IllegalArgumentException.class, () -> EmbeddingCodec.decode(ByteBuffer.wrap(new byte[] {0x01, 0, 0})));
+    }
+}
@@ -0,0 +1,129 @@
+package com.sample.util;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+
+/**
+ * Tests for the DAX read, hedged read and DynamoDB fallback in HedgedGet.
+ */
+public class HedgedGetTest {
+
+    private static final GetItemRequest REQUEST = GetItemRequest.builder()
+            .tableName("UserEmbeddings")
+            .key(Map.of("user_id", AttributeValue.builder().s("u1").build()))
+            .build();
+
+    private static Map<String, AttributeValue> item(String source) {
+        return Map.of("user_id", AttributeValue.builder().s("u1").build(),
+                "source", AttributeValue.builder().s(source).build());
+    }
+
+    /**
+     * Async client that answers with a fixed item, or never answers when the item is null.
+     */
+    private static class FakeAsyncClient implements DynamoDbAsyncClient {
+        final Map<String, AttributeValue> item;
+        final AtomicInteger calls = new AtomicInteger();
+
+        FakeAsyncClient(Map<String, AttributeValue> item) {
+            this.item = item;
+        }
+
+        @Override
+        public CompletableFuture<GetItemResponse> getItem(GetItemRequest request) {
+            calls.incrementAndGet();
+            return item != null
+                    ? CompletableFuture.completedFuture(GetItemResponse.builder().item(item).build())
+                    : new CompletableFuture<>();
+        }
+
+        @Override
+        public String serviceName() {
+            return "dynamodb";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class FakeClient implements DynamoDbClient {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public GetItemResponse getItem(GetItemRequest request) {
+            calls.incrementAndGet();
+            return GetItemResponse.builder().item(item("dynamodb")).build();
+        }
+
+        @Override
+        public String serviceName() {
+            return "dynamodb";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    public void testDaxHitSkipsDynamoDb() {
+        FakeClient dynamoDb = new FakeClient();
+        FakeAsyncClient hedge = new FakeAsyncClient(item("hedge"));
+        Map<String, AttributeValue> found = HedgedGet.getItem(new FakeAsyncClient(item("dax")), dynamoDb, () -> hedge,
+                REQUEST, i -> i != null && !i.isEmpty());
+
+        assertEquals("dax", found.get("source").s());
+        assertEquals(0, dynamoDb.calls.get());
+        assertEquals(0, hedge.calls.get());
+    }
+
+    @Test
+    public void testSlowDaxIsHedged() {
+        FakeClient dynamoDb = new FakeClient();
+        FakeAsyncClient hedge = new FakeAsyncClient(item("hedge"));
+        long hedgesBefore = HedgedGet.getHedgedReadCount();
+
+        Map<String, AttributeValue> found = HedgedGet.getItem(new FakeAsyncClient(null), dynamoDb, () -> hedge,
+                REQUEST, i -> i != null && !i.isEmpty());
+
+        assertEquals("hedge", found.get("source").s());
+        assertEquals(1, hedge.calls.get());
+        assertEquals(0, dynamoDb.calls.get());
+        assertEquals(hedgesBefore + 1, HedgedGet.getHedgedReadCount());
+    }
+
+    @Test
+    public void testWithoutDaxReadsDynamoDb() {
+        FakeClient dynamoDb = new FakeClient();
+        Map<String, AttributeValue> found = HedgedGet.getItem(null, dynamoDb, () -> null,
+                REQUEST, i -> i != null && !i.isEmpty());
+
+        assertEquals("dynamodb", found.get("source").s());
+        assertEquals(1, dynamoDb.calls.get());
+    }
+
+    @Test
+    public void testExpiredDeadlineStopsBeforeAnyCall() throws Exception {
+        FakeClient dynamoDb = new FakeClient();
+        FakeAsyncClient dax = new FakeAsyncClient(item("dax"));
+        try (Deadline deadline = Deadline.start(2)) {
+            Thread.sleep(5);
+            assertThrows(Deadline.ExceededException.class, () -> HedgedGet.getItem(dax, dynamoDb, () -> null,
+                    REQUEST, i -> i != null && !i.isEmpty()));
+        }
+        assertEquals(0, dax.calls.get());
+        assertEquals(0, dynamoDb.calls.get());
+    }
+}
@@ -0,0 +1,57 @@
+package com.sample.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for KeywordAutomaton.
+ */
+public class KeywordAutomatonTest {
+
+    private static List<String> matches(KeywordAutomaton automaton, List<String> keywords, String text) {
+        List<String> found = new ArrayList<>();
+        automaton.scan(text, (keyword, start, end) -> found.add(keywords.get(keyword) + "@" + start + "-" + end));
+        return found;
+    }
+
+    @Test
+    public void testReportsOverlappingMatchesInEndOrder() {
+        List<String> keywords = List.of("he", "she", "his", "hers");
+        KeywordAutomaton automaton = new KeywordAutomaton(keywords);
+        assertEquals(4, automaton.size());
+        assertEquals(List.of("she@1-4", "he@2-4", "hers@2-6"), matches(automaton, keywords, "ushers"));
+        assertEquals(List.of("his@0-3", "she@2-5", "he@3-5"), matches(automaton, keywords, "hishe"));
+    }
+
+    @Test
+    public void testIgnoresAsciiCaseAndResetsOnNonAscii() {
+        List<String> keywords = List.of("error", "Timeout", "2fa", "error");
+        KeywordAutomaton automaton = new KeywordAutomaton(keywords);
+        assertEquals(List.of("error@0-5", "error@0-5", "Timeout@6-13", "2fa@14-17"),
+                matches(automaton, keywords, "ERROR timeOUT 2FA"));
+        // A non-ASCII character inside a keyword breaks the match
+        assertEquals(List.of(), matches(automaton, keywords, "errör"));
+        assertEquals(List.of("error@4-9", "error@4-9"), matches(automaton, keywords, "érr error"));
+    }
+
+    @Test
+    public void testWholeWordBoundaries() {
+        assertTrue(KeywordAutomaton.isWholeWord("an error.", 3, 8));
+        assertTrue(KeywordAutomaton.isWholeWord("error", 0, 5));
+        assertFalse(KeywordAutomaton.isWholeWord("errors", 0, 5));
+        assertFalse(KeywordAutomaton.isWholeWord("my_error", 3, 8));
+        assertFalse(KeywordAutomaton.isWholeWord("éerror", 1, 6));
+    }
+
+    @Test
+    public void testRejectsInvalidKeywords() {
+        assertThrows(IllegalArgumentException.class, () -> new KeywordAutomaton(List.of("ok", "")));
+        assertThrows(IllegalArgumentException.class, () -> new KeywordAutomaton(List.of("café")));
+    }
+}
@@ -0,0 +1,72 @@
+package com.sample.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for NearCache.
+ */
+public class NearCacheTest {
+
+    @Test
+    public void testHitRatioAndLruEviction() {
+        NearCache<String> cache = new NearCache<>("UserEmbeddings", 2, 60);
+        assertNull(cache.get("a"));
+        cache.putIfUnchanged("a", "1", cache.stamp());
+        cache.putIfUnchanged("b", "2", cache.stamp());
+        assertEquals("1", cache.get("a"));
+        cache.putIfUnchanged("c", "3", cache.stamp());
+
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a"));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRatio(), 1e-9);
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testExpiredEntriesAreMisses() {
+        NearCache<String> cache = new NearCache<>("UserEmbeddings", 10, 0);
+        cache.put("a", "1");
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testReadRacingALocalWriteIsNotCached() {
+        NearCache<String> cache = new NearCache<>("StatusTracker", 10, 60);
+
+        // A reader takes its stamp, then a local write lands before the reader stores its result
+        long stamp = cache.stamp();
+        cache.put("s1", "new");
+        cache.putIfUnchanged("s1", "old", stamp);
+        assertEquals("new", cache.get("s1"));
+
+        stamp = cache.stamp();
+        cache.invalidate("s1");
+        cache.putIfUnchanged("s1", "old", stamp);
+        assertNull(cache.get("s1"));
+        assertEquals(1, cache.getInvalidationCount());
+    }
+
+    @Test
+    public void testDisabledCacheNeverStores() {
+        NearCache<String> cache = new NearCache<>("UserEmbeddings", 0, 60);
+        cache.put("a", "1");
+        assertFalse(cache.isEnabled());
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void testTableSwitch() {
+        assertTrue(NearCache.isEnabledForTable("UserEmbeddings, StatusTracker", "StatusTracker"));
+        assertTrue(NearCache.isEnabledForTable("*", "UserEmbeddings"));
+        assertFalse(NearCache.isEnabledForTable("StatusTracker", "UserEmbeddings"));
+        assertFalse(NearCache.isEnabledForTable(null, "UserEmbeddings"));
+    }
+}
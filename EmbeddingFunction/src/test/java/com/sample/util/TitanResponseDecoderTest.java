@@ -0,0 +1,52 @@
+package com.sample.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for TitanResponseDecoder.
+ */
+public class TitanResponseDecoderTest {
+
+    private static InputStream json(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testDecodesTitanV2Response() throws IOException {
+        String body = "{\"inputTextTokenCount\":5,\"embeddingsByType\":{\"binary\":[1,0],\"float\":[0.25,-1.5,3]},"
+                + "\"meta\":{\"nested\":[{\"a\":1}]}}";
+        assertArrayEquals(new double[] {0.25, -1.5, 3.0}, TitanResponseDecoder.decodeDoubles(json(body), 3), 0.0);
+        assertArrayEquals(new float[] {0.25f, -1.5f, 3.0f}, TitanResponseDecoder.decodeFloats(json(body), 3), 0f);
+    }
+
+    @Test
+    public void testDecodesTitanV1Response() throws IOException {
+        String body = "{\"embedding\":[0.5,0.125],\"inputTextTokenCount\":2}";
+        assertArrayEquals(new double[] {0.5, 0.125}, TitanResponseDecoder.decodeDoubles(json(body), 0), 0.0);
+    }
+
+    @Test
+    public void testGrowsAndTrimsWhenDimensionsDiffer() throws IOException {
+        StringBuilder body = new StringBuilder("{\"embedding\":[");
+        for (int i = 0; i < 1500; i++) {
+            body.append(i == 0 ? "" : ",").append(i);
+        }
+        body.append("]}");
+        double[] decoded = TitanResponseDecoder.decodeDoubles(json(body.toString()), 0);
+        assertArrayEquals(new double[] {1499.0}, new double[] {decoded[decoded.length - 1]}, 0.0);
+        assertArrayEquals(new float[] {0f, 1f}, TitanResponseDecoder.decodeFloats(json("{\"embedding\":[0,1]}"), 8), 0f);
+    }
+
+    @Test
+    public void testRejectsResponsesWithoutEmbedding() {
+        assertThrows(IOException.class, () -> TitanResponseDecoder.decodeDoubles(json("{\"message\":\"error\"}"), 0));
+        assertThrows(IOException.class, () -> TitanResponseDecoder.decodeDoubles(json("{\"embedding\":[1,\"x\"]}"), 0));
+    }
+}
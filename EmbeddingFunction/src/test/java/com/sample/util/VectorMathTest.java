@@ -0,0 +1,137 @@
+package com.sample.util;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for VectorMath, checking the SIMD and scalar kernels against a double-precision reference.
+ */
+public class VectorMathTest {
+
+    private static final int[] LENGTHS = {0, 1, 3, 7, 8, 15, 16, 17, 33, 255, 1024, 1536};
+
+    // The SIMD kernels are only checked when built and run with the simd profile
+    private static final VectorMath.Kernels[] KERNELS = VectorMath.simdKernels() != null
+            ? new VectorMath.Kernels[] {new ScalarKernels(), VectorMath.simdKernels()}
+            : new VectorMath.Kernels[] {new ScalarKernels()};
+
+    private static float[] randomFloats(Random random, int length) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (float) random.nextGaussian();
+        }
+        return values;
+    }
+
+    private static byte[] randomBytes(Random random, int length) {
+        byte[] values = new byte[length];
+        random.nextBytes(values);
+        return values;
+    }
+
+    @Test
+    public void testFloatDotMatchesReference() {
+        Random random = new Random(1);
+        for (int length : LENGTHS) {
+            float[] a = randomFloats(random, length + 5);
+            float[] b = randomFloats(random, length + 3);
+            double expected = 0.0;
+            for (int i = 0; i < length; i++) {
+                expected += (double) a[i + 5] * b[i + 3];
+            }
+            for (VectorMath.Kernels kernels : KERNELS) {
+                assertEquals(expected, kernels.dot(a, 5, b, 3, length), 1e-3, kernels + " length " + length);
+            }
+        }
+    }
+
+    @Test
+    public void testDoubleDotMatchesReference() {
+        Random random = new Random(2);
+        for (int length : LENGTHS) {
+            double[] a = new double[length];
+            double[] b = new double[length];
+            double expected = 0.0;
+            for (int i = 0; i < length; i++) {
+                a[i] = random.nextGaussian();
+                b[i] = random.nextGaussian();
+                expected += a[i] * b[i];
+            }
+            for (VectorMath.Kernels kernels : KERNELS) {
+                assertEquals(expected, kernels.dot(a, b, length), 1e-9, kernels + " length " + length);
+            }
+        }
+    }
+
+    @Test
+    public void testInt8DotIsExact() {
+        Random random = new Random(3);
+        for (int length : LENGTHS) {
+            byte[] a = randomBytes(random, length + 2);
+            byte[] b = randomBytes(random, length);
+            long expected = 0;
+            for (int i = 0; i < length; i++) {
+                expected += a[i + 2] * b[i];
+            }
+            for (VectorMath.Kernels kernels : KERNELS) {
+                assertEquals(expected, kernels.dot(a, 2, b, 0, length), kernels + " length " + length);
+            }
+        }
+    }
+
+    @Test
+    public void testInt8DotDoesNotOverflowIntLanes() {
+        // 200000 * 128 * 128 is past Integer.MAX_VALUE in total, and past it per lane without draining
+        byte[] a = new byte[200000];
+        Arrays.fill(a, (byte) -128);
+        for (VectorMath.Kernels kernels : KERNELS) {
+            assertEquals(200000L * 128 * 128, kernels.dot(a, 0, a, 0, a.length), kernels.toString());
+        }
+    }
+
+    @Test
+    public void testCosineAndNorm() {
+        assertEquals(0.6, VectorMath.cosine(new float[] {3f, 4f}, new float[] {1f, 0f}), 1e-6);
+        assertEquals(0.6, VectorMath.cosine(new double[] {3.0, 4.0}, new double[] {1.0, 0.0}), 1e-12);
+        assertEquals(0.0, VectorMath.cosine(new float[] {0f, 0f}, new float[] {1f, 0f}));
+        assertEquals(5.0, VectorMath.norm(new float[] {3f, 4f}), 1e-6);
+        assertEquals(5.0, VectorMath.norm(new double[] {3.0, 4.0}), 1e-12);
+        assertThrows(IllegalArgumentException.class, () -> VectorMath.dot(new float[2], new float[3]));
+    }
+
+    @Test
+    public void testBatchedScoringMatchesPairwise() {
+        Random random = new Random(4);
+        int dimension = 37;
+        int rows = 10;
+        float[] query = randomFloats(random, dimension);
+        float[][] vectors = new float[rows][];
+        float[] matrix = new float[rows * dimension];
+        for (int r = 0; r < rows; r++) {
+            vectors[r] = randomFloats(random, dimension);
+            System.arraycopy(vectors[r], 0, matrix, r * dimension, dimension);
+        }
+
+        float[] many = new float[rows];
+        VectorMath.dotMany(query, vectors, many);
+        float[] fromRows = new float[rows - 2];
+        VectorMath.dotRows(query, matrix, 2, rows, fromRows);
+        for (int r = 0; r < rows; r++) {
+            assertEquals(VectorMath.dot(query, vectors[r]), many[r], 1e-6);
+        }
+        assertArrayEquals(Arrays.copyOfRange(many, 2, rows), fromRows, 1e-6f);
+
+        byte[] codes = randomBytes(random, dimension);
+        byte[] codeMatrix = randomBytes(random, rows * dimension);
+        long[] codeScores = new long[rows];
+        VectorMath.dotRows(codes, codeMatrix, 0, rows, codeScores);
+        for (int r = 0; r < rows; r++) {
+            assertEquals(VectorMath.dot(codes, Arrays.copyOfRange(codeMatrix, r * dimension, (r + 1) * dimension)), codeScores[r]);
+        }
+    }
+}
@@ -10,7 +10,9 @@ import com.amazonaws.services.lambda.runtime.events.APIGatewayProxyResponseEvent
 import com.sample.model.Status;
 import com.sample.service.StatusTrackerService;
 import com.sample.util.ApiGatewayResponseUtil;
+import com.sample.util.Deadline;
 import com.sample.util.JsonUtil;
+import com.sample.util.NearCache;
 
 /**
  * Handler for requests to Lambda function.
@@ -46,7 +48,8 @@ public class StatusTracker implements RequestHandler<APIGatewayProxyRequestEvent
 
     @Override
     public APIGatewayProxyResponseEvent handleRequest(APIGatewayProxyRequestEvent input, Context context) {
-        try {
+        // DAX, DynamoDB and Comprehend calls made for this request share the invocation's remaining time
+        try (Deadline deadline = Deadline.start(context.getRemainingTimeInMillis())) {
             String path = input.getPath();
             String httpMethod = input.getHttpMethod();
             
@@ -70,6 +73,8 @@ public class StatusTracker implements RequestHandler<APIGatewayProxyRequestEvent
                 return getStatusBySourceId(input, context);
             } else if (path.matches("/status/tracking") && httpMethod.equals("GET")) {
                 return getStatusByTrackingId(input, context);
+            } else if (path.equals("/cache/stats") && httpMethod.equals("GET")) {
+                return getCacheStats(context);
             } else {
                 return responseUtil.buildErrorResponse(404, "Not Found", "The requested resource was not found");
             }
@@ -122,6 +127,18 @@ public class StatusTracker implements RequestHandler<APIGatewayProxyRequestEvent
         }
     }
 
+    /**
+     * Returns hit ratio and size statistics for the near-caches in this container.
+     */
+    private APIGatewayProxyResponseEvent getCacheStats(Context context) {
+        try {
+            return responseUtil.buildSuccessResponse(200, jsonUtil.toJson(NearCache.getAllStats()));
+        } catch (Exception e) {
+            context.getLogger().log("Error getting cache stats: " + e.getMessage());
+            return responseUtil.buildErrorResponse(500, "Internal Server Error", e.getMessage());
+        }
+    }
+
     /**
      * Updates an existing status entry.
      */
@@ -2,14 +2,22 @@ package com.sample.service;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sample.model.Status;
 import com.sample.model.StatusHistoryItem;
+import com.sample.util.Deadline;
+import com.sample.util.EnvConfig;
+import com.sample.util.HedgedGet;
+import com.sample.util.NearCache;
 
 import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
@@ -31,6 +39,11 @@ public class StatusDynamoDBService {
     private static final String TABLE_NAME = "StatusTracker";
     private static final String DAX_ENDPOINT = System.getenv("DAX_ENDPOINT");
     private final ObjectMapper objectMapper;
+    private final NearCache<Map<String, AttributeValue>> nearCache = NearCache.forTable(TABLE_NAME);
+    private static final long CALL_TIMEOUT_MILLIS = EnvConfig.getLong("DYNAMODB_CALL_TIMEOUT_MILLIS", 3000);
+
+    // Created on first async call
+    private DynamoDbAsyncClient asyncDynamoDb;
 
     /**
      * Default constructor that initializes AWS clients.
@@ -55,6 +68,20 @@ public class StatusDynamoDBService {
         }
     }
 
+    /**
+     * Constructor that allows for dependency injection (useful for testing).
+     *
+     * @param dynamoDb DynamoDB client
+     * @param daxClient DAX client, or null to read and write DynamoDB only
+     * @param asyncDynamoDb Async DynamoDB client for the *Async methods, or null to create one on first use
+     */
+    StatusDynamoDBService(DynamoDbClient dynamoDb, DynamoDbAsyncClient daxClient, DynamoDbAsyncClient asyncDynamoDb) {
+        this.dynamoDb = dynamoDb;
+        this.objectMapper = new ObjectMapper();
+        this.daxClient = daxClient;
+        this.asyncDynamoDb = asyncDynamoDb;
+    }
+
     /**
      * Stores a status in DynamoDB and DAX.
      */
@@ -62,18 +89,65 @@ public class StatusDynamoDBService {
         Map<String, AttributeValue> item = convertStatusToItem(status);
 
         // Store in DynamoDB (permanent storage)
-        dynamoDb.putItem(PutItemRequest.builder()
-                .tableName(TABLE_NAME)
-                .item(item)
-                .build());
+        try {
+            dynamoDb.putItem(PutItemRequest.builder()
+                    .tableName(TABLE_NAME)
+                    .item(item)
+                    .overrideConfiguration(Deadline.apiCallTimeout(
+                            Deadline.sliceMillis("DynamoDB write", CALL_TIMEOUT_MILLIS, 1.0)))
+                    .build());
+        } catch (RuntimeException e) {
+            nearCache.invalidate(status.getStatusId());
+            throw e;
+        }
+        nearCache.put(status.getStatusId(), Collections.unmodifiableMap(item));
+        putInDax(item);
+    }
 
-        // Store in DAX (cache) if available
+    /**
+     * Stores a status without blocking the calling thread. Fails with a TimeoutException if
+     * DynamoDB has not accepted the write within DYNAMODB_CALL_TIMEOUT_MILLIS.
+     */
+    public CompletableFuture<Void> putStatusAsync(Status status) {
+        Map<String, AttributeValue> item;
+        try {
+            item = convertStatusToItem(status);
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        String statusId = status.getStatusId();
+
+        return getAsyncDynamoDb().putItem(PutItemRequest.builder()
+                        .tableName(TABLE_NAME)
+                        .item(item)
+                        .build())
+                .orTimeout(CALL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        // A timed-out write may still land, so drop whatever we had cached
+                        nearCache.invalidate(statusId);
+                    } else {
+                        nearCache.put(statusId, Collections.unmodifiableMap(item));
+                        putInDax(item);
+                    }
+                })
+                .thenApply(response -> null);
+    }
+
+    /**
+     * Stores an item in DAX (cache) if available. Failures are logged, not propagated.
+     */
+    private void putInDax(Map<String, AttributeValue> item) {
         if (daxClient != null) {
             try {
                 daxClient.putItem(PutItemRequest.builder()
                         .tableName(TABLE_NAME)
                         .item(item)
-                        .build());
+                        .build())
+                        .exceptionally(e -> {
+                            System.err.println("Error storing in DAX: " + e.getMessage());
+                            return null;
+                        });
             } catch (Exception e) {
                 System.err.println("Error storing in DAX: " + e.getMessage());
             }
@@ -84,6 +158,45 @@ public class StatusDynamoDBService {
      * Retrieves a status by its ID.
      */
     public Status getStatus(String statusId) throws Exception {
+        // Check the in-process near-cache before going over the network. Items are cached
+        // rather than Status objects, which are mutable.
+        Map<String, AttributeValue> cached = nearCache.get(statusId);
+        if (cached != null) {
+            return convertItemToStatus(cached);
+        }
+        long stamp = nearCache.stamp();
+
+        Map<String, AttributeValue> key = new HashMap<>();
+        key.put("statusId", AttributeValue.builder().s(statusId).build());
+
+        GetItemRequest request = GetItemRequest.builder()
+                .tableName(TABLE_NAME)
+                .key(key)
+                .build();
+
+        // DAX (cache) first, with a hedged DynamoDB read if DAX is slow, then DynamoDB
+        Map<String, AttributeValue> item = HedgedGet.getItem(daxClient, dynamoDb, this::getAsyncDynamoDb, request,
+                found -> found != null && !found.isEmpty());
+
+        if (item == null || item.isEmpty()) {
+            return null;
+        }
+        nearCache.putIfUnchanged(statusId, item, stamp);
+        return convertItemToStatus(item);
+    }
+
+    /**
+     * Retrieves a status by its ID without blocking the calling thread. The DAX attempt gets
+     * half of DYNAMODB_CALL_TIMEOUT_MILLIS, so a slow cache still leaves time for the DynamoDB
+     * fallback; the whole call fails with a TimeoutException after the full deadline.
+     */
+    public CompletableFuture<Status> getStatusAsync(String statusId) {
+        Map<String, AttributeValue> cached = nearCache.get(statusId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached).thenApply(this::toStatus);
+        }
+        long stamp = nearCache.stamp();
+
         Map<String, AttributeValue> key = new HashMap<>();
         key.put("statusId", AttributeValue.builder().s(statusId).build());
 
@@ -92,24 +205,43 @@ public class StatusDynamoDBService {
                 .key(key)
                 .build();
 
-        // Attempt to fetch from DAX (cache) if available
-        Map<String, AttributeValue> item = null;
+        CompletableFuture<Map<String, AttributeValue>> daxAttempt = CompletableFuture.completedFuture(null);
         if (daxClient != null) {
+            CompletableFuture<GetItemResponse> daxGet;
             try {
-                GetItemResponse response = daxClient.getItem(request).get();
-                item = response.item();
+                daxGet = daxClient.getItem(request);
             } catch (Exception e) {
-                System.err.println("Error fetching from DAX: " + e.getMessage());
+                daxGet = CompletableFuture.failedFuture(e);
             }
-        }
-        
-        if (item == null || item.isEmpty()) {
-            // Fallback to DynamoDB
-            GetItemResponse response = dynamoDb.getItem(request);
-            item = response.item();
-        }
+            daxAttempt = daxGet
+                    .orTimeout(Math.max(1, CALL_TIMEOUT_MILLIS / 2), TimeUnit.MILLISECONDS)
+                    .thenApply(GetItemResponse::item)
+                    .exceptionally(e -> {
+                        System.err.println("Error fetching from DAX: " + e.getMessage());
+                        return null;
+                    });
+        }
+
+        return daxAttempt
+                .thenCompose(item -> item != null && !item.isEmpty()
+                        ? CompletableFuture.completedFuture(item)
+                        // Fallback to DynamoDB
+                        : getAsyncDynamoDb().getItem(request).thenApply(GetItemResponse::item))
+                .thenApply(item -> {
+                    if (item == null || item.isEmpty()) {
+                        return null;
+                    }
+                    nearCache.putIfUnchanged(statusId, item, stamp);
+                    return toStatus(item);
+                })
+                .orTimeout(CALL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
 
-        return (item != null && !item.isEmpty()) ? convertItemToStatus(item) : null;
+    /**
+     * Hit ratio and size of the in-process near-cache for the status table.
+     */
+    public Map<String, Object> getNearCacheStats() {
+        return nearCache.getStats();
     }
 
     /**
@@ -162,6 +294,33 @@ public class StatusDynamoDBService {
      * Retrieves all statuses for a specific client.
      */
     public List<Status> getClientStatuses(String clientId, String statusType) throws Exception {
+        QueryResponse response = dynamoDb.query(clientStatusesQuery(clientId, statusType));
+        
+        List<Status> statuses = new ArrayList<>();
+        for (Map<String, AttributeValue> item : response.items()) {
+            statuses.add(convertItemToStatus(item));
+        }
+        
+        return statuses;
+    }
+
+    /**
+     * Retrieves all statuses for a specific client without blocking the calling thread.
+     * Fails with a TimeoutException after DYNAMODB_CALL_TIMEOUT_MILLIS.
+     */
+    public CompletableFuture<List<Status>> getClientStatusesAsync(String clientId, String statusType) {
+        return getAsyncDynamoDb().query(clientStatusesQuery(clientId, statusType))
+                .thenApply(response -> {
+                    List<Status> statuses = new ArrayList<>();
+                    for (Map<String, AttributeValue> item : response.items()) {
+                        statuses.add(toStatus(item));
+                    }
+                    return statuses;
+                })
+                .orTimeout(CALL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private QueryRequest clientStatusesQuery(String clientId, String statusType) {
         Map<String, AttributeValue> expressionValues = new HashMap<>();
         expressionValues.put(":clientId", AttributeValue.builder().s(clientId).build());
 
@@ -176,18 +335,9 @@ public class StatusDynamoDBService {
             queryRequestBuilder.filterExpression("statusType = :statusType");
         }
 
-        QueryRequest queryRequest = queryRequestBuilder
+        return queryRequestBuilder
                 .expressionAttributeValues(expressionValues)
                 .build();
-
-        QueryResponse response = dynamoDb.query(queryRequest);
-        
-        List<Status> statuses = new ArrayList<>();
-        for (Map<String, AttributeValue> item : response.items()) {
-            statuses.add(convertItemToStatus(item));
-        }
-        
-        return statuses;
     }
 
     /**
@@ -526,6 +676,24 @@ public class StatusDynamoDBService {
         return item;
     }
 
+    /**
+     * convertItemToStatus for use inside future callbacks.
+     */
+    private Status toStatus(Map<String, AttributeValue> item) {
+        try {
+            return convertItemToStatus(item);
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private synchronized DynamoDbAsyncClient getAsyncDynamoDb() {
+        if (asyncDynamoDb == null) {
+            asyncDynamoDb = DynamoDbAsyncClient.create();
+        }
+        return asyncDynamoDb;
+    }
+
     /**
      * Converts a DynamoDB item to a Status object.
      */
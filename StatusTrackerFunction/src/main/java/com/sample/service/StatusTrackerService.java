@@ -9,7 +9,10 @@ import java.util.UUID;
 
 import com.sample.model.Status;
 import com.sample.model.StatusHistoryItem;
+import com.sample.util.Deadline;
+import com.sample.util.EnvConfig;
 
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
 import software.amazon.awssdk.services.comprehend.ComprehendClient;
 import software.amazon.awssdk.services.comprehend.model.DetectSentimentRequest;
 import software.amazon.awssdk.services.comprehend.model.DetectSentimentResponse;
@@ -56,6 +59,9 @@ public class StatusTrackerService {
         SOURCE_SYSTEM_URL_TEMPLATES.put("DEFAULT", "https://portal.example.com/lookup?id=");
     }
     
+    private static final long DEFAULT_COMPREHEND_CALL_TIMEOUT_MILLIS = 5000;
+    private static final long COMPREHEND_CALL_TIMEOUT_MILLIS = readComprehendTimeout();
+
     // AWS clients
     private final ComprehendClient comprehendClient;
     private final StatusDynamoDBService dynamoDBService;
@@ -210,6 +216,7 @@ public class StatusTrackerService {
                         DetectSentimentRequest request = DetectSentimentRequest.builder()
                             .text(summary)
                             .languageCode("en")
+                            .overrideConfiguration(comprehendTimeout())
                             .build();
                         
                         DetectSentimentResponse response = comprehendClient.detectSentiment(request);
@@ -464,6 +471,7 @@ public class StatusTrackerService {
             DetectSentimentRequest request = DetectSentimentRequest.builder()
                 .text(text)
                 .languageCode("en")
+                .overrideConfiguration(comprehendTimeout())
                 .build();
             
             DetectSentimentResponse response = comprehendClient.detectSentiment(request);
@@ -474,6 +482,19 @@ public class StatusTrackerService {
         }
     }
     
+    /**
+     * API call timeout for a Comprehend call: COMPREHEND_CALL_TIMEOUT_MILLIS, capped at half the
+     * request's remaining budget so the status can still be stored. Throws
+     * Deadline.ExceededException once the budget is gone, which callers treat as a failed analysis.
+     */
+    private static AwsRequestOverrideConfiguration comprehendTimeout() {
+        return Deadline.apiCallTimeout(Deadline.sliceMillis("Comprehend call", COMPREHEND_CALL_TIMEOUT_MILLIS, 0.5));
+    }
+
+    private static long readComprehendTimeout() {
+        return Math.max(1, EnvConfig.getLong("COMPREHEND_CALL_TIMEOUT_MILLIS", DEFAULT_COMPREHEND_CALL_TIMEOUT_MILLIS));
+    }
+
     /**
      * Generates a URL to the source system based on the sourceId.
      * Different URL templates are used based on the sourceId prefix.
@@ -0,0 +1,143 @@
+package com.sample.util;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+
+/**
+ * GetItem through DAX with a DynamoDB fallback, bounded by the current {@link Deadline}.
+ * This class handles:
+ * 1. Giving the DAX read a slice of the remaining budget (at most DAX_READ_TIMEOUT_MILLIS,
+ *    default 200) instead of blocking on it indefinitely
+ * 2. Sending a hedged DynamoDB read once DAX has used half its slice without answering,
+ *    and returning whichever answers first
+ * 3. Falling back to DynamoDB with the rest of the budget (at most DYNAMODB_CALL_TIMEOUT_MILLIS,
+ *    default 3000) as its API call timeout
+ *
+ * Both function modules keep an identical copy of this class; change them together.
+ */
+public final class HedgedGet {
+
+    private static final long DAX_READ_TIMEOUT_MILLIS = EnvConfig.getLong("DAX_READ_TIMEOUT_MILLIS", 200);
+    private static final long DYNAMODB_CALL_TIMEOUT_MILLIS = EnvConfig.getLong("DYNAMODB_CALL_TIMEOUT_MILLIS", 3000);
+    private static final double DAX_BUDGET_FRACTION = 0.25;
+
+    private static final AtomicLong HEDGED_READS = new AtomicLong();
+    private static final AtomicLong HEDGE_WINS = new AtomicLong();
+
+    private HedgedGet() {
+    }
+
+    /**
+     * Reads an item, trying DAX (cache) first and falling back to DynamoDB.
+     *
+     * @param daxClient DAX client, or null to read DynamoDB only
+     * @param dynamoDb DynamoDB client for the fallback read
+     * @param hedgeClient Async DynamoDB client for the hedged read, only requested when DAX is slow
+     * @param request The read
+     * @param isHit Whether a DAX result can be used, e.g. whether it holds the wanted attribute
+     * @return The item, possibly null or empty if it does not exist
+     * @throws Deadline.ExceededException If the request's budget runs out
+     */
+    public static Map<String, AttributeValue> getItem(DynamoDbAsyncClient daxClient, DynamoDbClient dynamoDb,
+                                                      Supplier<DynamoDbAsyncClient> hedgeClient, GetItemRequest request,
+                                                      Predicate<Map<String, AttributeValue>> isHit) {
+        if (daxClient != null) {
+            long daxMillis = Deadline.sliceMillis("DAX read", DAX_READ_TIMEOUT_MILLIS, DAX_BUDGET_FRACTION);
+            long hedgeAfter = Math.max(1, daxMillis / 2);
+            try {
+                CompletableFuture<GetItemResponse> dax = daxClient.getItem(request);
+                try {
+                    Map<String, AttributeValue> item = dax.get(hedgeAfter, TimeUnit.MILLISECONDS).item();
+                    if (isHit.test(item)) {
+                        return item;
+                    }
+                } catch (TimeoutException e) {
+                    return hedge(dax, hedgeClient.get(), request, isHit);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while fetching from DAX", e);
+            } catch (ExecutionException e) {
+                System.err.println("Error fetching from DAX: " + e.getCause().getMessage());
+            } catch (RuntimeException e) {
+                if (e instanceof Deadline.ExceededException) {
+                    throw e;
+                }
+                System.err.println("Error fetching from DAX: " + e.getMessage());
+            }
+        }
+
+        // Fallback to DynamoDB
+        long dynamoMillis = Deadline.sliceMillis("DynamoDB read", DYNAMODB_CALL_TIMEOUT_MILLIS, 1.0);
+        return dynamoDb.getItem(request.toBuilder()
+                        .overrideConfiguration(Deadline.apiCallTimeout(dynamoMillis))
+                        .build())
+                .item();
+    }
+
+    /**
+     * Races the outstanding DAX read against a DynamoDB read. A DAX answer only wins if it
+     * is a hit; the DynamoDB answer is authoritative either way.
+     */
+    private static Map<String, AttributeValue> hedge(CompletableFuture<GetItemResponse> dax, DynamoDbAsyncClient client,
+                                                     GetItemRequest request,
+                                                     Predicate<Map<String, AttributeValue>> isHit) throws InterruptedException {
+        long dynamoMillis = Deadline.sliceMillis("DynamoDB read", DYNAMODB_CALL_TIMEOUT_MILLIS, 1.0);
+        HEDGED_READS.incrementAndGet();
+
+        CompletableFuture<Map<String, AttributeValue>> first = new CompletableFuture<>();
+        dax.thenAccept(response -> {
+            if (isHit.test(response.item())) {
+                first.complete(response.item());
+            }
+        });
+        client.getItem(request.toBuilder()
+                        .overrideConfiguration(Deadline.apiCallTimeout(dynamoMillis))
+                        .build())
+                .whenComplete((response, error) -> {
+                    boolean won = error != null
+                            ? first.completeExceptionally(error)
+                            : first.complete(response.item());
+                    if (won) {
+                        HEDGE_WINS.incrementAndGet();
+                    }
+                });
+
+        try {
+            return first.get(dynamoMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new Deadline.ExceededException("DynamoDB read completed");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException
+                    ? (RuntimeException) cause
+                    : new RuntimeException("Error fetching from DynamoDB: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Number of reads that sent a hedged DynamoDB request because DAX was slow.
+     */
+    public static long getHedgedReadCount() {
+        return HEDGED_READS.get();
+    }
+
+    /**
+     * Number of hedged reads where the DynamoDB request answered first.
+     */
+    public static long getHedgeWinCount() {
+        return HEDGE_WINS.get();
+    }
+}
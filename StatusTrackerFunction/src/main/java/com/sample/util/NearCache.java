@@ -0,0 +1,245 @@
+package com.sample.util;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-JVM (L1) cache that sits in front of DAX for single-item reads.
+ * This class handles:
+ * 1. Size-based (LRU) and TTL-based eviction
+ * 2. Local invalidation from our own write paths
+ * 3. Per-table switching through NEAR_CACHE_TABLES (comma-separated table names, or *)
+ * 4. Hit, miss, eviction and invalidation counters for monitoring
+ *
+ * Values must be immutable, since they are shared with every caller. Writes made by other
+ * processes are only seen after the TTL (NEAR_CACHE_TTL_SECONDS, default 60) expires.
+ *
+ * A read that races with a local write must not repopulate the cache with the value it read
+ * before the write: callers take a stamp with {@link #stamp()} before reading from DAX or
+ * DynamoDB and store the result with {@link #putIfUnchanged(String, Object, long)}.
+ *
+ * Both function modules keep an identical copy of this class; change them together.
+ *
+ * @param <V> Cached value type
+ */
+public class NearCache<V> {
+
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+    private static final long DEFAULT_TTL_SECONDS = 60;
+
+    private static final Map<String, NearCache<?>> TABLE_CACHES = new LinkedHashMap<>();
+
+    private final String name;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Entry<V>> entries;
+
+    // Incremented on every invalidation; see putIfUnchanged
+    private long invalidationStamp = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAt;
+
+        Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Creates a cache with the given bounds.
+     *
+     * @param name Name reported in stats, usually the table name
+     * @param maxEntries Maximum number of entries to keep; 0 disables caching
+     * @param ttlSeconds Time to live for each entry in seconds
+     */
+    public NearCache(String name, int maxEntries, long ttlSeconds) {
+        this.name = name;
+        this.maxEntries = Math.max(0, maxEntries);
+        this.ttlMillis = ttlSeconds * 1000L;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the process-wide cache for a table. Tables not listed in NEAR_CACHE_TABLES get a
+     * disabled cache, so callers never need to check whether caching is on.
+     */
+    @SuppressWarnings("unchecked")
+    public static synchronized <V> NearCache<V> forTable(String tableName) {
+        NearCache<?> cache = TABLE_CACHES.get(tableName);
+        if (cache == null) {
+            boolean enabled = isEnabledForTable(System.getenv("NEAR_CACHE_TABLES"), tableName);
+            cache = new NearCache<V>(tableName,
+                    enabled ? (int) EnvConfig.getLong("NEAR_CACHE_MAX_ENTRIES", DEFAULT_MAX_ENTRIES) : 0,
+                    EnvConfig.getLong("NEAR_CACHE_TTL_SECONDS", DEFAULT_TTL_SECONDS));
+            TABLE_CACHES.put(tableName, cache);
+        }
+        return (NearCache<V>) cache;
+    }
+
+    static boolean isEnabledForTable(String tables, String tableName) {
+        if (tables == null || tables.trim().isEmpty()) {
+            return false;
+        }
+        Set<String> names = new HashSet<>();
+        for (String table : tables.split(",")) {
+            names.add(table.trim());
+        }
+        return names.contains("*") || names.contains(tableName);
+    }
+
+    /**
+     * Stats for every table cache created in this process, keyed by table name.
+     */
+    public static synchronized Map<String, Map<String, Object>> getAllStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        for (Map.Entry<String, NearCache<?>> entry : TABLE_CACHES.entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().getStats());
+        }
+        return stats;
+    }
+
+    public boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    /**
+     * Returns the cached value, or null on a miss or expired entry.
+     */
+    public V get(String key) {
+        if (maxEntries == 0) {
+            return null;
+        }
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > System.currentTimeMillis()) {
+                    hits.incrementAndGet();
+                    return entry.value;
+                }
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Takes a stamp to pass to {@link #putIfUnchanged(String, Object, long)} after a remote read.
+     */
+    public long stamp() {
+        synchronized (entries) {
+            return invalidationStamp;
+        }
+    }
+
+    /**
+     * Stores a value read remotely, unless any entry was invalidated since the stamp was taken.
+     */
+    public void putIfUnchanged(String key, V value, long stamp) {
+        if (maxEntries == 0 || value == null) {
+            return;
+        }
+        synchronized (entries) {
+            if (invalidationStamp == stamp) {
+                putLocked(key, value);
+            }
+        }
+    }
+
+    /**
+     * Stores a value unconditionally, e.g. the value our own write just stored.
+     */
+    public void put(String key, V value) {
+        if (maxEntries == 0 || value == null) {
+            return;
+        }
+        synchronized (entries) {
+            invalidationStamp++;
+            putLocked(key, value);
+        }
+    }
+
+    private void putLocked(String key, V value) {
+        entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+        if (entries.size() > maxEntries) {
+            Iterator<String> eldest = entries.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drops a key after a local write.
+     */
+    public void invalidate(String key) {
+        if (maxEntries == 0) {
+            return;
+        }
+        synchronized (entries) {
+            invalidationStamp++;
+            if (entries.remove(key) != null) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            invalidationStamp++;
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0.0 : (double) hits.get() / total;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("enabled", isEnabled());
+        stats.put("size", size());
+        stats.put("hits", getHitCount());
+        stats.put("misses", getMissCount());
+        stats.put("hitRatio", getHitRatio());
+        stats.put("evictions", getEvictionCount());
+        stats.put("invalidations", getInvalidationCount());
+        return stats;
+    }
+}
@@ -360,4 +360,17 @@ public class StatusTrackerTest {
         assertEquals(1, responseList.size());
         assertEquals("client789", responseList.get(0).get("clientId"));
     }
-} 
\ No newline at end of file
+
+    @Test
+    public void testGetCacheStats() throws Exception {
+        APIGatewayProxyRequestEvent request = new APIGatewayProxyRequestEvent();
+        request.setPath("/cache/stats");
+        request.setHttpMethod("GET");
+
+        APIGatewayProxyResponseEvent response = statusTracker.handleRequest(request, mockContext);
+
+        assertNotNull(response);
+        assertEquals(200, response.getStatusCode());
+        assertNotNull(objectMapper.readValue(response.getBody(), Map.class));
+    }
+}
@@ -0,0 +1,162 @@
+package com.sample.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+import com.sample.model.Status;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.GetItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.GetItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.QueryRequest;
+import software.amazon.awssdk.services.dynamodb.model.QueryResponse;
+
+/**
+ * Tests for the non-blocking *Async methods of StatusDynamoDBService.
+ */
+public class StatusDynamoDBServiceAsyncTest {
+
+    /**
+     * In-memory async table keyed by statusId. A hung client never completes.
+     */
+    private static class FakeAsyncDynamoDb implements DynamoDbAsyncClient {
+        final Map<String, Map<String, AttributeValue>> items = new HashMap<>();
+        final AtomicInteger calls = new AtomicInteger();
+        final boolean hung;
+
+        FakeAsyncDynamoDb(boolean hung) {
+            this.hung = hung;
+        }
+
+        @Override
+        public CompletableFuture<PutItemResponse> putItem(PutItemRequest request) {
+            calls.incrementAndGet();
+            if (hung) {
+                return new CompletableFuture<>();
+            }
+            synchronized (items) {
+                items.put(request.item().get("statusId").s(), request.item());
+            }
+            return CompletableFuture.completedFuture(PutItemResponse.builder().build());
+        }
+
+        @Override
+        public CompletableFuture<GetItemResponse> getItem(GetItemRequest request) {
+            calls.incrementAndGet();
+            if (hung) {
+                return new CompletableFuture<>();
+            }
+            synchronized (items) {
+                Map<String, AttributeValue> item = items.get(request.key().get("statusId").s());
+                return CompletableFuture.completedFuture(GetItemResponse.builder().item(item).build());
+            }
+        }
+
+        @Override
+        public CompletableFuture<QueryResponse> query(QueryRequest request) {
+            calls.incrementAndGet();
+            if (hung) {
+                return new CompletableFuture<>();
+            }
+            String clientId = request.expressionAttributeValues().get(":clientId").s();
+            AttributeValue statusType = request.expressionAttributeValues().get(":statusType");
+            List<Map<String, AttributeValue>> found = new ArrayList<>();
+            synchronized (items) {
+                for (Map<String, AttributeValue> item : items.values()) {
+                    if (item.get("clientId").s().equals(clientId)
+                            && (statusType == null || item.get("statusType").s().equals(statusType.s()))) {
+                        found.add(item);
+                    }
+                }
+            }
+            return CompletableFuture.completedFuture(QueryResponse.builder().items(found).build());
+        }
+
+        @Override
+        public String serviceName() {
+            return "dynamodb";
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static Status status(String statusId, String clientId, String statusType) {
+        Status status = new Status();
+        status.setStatusId(statusId);
+        status.setClientId(clientId);
+        status.setAdvisorId("advisor-1");
+        status.setStatusType(statusType);
+        status.setStatusSummary("Summary of " + statusId);
+        return status;
+    }
+
+    @Test
+    public void testPutThenGet() throws Exception {
+        FakeAsyncDynamoDb asyncDynamoDb = new FakeAsyncDynamoDb(false);
+        StatusDynamoDBService service = new StatusDynamoDBService(null, null, asyncDynamoDb);
+
+        service.putStatusAsync(status("s1", "client-1", "ACCOUNT_OPENING")).get();
+
+        Status status = service.getStatusAsync("s1").get();
+        assertEquals("client-1", status.getClientId());
+        assertEquals("Summary of s1", status.getStatusSummary());
+        assertNull(service.getStatusAsync("missing").get());
+    }
+
+    @Test
+    public void testGetClientStatusesFiltersByType() throws Exception {
+        FakeAsyncDynamoDb asyncDynamoDb = new FakeAsyncDynamoDb(false);
+        StatusDynamoDBService service = new StatusDynamoDBService(null, null, asyncDynamoDb);
+        service.putStatusAsync(status("s1", "client-1", "ACCOUNT_OPENING")).get();
+        service.putStatusAsync(status("s2", "client-1", "TRADE")).get();
+        service.putStatusAsync(status("s3", "client-2", "TRADE")).get();
+
+        assertEquals(2, service.getClientStatusesAsync("client-1", null).get().size());
+        List<Status> trades = service.getClientStatusesAsync("client-1", "TRADE").get();
+        assertEquals(1, trades.size());
+        assertEquals("s2", trades.get(0).getStatusId());
+    }
+
+    @Test
+    public void testHungDaxFallsBackToDynamoDb() throws Exception {
+        FakeAsyncDynamoDb asyncDynamoDb = new FakeAsyncDynamoDb(false);
+        FakeAsyncDynamoDb dax = new FakeAsyncDynamoDb(true);
+        StatusDynamoDBService service = new StatusDynamoDBService(null, null, asyncDynamoDb);
+        service.putStatusAsync(status("s1", "client-1", "ACCOUNT_OPENING")).get();
+
+        StatusDynamoDBService cached = new StatusDynamoDBService(null, dax, asyncDynamoDb);
+        assertEquals("client-1", cached.getStatusAsync("s1").get().getClientId());
+        assertEquals(1, dax.calls.get());
+    }
+
+    @Test
+    public void testHungCallsTimeOut() {
+        FakeAsyncDynamoDb asyncDynamoDb = new FakeAsyncDynamoDb(true);
+        StatusDynamoDBService service = new StatusDynamoDBService(null, null, asyncDynamoDb);
+
+        ExecutionException write = assertThrows(ExecutionException.class,
+                () -> service.putStatusAsync(status("s1", "client-1", "ACCOUNT_OPENING")).get());
+        assertTrue(write.getCause() instanceof TimeoutException);
+
+        ExecutionException query = assertThrows(ExecutionException.class,
+                () -> service.getClientStatusesAsync("client-1", null).get());
+        assertTrue(query.getCause() instanceof TimeoutException);
+    }
+}